@@ -1,133 +1,260 @@
 package com.dev.air.font.impl;
 
 
-import net.minecraft.client.renderer.texture.DynamicTexture;
+import com.google.common.collect.Lists;
+import net.minecraft.client.renderer.GLAllocation;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.renderer.texture.TextureUtil;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.List;
 
 
-
+/**
+ * Glyphs are measured the first time a code point is asked for and only rasterized into the atlas the first time they
+ * are drawn, so the whole of Unicode is available while atlas memory follows the glyphs actually on screen. The atlas
+ * page grows in height as it fills, so all the passes of a string normally go out in a single draw; another page is
+ * only started once one reaches PAGE_MAX_HEIGHT. Code points the font has no glyph for are taken from the logical
+ * Dialog font.
+ */
 public class CustomFont
 {
-    private float imgSize = 512;
-    protected CharData[] charData = new CharData[256];
+    private static final int PAGE_WIDTH = 512;
+    private static final int PAGE_MIN_HEIGHT = 64;
+    private static final int PAGE_MAX_HEIGHT = 4096;
+    protected CharData[][][] glyphs = new CharData[4][][];
     protected Font font;
     protected boolean antiAlias;
     protected boolean fractionalMetrics;
     protected int fontHeight = -1;
     protected int charOffset = 0;
-    protected DynamicTexture tex;
+    private final Font[] styleFonts = new Font[4];
+    private final Font[] fallbackFonts = new Font[4];
+    private final List<GlyphPage> pages = Lists.newArrayList();
+    private final Tessellator glyphTessellator = new Tessellator(16384);
+    private BufferedImage glyphImage;
+    private Graphics2D glyphGraphics;
+    private GlyphPage drawingPage;
 
     public CustomFont(Font font, boolean antiAlias, boolean fractionalMetrics)
     {
         this.font = font;
         this.antiAlias = antiAlias;
         this.fractionalMetrics = fractionalMetrics;
-        tex = setupTexture(font, antiAlias, fractionalMetrics, this.charData);
+        setupGlyphs();
     }
 
-    public DynamicTexture setupTexture(Font font, boolean antiAlias, boolean fractionalMetrics, CharData[] chars)
+    /**
+     * Forgets every measured and rasterized glyph and frees the atlas pages. Index 1 to 3 of the glyph tables are the
+     * bold, italic and bold italic variants, matching the AWT style bits.
+     */
+    protected void setupGlyphs()
     {
-        BufferedImage img = generateFontImage(font, antiAlias, fractionalMetrics, chars);
+        for (GlyphPage page : this.pages)
+        {
+            TextureUtil.deleteTexture(page.textureId);
+        }
+
+        this.pages.clear();
+        this.fontHeight = -1;
+
+        for (int style = 0; style < 4; style++)
+        {
+            this.styleFonts[style] = style == 0 ? this.font : this.font.deriveFont(style);
+            this.fallbackFonts[style] = new Font(Font.DIALOG, style, 1).deriveFont(this.font.getSize2D());
+            this.glyphs[style] = new CharData[(Character.MAX_CODE_POINT >> 8) + 1][];
+        }
+
+        setupGlyphImage(64, 64);
 
-        try
+        for (int i = 0; i < 256; i++)
         {
-            return new DynamicTexture(img);
+            CharData charData = getGlyph(0, i);
+
+            if (charData.height > this.fontHeight)
+            {
+                this.fontHeight = charData.height;
+            }
         }
-        catch (Exception e)
+    }
+
+    private void setupGlyphImage(int width, int height)
+    {
+        if (this.glyphGraphics != null)
         {
-            e.printStackTrace();
+            this.glyphGraphics.dispose();
         }
 
-        return null;
+        this.glyphImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.glyphGraphics = this.glyphImage.createGraphics();
+        this.glyphGraphics.setBackground(new Color(255, 255, 255, 0));
+        this.glyphGraphics.setColor(Color.WHITE);
+        this.glyphGraphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, this.fractionalMetrics ? RenderingHints.VALUE_FRACTIONALMETRICS_ON : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        this.glyphGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, this.antiAlias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        this.glyphGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, this.antiAlias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
     }
 
-    protected BufferedImage generateFontImage(Font font, boolean antiAlias, boolean fractionalMetrics, CharData[] chars)
+    /**
+     * Returns the measured glyph of a code point in the given style. It has no place in the atlas until it is drawn.
+     */
+    protected CharData getGlyph(int style, int codePoint)
     {
-        int imgSize = (int) this.imgSize;
-        BufferedImage bufferedImage = new BufferedImage(imgSize, imgSize, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = (Graphics2D) bufferedImage.getGraphics();
-        g.setFont(font);
-        g.setColor(new Color(255, 255, 255, 0));
-        g.fillRect(0, 0, imgSize, imgSize);
-        g.setColor(Color.WHITE);
-        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalMetrics ? RenderingHints.VALUE_FRACTIONALMETRICS_ON : RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
-        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antiAlias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antiAlias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
-        FontMetrics fontMetrics = g.getFontMetrics();
-        int charHeight = 0;
-        int positionX = 0;
-        int positionY = 1;
+        CharData[][] table = this.glyphs[style];
+        CharData[] chars = table[codePoint >> 8];
+
+        if (chars == null)
+        {
+            chars = table[codePoint >> 8] = new CharData[256];
+        }
+
+        CharData charData = chars[codePoint & 255];
 
-        for (int i = 0; i < chars.length; i++)
+        if (charData == null)
         {
-            char ch = (char) i;
-            CharData charData = new CharData();
-            Rectangle2D dimensions = fontMetrics.getStringBounds(String.valueOf(ch), g);
+            Font font = this.styleFonts[style];
+
+            if (!font.canDisplay(codePoint) && this.fallbackFonts[style].canDisplay(codePoint))
+            {
+                font = this.fallbackFonts[style];
+            }
+
+            String text = new String(Character.toChars(codePoint));
+            FontMetrics fontMetrics = this.glyphGraphics.getFontMetrics(font);
+            Rectangle2D dimensions = fontMetrics.getStringBounds(text, this.glyphGraphics);
+            charData = new CharData();
             charData.width = (dimensions.getBounds().width + 8);
             charData.height = dimensions.getBounds().height;
+            charData.text = text;
+            charData.font = font;
+            charData.ascent = fontMetrics.getAscent();
+            chars[codePoint & 255] = charData;
+        }
+
+        return charData;
+    }
+
+    /**
+     * Rasterizes a glyph into the newest atlas page, starting a new page once it can grow no further
+     */
+    private void bakeGlyph(CharData charData)
+    {
+        GlyphPage page = this.pages.isEmpty() ? null : this.pages.get(this.pages.size() - 1);
+
+        if (page == null || !page.allocate(charData))
+        {
+            int width = PAGE_WIDTH;
+            int height = PAGE_MIN_HEIGHT;
 
-            if (positionX + charData.width >= imgSize)
+            while (width < charData.width + 3)
             {
-                positionX = 0;
-                positionY += charHeight;
-                charHeight = 0;
+                width <<= 1;
             }
 
-            if (charData.height > charHeight)
+            while (height < charData.height)
             {
-                charHeight = charData.height;
+                height <<= 1;
             }
 
-            charData.storedX = positionX;
-            charData.storedY = positionY;
+            page = new GlyphPage(width, height);
+            this.pages.add(page);
+            page.allocate(charData);
+        }
 
-            if (charData.height > this.fontHeight)
-            {
-                this.fontHeight = charData.height;
-            }
+        if (charData.width > this.glyphImage.getWidth() || charData.height > this.glyphImage.getHeight())
+        {
+            setupGlyphImage(Math.max(charData.width, this.glyphImage.getWidth()), Math.max(charData.height, this.glyphImage.getHeight()));
+        }
+
+        this.glyphGraphics.clearRect(0, 0, charData.width, charData.height);
+        this.glyphGraphics.setFont(charData.font);
+        this.glyphGraphics.drawString(charData.text, 2, charData.ascent);
+        TextureUtil.uploadTextureImageSub(page.textureId, this.glyphImage.getSubimage(0, 0, charData.width, charData.height), charData.storedX, charData.storedY, false, false);
+    }
 
-            chars[i] = charData;
-            g.drawString(String.valueOf(ch), positionX + 2, positionY + fontMetrics.getAscent());
-            positionX += charData.width;
+    /**
+     * Returns the glyph buffer ready for quads from the given page. The quads queued for another page are drawn first,
+     * so quads still reach the screen in the order they were added.
+     */
+    private WorldRenderer beginGlyphs(GlyphPage page)
+    {
+        WorldRenderer worldrenderer = this.glyphTessellator.getWorldRenderer();
+
+        if (this.drawingPage != null && this.drawingPage != page)
+        {
+            flushGlyphs();
+        }
+
+        if (this.drawingPage == null)
+        {
+            worldrenderer.begin(GL11.GL_TRIANGLES, DefaultVertexFormats.POSITION_TEX_COLOR);
+            this.drawingPage = page;
         }
 
-        return bufferedImage;
+        return worldrenderer;
     }
 
-    public void drawChar(CharData[] chars, char c, float x, float y) throws ArrayIndexOutOfBoundsException
+    protected void flushGlyphs()
     {
-        try
+        if (this.drawingPage != null)
         {
-            drawQuad(x, y, chars[c].width, chars[c].height, chars[c].storedX, chars[c].storedY, chars[c].width, chars[c].height);
+            GlStateManager.bindTexture(this.drawingPage.textureId);
+            this.drawingPage = null;
+            this.glyphTessellator.draw();
         }
-        catch (Exception e)
+    }
+
+    /**
+     * Queues a glyph drawn at its full cell size with the top left corner at x, y
+     */
+    protected void addGlyph(CharData charData, float x, float y, int color)
+    {
+        if (charData.page == null)
         {
-            e.printStackTrace();
+            bakeGlyph(charData);
         }
+
+        WorldRenderer worldrenderer = beginGlyphs(charData.page);
+        float width = (float) charData.page.width;
+        float height = (float) charData.page.height;
+        float renderSRCX = charData.storedX / width;
+        float renderSRCY = charData.storedY / height;
+        float renderSRCWidth = charData.width / width;
+        float renderSRCHeight = charData.height / height;
+        addQuad(worldrenderer, x, y, x + charData.width, y + charData.height, renderSRCX, renderSRCY, renderSRCX + renderSRCWidth, renderSRCY + renderSRCHeight, color);
     }
 
-    protected void drawQuad(float x, float y, float width, float height, float srcX, float srcY, float srcWidth, float srcHeight)
+    /**
+     * Queues a one unit thick horizontal line centred on y. It samples the white corner of whichever page is being
+     * drawn, so it never splits the batch.
+     */
+    protected void addLine(float x, float y, float x1, int color)
     {
-        float renderSRCX = srcX / imgSize;
-        float renderSRCY = srcY / imgSize;
-        float renderSRCWidth = srcWidth / imgSize;
-        float renderSRCHeight = srcHeight / imgSize;
-        GL11.glTexCoord2f(renderSRCX + renderSRCWidth, renderSRCY);
-        GL11.glVertex2d(x + width, y);
-        GL11.glTexCoord2f(renderSRCX, renderSRCY);
-        GL11.glVertex2d(x, y);
-        GL11.glTexCoord2f(renderSRCX, renderSRCY + renderSRCHeight);
-        GL11.glVertex2d(x, y + height);
-        GL11.glTexCoord2f(renderSRCX, renderSRCY + renderSRCHeight);
-        GL11.glVertex2d(x, y + height);
-        GL11.glTexCoord2f(renderSRCX + renderSRCWidth, renderSRCY + renderSRCHeight);
-        GL11.glVertex2d(x + width, y + height);
-        GL11.glTexCoord2f(renderSRCX + renderSRCWidth, renderSRCY);
-        GL11.glVertex2d(x + width, y);
+        GlyphPage page = this.drawingPage != null ? this.drawingPage : this.pages.get(this.pages.size() - 1);
+        float u = 1.0F / (float) page.width;
+        float v = 1.0F / (float) page.height;
+        addQuad(beginGlyphs(page), x, y - 0.5F, x1, y + 0.5F, u, v, u, v, color);
+    }
+
+    private void addQuad(WorldRenderer worldrenderer, float x, float y, float x1, float y1, float u, float v, float u1, float v1, int color)
+    {
+        int red = color >> 16 & 255;
+        int green = color >> 8 & 255;
+        int blue = color & 255;
+        int alpha = color >> 24 & 255;
+        worldrenderer.pos(x1, y, 0.0D).tex(u1, v).color(red, green, blue, alpha).endVertex();
+        worldrenderer.pos(x, y, 0.0D).tex(u, v).color(red, green, blue, alpha).endVertex();
+        worldrenderer.pos(x, y1, 0.0D).tex(u, v1).color(red, green, blue, alpha).endVertex();
+        worldrenderer.pos(x, y1, 0.0D).tex(u, v1).color(red, green, blue, alpha).endVertex();
+        worldrenderer.pos(x1, y1, 0.0D).tex(u1, v1).color(red, green, blue, alpha).endVertex();
+        worldrenderer.pos(x1, y, 0.0D).tex(u1, v).color(red, green, blue, alpha).endVertex();
     }
 
     public int getStringHeight(String text)
@@ -144,12 +271,11 @@ public class CustomFont
     {
         int width = 0;
 
-        for (char c : text.toCharArray())
+        for (int i = 0; i < text.length(); )
         {
-            if ((c < this.charData.length) && (c >= 0))
-            {
-                width += this.charData[c].width - 8 + this.charOffset;
-            }
+            int codePoint = text.codePointAt(i);
+            width += getGlyph(0, codePoint).width - 8 + this.charOffset;
+            i += Character.charCount(codePoint);
         }
 
         return width / 2;
@@ -165,7 +291,7 @@ public class CustomFont
         if (this.antiAlias != antiAlias)
         {
             this.antiAlias = antiAlias;
-            tex = setupTexture(this.font, antiAlias, this.fractionalMetrics, this.charData);
+            setupGlyphs();
         }
     }
 
@@ -179,7 +305,7 @@ public class CustomFont
         if (this.fractionalMetrics != fractionalMetrics)
         {
             this.fractionalMetrics = fractionalMetrics;
-            tex = setupTexture(this.font, this.antiAlias, fractionalMetrics, this.charData);
+            setupGlyphs();
         }
     }
 
@@ -191,7 +317,7 @@ public class CustomFont
     public void setFont(Font font)
     {
         this.font = font;
-        tex = setupTexture(font, this.antiAlias, this.fractionalMetrics, this.charData);
+        setupGlyphs();
     }
 
     protected class CharData
@@ -200,9 +326,94 @@ public class CustomFont
         public int height;
         public int storedX;
         public int storedY;
+        protected GlyphPage page;
+        protected String text;
+        protected Font font;
+        protected int ascent;
 
         protected CharData()
         {
         }
     }
+
+    /**
+     * An atlas texture filled row by row, doubling in height when the next row does not fit. The top left 2x2 texels
+     * are white for drawing lines.
+     */
+    protected class GlyphPage
+    {
+        private final int textureId = TextureUtil.glGenTextures();
+        private final int width;
+        private int height;
+        private int positionX = 3;
+        private int positionY = 0;
+        private int rowHeight = 2;
+
+        protected GlyphPage(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+            int[] aint = new int[width * height];
+            aint[0] = aint[1] = aint[width] = aint[width + 1] = -1;
+            TextureUtil.allocateTexture(this.textureId, width, height);
+            TextureUtil.uploadTextureMipmap(new int[][] {aint}, width, height, 0, 0, false, false);
+        }
+
+        /**
+         * Reserves a cell for the glyph, with a free texel between neighbouring cells. Returns false if the page is full.
+         */
+        protected boolean allocate(CharData charData)
+        {
+            if (charData.width > this.width - this.positionX)
+            {
+                this.positionX = 0;
+                this.positionY += this.rowHeight + 1;
+                this.rowHeight = 0;
+            }
+
+            if (charData.width > this.width)
+            {
+                return false;
+            }
+
+            while (this.positionY + charData.height > this.height)
+            {
+                if (this.height >= PAGE_MAX_HEIGHT)
+                {
+                    return false;
+                }
+
+                grow();
+            }
+
+            charData.storedX = this.positionX;
+            charData.storedY = this.positionY;
+            charData.page = this;
+            this.positionX += charData.width + 1;
+            this.rowHeight = Math.max(this.rowHeight, charData.height);
+            return true;
+        }
+
+        /**
+         * Doubles the height of the texture, keeping its contents. Quads already queued for this page were given UVs for
+         * the old height, so they are drawn first.
+         */
+        private void grow()
+        {
+            if (CustomFont.this.drawingPage == this)
+            {
+                flushGlyphs();
+            }
+
+            int i = this.width * this.height;
+            IntBuffer intbuffer = GLAllocation.createDirectIntBuffer(i);
+            GlStateManager.bindTexture(this.textureId);
+            GL11.glGetTexImage(GL11.GL_TEXTURE_2D, 0, GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, intbuffer);
+            int[] aint = new int[i * 2];
+            intbuffer.get(aint, 0, i);
+            this.height *= 2;
+            TextureUtil.allocateTexture(this.textureId, this.width, this.height);
+            TextureUtil.uploadTextureMipmap(new int[][] {aint}, this.width, this.height, 0, 0, false, false);
+        }
+    }
 }
@@ -2,37 +2,42 @@ package com.dev.air.font.impl;
 
 
 import com.dev.air.util.FontUtil;
-import net.minecraft.client.Minecraft;
+import com.google.common.collect.Maps;
 import net.minecraft.client.renderer.GlStateManager;
-import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.util.ResourceLocation;
 import org.lwjgl.opengl.GL11;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 
 public class CustomFontRenderer extends CustomFont {
-    protected CustomFont.CharData[] boldChars = new CustomFont.CharData[256];
-    protected CustomFont.CharData[] italicChars = new CustomFont.CharData[256];
-    protected CustomFont.CharData[] boldItalicChars = new CustomFont.CharData[256];
+    private static final int MAX_CACHED_LAYOUTS = 512;
+    private static final int FORMAT_STRIKETHROUGH = 32;
+    private static final int FORMAT_UNDERLINE = 64;
+    private static final int SHADOW_COLOR_MASK = new Color(20, 20, 20, 200).getRGB();
 
     private final int[] colorCode = new int[32];
 
+    /**
+     * Layouts of recently drawn strings. Emptied when it fills up, and whenever the glyphs are set up again.
+     */
+    private final Map<String, CustomFontRenderer.TextLayout> layouts = Maps.newHashMap();
+
     /*
         CREDIT G0dwhitelight.
      */
     public CustomFontRenderer(Font font, boolean antiAlias, boolean fractionalMetrics) {
         super(font, antiAlias, fractionalMetrics);
         setupMinecraftColorcodes();
-        setupBoldItalicIDs();
     }
 
     public CustomFontRenderer(String NameFontTTF, int size, int fonttype, boolean antiAlias, boolean fractionalMetrics) {
         super(FontUtil.getFontFromTTF(new ResourceLocation("air/font/" + NameFontTTF + ".ttf"), size,fonttype), antiAlias, fractionalMetrics);
         setupMinecraftColorcodes();
-        setupBoldItalicIDs();
     }
 
     public float drawString(String text, float x, float y, int color) {
@@ -44,13 +49,20 @@ public class CustomFontRenderer extends CustomFont {
     }
 
     public float drawStringWithShadow(String text, float x, float y, int color) {
-        float shadowWidth = drawString(text, x + 1D, y + .5D, color, true);
-        return Math.max(shadowWidth, drawString(text, x, y, color, false));
+        return drawStringWithShadow(text, (double) x, (double) y, color);
     }
 
     public float drawStringWithShadow(String text, double x, double y, int color) {
-        float shadowWidth = drawString(text, x + 1, y + .5, color, true);
-        return Math.max(shadowWidth, drawString(text, x, y, color, false));
+        if (text == null) {
+            return 0.0F;
+        }
+
+        CustomFontRenderer.TextLayout layout = getLayout(text);
+        beginDrawing();
+        float shadowWidth = renderLayout(layout, x + 1, y + .5, color, true);
+        float width = Math.max(shadowWidth, renderLayout(layout, x, y, color, false));
+        endDrawing();
+        return width;
     }
 
     public float drawCenteredString(String text, float x, float y, int color) {
@@ -62,47 +74,79 @@ public class CustomFontRenderer extends CustomFont {
     }
 
     public float drawCenteredStringWithShadow(String text, float x, float y, int color) {
-        float shadowWidth = drawString(text, x - getStringWidth(text) / 2 + 0.45D, y + 0.5D, color, true);
-        return drawString(text, x - getStringWidth(text) / 2, y, color);
+        return drawCenteredStringWithShadow(text, (double) x, (double) y, color);
     }
 
     public void drawStringWithOutline(String text, double x, double y, int color) {
-        drawString(text, x - .5, y, 0x000000);
+        if (text == null) {
+            return;
+        }
 
-        drawString(text, x + .5, y, 0x000000);
+        CustomFontRenderer.TextLayout layout = getLayout(text);
+        beginDrawing();
+        renderLayout(layout, x - .5, y, 0x000000, false);
 
-        drawString(text, x, y - .5, 0x000000);
+        renderLayout(layout, x + .5, y, 0x000000, false);
 
-        drawString(text, x, y + .5, 0x000000);
+        renderLayout(layout, x, y - .5, 0x000000, false);
 
-        drawString(text, x, y, color);
+        renderLayout(layout, x, y + .5, 0x000000, false);
+
+        renderLayout(layout, x, y, color, false);
+        endDrawing();
     }
 
     public void drawCenteredStringWithOutline(String text, double x, double y, int color) {
-        drawCenteredString(text, x - .5, y, 0x000000);
-
-        drawCenteredString(text, x + .5, y, 0x000000);
-
-        drawCenteredString(text, x, y - .5, 0x000000);
-
-        drawCenteredString(text, x, y + .5, 0x000000);
-
-        drawCenteredString(text, x, y, color);
+        drawStringWithOutline(text, x - getStringWidth(text) / 2, y, color);
     }
 
     public float drawCenteredStringWithShadow(String text, double x, double y, int color) {
-        float shadowWidth = drawString(text, x - getStringWidth(text) / 2 + 0.45D, y + 0.5D, color, true);
-        return drawString(text, x - getStringWidth(text) / 2, y, color);
+        if (text == null) {
+            return 0.0F;
+        }
+
+        CustomFontRenderer.TextLayout layout = getLayout(text);
+        double centerX = x - getStringWidth(text) / 2;
+        beginDrawing();
+        renderLayout(layout, centerX + 0.45D, y + 0.5D, color, true);
+        float width = renderLayout(layout, centerX, y, color, false);
+        endDrawing();
+        return width;
     }
 
     public float drawString(String text, double x, double y, int color, boolean shadow) {
-        Minecraft mc = Minecraft.getMinecraft();
-        x -= 1;
-
         if (text == null) {
             return 0.0F;
         }
 
+        CustomFontRenderer.TextLayout layout = getLayout(text);
+        beginDrawing();
+        float width = renderLayout(layout, x, y, color, shadow);
+        endDrawing();
+        return width;
+    }
+
+    private void beginDrawing() {
+        GL11.glPushMatrix();
+        GlStateManager.scale(0.5D, 0.5D, 0.5D);
+        GlStateManager.enableBlend();
+        GlStateManager.blendFunc(770, 771);
+        GlStateManager.enableTexture2D();
+    }
+
+    private void endDrawing() {
+        flushGlyphs();
+        GL11.glHint(GL11.GL_POLYGON_SMOOTH_HINT, GL11.GL_DONT_CARE);
+        GL11.glPopMatrix();
+    }
+
+    /**
+     * Queues one pass of a laid out string and returns where it ends. Passes queued between beginDrawing and
+     * endDrawing go out in as few draws as the atlas pages they touch allow.
+     */
+    private float renderLayout(CustomFontRenderer.TextLayout layout, double x, double y, int color, boolean shadow) {
+        x -= 1;
+
         if (color == 553648127) {
             color = 16777215;
         }
@@ -112,270 +156,129 @@ public class CustomFontRenderer extends CustomFont {
         }
 
         if (shadow) {
-            color = (color & 0xFCFCFC) >> 2 | color & new Color(20, 20, 20, 200).getRGB();
+            color = (color & 0xFCFCFC) >> 2 | color & SHADOW_COLOR_MASK;
         }
 
-        CustomFont.CharData[] currentData = this.charData;
-        float alpha = (color >> 24 & 0xFF) / 255.0F;
-        boolean randomCase = false;
-        boolean bold = false;
-        boolean italic = false;
-        boolean strikethrough = false;
-        boolean underline = false;
-        boolean render = true;
         x *= 2.0D;
         y = (y - 3.0D) * 2.0D;
 
-        if (render) {
-            GL11.glPushMatrix();
-            GlStateManager.scale(0.5D, 0.5D, 0.5D);
-            GlStateManager.enableBlend();
-            GlStateManager.blendFunc(770, 771);
-            GlStateManager.color((color >> 16 & 0xFF) / 255.0F, (color >> 8 & 0xFF) / 255.0F, (color & 0xFF) / 255.0F, alpha);
-            int size = text.length();
-            GlStateManager.enableTexture2D();
-            GlStateManager.bindTexture(tex.getGlTextureId());
-
-            GL11.glBindTexture(GL11.GL_TEXTURE_2D, tex.getGlTextureId());
-
-            for (int i = 0; i < size; i++) {
-                char character = text.charAt(i);
-                if ((String.valueOf(character).equals("\247")) && (i < size)) {
-                    int colorIndex = 21;
-
-                    try {
-                        colorIndex = "0123456789abcdefklmnor".indexOf(text.charAt(i + 1));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+        for (int i = 0; i < layout.glyphs.length; i++) {
+            CustomFont.CharData charData = layout.glyphs[i];
+            int format = layout.formats[i];
+            int colorIndex = (format & 31) - 1;
+            int glyphColor = colorIndex < 0 ? color : color & 0xFF000000 | this.colorCode[shadow ? colorIndex + 16 : colorIndex];
+            float glyphX = (float) (x + layout.positions[i]);
+            addGlyph(charData, glyphX, (float) y, glyphColor);
 
-                    if (colorIndex < 16) {
-                        bold = false;
-                        italic = false;
-                        randomCase = false;
-                        underline = false;
-                        strikethrough = false;
-                        GlStateManager.bindTexture(tex.getGlTextureId());
-                        // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                        // tex.getGlTextureId());
-                        currentData = this.charData;
-
-                        if ((colorIndex < 0) || (colorIndex > 15)) {
-                            colorIndex = 15;
-                        }
-
-                        if (shadow) {
-                            colorIndex += 16;
-                        }
-
-                        int colorcode = this.colorCode[colorIndex];
-                        GlStateManager.color((colorcode >> 16 & 0xFF) / 255.0F, (colorcode >> 8 & 0xFF) / 255.0F, (colorcode & 0xFF) / 255.0F, alpha);
-                    } else if (colorIndex == 16) {
-                        randomCase = true;
-                    } else if (colorIndex == 17) {
-                        bold = true;
-
-                        if (italic) {
-                            GlStateManager.bindTexture(texItalicBold.getGlTextureId());
-                            // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                            // texItalicBold.getGlTextureId());
-                            currentData = this.boldItalicChars;
-                        } else {
-                            GlStateManager.bindTexture(texBold.getGlTextureId());
-                            // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                            // texBold.getGlTextureId());
-                            currentData = this.boldChars;
-                        }
-                    } else if (colorIndex == 18) {
-                        strikethrough = true;
-                    } else if (colorIndex == 19) {
-                        underline = true;
-                    } else if (colorIndex == 20) {
-                        italic = true;
-
-                        if (bold) {
-                            GlStateManager.bindTexture(texItalicBold.getGlTextureId());
-                            // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                            // texItalicBold.getGlTextureId());
-                            currentData = this.boldItalicChars;
-                        } else {
-                            GlStateManager.bindTexture(texItalic.getGlTextureId());
-                            // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                            // texItalic.getGlTextureId());
-                            currentData = this.italicChars;
-                        }
-                    } else if (colorIndex == 21) {
-                        bold = false;
-                        italic = false;
-                        randomCase = false;
-                        underline = false;
-                        strikethrough = false;
-                        GlStateManager.color((color >> 16 & 0xFF) / 255.0F, (color >> 8 & 0xFF) / 255.0F, (color & 0xFF) / 255.0F, alpha);
-                        GlStateManager.bindTexture(tex.getGlTextureId());
-                        // GL11.glfunc_179144_i(GL11.GL_TEXTURE_2D,
-                        // tex.getGlTextureId());
-                        currentData = this.charData;
-                    }
+            if ((format & FORMAT_STRIKETHROUGH) != 0) {
+                addLine(glyphX, (float) (y + charData.height / 2), glyphX + charData.width - 8.0F, glyphColor);
+            }
 
-                    i++;
-                } else if ((character < currentData.length) && (character >= 0)) {
-                    GL11.glBegin(GL11.GL_TRIANGLES);
-                    drawChar(currentData, character, (float) x, (float) y);
-                    GL11.glEnd();
+            if ((format & FORMAT_UNDERLINE) != 0) {
+                addLine(glyphX, (float) (y + charData.height - 2.0D), glyphX + charData.width - 8.0F, glyphColor);
+            }
+        }
 
-                    if (strikethrough) {
-                        drawLine(x, y + currentData[character].height / 2, x + currentData[character].width - 8.0D, y + currentData[character].height / 2, 1.0F);
-                    }
+        return (float) (x + layout.width) / 2.0F;
+    }
 
-                    if (underline) {
-                        drawLine(x, y + currentData[character].height - 2.0D, x + currentData[character].width - 8.0D, y + currentData[character].height - 2.0D, 1.0F);
-                    }
+    private CustomFontRenderer.TextLayout getLayout(String text) {
+        CustomFontRenderer.TextLayout layout = this.layouts.get(text);
 
-                    x += currentData[character].width - 8 + this.charOffset;
-                }
+        if (layout == null) {
+            layout = layoutString(text);
+
+            if (this.layouts.size() >= MAX_CACHED_LAYOUTS) {
+                this.layouts.clear();
             }
 
-            GL11.glHint(GL11.GL_POLYGON_SMOOTH_HINT, GL11.GL_DONT_CARE);
-            GL11.glPopMatrix();
+            this.layouts.put(text, layout);
         }
 
-        return (float) x / 2.0F;
+        return layout;
     }
 
-    public int getStringWidth(String text) {
-        if (text == null) {
-            return 0;
-        }
-        int width = 0;
-        CustomFont.CharData[] currentData = this.charData;
-        boolean bold = false;
-        boolean italic = false;
+    /**
+     * Resolves the formatting codes of a string into its glyphs. A \247 with nothing after it resets the formatting.
+     */
+    private CustomFontRenderer.TextLayout layoutString(String text) {
         int size = text.length();
+        CustomFont.CharData[] glyphs = new CustomFont.CharData[size];
+        int[] positions = new int[size];
+        int[] formats = new int[size];
+        int count = 0;
+        int width = 0;
+        int style = Font.PLAIN;
+        int format = 0;
 
         for (int i = 0; i < size; i++) {
             char character = text.charAt(i);
 
-            if ((String.valueOf(character).equals("\247")) && (i < size)) {
-                int colorIndex = "0123456789abcdefklmnor".indexOf(character);
+            if (character == '\247') {
+                int colorIndex = i + 1 < size ? "0123456789abcdefklmnor".indexOf(text.charAt(i + 1)) : 21;
 
                 if (colorIndex < 16) {
-                    bold = false;
-                    italic = false;
+                    style = Font.PLAIN;
+                    format = (colorIndex < 0 ? 15 : colorIndex) + 1;
                 } else if (colorIndex == 17) {
-                    bold = true;
-
-                    if (italic) {
-                        currentData = this.boldItalicChars;
-                    } else {
-                        currentData = this.boldChars;
-                    }
+                    style |= Font.BOLD;
+                } else if (colorIndex == 18) {
+                    format |= FORMAT_STRIKETHROUGH;
+                } else if (colorIndex == 19) {
+                    format |= FORMAT_UNDERLINE;
                 } else if (colorIndex == 20) {
-                    italic = true;
-
-                    if (bold) {
-                        currentData = this.boldItalicChars;
-                    } else {
-                        currentData = this.italicChars;
-                    }
+                    style |= Font.ITALIC;
                 } else if (colorIndex == 21) {
-                    bold = false;
-                    italic = false;
-                    currentData = this.charData;
+                    style = Font.PLAIN;
+                    format = 0;
                 }
 
                 i++;
-            } else if ((character < currentData.length) && (character >= 0)) {
-                width += currentData[character].width - 8 + this.charOffset;
+            } else {
+                int codePoint = text.codePointAt(i);
+                CustomFont.CharData charData = getGlyph(style, codePoint);
+                glyphs[count] = charData;
+                positions[count] = width;
+                formats[count++] = format;
+                width += charData.width - 8 + this.charOffset;
+                i += Character.charCount(codePoint) - 1;
             }
         }
 
-        return width / 2;
+        return new CustomFontRenderer.TextLayout(Arrays.copyOf(glyphs, count), Arrays.copyOf(positions, count), Arrays.copyOf(formats, count), width);
     }
 
-    public int getStringWidthCust(String text) {
+    public int getStringWidth(String text) {
         if (text == null) {
             return 0;
         }
 
-        int width = 0;
-        CustomFont.CharData[] currentData = this.charData;
-        boolean bold = false;
-        boolean italic = false;
-        int size = text.length();
-
-        for (int i = 0; i < size; i++) {
-            char character = text.charAt(i);
-
-            if ((String.valueOf(character).equals("§")) && (i < size)) {
-                int colorIndex = "0123456789abcdefklmnor".indexOf(character);
-
-                if (colorIndex < 16) {
-                    bold = false;
-                    italic = false;
-                } else if (colorIndex == 17) {
-                    bold = true;
-
-                    if (italic) {
-                        currentData = this.boldItalicChars;
-                    } else {
-                        currentData = this.boldChars;
-                    }
-                } else if (colorIndex == 20) {
-                    italic = true;
-
-                    if (bold) {
-                        currentData = this.boldItalicChars;
-                    } else {
-                        currentData = this.italicChars;
-                    }
-                } else if (colorIndex == 21) {
-                    bold = false;
-                    italic = false;
-                    currentData = this.charData;
-                }
+        CustomFontRenderer.TextLayout layout = this.layouts.get(text);
+        return (layout != null ? layout.width : layoutString(text).width) / 2;
+    }
 
-                i++;
-            } else if ((character < currentData.length) && (character >= 0)) {
-                width += currentData[character].width - 8 + this.charOffset;
-            }
+    public int getStringWidthCust(String text) {
+        if (text == null) {
+            return 0;
         }
 
-        return (width - this.charOffset) / 2;
+        CustomFontRenderer.TextLayout layout = this.layouts.get(text);
+        return ((layout != null ? layout.width : layoutString(text).width) - this.charOffset) / 2;
     }
 
     public void setFont(Font font) {
         super.setFont(font);
-        setupBoldItalicIDs();
+        this.layouts.clear();
     }
 
     public void setAntiAlias(boolean antiAlias) {
         super.setAntiAlias(antiAlias);
-        setupBoldItalicIDs();
+        this.layouts.clear();
     }
 
     public void setFractionalMetrics(boolean fractionalMetrics) {
         super.setFractionalMetrics(fractionalMetrics);
-        setupBoldItalicIDs();
-    }
-
-    protected DynamicTexture texBold;
-    protected DynamicTexture texItalic;
-    protected DynamicTexture texItalicBold;
-
-    private void setupBoldItalicIDs() {
-        texBold = setupTexture(this.font.deriveFont(1), this.antiAlias, this.fractionalMetrics, this.boldChars);
-        texItalic = setupTexture(this.font.deriveFont(2), this.antiAlias, this.fractionalMetrics, this.italicChars);
-        texItalicBold = setupTexture(this.font.deriveFont(3), this.antiAlias, this.fractionalMetrics, this.boldItalicChars);
-    }
-
-    private void drawLine(double x, double y, double x1, double y1, float width) {
-        GL11.glDisable(GL11.GL_TEXTURE_2D);
-        GL11.glLineWidth(width);
-        GL11.glBegin(GL11.GL_LINES);
-        GL11.glVertex2d(x, y);
-        GL11.glVertex2d(x1, y1);
-        GL11.glEnd();
-        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        this.layouts.clear();
     }
 
     public List<String> wrapWords(String text, double width) {
@@ -467,4 +370,23 @@ public class CustomFontRenderer extends CustomFont {
             this.colorCode[index] = ((red & 0xFF) << 16 | (green & 0xFF) << 8 | blue & 0xFF);
         }
     }
+
+    /**
+     * A string with its formatting resolved: the glyph, x offset and format of every drawn character, where the format
+     * is the colour code index plus one (zero for the colour passed in) and the line flags. Colours are applied when a
+     * pass is drawn, so the same layout serves the shadow and outline passes.
+     */
+    static class TextLayout {
+        private final CustomFont.CharData[] glyphs;
+        private final int[] positions;
+        private final int[] formats;
+        private final int width;
+
+        public TextLayout(CustomFont.CharData[] glyphs, int[] positions, int[] formats, int width) {
+            this.glyphs = glyphs;
+            this.positions = positions;
+            this.formats = formats;
+            this.width = width;
+        }
+    }
 }
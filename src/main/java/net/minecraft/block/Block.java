@@ -130,6 +130,11 @@ public class Block {
     protected double maxY;
     protected double maxZ;
 
+    /**
+     * 1 if the block keeps Block's collision and bounds methods, 0 if not, -1 until worked out
+     */
+    private int defaultCollision = -1;
+
     /**
      * Sound of stepping on the block
      */
@@ -446,6 +451,31 @@ public class Block {
         return new AxisAlignedBB((double) pos.getX() + this.minX, (double) pos.getY() + this.minY, (double) pos.getZ() + this.minZ, (double) pos.getX() + this.maxX, (double) pos.getY() + this.maxY, (double) pos.getZ() + this.maxZ);
     }
 
+    /**
+     * Whether the block always collides as exactly the cube at its position: it keeps Block's own collision and bounds
+     * methods and its bounds are the whole block. World.gatherCollisionBoxes adds the box of such blocks without asking
+     * the block for it.
+     */
+    public boolean hasFullCollisionCube() {
+        if (this.defaultCollision < 0) {
+            boolean flag = isDeclaredByBlock(this.getClass(), "addCollisionBoxesToList", World.class, BlockPos.class, IBlockState.class, AxisAlignedBB.class, List.class, Entity.class);
+            flag = flag && isDeclaredByBlock(this.getClass(), "getCollisionBoundingBox", World.class, BlockPos.class, IBlockState.class);
+            flag = flag && isDeclaredByBlock(this.getClass(), "setBlockBoundsBasedOnState", IBlockAccess.class, BlockPos.class);
+            flag = flag && isDeclaredByBlock(this.getClass(), "setBlockBoundsForItemRender");
+            this.defaultCollision = flag ? 1 : 0;
+        }
+
+        return this.defaultCollision == 1 && this.minX == 0.0D && this.minY == 0.0D && this.minZ == 0.0D && this.maxX == 1.0D && this.maxY == 1.0D && this.maxZ == 1.0D;
+    }
+
+    private static boolean isDeclaredByBlock(Class<?> blockClass, String name, Class<?>... parameterTypes) {
+        try {
+            return blockClass.getMethod(name, parameterTypes).getDeclaringClass() == Block.class;
+        } catch (NoSuchMethodException var4) {
+            return false;
+        }
+    }
+
     /**
      * Used to determine ambient occlusion and culling when rebuilding chunks for render
      */
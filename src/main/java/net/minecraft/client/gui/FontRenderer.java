@@ -1,5 +1,6 @@
 package net.minecraft.client.gui;
 
+import com.google.common.collect.Maps;
 import com.ibm.icu.text.ArabicShaping;
 import com.ibm.icu.text.ArabicShapingException;
 import com.ibm.icu.text.Bidi;
@@ -29,6 +30,26 @@ import java.util.*;
 public class FontRenderer implements IResourceManagerReloadListener {
     private static final ResourceLocation[] unicodePageLocations = new ResourceLocation[256];
 
+    /**
+     * The characters of default.png in glyph order
+     */
+    private static final String DEFAULT_CHARACTERS = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000";
+
+    /**
+     * Index of each char in DEFAULT_CHARACTERS, or -1 for chars only the unicode pages have
+     */
+    private static final short[] DEFAULT_CHAR_INDICES = new short[65536];
+    private static final int STYLE_RANDOM = 1;
+    private static final int STYLE_BOLD = 2;
+    private static final int STYLE_STRIKETHROUGH = 4;
+    private static final int STYLE_UNDERLINE = 8;
+    private static final int STYLE_ITALIC = 16;
+
+    /**
+     * Most laid out strings kept per shadow pass before the cache is emptied
+     */
+    private static final int MAX_CACHED_LAYOUTS = 1024;
+
     /**
      * Array of width of all the characters in default.png
      */
@@ -133,6 +154,28 @@ public class FontRenderer implements IResourceManagerReloadListener {
     private boolean blend = false;
     private final GlBlendState oldBlendState = new GlBlendState();
 
+    /**
+     * Layouts of strings drawn without and with a shadow, for strings that start with no style set
+     */
+    private final Map<String, FontRenderer.TextLayout> layouts = Maps.newHashMap();
+    private final Map<String, FontRenderer.TextLayout> shadowLayouts = Maps.newHashMap();
+
+    /**
+     * Glyph and line quads of the strings being drawn, flushed whenever the texture changes and at the end of each
+     * draw call
+     */
+    private final Tessellator glyphTessellator = new Tessellator(16384);
+    private boolean drawingGlyphs;
+    private ResourceLocation glyphTexture;
+    private int glyphRed;
+    private int glyphGreen;
+    private int glyphBlue;
+    private int glyphAlpha;
+    private float colorRed;
+    private float colorGreen;
+    private float colorBlue;
+    private float colorAlpha;
+
     public FontRenderer(GameSettings gameSettingsIn, ResourceLocation location, TextureManager textureManagerIn, boolean unicode) {
         this.gameSettings = gameSettingsIn;
         this.locationFontTextureBase = location;
@@ -182,6 +225,12 @@ public class FontRenderer implements IResourceManagerReloadListener {
 
         this.readFontTexture();
         this.readGlyphSizes();
+        this.clearLayouts();
+    }
+
+    private void clearLayouts() {
+        this.layouts.clear();
+        this.shadowLayouts.clear();
     }
 
     private void readFontTexture() {
@@ -276,7 +325,7 @@ public class FontRenderer implements IResourceManagerReloadListener {
      */
     private float renderChar(char ch, boolean italic) {
         if (ch != 32 && ch != 160) {
-            int i = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000".indexOf(ch);
+            int i = DEFAULT_CHAR_INDICES[ch];
             return i != -1 && !this.unicodeFlag ? this.renderDefaultChar(i, italic) : this.renderUnicodeChar(ch, italic);
         } else {
             return !this.unicodeFlag ? this.charWidthFloat[ch] : 4.0F;
@@ -290,19 +339,10 @@ public class FontRenderer implements IResourceManagerReloadListener {
         int i = ch % 16 * 8;
         int j = ch / 16 * 8;
         int k = italic ? 1 : 0;
-        this.bindTexture(this.locationFontTexture);
+        WorldRenderer worldrenderer = this.beginGlyphs(this.locationFontTexture);
         float f = this.charWidthFloat[ch];
         float f1 = 7.99F;
-        GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-        GL11.glTexCoord2f((float) i / 128.0F, (float) j / 128.0F);
-        GL11.glVertex3f(this.posX + (float) k, this.posY, 0.0F);
-        GL11.glTexCoord2f((float) i / 128.0F, ((float) j + 7.99F) / 128.0F);
-        GL11.glVertex3f(this.posX - (float) k, this.posY + 7.99F, 0.0F);
-        GL11.glTexCoord2f(((float) i + f1 - 1.0F) / 128.0F, (float) j / 128.0F);
-        GL11.glVertex3f(this.posX + f1 - 1.0F + (float) k, this.posY, 0.0F);
-        GL11.glTexCoord2f(((float) i + f1 - 1.0F) / 128.0F, ((float) j + 7.99F) / 128.0F);
-        GL11.glVertex3f(this.posX + f1 - 1.0F - (float) k, this.posY + 7.99F, 0.0F);
-        GL11.glEnd();
+        this.addGlyphStrip(worldrenderer, this.posX + (float) k, this.posY, (float) i / 128.0F, (float) j / 128.0F, this.posX - (float) k, this.posY + 7.99F, (float) i / 128.0F, ((float) j + 7.99F) / 128.0F, this.posX + f1 - 1.0F + (float) k, this.posY, ((float) i + f1 - 1.0F) / 128.0F, (float) j / 128.0F, this.posX + f1 - 1.0F - (float) k, this.posY + 7.99F, ((float) i + f1 - 1.0F) / 128.0F, ((float) j + 7.99F) / 128.0F);
         return f;
     }
 
@@ -315,13 +355,6 @@ public class FontRenderer implements IResourceManagerReloadListener {
         return unicodePageLocations[page];
     }
 
-    /**
-     * Load one of the /font/glyph_XX.png into a new GL texture and store the texture ID in glyphTextureName array.
-     */
-    private void loadGlyphTexture(int page) {
-        this.bindTexture(this.getUnicodePageLocation(page));
-    }
-
     /**
      * Render a single Unicode character at current (posX,posY) location using one of the /font/glyph_XX.png files...
      */
@@ -330,7 +363,7 @@ public class FontRenderer implements IResourceManagerReloadListener {
             return 0.0F;
         } else {
             int i = ch / 256;
-            this.loadGlyphTexture(i);
+            WorldRenderer worldrenderer = this.beginGlyphs(this.getUnicodePageLocation(i));
             int j = this.glyphWidth[ch] >>> 4;
             int k = this.glyphWidth[ch] & 15;
             float f = (float) j;
@@ -339,20 +372,92 @@ public class FontRenderer implements IResourceManagerReloadListener {
             float f3 = (float) ((ch & 255) / 16 * 16);
             float f4 = f1 - f - 0.02F;
             float f5 = italic ? 1.0F : 0.0F;
-            GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-            GL11.glTexCoord2f(f2 / 256.0F, f3 / 256.0F);
-            GL11.glVertex3f(this.posX + f5, this.posY, 0.0F);
-            GL11.glTexCoord2f(f2 / 256.0F, (f3 + 15.98F) / 256.0F);
-            GL11.glVertex3f(this.posX - f5, this.posY + 7.99F, 0.0F);
-            GL11.glTexCoord2f((f2 + f4) / 256.0F, f3 / 256.0F);
-            GL11.glVertex3f(this.posX + f4 / 2.0F + f5, this.posY, 0.0F);
-            GL11.glTexCoord2f((f2 + f4) / 256.0F, (f3 + 15.98F) / 256.0F);
-            GL11.glVertex3f(this.posX + f4 / 2.0F - f5, this.posY + 7.99F, 0.0F);
-            GL11.glEnd();
+            this.addGlyphStrip(worldrenderer, this.posX + f5, this.posY, f2 / 256.0F, f3 / 256.0F, this.posX - f5, this.posY + 7.99F, f2 / 256.0F, (f3 + 15.98F) / 256.0F, this.posX + f4 / 2.0F + f5, this.posY, (f2 + f4) / 256.0F, f3 / 256.0F, this.posX + f4 / 2.0F - f5, this.posY + 7.99F, (f2 + f4) / 256.0F, (f3 + 15.98F) / 256.0F);
             return (f1 - f) / 2.0F + 1.0F;
         }
     }
 
+    /**
+     * Returns the glyph buffer ready for quads with the given texture, or untextured quads for null. The quads queued so
+     * far are drawn first if their texture differs, so quads still reach the screen in the order they were added.
+     */
+    private WorldRenderer beginGlyphs(ResourceLocation texture) {
+        WorldRenderer worldrenderer = this.glyphTessellator.getWorldRenderer();
+
+        if (this.drawingGlyphs && this.glyphTexture != texture) {
+            this.flushGlyphs();
+        }
+
+        if (!this.drawingGlyphs) {
+            worldrenderer.begin(GL11.GL_TRIANGLES, texture != null ? DefaultVertexFormats.POSITION_TEX_COLOR : DefaultVertexFormats.POSITION_COLOR);
+            this.glyphTexture = texture;
+            this.drawingGlyphs = true;
+        }
+
+        return worldrenderer;
+    }
+
+    /**
+     * Draws the queued quads. Drawing with vertex colours leaves the GL colour undefined, so the current text colour is
+     * set again.
+     */
+    private void flushGlyphs() {
+        if (this.drawingGlyphs) {
+            this.drawingGlyphs = false;
+
+            if (this.glyphTexture != null) {
+                this.bindTexture(this.glyphTexture);
+                this.glyphTessellator.draw();
+            } else {
+                GlStateManager.disableTexture2D();
+                this.glyphTessellator.draw();
+                GlStateManager.enableTexture2D();
+            }
+
+            this.setColor(this.colorRed, this.colorGreen, this.colorBlue, this.colorAlpha);
+        }
+    }
+
+    /**
+     * Adds a glyph quad as the two triangles the triangle strip a, b, c, d would have drawn
+     */
+    private void addGlyphStrip(WorldRenderer worldRendererIn, float x1, float y1, float u1, float v1, float x2, float y2, float u2, float v2, float x3, float y3, float u3, float v3, float x4, float y4, float u4, float v4) {
+        worldRendererIn.pos(x1, y1, 0.0D).tex(u1, v1).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldRendererIn.pos(x2, y2, 0.0D).tex(u2, v2).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldRendererIn.pos(x3, y3, 0.0D).tex(u3, v3).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldRendererIn.pos(x3, y3, 0.0D).tex(u3, v3).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldRendererIn.pos(x2, y2, 0.0D).tex(u2, v2).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldRendererIn.pos(x4, y4, 0.0D).tex(u4, v4).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+    }
+
+    /**
+     * Adds an untextured quad, split the way GL_QUADS splits it
+     */
+    private void addLineQuad(float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4) {
+        WorldRenderer worldrenderer = this.beginGlyphs(null);
+        worldrenderer.pos(x1, y1, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldrenderer.pos(x2, y2, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldrenderer.pos(x3, y3, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldrenderer.pos(x1, y1, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldrenderer.pos(x3, y3, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+        worldrenderer.pos(x4, y4, 0.0D).color(this.glyphRed, this.glyphGreen, this.glyphBlue, this.glyphAlpha).endVertex();
+    }
+
+    /**
+     * Sets the colour of the glyphs that follow. The arguments are what setColor would have been called with, and are
+     * passed on to it once the string is drawn.
+     */
+    private void setGlyphColor(float red, float green, float blue, float alpha, int redIn, int greenIn, int blueIn, int alphaIn) {
+        this.colorRed = red;
+        this.colorGreen = green;
+        this.colorBlue = blue;
+        this.colorAlpha = alpha;
+        this.glyphRed = redIn;
+        this.glyphGreen = greenIn;
+        this.glyphBlue = blueIn;
+        this.glyphAlpha = alphaIn;
+    }
+
     /**
      * Draws the specified string with a shadow.
      */
@@ -389,6 +494,8 @@ public class FontRenderer implements IResourceManagerReloadListener {
             i = this.renderString(text, x, y, color, false);
         }
 
+        this.flushGlyphs();
+
         if (this.blend) {
             GlStateManager.setBlendState(this.oldBlendState);
         }
@@ -421,139 +528,215 @@ public class FontRenderer implements IResourceManagerReloadListener {
     }
 
     /**
-     * Render a single line string at the current (posX,posY) and update posX
+     * Render a single line string at the current (posX,posY) and update posX. Strings that start with no style set are
+     * laid out once and the layout reused, unless obfuscated text picked random glyphs for them.
      */
-    private void renderStringAtPos(String text, boolean shadow) {
-        for (int i = 0; i < text.length(); ++i) {
-            char c0 = text.charAt(i);
+    private void renderStringAtPos(String text, boolean shadow, int color) {
+        int i = this.getStyle();
+        Map<String, FontRenderer.TextLayout> map = shadow ? this.shadowLayouts : this.layouts;
+        FontRenderer.TextLayout fontrenderer$textlayout = i == 0 ? map.get(text) : null;
 
-            if (c0 == 167 && i + 1 < text.length()) {
-                int l = "0123456789abcdefklmnor".indexOf(text.toLowerCase(Locale.ENGLISH).charAt(i + 1));
+        if (fontrenderer$textlayout == null) {
+            fontrenderer$textlayout = this.layoutString(this.bidiFlag ? this.bidiReorder(text) : text, shadow, i);
 
-                if (l < 16) {
-                    this.randomStyle = false;
-                    this.boldStyle = false;
-                    this.strikethroughStyle = false;
-                    this.underlineStyle = false;
-                    this.italicStyle = false;
+            if (i == 0 && !fontrenderer$textlayout.random) {
+                if (map.size() >= MAX_CACHED_LAYOUTS) {
+                    map.clear();
+                }
 
-                    if (l < 0 || l > 15) {
-                        l = 15;
-                    }
+                fontrenderer$textlayout.width = this.measureString(text);
+                map.put(text, fontrenderer$textlayout);
+            }
+        }
 
-                    if (shadow) {
-                        l += 16;
-                    }
+        this.renderLayout(fontrenderer$textlayout, shadow, color);
+    }
+
+    private int getStyle() {
+        return (this.randomStyle ? STYLE_RANDOM : 0) | (this.boldStyle ? STYLE_BOLD : 0) | (this.strikethroughStyle ? STYLE_STRIKETHROUGH : 0) | (this.underlineStyle ? STYLE_UNDERLINE : 0) | (this.italicStyle ? STYLE_ITALIC : 0);
+    }
+
+    /**
+     * Resolves the formatting codes of a string into the glyphs to draw, each packed as the char, the colour code index
+     * plus one (zero for the string's own colour) and the style flags.
+     */
+    private FontRenderer.TextLayout layoutString(String text, boolean shadow, int style) {
+        int[] aint = new int[text.length()];
+        int i = 0;
+        int j = -1;
+        int k = -1;
+        boolean flag = false;
+        String s = null;
+
+        for (int l = 0; l < text.length(); ++l) {
+            char c0 = text.charAt(l);
+
+            if (c0 == 167 && l + 1 < text.length()) {
+                if (s == null) {
+                    s = text.toLowerCase(Locale.ENGLISH);
+                }
+
+                int i1 = "0123456789abcdefklmnor".indexOf(s.charAt(l + 1));
 
-                    int i1 = this.colorCode[l];
+                if (i1 < 16) {
+                    style = 0;
 
-                    if (Config.isCustomColors()) {
-                        i1 = CustomColors.getTextColor(l, i1);
+                    if (i1 < 0 || i1 > 15) {
+                        i1 = 15;
+                    }
+
+                    if (shadow) {
+                        i1 += 16;
                     }
 
-                    this.textColor = i1;
-                    this.setColor((float) (i1 >> 16) / 255.0F, (float) (i1 >> 8 & 255) / 255.0F, (float) (i1 & 255) / 255.0F, this.alpha);
-                } else if (l == 16) {
-                    this.randomStyle = true;
-                } else if (l == 17) {
-                    this.boldStyle = true;
-                } else if (l == 18) {
-                    this.strikethroughStyle = true;
-                } else if (l == 19) {
-                    this.underlineStyle = true;
-                } else if (l == 20) {
-                    this.italicStyle = true;
-                } else if (l == 21) {
-                    this.randomStyle = false;
-                    this.boldStyle = false;
-                    this.strikethroughStyle = false;
-                    this.underlineStyle = false;
-                    this.italicStyle = false;
-                    this.setColor(this.red, this.blue, this.green, this.alpha);
+                    j = i1;
+                    k = i1;
+                } else if (i1 == 16) {
+                    style |= STYLE_RANDOM;
+                } else if (i1 == 17) {
+                    style |= STYLE_BOLD;
+                } else if (i1 == 18) {
+                    style |= STYLE_STRIKETHROUGH;
+                } else if (i1 == 19) {
+                    style |= STYLE_UNDERLINE;
+                } else if (i1 == 20) {
+                    style |= STYLE_ITALIC;
+                } else if (i1 == 21) {
+                    style = 0;
+                    j = -1;
                 }
 
-                ++i;
+                ++l;
             } else {
-                int j = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000".indexOf(c0);
-
-                if (this.randomStyle && j != -1) {
-                    int k = this.getCharWidth(c0);
+                if ((style & STYLE_RANDOM) != 0 && DEFAULT_CHAR_INDICES[c0] != -1) {
+                    int j1 = this.getCharWidth(c0);
                     char c1;
 
                     do {
-                        j = this.fontRandom.nextInt("\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000".length());
-                        c1 = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000".charAt(j);
-
-                    } while (k != this.getCharWidth(c1));
+                        c1 = DEFAULT_CHARACTERS.charAt(this.fontRandom.nextInt(DEFAULT_CHARACTERS.length()));
+                    } while (j1 != this.getCharWidth(c1));
 
                     c0 = c1;
+                    flag = true;
                 }
 
-                float f1 = j != -1 && !this.unicodeFlag ? this.offsetBold : 0.5F;
-                boolean flag = (c0 == 0 || j == -1 || this.unicodeFlag) && shadow;
+                aint[i++] = c0 | j + 1 << 16 | style << 22;
+            }
+        }
+
+        return new FontRenderer.TextLayout(Arrays.copyOf(aint, i), style, j, k, flag);
+    }
+
+    /**
+     * Draws a laid out string at the current (posX,posY), stepping posX and posY exactly as drawing it char by char
+     * always has
+     */
+    private void renderLayout(FontRenderer.TextLayout layout, boolean shadow, int color) {
+        int i = -1;
+        this.setGlyphColor(this.red, this.blue, this.green, this.alpha, color >> 16 & 255, color >> 8 & 255, color & 255, color >> 24 & 255);
+
+        for (int j = 0; j < layout.glyphs.length; ++j) {
+            int k = layout.glyphs[j];
+            char c0 = (char) (k & 65535);
+            int l = (k >> 16 & 63) - 1;
+            int i1 = k >> 22;
+
+            if (l != i) {
+                i = l;
+                this.setColorIndex(l, color);
+            }
+
+            this.boldStyle = (i1 & STYLE_BOLD) != 0;
+            this.strikethroughStyle = (i1 & STYLE_STRIKETHROUGH) != 0;
+            this.underlineStyle = (i1 & STYLE_UNDERLINE) != 0;
+            this.italicStyle = (i1 & STYLE_ITALIC) != 0;
+            int j1 = DEFAULT_CHAR_INDICES[c0];
+            float f1 = j1 != -1 && !this.unicodeFlag ? this.offsetBold : 0.5F;
+            boolean flag = (c0 == 0 || j1 == -1 || this.unicodeFlag) && shadow;
+
+            if (flag) {
+                this.posX -= f1;
+                this.posY -= f1;
+            }
+
+            float f = this.renderChar(c0, this.italicStyle);
+
+            if (flag) {
+                this.posX += f1;
+                this.posY += f1;
+            }
+
+            if (this.boldStyle) {
+                this.posX += f1;
 
                 if (flag) {
                     this.posX -= f1;
                     this.posY -= f1;
                 }
 
-                float f = this.renderChar(c0, this.italicStyle);
+                this.renderChar(c0, this.italicStyle);
+                this.posX -= f1;
 
                 if (flag) {
                     this.posX += f1;
                     this.posY += f1;
                 }
 
-                if (this.boldStyle) {
-                    this.posX += f1;
+                f += f1;
+            }
 
-                    if (flag) {
-                        this.posX -= f1;
-                        this.posY -= f1;
-                    }
+            this.doDraw(f);
+        }
 
-                    this.renderChar(c0, this.italicStyle);
-                    this.posX -= f1;
+        if (layout.endColor != i) {
+            this.setColorIndex(layout.endColor, color);
+        }
 
-                    if (flag) {
-                        this.posX += f1;
-                        this.posY += f1;
-                    }
+        if (layout.lastColorCode >= 0) {
+            this.textColor = this.getTextColor(layout.lastColorCode);
+        }
 
-                    f += f1;
-                }
+        this.randomStyle = (layout.endStyle & STYLE_RANDOM) != 0;
+        this.boldStyle = (layout.endStyle & STYLE_BOLD) != 0;
+        this.strikethroughStyle = (layout.endStyle & STYLE_STRIKETHROUGH) != 0;
+        this.underlineStyle = (layout.endStyle & STYLE_UNDERLINE) != 0;
+        this.italicStyle = (layout.endStyle & STYLE_ITALIC) != 0;
 
-                this.doDraw(f);
-            }
+        if (!this.drawingGlyphs) {
+            this.setColor(this.colorRed, this.colorGreen, this.colorBlue, this.colorAlpha);
+        }
+    }
+
+    /**
+     * Switches the glyph colour to a colour code, or back to the string's own colour for -1
+     */
+    private void setColorIndex(int index, int color) {
+        if (index < 0) {
+            this.setGlyphColor(this.red, this.blue, this.green, this.alpha, color >> 16 & 255, color >> 8 & 255, color & 255, color >> 24 & 255);
+        } else {
+            int i = this.getTextColor(index);
+            this.setGlyphColor((float) (i >> 16) / 255.0F, (float) (i >> 8 & 255) / 255.0F, (float) (i & 255) / 255.0F, this.alpha, i >> 16 & 255, i >> 8 & 255, i & 255, color >> 24 & 255);
+        }
+    }
+
+    private int getTextColor(int index) {
+        int i = this.colorCode[index];
+
+        if (Config.isCustomColors()) {
+            i = CustomColors.getTextColor(index, i);
         }
+
+        return i;
     }
 
     protected void doDraw(float p_doDraw_1_) {
         if (this.strikethroughStyle) {
-            Tessellator tessellator = Tessellator.getInstance();
-            WorldRenderer worldrenderer = tessellator.getWorldRenderer();
-            GlStateManager.disableTexture2D();
-            worldrenderer.begin(7, DefaultVertexFormats.POSITION);
-            worldrenderer.pos(this.posX, this.posY + (float) (this.FONT_HEIGHT / 2), 0.0D).endVertex();
-            worldrenderer.pos(this.posX + p_doDraw_1_, this.posY + (float) (this.FONT_HEIGHT / 2), 0.0D).endVertex();
-            worldrenderer.pos(this.posX + p_doDraw_1_, this.posY + (float) (this.FONT_HEIGHT / 2) - 1.0F, 0.0D).endVertex();
-            worldrenderer.pos(this.posX, this.posY + (float) (this.FONT_HEIGHT / 2) - 1.0F, 0.0D).endVertex();
-            tessellator.draw();
-            GlStateManager.enableTexture2D();
+            this.addLineQuad(this.posX, this.posY + (float) (this.FONT_HEIGHT / 2), this.posX + p_doDraw_1_, this.posY + (float) (this.FONT_HEIGHT / 2), this.posX + p_doDraw_1_, this.posY + (float) (this.FONT_HEIGHT / 2) - 1.0F, this.posX, this.posY + (float) (this.FONT_HEIGHT / 2) - 1.0F);
         }
 
         if (this.underlineStyle) {
-            Tessellator tessellator1 = Tessellator.getInstance();
-            WorldRenderer worldrenderer1 = tessellator1.getWorldRenderer();
-            GlStateManager.disableTexture2D();
-            worldrenderer1.begin(7, DefaultVertexFormats.POSITION);
             int i = this.underlineStyle ? -1 : 0;
-            worldrenderer1.pos(this.posX + (float) i, this.posY + (float) this.FONT_HEIGHT, 0.0D).endVertex();
-            worldrenderer1.pos(this.posX + p_doDraw_1_, this.posY + (float) this.FONT_HEIGHT, 0.0D).endVertex();
-            worldrenderer1.pos(this.posX + p_doDraw_1_, this.posY + (float) this.FONT_HEIGHT - 1.0F, 0.0D).endVertex();
-            worldrenderer1.pos(this.posX + (float) i, this.posY + (float) this.FONT_HEIGHT - 1.0F, 0.0D).endVertex();
-            tessellator1.draw();
-            GlStateManager.enableTexture2D();
+            this.addLineQuad(this.posX + (float) i, this.posY + (float) this.FONT_HEIGHT, this.posX + p_doDraw_1_, this.posY + (float) this.FONT_HEIGHT, this.posX + p_doDraw_1_, this.posY + (float) this.FONT_HEIGHT - 1.0F, this.posX + (float) i, this.posY + (float) this.FONT_HEIGHT - 1.0F);
         }
 
         this.posX += p_doDraw_1_;
@@ -578,10 +761,6 @@ public class FontRenderer implements IResourceManagerReloadListener {
         if (text == null) {
             return 0;
         } else {
-            if (this.bidiFlag) {
-                text = this.bidiReorder(text);
-            }
-
             if ((color & -67108864) == 0) {
                 color |= -16777216;
             }
@@ -597,49 +776,64 @@ public class FontRenderer implements IResourceManagerReloadListener {
             this.setColor(this.red, this.blue, this.green, this.alpha);
             this.posX = x;
             this.posY = y;
-            this.renderStringAtPos(text, dropShadow);
+            this.renderStringAtPos(text, dropShadow, color);
             return (int) this.posX;
         }
     }
 
     /**
-     * Returns the width of this string. Equivalent of FontMetrics.stringWidth(String s).
+     * Returns the width of this string. Equivalent of FontMetrics.stringWidth(String s). A string that has been drawn
+     * has its width kept with its cached layout.
      */
     public int getStringWidth(String text) {
         if (text == null) {
             return 0;
         } else {
-            float f = 0.0F;
-            boolean flag = false;
+            FontRenderer.TextLayout fontrenderer$textlayout = this.layouts.get(text);
 
-            for (int i = 0; i < text.length(); ++i) {
-                char c0 = text.charAt(i);
-                float f1 = this.getCharWidthFloat(c0);
+            if (fontrenderer$textlayout == null) {
+                fontrenderer$textlayout = this.shadowLayouts.get(text);
+            }
 
-                if (f1 < 0.0F && i < text.length() - 1) {
-                    ++i;
-                    c0 = text.charAt(i);
+            return fontrenderer$textlayout != null ? fontrenderer$textlayout.width : this.measureString(text);
+        }
+    }
 
-                    if (c0 != 108 && c0 != 76) {
-                        if (c0 == 114 || c0 == 82) {
-                            flag = false;
-                        }
-                    } else {
-                        flag = true;
-                    }
+    /**
+     * Adds up the widths of the chars of a string, skipping formatting codes. Bold is only switched by its own code and
+     * by the reset code, and the layout's bidi reordering plays no part.
+     */
+    private int measureString(String text) {
+        float f = 0.0F;
+        boolean flag = false;
 
-                    f1 = 0.0F;
-                }
+        for (int i = 0; i < text.length(); ++i) {
+            char c0 = text.charAt(i);
+            float f1 = this.getCharWidthFloat(c0);
 
-                f += f1;
+            if (f1 < 0.0F && i < text.length() - 1) {
+                ++i;
+                c0 = text.charAt(i);
 
-                if (flag && f1 > 0.0F) {
-                    f += this.unicodeFlag ? 1.0F : this.offsetBold;
+                if (c0 != 108 && c0 != 76) {
+                    if (c0 == 114 || c0 == 82) {
+                        flag = false;
+                    }
+                } else {
+                    flag = true;
                 }
+
+                f1 = 0.0F;
             }
 
-            return Math.round(f);
+            f += f1;
+
+            if (flag && f1 > 0.0F) {
+                f += this.unicodeFlag ? 1.0F : this.offsetBold;
+            }
         }
+
+        return Math.round(f);
     }
 
     /**
@@ -653,7 +847,7 @@ public class FontRenderer implements IResourceManagerReloadListener {
         if (p_getCharWidthFloat_1_ == 167) {
             return -1.0F;
         } else if (p_getCharWidthFloat_1_ != 32 && p_getCharWidthFloat_1_ != 160) {
-            int i = "\u00c0\u00c1\u00c2\u00c8\u00ca\u00cb\u00cd\u00d3\u00d4\u00d5\u00da\u00df\u00e3\u00f5\u011f\u0130\u0131\u0152\u0153\u015e\u015f\u0174\u0175\u017e\u0207\u0000\u0000\u0000\u0000\u0000\u0000\u0000 !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~\u0000\u00c7\u00fc\u00e9\u00e2\u00e4\u00e0\u00e5\u00e7\u00ea\u00eb\u00e8\u00ef\u00ee\u00ec\u00c4\u00c5\u00c9\u00e6\u00c6\u00f4\u00f6\u00f2\u00fb\u00f9\u00ff\u00d6\u00dc\u00f8\u00a3\u00d8\u00d7\u0192\u00e1\u00ed\u00f3\u00fa\u00f1\u00d1\u00aa\u00ba\u00bf\u00ae\u00ac\u00bd\u00bc\u00a1\u00ab\u00bb\u2591\u2592\u2593\u2502\u2524\u2561\u2562\u2556\u2555\u2563\u2551\u2557\u255d\u255c\u255b\u2510\u2514\u2534\u252c\u251c\u2500\u253c\u255e\u255f\u255a\u2554\u2569\u2566\u2560\u2550\u256c\u2567\u2568\u2564\u2565\u2559\u2558\u2552\u2553\u256b\u256a\u2518\u250c\u2588\u2584\u258c\u2590\u2580\u03b1\u03b2\u0393\u03c0\u03a3\u03c3\u03bc\u03c4\u03a6\u0398\u03a9\u03b4\u221e\u2205\u2208\u2229\u2261\u00b1\u2265\u2264\u2320\u2321\u00f7\u2248\u00b0\u2219\u00b7\u221a\u207f\u00b2\u25a0\u0000".indexOf(p_getCharWidthFloat_1_);
+            int i = DEFAULT_CHAR_INDICES[p_getCharWidthFloat_1_];
 
             if (p_getCharWidthFloat_1_ > 0 && i != -1 && !this.unicodeFlag) {
                 return this.charWidthFloat[i];
@@ -757,6 +951,7 @@ public class FontRenderer implements IResourceManagerReloadListener {
         this.textColor = textColor;
         str = this.trimStringNewline(str);
         this.renderSplitString(str, x, y, wrapWidth, false);
+        this.flushGlyphs();
 
         if (this.blend) {
             GlStateManager.setBlendState(this.oldBlendState);
@@ -789,6 +984,10 @@ public class FontRenderer implements IResourceManagerReloadListener {
      * font.
      */
     public void setUnicodeFlag(boolean unicodeFlagIn) {
+        if (unicodeFlagIn != this.unicodeFlag) {
+            this.clearLayouts();
+        }
+
         this.unicodeFlag = unicodeFlagIn;
     }
 
@@ -804,6 +1003,10 @@ public class FontRenderer implements IResourceManagerReloadListener {
      * Set bidiFlag to control if the Unicode Bidirectional Algorithm should be run before rendering any string.
      */
     public void setBidiFlag(boolean bidiFlagIn) {
+        if (bidiFlagIn != this.bidiFlag) {
+            this.clearLayouts();
+        }
+
         this.bidiFlag = bidiFlagIn;
     }
 
@@ -965,4 +1168,33 @@ public class FontRenderer implements IResourceManagerReloadListener {
     protected InputStream getResourceInputStream(ResourceLocation p_getResourceInputStream_1_) throws IOException {
         return Minecraft.getMinecraft().getResourceManager().getResource(p_getResourceInputStream_1_).getInputStream();
     }
+
+    static {
+        Arrays.fill(DEFAULT_CHAR_INDICES, (short) -1);
+
+        for (int i = DEFAULT_CHARACTERS.length() - 1; i >= 0; --i) {
+            DEFAULT_CHAR_INDICES[DEFAULT_CHARACTERS.charAt(i)] = (short) i;
+        }
+    }
+
+    static class TextLayout {
+        final int[] glyphs;
+        final int endStyle;
+        final int endColor;
+        final int lastColorCode;
+        final boolean random;
+
+        /**
+         * getStringWidth of the text laid out, set once the layout is cached
+         */
+        int width;
+
+        public TextLayout(int[] glyphsIn, int endStyleIn, int endColorIn, int lastColorCodeIn, boolean randomIn) {
+            this.glyphs = glyphsIn;
+            this.endStyle = endStyleIn;
+            this.endColor = endColorIn;
+            this.lastColorCode = lastColorCodeIn;
+            this.random = randomIn;
+        }
+    }
 }
@@ -2,8 +2,6 @@ package net.minecraft.client.gui;
 
 import com.dev.air.event.impl.render.Render2DEvent;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.viaversion.viaversion.api.protocol.version.ProtocolVersion;
 import de.florianmichael.vialoadingbase.ViaLoadingBase;
 import net.lenni0451.asmevents.EventManager;
@@ -38,13 +36,21 @@ import net.minecraft.world.border.WorldBorder;
 import net.optifine.CustomColors;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Random;
 
 public class GuiIngame extends Gui {
     private static final ResourceLocation vignetteTexPath = new ResourceLocation("textures/misc/vignette.png");
     private static final ResourceLocation widgetsTexPath = new ResourceLocation("textures/gui/widgets.png");
     private static final ResourceLocation pumpkinBlurTexPath = new ResourceLocation("textures/misc/pumpkinblur.png");
+
+    /**
+     * Hides the score holders whose name starts with # from the sidebar
+     */
+    private static final Predicate<Score> sidebarScoreFilter = new Predicate<Score>() {
+        public boolean apply(Score p_apply_1_) {
+            return p_apply_1_.getPlayerName() != null && !p_apply_1_.getPlayerName().startsWith("#");
+        }
+    };
     private final Random rand = new Random();
     private final Minecraft mc;
     private final RenderItem itemRenderer;
@@ -585,18 +591,7 @@ public class GuiIngame extends Gui {
 
     private void renderScoreboard(ScoreObjective objective, ScaledResolution scaledRes) {
         Scoreboard scoreboard = objective.getScoreboard();
-        Collection<Score> collection = scoreboard.getSortedScores(objective);
-        List<Score> list = Lists.newArrayList(Iterables.filter(collection, new Predicate<Score>() {
-            public boolean apply(Score p_apply_1_) {
-                return p_apply_1_.getPlayerName() != null && !p_apply_1_.getPlayerName().startsWith("#");
-            }
-        }));
-
-        if (list.size() > 15) {
-            collection = Lists.newArrayList(Iterables.skip(list, collection.size() - 15));
-        } else {
-            collection = list;
-        }
+        Collection<Score> collection = scoreboard.getTopScores(objective, 15, sidebarScoreFilter);
 
         int i = this.getFontRenderer().getStringWidth(objective.getDisplayName());
 
@@ -207,6 +207,14 @@ public class GuiOverlayDebug extends Gui {
                 list.add(String.format("Local Difficulty: %.2f (Day %d)", difficultyinstance.getAdditionalDifficulty(), this.mc.world.getWorldTime() / 24000L));
             }
 
+            if (this.mc.isIntegratedServerRunning() && this.mc.getIntegratedServer() != null) {
+                EntityPlayerMP entityplayermp1 = this.mc.getIntegratedServer().getConfigurationManager().getPlayerByUUID(this.mc.player.getUniqueID());
+
+                if (entityplayermp1 != null) {
+                    list.add(entityplayermp1.getServerForPlayer().getPlayerManager().getDebugInfo(entityplayermp1));
+                }
+            }
+
             if (this.mc.entityRenderer != null && this.mc.entityRenderer.isShaderActive()) {
                 list.add("Shader: " + this.mc.entityRenderer.getShaderGroup().getShaderGroupName());
             }
@@ -63,6 +63,7 @@ import net.minecraft.world.Explosion;
 import net.minecraft.world.WorldProviderSurface;
 import net.minecraft.world.WorldSettings;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.DecodedChunkData;
 import net.minecraft.world.storage.MapData;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -510,6 +511,10 @@ public class NetHandlerPlayClient implements INetHandlerPlayClient {
      * Updates the specified chunk with the supplied data, marks it for re-rendering and lighting recalculation
      */
     public void handleChunkData(S21PacketChunkData packetIn) {
+        if (!this.gameController.isCallingFromMinecraftThread()) {
+            packetIn.decodeChunkData();
+        }
+
         PacketThreadUtil.checkThreadAndEnqueue(packetIn, this, this.gameController);
 
         if (packetIn.func_149274_i()) {
@@ -523,7 +528,14 @@ public class NetHandlerPlayClient implements INetHandlerPlayClient {
 
         this.clientWorldController.invalidateBlockReceiveRegion(packetIn.getChunkX() << 4, 0, packetIn.getChunkZ() << 4, (packetIn.getChunkX() << 4) + 15, 256, (packetIn.getChunkZ() << 4) + 15);
         Chunk chunk = this.clientWorldController.getChunkFromChunkCoords(packetIn.getChunkX(), packetIn.getChunkZ());
-        chunk.fillChunk(packetIn.getExtractedDataBytes(), packetIn.getExtractedSize(), packetIn.func_149274_i());
+        DecodedChunkData decodedchunkdata = packetIn.getDecodedData();
+
+        if (decodedchunkdata != null) {
+            chunk.fillChunk(decodedchunkdata);
+        } else {
+            chunk.fillChunk(packetIn.getExtractedDataBytes(), packetIn.getExtractedSize(), packetIn.func_149274_i());
+        }
+
         this.clientWorldController.markBlockRangeForRenderUpdate(packetIn.getChunkX() << 4, 0, packetIn.getChunkZ() << 4, (packetIn.getChunkX() << 4) + 15, 256, (packetIn.getChunkZ() << 4) + 15);
 
         if (!packetIn.func_149274_i() || !(this.clientWorldController.provider instanceof WorldProviderSurface)) {
@@ -989,6 +1001,10 @@ public class NetHandlerPlayClient implements INetHandlerPlayClient {
     }
 
     public void handleMapChunkBulk(S26PacketMapChunkBulk packetIn) {
+        if (!this.gameController.isCallingFromMinecraftThread()) {
+            packetIn.decodeChunkData();
+        }
+
         PacketThreadUtil.checkThreadAndEnqueue(packetIn, this, this.gameController);
 
         for (int i = 0; i < packetIn.getChunkCount(); ++i) {
@@ -997,7 +1013,14 @@ public class NetHandlerPlayClient implements INetHandlerPlayClient {
             this.clientWorldController.doPreChunk(j, k, true);
             this.clientWorldController.invalidateBlockReceiveRegion(j << 4, 0, k << 4, (j << 4) + 15, 256, (k << 4) + 15);
             Chunk chunk = this.clientWorldController.getChunkFromChunkCoords(j, k);
-            chunk.fillChunk(packetIn.getChunkBytes(i), packetIn.getChunkSize(i), true);
+            DecodedChunkData decodedchunkdata = packetIn.getDecodedData(i);
+
+            if (decodedchunkdata != null) {
+                chunk.fillChunk(decodedchunkdata);
+            } else {
+                chunk.fillChunk(packetIn.getChunkBytes(i), packetIn.getChunkSize(i), true);
+            }
+
             this.clientWorldController.markBlockRangeForRenderUpdate(j << 4, 0, k << 4, (j << 4) + 15, 256, (k << 4) + 15);
 
             if (!(this.clientWorldController.provider instanceof WorldProviderSurface)) {
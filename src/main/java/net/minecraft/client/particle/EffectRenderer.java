@@ -2,6 +2,8 @@ package net.minecraft.client.particle;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
@@ -19,19 +21,34 @@ import net.minecraft.src.Config;
 import net.minecraft.util.*;
 import net.minecraft.world.World;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class EffectRenderer
 {
     private static final ResourceLocation particleTextures = new ResourceLocation("textures/particle/particles.png");
+    private static final int MAX_PARTICLES = 4000;
+
+    /**
+     * Layers 0 to 2 with at least this many particles are ticked in batches on the particle tick pool, with the client
+     * thread taking one batch itself and waiting for the rest. The client thread does nothing else meanwhile, so the
+     * world the particles collide against does not change under them.
+     */
+    private static final int CONCURRENT_THRESHOLD = 1024;
+    private static final int CONCURRENT_BATCH_SIZE = 256;
+    private static final ExecutorService particleTickPool = Executors.newFixedThreadPool(MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 1, 1, 4), (new ThreadFactoryBuilder()).setNameFormat("Particle Ticker #%d").setDaemon(true).build());
 
     /** Reference to the World object. */
     protected World worldObj;
-    private final List<EntityFX>[][] fxLayers = new List[4][];
+    private final ParticleRing[][] fxLayers = new ParticleRing[4][];
+    private final EntityFX[] tickingParticles = new EntityFX[MAX_PARTICLES];
     private final List<EntityParticleEmitter> particleEmitters = Lists.newArrayList();
     private final TextureManager renderer;
 
@@ -46,11 +63,11 @@ public class EffectRenderer
 
         for (int i = 0; i < 4; ++i)
         {
-            this.fxLayers[i] = new List[2];
+            this.fxLayers[i] = new ParticleRing[2];
 
             for (int j = 0; j < 2; ++j)
             {
-                this.fxLayers[i][j] = Lists.newArrayList();
+                this.fxLayers[i][j] = new ParticleRing(MAX_PARTICLES);
             }
         }
 
@@ -149,12 +166,6 @@ public class EffectRenderer
             {
                 int i = effect.getFXLayer();
                 int j = effect.getAlpha() != 1.0F ? 0 : 1;
-
-                if (this.fxLayers[i][j].size() >= 4000)
-                {
-                    this.fxLayers[i][j].remove(0);
-                }
-
                 this.fxLayers[i][j].add(effect);
             }
         }
@@ -186,50 +197,139 @@ public class EffectRenderer
     {
         for (int i = 0; i < 2; ++i)
         {
-            this.updateEffectAlphaLayer(this.fxLayers[layer][i]);
+            this.updateEffectAlphaLayer(this.fxLayers[layer][i], layer < 3);
         }
     }
 
-    private void updateEffectAlphaLayer(List<EntityFX> entitiesFX)
+    /**
+     * Ticks the particles that are in the layer when called. Particles still left when the 20 ms budget runs out are
+     * made up for by killing as many of the oldest particles, as before.
+     */
+    private void updateEffectAlphaLayer(ParticleRing entitiesFX, boolean concurrent)
     {
-        List<EntityFX> list = Lists.newArrayList();
-        long i = System.currentTimeMillis();
-        int j = entitiesFX.size();
+        long i = System.currentTimeMillis() + 20L;
+        EntityFX[] aentityfx = this.tickingParticles;
+        int j = entitiesFX.copyTo(aentityfx);
 
-        for (int k = 0; k < entitiesFX.size(); ++k)
+        if (concurrent && j >= CONCURRENT_THRESHOLD && !this.worldObj.theProfiler.profilingEnabled)
+        {
+            j = this.tickParticlesConcurrently(aentityfx, j, i);
+        }
+        else
         {
-            EntityFX entityfx = entitiesFX.get(k);
-            this.tickParticle(entityfx);
+            j = tickParticles(aentityfx, 0, j, i, false);
+        }
+
+        for (int k = 0; k < j && k < entitiesFX.size(); ++k)
+        {
+            entitiesFX.get(k).setDead();
+        }
 
-            if (entityfx.isDead)
+        entitiesFX.removeDead();
+        Arrays.fill(aentityfx, null);
+    }
+
+    /**
+     * Ticks particles from start to end until the deadline passes, returning how many were left. If skipSerial is set,
+     * particles that can not update concurrently are left out and not counted.
+     */
+    private static int tickParticles(EntityFX[] particles, int start, int end, long deadline, boolean skipSerial)
+    {
+        int i = end - start;
+
+        for (int j = start; j < end; ++j)
+        {
+            if (skipSerial && !particles[j].canUpdateConcurrently())
             {
-                list.add(entityfx);
+                --i;
             }
+            else
+            {
+                tickParticle(particles[j]);
+                --i;
+
+                if (System.currentTimeMillis() > deadline)
+                {
+                    break;
+                }
+            }
+        }
+
+        return i;
+    }
 
-            --j;
+    /**
+     * Ticks the particles that must stay on the client thread first, then the rest in batches on the particle tick
+     * pool. Returns how many particles were left when the deadline passed.
+     */
+    private int tickParticlesConcurrently(final EntityFX[] particles, int count, final long deadline)
+    {
+        int i = 0;
 
-            if (System.currentTimeMillis() > i + 20L)
+        for (int j = 0; j < count; ++j)
+        {
+            if (!particles[j].canUpdateConcurrently())
             {
-                break;
+                tickParticle(particles[j]);
             }
         }
 
-        if (j > 0)
+        List<Future<Integer>> list = Lists.newArrayList();
+
+        for (int k = CONCURRENT_BATCH_SIZE; k < count; k += CONCURRENT_BATCH_SIZE)
         {
-            int l = j;
+            final int l = k;
+            final int i1 = Math.min(k + CONCURRENT_BATCH_SIZE, count);
+            list.add(particleTickPool.submit(new Callable<Integer>()
+            {
+                public Integer call() throws Exception
+                {
+                    return Integer.valueOf(EffectRenderer.tickParticles(particles, l, i1, deadline, true));
+                }
+            }));
+        }
+
+        Throwable throwable = null;
 
-            for (Iterator iterator = entitiesFX.iterator(); iterator.hasNext() && l > 0; --l)
+        try
+        {
+            i += tickParticles(particles, 0, Math.min(CONCURRENT_BATCH_SIZE, count), deadline, true);
+        }
+        catch (Throwable throwable1)
+        {
+            throwable = throwable1;
+        }
+
+        for (Future<Integer> future : list)
+        {
+            try
             {
-                EntityFX entityfx1 = (EntityFX)iterator.next();
-                entityfx1.setDead();
-                iterator.remove();
+                i += Uninterruptibles.getUninterruptibly(future).intValue();
+            }
+            catch (ExecutionException executionexception)
+            {
+                if (throwable == null)
+                {
+                    throwable = executionexception.getCause();
+                }
             }
         }
 
-        entitiesFX.removeAll(list);
+        if (throwable instanceof RuntimeException)
+        {
+            throw (RuntimeException)throwable;
+        }
+        else if (throwable instanceof Error)
+        {
+            throw (Error)throwable;
+        }
+        else
+        {
+            return i;
+        }
     }
 
-    private void tickParticle(final EntityFX particle)
+    private static void tickParticle(final EntityFX particle)
     {
         try
         {
@@ -365,16 +465,16 @@ public class EffectRenderer
 
         for (int i = 0; i < 2; ++i)
         {
-            List<EntityFX> list = this.fxLayers[3][i];
+            ParticleRing particlering = this.fxLayers[3][i];
 
-            if (!list.isEmpty())
+            if (!particlering.isEmpty())
             {
                 Tessellator tessellator = Tessellator.getInstance();
                 WorldRenderer worldrenderer = tessellator.getWorldRenderer();
 
-                for (int j = 0; j < list.size(); ++j)
+                for (int j = 0; j < particlering.size(); ++j)
                 {
-                    EntityFX entityfx = list.get(j);
+                    EntityFX entityfx = particlering.get(j);
                     entityfx.renderParticle(worldrenderer, entityIn, partialTick, f1, f5, f2, f3, f4);
                 }
             }
@@ -487,9 +587,8 @@ public class EffectRenderer
     {
         for (int i = 0; i < 4; ++i)
         {
-            if (this.fxLayers[i][layerFrom].contains(effect))
+            if (this.fxLayers[i][layerFrom].remove(effect))
             {
-                this.fxLayers[i][layerFrom].remove(effect);
                 this.fxLayers[i][layerTo].add(effect);
             }
         }
@@ -53,6 +53,13 @@ public class EntityDropParticleFX extends EntityFX {
         return this.materialType == Material.water ? super.getBrightness(partialTicks) : 1.0F;
     }
 
+    /**
+     * Spawns a splash when it lands in water
+     */
+    public boolean canUpdateConcurrently() {
+        return false;
+    }
+
     /**
      * Called to update the entity's position/logic.
      */
@@ -133,6 +133,22 @@ public class EntityFX extends Entity {
     protected void entityInit() {
     }
 
+    /**
+     * Particles never catch fire, so moveEntity never plays the fizz of a burning entity getting wet, which would reach
+     * the sound manager from a particle tick thread.
+     */
+    protected void doFireCollisions() {
+    }
+
+    /**
+     * Whether onUpdate can run on a particle tick thread while the client thread waits. It may move the particle and
+     * read the world, but must not spawn particles, play sounds or change its alpha layer. moveEntity is safe: it plays
+     * no step sounds and no fire sounds for particles.
+     */
+    public boolean canUpdateConcurrently() {
+        return true;
+    }
+
     /**
      * Called to update the entity's position/logic.
      */
@@ -102,6 +102,13 @@ public class EntityFirework {
             }
         }
 
+        /**
+         * Fades out by changing its alpha layer and leaves trail sparks
+         */
+        public boolean canUpdateConcurrently() {
+            return false;
+        }
+
         public void onUpdate() {
             this.prevPosX = this.posX;
             this.prevPosY = this.posY;
@@ -199,6 +206,13 @@ public class EntityFirework {
         public void renderParticle(WorldRenderer worldRendererIn, Entity entityIn, float partialTicks, float rotationX, float rotationZ, float rotationYZ, float rotationXY, float rotationXZ) {
         }
 
+        /**
+         * Spawns the explosion sparks and plays the firework sounds
+         */
+        public boolean canUpdateConcurrently() {
+            return false;
+        }
+
         public void onUpdate() {
             if (this.fireworkAge == 0 && this.fireworkExplosions != null) {
                 boolean flag = this.func_92037_i();
@@ -18,6 +18,13 @@ public class EntityHugeExplodeFX extends EntityFX {
     public void renderParticle(WorldRenderer worldRendererIn, Entity entityIn, float partialTicks, float rotationX, float rotationZ, float rotationYZ, float rotationXY, float rotationXZ) {
     }
 
+    /**
+     * Spawns the explosion particles
+     */
+    public boolean canUpdateConcurrently() {
+        return false;
+    }
+
     /**
      * Called to update the entity's position/logic.
      */
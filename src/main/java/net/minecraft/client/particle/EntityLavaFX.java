@@ -48,6 +48,13 @@ public class EntityLavaFX extends EntityFX {
         super.renderParticle(worldRendererIn, entityIn, partialTicks, rotationX, rotationZ, rotationYZ, rotationXY, rotationXZ);
     }
 
+    /**
+     * Spawns smoke particles
+     */
+    public boolean canUpdateConcurrently() {
+        return false;
+    }
+
     /**
      * Called to update the entity's position/logic.
      */
@@ -0,0 +1,98 @@
+package net.minecraft.client.particle;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity queue of the particles of one EffectRenderer layer, oldest first. Adding to a full queue drops the
+ * oldest particle in constant time, where the ArrayList this replaces shifted every particle down on each add.
+ */
+public class ParticleRing {
+    private final EntityFX[] elements;
+    private int head;
+    private int size;
+
+    public ParticleRing(int capacity) {
+        this.elements = new EntityFX[capacity];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public EntityFX get(int index) {
+        return this.elements[this.getArrayIndex(index)];
+    }
+
+    /**
+     * Appends the particle, dropping the oldest one if the queue is full
+     */
+    public void add(EntityFX particle) {
+        if (this.size == this.elements.length) {
+            this.elements[this.head] = particle;
+            this.head = this.getArrayIndex(1);
+        } else {
+            this.elements[this.getArrayIndex(this.size++)] = particle;
+        }
+    }
+
+    public boolean remove(EntityFX particle) {
+        for (int i = 0; i < this.size; ++i) {
+            if (this.get(i) == particle) {
+                for (int j = i + 1; j < this.size; ++j) {
+                    this.elements[this.getArrayIndex(j - 1)] = this.get(j);
+                }
+
+                this.elements[this.getArrayIndex(--this.size)] = null;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes every dead particle, keeping the others in order
+     */
+    public void removeDead() {
+        int i = 0;
+
+        for (int j = 0; j < this.size; ++j) {
+            EntityFX entityfx = this.get(j);
+
+            if (!entityfx.isDead) {
+                this.elements[this.getArrayIndex(i++)] = entityfx;
+            }
+        }
+
+        for (int k = i; k < this.size; ++k) {
+            this.elements[this.getArrayIndex(k)] = null;
+        }
+
+        this.size = i;
+    }
+
+    /**
+     * Copies the particles into the array, oldest first, and returns how many there are
+     */
+    public int copyTo(EntityFX[] array) {
+        int i = Math.min(this.size, this.elements.length - this.head);
+        System.arraycopy(this.elements, this.head, array, 0, i);
+        System.arraycopy(this.elements, 0, array, i, this.size - i);
+        return this.size;
+    }
+
+    public void clear() {
+        Arrays.fill(this.elements, null);
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private int getArrayIndex(int index) {
+        int i = this.head + index;
+        return i < this.elements.length ? i : i - this.elements.length;
+    }
+}
@@ -97,6 +97,11 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
     private final RenderManager renderManager;
     private WorldClient theWorld;
     private Set<RenderChunk> chunksToUpdate = Sets.newLinkedHashSet();
+
+    /**
+     * Scratch list updateChunks sorts chunksToUpdate into, visible and nearest first
+     */
+    private final List<RenderChunk> listChunksToUpdateSorted = Lists.newArrayList();
     private List<RenderGlobal.ContainerLocalRenderInformation> renderInfos = Lists.newArrayListWithCapacity(69696);
     private final Set<TileEntity> setTileEntities = Sets.newHashSet();
     private ViewFrustum viewFrustum;
@@ -1096,6 +1101,7 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
 
             for (RenderGlobal.ContainerLocalRenderInformation renderglobal$containerlocalrenderinformation3 : this.renderInfos) {
                 RenderChunk renderchunk5 = renderglobal$containerlocalrenderinformation3.renderChunk;
+                renderchunk5.setVisibleFrame(frameCount);
 
                 if (renderchunk5.isNeedsUpdate() || set.contains(renderchunk5)) {
                     this.displayListEntitiesDirty = true;
@@ -1116,6 +1122,7 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
             }
 
             Lagometer.timerChunkUpdate.end();
+            this.renderDispatcher.setCameraPosition(d3, d4 + (double) viewEntity.getEyeHeight(), d5, frameCount);
             this.chunksToUpdate.addAll(set);
             this.mc.mcProfiler.endSection();
         }
@@ -1967,10 +1974,11 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
         int i = Config.getUpdatesPerFrame();
 
         if (!this.chunksToUpdate.isEmpty()) {
-            Iterator<RenderChunk> iterator1 = this.chunksToUpdate.iterator();
+            List<RenderChunk> list = this.listChunksToUpdateSorted;
+            list.addAll(this.chunksToUpdate);
+            Collections.sort(list, this.renderDispatcher.getChunkUpdateOrder());
 
-            while (iterator1.hasNext()) {
-                RenderChunk renderchunk1 = iterator1.next();
+            for (RenderChunk renderchunk1 : list) {
                 boolean flag = renderchunk1.isChunkRegionEmpty();
                 boolean flag1;
 
@@ -1985,7 +1993,7 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
                 }
 
                 renderchunk1.setNeedsUpdate(false);
-                iterator1.remove();
+                this.chunksToUpdate.remove(renderchunk1);
 
                 if (!flag) {
                     double d0 = 2.0D * RenderChunkUtils.getRelativeBufferSize(renderchunk1);
@@ -1996,6 +2004,8 @@ public class RenderGlobal implements IWorldAccess, IResourceManagerReloadListene
                     }
                 }
             }
+
+            list.clear();
         }
     }
 
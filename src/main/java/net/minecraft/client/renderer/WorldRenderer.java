@@ -1,6 +1,5 @@
 package net.minecraft.client.renderer;
 
-import com.google.common.primitives.Floats;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.client.renderer.vertex.VertexFormat;
@@ -19,7 +18,6 @@ import org.lwjgl.opengl.GL11;
 import java.nio.*;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Comparator;
 
 public class WorldRenderer {
     private ByteBuffer byteBuffer;
@@ -51,6 +49,13 @@ public class WorldRenderer {
     public BitSet animatedSpritesCached = new BitSet();
     private boolean modeTriangles = false;
     private ByteBuffer byteBufferTriangles;
+    private int[] sortKeys = new int[0];
+    private int[] sortKeysTmp = new int[0];
+    private int[] sortIndices = new int[0];
+    private int[] sortIndicesTmp = new int[0];
+    private final int[] sortCounts = new int[256];
+    private int[] sortVertexInts = new int[0];
+    private TextureAtlasSprite[] sortSprites = new TextureAtlasSprite[0];
 
     public WorldRenderer(int bufferSizeIn) {
         this.byteBuffer = GLAllocation.createDirectByteBuffer(bufferSizeIn * 4);
@@ -90,69 +95,109 @@ public class WorldRenderer {
 
     public void sortVertexData(float p_181674_1_, float p_181674_2_, float p_181674_3_) {
         int i = this.vertexCount / 4;
-        final float[] afloat = new float[i];
+        int l = this.vertexFormat.getNextOffset();
+        this.ensureSortCapacity(i, i * l);
+        int[] aint = this.sortKeys;
+        int[] aint1 = this.sortIndices;
 
         for (int j = 0; j < i; ++j) {
-            afloat[j] = getDistanceSq(this.rawFloatBuffer, (float) ((double) p_181674_1_ + this.xOffset), (float) ((double) p_181674_2_ + this.yOffset), (float) ((double) p_181674_3_ + this.zOffset), this.vertexFormat.getIntegerSize(), j * this.vertexFormat.getNextOffset());
+            float f = getDistanceSq(this.rawFloatBuffer, (float) ((double) p_181674_1_ + this.xOffset), (float) ((double) p_181674_2_ + this.yOffset), (float) ((double) p_181674_3_ + this.zOffset), this.vertexFormat.getIntegerSize(), j * l);
+            int k = Float.floatToIntBits(f);
+            // Map to an unsigned key whose ascending order is Float.compare descending, furthest quad first
+            aint[j] = ~(k ^ k >> 31 & Integer.MAX_VALUE) ^ Integer.MIN_VALUE;
+            aint1[j] = j;
         }
 
-        Integer[] ainteger = new Integer[i];
+        aint1 = this.radixSortIndices(i);
+        int[] aint2 = this.sortVertexInts;
+        this.rawIntBuffer.limit(this.rawIntBuffer.capacity());
+        this.rawIntBuffer.position(0);
+        this.rawIntBuffer.get(aint2, 0, i * l);
 
-        for (int k = 0; k < ainteger.length; ++k) {
-            ainteger[k] = Integer.valueOf(k);
+        for (int l1 = 0; l1 < i; ++l1) {
+            this.rawIntBuffer.position(l1 * l);
+            this.rawIntBuffer.put(aint2, aint1[l1] * l, l);
         }
 
-        Arrays.sort(ainteger, new Comparator<Integer>() {
-            public int compare(Integer p_compare_1_, Integer p_compare_2_) {
-                return Floats.compare(afloat[p_compare_2_.intValue()], afloat[p_compare_1_.intValue()]);
-            }
-        });
-        BitSet bitset = new BitSet();
-        int l = this.vertexFormat.getNextOffset();
-        int[] aint = new int[l];
-
-        for (int l1 = 0; (l1 = bitset.nextClearBit(l1)) < ainteger.length; ++l1) {
-            int i1 = ainteger[l1].intValue();
-
-            if (i1 != l1) {
-                this.rawIntBuffer.limit(i1 * l + l);
-                this.rawIntBuffer.position(i1 * l);
-                this.rawIntBuffer.get(aint);
-                int j1 = i1;
-
-                for (int k1 = ainteger[i1].intValue(); j1 != l1; k1 = ainteger[k1].intValue()) {
-                    this.rawIntBuffer.limit(k1 * l + l);
-                    this.rawIntBuffer.position(k1 * l);
-                    IntBuffer intbuffer = this.rawIntBuffer.slice();
-                    this.rawIntBuffer.limit(j1 * l + l);
-                    this.rawIntBuffer.position(j1 * l);
-                    this.rawIntBuffer.put(intbuffer);
-                    bitset.set(j1);
-                    j1 = k1;
-                }
+        this.rawIntBuffer.position(this.getBufferSize());
+
+        if (this.quadSprites != null) {
+            TextureAtlasSprite[] atextureatlassprite = this.sortSprites;
 
-                this.rawIntBuffer.limit(l1 * l + l);
-                this.rawIntBuffer.position(l1 * l);
-                this.rawIntBuffer.put(aint);
+            for (int j2 = 0; j2 < i; ++j2) {
+                atextureatlassprite[j2] = this.quadSprites[aint1[j2]];
             }
 
-            bitset.set(l1);
+            System.arraycopy(atextureatlassprite, 0, this.quadSprites, 0, i);
+            Arrays.fill(atextureatlassprite, 0, i, null);
         }
+    }
 
-        this.rawIntBuffer.limit(this.rawIntBuffer.capacity());
-        this.rawIntBuffer.position(this.getBufferSize());
+    /**
+     * Grows the translucency sort scratch arrays to hold the given number of quads and vertex ints. They are kept
+     * between sorts so resorting allocates nothing once the builder has seen its largest layer.
+     */
+    private void ensureSortCapacity(int quads, int ints) {
+        if (this.sortKeys.length < quads) {
+            this.sortKeys = new int[quads];
+            this.sortKeysTmp = new int[quads];
+            this.sortIndices = new int[quads];
+            this.sortIndicesTmp = new int[quads];
+            this.sortSprites = new TextureAtlasSprite[quads];
+        }
 
-        if (this.quadSprites != null) {
-            TextureAtlasSprite[] atextureatlassprite = new TextureAtlasSprite[this.vertexCount / 4];
-            int i2 = this.vertexFormat.getNextOffset() / 4 * 4;
+        if (this.sortVertexInts.length < ints) {
+            this.sortVertexInts = new int[ints];
+        }
+    }
 
-            for (int j2 = 0; j2 < ainteger.length; ++j2) {
-                int k2 = ainteger[j2].intValue();
-                atextureatlassprite[j2] = this.quadSprites[k2];
+    /**
+     * Stable LSD radix sort of sortIndices by the unsigned sortKeys, one byte per pass. Stability keeps equal
+     * distances in their original order, matching the merge sort this replaced. Returns the array holding the result.
+     */
+    private int[] radixSortIndices(int count) {
+        int[] aint = this.sortKeys;
+        int[] aint1 = this.sortKeysTmp;
+        int[] aint2 = this.sortIndices;
+        int[] aint3 = this.sortIndicesTmp;
+        int[] aint4 = this.sortCounts;
+
+        for (int i = 0; i < 32 && count > 1; i += 8) {
+            Arrays.fill(aint4, 0);
+
+            for (int j = 0; j < count; ++j) {
+                ++aint4[aint[j] >>> i & 255];
             }
 
-            System.arraycopy(atextureatlassprite, 0, this.quadSprites, 0, atextureatlassprite.length);
+            if (aint4[aint[0] >>> i & 255] != count) {
+                int k = 0;
+
+                for (int l = 0; l < 256; ++l) {
+                    int i1 = aint4[l];
+                    aint4[l] = k;
+                    k += i1;
+                }
+
+                for (int j1 = 0; j1 < count; ++j1) {
+                    int k1 = aint4[aint[j1] >>> i & 255]++;
+                    aint1[k1] = aint[j1];
+                    aint3[k1] = aint2[j1];
+                }
+
+                int[] aint5 = aint;
+                aint = aint1;
+                aint1 = aint5;
+                aint5 = aint2;
+                aint2 = aint3;
+                aint3 = aint5;
+            }
         }
+
+        this.sortKeys = aint;
+        this.sortKeysTmp = aint1;
+        this.sortIndices = aint2;
+        this.sortIndicesTmp = aint3;
+        return aint2;
     }
 
     public WorldRenderer.State getVertexState() {
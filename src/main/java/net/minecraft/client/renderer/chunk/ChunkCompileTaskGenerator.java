@@ -15,6 +15,10 @@ public class ChunkCompileTaskGenerator {
     private CompiledChunk compiledChunk;
     private ChunkCompileTaskGenerator.Status status = ChunkCompileTaskGenerator.Status.PENDING;
     private boolean finished;
+    private boolean visible;
+    private double distanceSq;
+    private long sequence;
+    private long queuedNanos;
 
     public ChunkCompileTaskGenerator(RenderChunk renderChunkIn, ChunkCompileTaskGenerator.Type typeIn) {
         this.renderChunk = renderChunkIn;
@@ -100,6 +104,38 @@ public class ChunkCompileTaskGenerator {
         return this.finished;
     }
 
+    /**
+     * Sets the scheduling key used by ChunkRenderDispatcher. Must only be called while the task is not in the queue.
+     */
+    public void setPriority(boolean visibleIn, double distanceSqIn) {
+        this.visible = visibleIn;
+        this.distanceSq = distanceSqIn;
+    }
+
+    public boolean isVisible() {
+        return this.visible;
+    }
+
+    public double getDistanceSq() {
+        return this.distanceSq;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public void setSequence(long sequenceIn) {
+        this.sequence = sequenceIn;
+    }
+
+    public long getQueuedNanos() {
+        return this.queuedNanos;
+    }
+
+    public void setQueuedNanos(long queuedNanosIn) {
+        this.queuedNanos = queuedNanosIn;
+    }
+
     public enum Status {
         PENDING,
         COMPILING,
@@ -9,6 +9,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.*;
 import net.minecraft.client.renderer.vertex.VertexBuffer;
+import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumWorldBlockLayer;
 import net.minecraft.util.MathHelper;
 import org.apache.logging.log4j.LogManager;
@@ -16,23 +17,92 @@ import org.apache.logging.log4j.Logger;
 import org.lwjgl.opengl.GL11;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Queue;
+import java.util.PriorityQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 public class ChunkRenderDispatcher {
     private static final Logger logger = LogManager.getLogger();
     private static final ThreadFactory threadFactory = (new ThreadFactoryBuilder()).setNameFormat("Chunk Batcher %d").setDaemon(true).build();
+
+    /**
+     * Soft cap on queued compile tasks; updateChunkLater refuses new work past this so RenderGlobal keeps the rest
+     */
+    private static final int MAX_QUEUED_UPDATES = 100;
+
+    /**
+     * Queued tasks are re-keyed once the camera has moved this far (squared, in blocks) since the last re-key
+     */
+    private static final double REPRIORITIZE_DISTANCE_SQ = 256.0D;
+
+    /**
+     * Queued tasks are also re-keyed at least this often, so frustum visibility follows the camera rotating in place
+     */
+    private static final int REPRIORITIZE_FRAMES = 10;
+    private static final long MIN_UPLOAD_BUDGET_NANOS = 500000L;
+    private static final long MAX_UPLOAD_BUDGET_NANOS = 8000000L;
+    private static final long UPLOAD_BUDGET_STEP_NANOS = 250000L;
+
+    /**
+     * Compile order: chunks that passed the frustum check last frame first, then nearest to the camera, then oldest
+     */
+    private static final Comparator<ChunkCompileTaskGenerator> TASK_ORDER = new Comparator<ChunkCompileTaskGenerator>() {
+        public int compare(ChunkCompileTaskGenerator a, ChunkCompileTaskGenerator b) {
+            if (a.isVisible() != b.isVisible()) {
+                return a.isVisible() ? -1 : 1;
+            } else {
+                int i = Double.compare(a.getDistanceSq(), b.getDistanceSq());
+                return i != 0 ? i : Long.compare(a.getSequence(), b.getSequence());
+            }
+        }
+    };
     private final BlockingQueue<ChunkCompileTaskGenerator> queueChunkUpdates;
     private final BlockingQueue<RegionRenderCacheBuilder> queueFreeRenderBuilders;
     private final WorldVertexBufferUploader worldVertexUploader;
     private final VertexBufferUploader vertexUploader;
-    private final Queue<ListenableFutureTask<?>> queueChunkUploads;
+    private final PriorityQueue<ChunkRenderDispatcher.PendingUpload> queueChunkUploads;
     private final ChunkRenderWorker renderWorker;
     private final int countRenderBuilders;
     private final List<RegionRenderCacheBuilder> listPausedBuilders;
+    private final List<ChunkCompileTaskGenerator> listReprioritize = new ArrayList();
+
+    /**
+     * Orders chunks by the same key as queued compile tasks, so RenderGlobal submits them in the order they would be
+     * compiled
+     */
+    private final Comparator<RenderChunk> chunkUpdateOrder = new Comparator<RenderChunk>() {
+        public int compare(RenderChunk a, RenderChunk b) {
+            boolean flag = a.getVisibleFrame() == ChunkRenderDispatcher.this.frameCount;
+            boolean flag1 = b.getVisibleFrame() == ChunkRenderDispatcher.this.frameCount;
+            return flag != flag1 ? (flag ? -1 : 1) : Double.compare(ChunkRenderDispatcher.this.getDistanceSq(a), ChunkRenderDispatcher.this.getDistanceSq(b));
+        }
+    };
+    private volatile double cameraX;
+    private volatile double cameraY;
+    private volatile double cameraZ;
+    private double reprioritizeX;
+    private double reprioritizeY;
+    private double reprioritizeZ;
+    private int frameCount;
+    private int reprioritizeFrame;
+    private long taskSequence;
+    private long uploadSequence;
+
+    /**
+     * Nanoseconds each frame may spend on uploads, grown while frames hit their target and halved when they miss it
+     */
+    private long uploadBudgetNanos = 2000000L;
+    private long lastUploadFrameNanos;
+    private int uploadsLastFrame;
+
+    /**
+     * Exponential moving average of how long compile tasks wait in the queue before a worker picks them up
+     */
+    private volatile double averageQueueNanos;
 
     public ChunkRenderDispatcher() {
         this(-1);
@@ -40,10 +110,10 @@ public class ChunkRenderDispatcher {
 
     public ChunkRenderDispatcher(int p_i4_1_) {
         List<ChunkRenderWorker> listThreadedWorkers = Lists.newArrayList();
-        this.queueChunkUpdates = Queues.newArrayBlockingQueue(100);
+        this.queueChunkUpdates = new PriorityBlockingQueue(MAX_QUEUED_UPDATES, TASK_ORDER);
         this.worldVertexUploader = new WorldVertexBufferUploader();
         this.vertexUploader = new VertexBufferUploader();
-        this.queueChunkUploads = Queues.newArrayDeque();
+        this.queueChunkUploads = new PriorityQueue();
         this.listPausedBuilders = new ArrayList();
         int i = Math.max(1, (int) ((double) Runtime.getRuntime().maxMemory() * 0.3D) / 10485760);
         int j = Math.max(1, MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 2, 1, i / 5));
@@ -71,24 +141,116 @@ public class ChunkRenderDispatcher {
     }
 
     public String getDebugInfo() {
-        return String.format("pC: %03d, pU: %1d, aB: %1d", Integer.valueOf(this.queueChunkUpdates.size()), Integer.valueOf(this.queueChunkUploads.size()), Integer.valueOf(this.queueFreeRenderBuilders.size()));
+        int i;
+
+        synchronized (this.queueChunkUploads) {
+            i = this.queueChunkUploads.size();
+        }
+
+        return String.format("pC: %03d, pU: %1d, aB: %1d, qW: %.1fms, uB: %.1fms/%d", Integer.valueOf(this.queueChunkUpdates.size()), Integer.valueOf(i), Integer.valueOf(this.queueFreeRenderBuilders.size()), Double.valueOf(this.averageQueueNanos / 1000000.0D), Double.valueOf((double) this.uploadBudgetNanos / 1000000.0D), Integer.valueOf(this.uploadsLastFrame));
+    }
+
+    /**
+     * Updates the camera position that compile tasks and uploads are ordered by. Called once per frame from the main
+     * thread, after the visible chunks for that frame have been marked with {@link RenderChunk#setVisibleFrame}.
+     */
+    public void setCameraPosition(double x, double y, double z, int frame) {
+        this.cameraX = x;
+        this.cameraY = y;
+        this.cameraZ = z;
+        this.frameCount = frame;
+        double d0 = x - this.reprioritizeX;
+        double d1 = y - this.reprioritizeY;
+        double d2 = z - this.reprioritizeZ;
+
+        if (d0 * d0 + d1 * d1 + d2 * d2 > REPRIORITIZE_DISTANCE_SQ || frame - this.reprioritizeFrame >= REPRIORITIZE_FRAMES) {
+            this.reprioritizeX = x;
+            this.reprioritizeY = y;
+            this.reprioritizeZ = z;
+            this.reprioritizeFrame = frame;
+            this.reprioritizeChunkUpdates();
+        }
+    }
+
+    /**
+     * Re-keys every queued compile task against the current camera. Tasks are drained and re-added, so a worker may
+     * briefly see fewer tasks than are pending; tasks finished in the meantime are dropped instead of re-added.
+     */
+    private void reprioritizeChunkUpdates() {
+        List<ChunkCompileTaskGenerator> list = this.listReprioritize;
+        this.queueChunkUpdates.drainTo(list);
+
+        for (ChunkCompileTaskGenerator chunkcompiletaskgenerator : list) {
+            if (!chunkcompiletaskgenerator.isFinished()) {
+                this.updatePriority(chunkcompiletaskgenerator);
+                this.queueChunkUpdates.offer(chunkcompiletaskgenerator);
+            }
+        }
+
+        list.clear();
+    }
+
+    /**
+     * Returns the order chunks should be submitted in: visible in the current frame first, then nearest to the camera.
+     * Only valid on the main thread, after setCameraPosition for the frame.
+     */
+    public Comparator<RenderChunk> getChunkUpdateOrder() {
+        return this.chunkUpdateOrder;
+    }
+
+    private void updatePriority(ChunkCompileTaskGenerator task) {
+        RenderChunk renderchunk = task.getRenderChunk();
+        task.setPriority(renderchunk.getVisibleFrame() == this.frameCount, this.getDistanceSq(renderchunk));
+    }
+
+    private double getDistanceSq(RenderChunk renderChunk) {
+        BlockPos blockpos = renderChunk.getPosition();
+        double d0 = (double) (blockpos.getX() + 8) - this.cameraX;
+        double d1 = (double) (blockpos.getY() + 8) - this.cameraY;
+        double d2 = (double) (blockpos.getZ() + 8) - this.cameraZ;
+        return d0 * d0 + d1 * d1 + d2 * d2;
     }
 
+    private boolean queueChunkUpdate(ChunkCompileTaskGenerator task) {
+        if (this.queueChunkUpdates.size() >= MAX_QUEUED_UPDATES) {
+            return false;
+        } else {
+            this.updatePriority(task);
+            task.setSequence(this.taskSequence++);
+            task.setQueuedNanos(System.nanoTime());
+            return this.queueChunkUpdates.offer(task);
+        }
+    }
+
+    /**
+     * Runs pending uploads, nearest chunk first. A finish time of 0 runs a single upload and Long.MAX_VALUE drains the
+     * queue; any other finish time is further limited by the per-frame upload budget, but at least one upload always
+     * runs so the queue cannot stall.
+     */
     public boolean runChunkUploads(long p_178516_1_) {
         boolean flag = false;
+        boolean flag2 = p_178516_1_ != 0L && p_178516_1_ != Long.MAX_VALUE;
+
+        if (flag2) {
+            long j = System.nanoTime();
+            p_178516_1_ = Math.min(p_178516_1_, j + this.updateUploadBudget(j));
+        }
+
+        int k = 0;
 
         while (true) {
             boolean flag1 = false;
-            ListenableFutureTask listenablefuturetask = null;
+            ChunkRenderDispatcher.PendingUpload pendingupload = null;
 
             synchronized (this.queueChunkUploads) {
-                listenablefuturetask = this.queueChunkUploads.poll();
+                pendingupload = this.queueChunkUploads.poll();
             }
 
-            if (listenablefuturetask != null) {
-                listenablefuturetask.run();
+            if (pendingupload != null) {
+                pendingupload.task.run();
                 flag1 = true;
                 flag = true;
+                ++k;
             }
 
             if (p_178516_1_ == 0L || !flag1) {
@@ -102,9 +264,30 @@ public class ChunkRenderDispatcher {
             }
         }
 
+        if (flag2) {
+            this.uploadsLastFrame = k;
+        }
+
         return flag;
     }
 
+    /**
+     * Adjusts the upload budget from the length of the previous frame against the frame rate limit and returns it
+     */
+    private long updateUploadBudget(long nowNanos) {
+        long i = nowNanos - this.lastUploadFrameNanos;
+        this.lastUploadFrameNanos = nowNanos;
+        long j = 1000000000L / (long) MathHelper.clamp_int(Minecraft.getMinecraft().gameSettings.limitFramerate, 30, 144);
+
+        if (i > j + j / 10L) {
+            this.uploadBudgetNanos = Math.max(MIN_UPLOAD_BUDGET_NANOS, this.uploadBudgetNanos / 2L);
+        } else if (i < j) {
+            this.uploadBudgetNanos = Math.min(MAX_UPLOAD_BUDGET_NANOS, this.uploadBudgetNanos + UPLOAD_BUDGET_STEP_NANOS);
+        }
+
+        return this.uploadBudgetNanos;
+    }
+
     public boolean updateChunkLater(RenderChunk chunkRenderer) {
         chunkRenderer.getLockCompileTask().lock();
         boolean flag;
@@ -116,7 +299,7 @@ public class ChunkRenderDispatcher {
                     ChunkRenderDispatcher.this.queueChunkUpdates.remove(chunkcompiletaskgenerator);
                 }
             });
-            boolean flag1 = this.queueChunkUpdates.offer(chunkcompiletaskgenerator);
+            boolean flag1 = this.queueChunkUpdate(chunkcompiletaskgenerator);
 
             if (!flag1) {
                 chunkcompiletaskgenerator.finish();
@@ -177,7 +360,10 @@ public class ChunkRenderDispatcher {
     }
 
     public ChunkCompileTaskGenerator getNextChunkUpdate() throws InterruptedException {
-        return this.queueChunkUpdates.take();
+        ChunkCompileTaskGenerator chunkcompiletaskgenerator = this.queueChunkUpdates.take();
+        double d0 = (double) (System.nanoTime() - chunkcompiletaskgenerator.getQueuedNanos());
+        this.averageQueueNanos += (d0 - this.averageQueueNanos) * 0.05D;
+        return chunkcompiletaskgenerator;
     }
 
     public boolean updateTransparencyLater(RenderChunk chunkRenderer) {
@@ -193,7 +379,7 @@ public class ChunkRenderDispatcher {
                         ChunkRenderDispatcher.this.queueChunkUpdates.remove(chunkcompiletaskgenerator);
                     }
                 });
-                return this.queueChunkUpdates.offer(chunkcompiletaskgenerator);
+                return this.queueChunkUpdate(chunkcompiletaskgenerator);
             }
 
             flag1 = true;
@@ -221,8 +407,11 @@ public class ChunkRenderDispatcher {
                 }
             }, null);
 
+            ChunkRenderDispatcher.PendingUpload pendingupload = new ChunkRenderDispatcher.PendingUpload(listenablefuturetask, this.getDistanceSq(chunkRenderer));
+
             synchronized (this.queueChunkUploads) {
-                this.queueChunkUploads.add(listenablefuturetask);
+                pendingupload.sequence = this.uploadSequence++;
+                this.queueChunkUploads.add(pendingupload);
                 return listenablefuturetask;
             }
         }
@@ -253,7 +442,9 @@ public class ChunkRenderDispatcher {
     }
 
     public boolean hasChunkUpdates() {
-        return this.queueChunkUpdates.isEmpty() && this.queueChunkUploads.isEmpty();
+        synchronized (this.queueChunkUploads) {
+            return this.queueChunkUpdates.isEmpty() && this.queueChunkUploads.isEmpty();
+        }
     }
 
     public void pauseChunkUpdates() {
@@ -274,4 +465,20 @@ public class ChunkRenderDispatcher {
         this.queueFreeRenderBuilders.addAll(this.listPausedBuilders);
         this.listPausedBuilders.clear();
     }
+
+    static class PendingUpload implements Comparable<ChunkRenderDispatcher.PendingUpload> {
+        private final ListenableFutureTask<Object> task;
+        private final double distanceSq;
+        private long sequence;
+
+        public PendingUpload(ListenableFutureTask<Object> taskIn, double distanceSqIn) {
+            this.task = taskIn;
+            this.distanceSq = distanceSqIn;
+        }
+
+        public int compareTo(ChunkRenderDispatcher.PendingUpload other) {
+            int i = Double.compare(this.distanceSq, other.distanceSq);
+            return i != 0 ? i : Long.compare(this.sequence, other.sequence);
+        }
+    }
 }
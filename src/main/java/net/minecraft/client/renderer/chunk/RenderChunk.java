@@ -50,6 +50,7 @@ public class RenderChunk {
     private final VertexBuffer[] vertexBuffers = new VertexBuffer[EnumWorldBlockLayer.values().length];
     public AxisAlignedBB boundingBox;
     private int frameIndex = -1;
+    private int visibleFrame = -1;
     private boolean needsUpdate = true;
     private final EnumMap<Direction, BlockPos> mapEnumFacing = null;
     private final BlockPos[] positionOffsets16 = new BlockPos[Direction.VALUES.length];
@@ -92,6 +93,17 @@ public class RenderChunk {
         }
     }
 
+    /**
+     * Marks this chunk as passing the frustum check in the given frame
+     */
+    public void setVisibleFrame(int frame) {
+        this.visibleFrame = frame;
+    }
+
+    public int getVisibleFrame() {
+        return this.visibleFrame;
+    }
+
     public VertexBuffer getVertexBufferByLayer(int layer) {
         return this.vertexBuffers[layer];
     }
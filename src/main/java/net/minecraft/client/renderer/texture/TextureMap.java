@@ -1,7 +1,10 @@
 package net.minecraft.client.renderer.texture;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.StitcherException;
 import net.minecraft.client.resources.IResource;
@@ -29,10 +32,19 @@ import java.util.List;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TextureMap extends AbstractTexture implements ITickableTextureObject {
     private static final boolean ENABLE_SKIP = Boolean.parseBoolean(System.getProperty("fml.skipFirstTextureLoad", "true"));
     private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Reads, decodes and mipmaps sprites while an atlas loads. Stitching and uploading stay on the GL thread.
+     */
+    private static final ExecutorService spriteLoaderPool = Executors.newFixedThreadPool(MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 1, 1, 8), (new ThreadFactoryBuilder()).setNameFormat("Sprite Loader #%d").setDaemon(true).build());
     public static final ResourceLocation LOCATION_MISSING_TEXTURE = new ResourceLocation("missingno");
     public static final ResourceLocation locationBlocksTexture = new ResourceLocation("textures/atlas/blocks.png");
     private final List<TextureAtlasSprite> listAnimatedSprites;
@@ -119,7 +131,7 @@ public class TextureMap extends AbstractTexture implements ITickableTextureObjec
         this.loadTextureAtlas(resourceManager);
     }
 
-    public void loadTextureAtlas(IResourceManager resourceManager) {
+    public void loadTextureAtlas(final IResourceManager resourceManager) {
         Config.dbg("Multitexture: " + Config.isMultiTexture());
 
         if (Config.isMultiTexture()) {
@@ -128,275 +140,328 @@ public class TextureMap extends AbstractTexture implements ITickableTextureObjec
             }
         }
 
+        long k4 = System.nanoTime();
         ConnectedTextures.updateIcons(this);
         CustomItems.updateIcons(this);
         BetterGrass.updateIcons(this);
+        long l4 = System.nanoTime();
         int i2 = TextureUtils.getGLMaximumTextureSize();
         Stitcher stitcher = new Stitcher(i2, i2, true, 0, this.mipmapLevels);
         this.mapUploadedSprites.clear();
         this.listAnimatedSprites.clear();
         int i = Integer.MAX_VALUE;
-        int j = this.getMinSpriteSize();
+        final int j = this.getMinSpriteSize();
         this.iconGridSize = j;
         int k = 1 << this.mipmapLevels;
         int l = 0;
         int i1 = 0;
-        Iterator iterator = this.mapRegisteredSprites.entrySet().iterator();
-
-        while (true) {
-            if (iterator.hasNext()) {
-                Entry<String, TextureAtlasSprite> entry = (Entry) iterator.next();
-
-                if (!this.skipFirst) {
-                    TextureAtlasSprite textureatlassprite3 = entry.getValue();
-                    ResourceLocation resourcelocation1 = new ResourceLocation(textureatlassprite3.getIconName());
-                    ResourceLocation resourcelocation2 = this.completeResourceLocation(resourcelocation1, 0);
-                    textureatlassprite3.updateIndexInMap(this.counterIndexInMap);
-
-                    if (textureatlassprite3.hasCustomLoader(resourceManager, resourcelocation1)) {
-                        if (!textureatlassprite3.load(resourceManager, resourcelocation1)) {
-                            i = Math.min(i, Math.min(textureatlassprite3.getIconWidth(), textureatlassprite3.getIconHeight()));
-                            stitcher.addSprite(textureatlassprite3);
-                            Config.detail("Custom loader (skipped): " + textureatlassprite3);
-                            ++i1;
-                        }
-
-                        Config.detail("Custom loader: " + textureatlassprite3);
-                        ++l;
-                        continue;
+        List<TextureAtlasSprite> list2 = Lists.newArrayList();
+        List<Future<Boolean>> list3 = Lists.newArrayList();
+
+        if (!this.skipFirst) {
+            for (final TextureAtlasSprite textureatlassprite3 : this.mapRegisteredSprites.values()) {
+                final ResourceLocation resourcelocation1 = new ResourceLocation(textureatlassprite3.getIconName());
+                textureatlassprite3.updateIndexInMap(this.counterIndexInMap);
+
+                if (textureatlassprite3.hasCustomLoader(resourceManager, resourcelocation1)) {
+                    if (!textureatlassprite3.load(resourceManager, resourcelocation1)) {
+                        list2.add(textureatlassprite3);
+                        list3.add(null);
+                        Config.detail("Custom loader (skipped): " + textureatlassprite3);
+                        ++i1;
                     }
 
-                    try {
-                        IResource iresource = resourceManager.getResource(resourcelocation2);
-                        BufferedImage[] abufferedimage = new BufferedImage[1 + this.mipmapLevels];
-                        abufferedimage[0] = TextureUtil.readBufferedImage(iresource.getInputStream());
-                        int k3 = abufferedimage[0].getWidth();
-                        int l3 = abufferedimage[0].getHeight();
-
-                        if (k3 < 1 || l3 < 1) {
-                            Config.warn("Invalid sprite size: " + textureatlassprite3);
-                            continue;
+                    Config.detail("Custom loader: " + textureatlassprite3);
+                    ++l;
+                } else {
+                    list2.add(textureatlassprite3);
+                    list3.add(spriteLoaderPool.submit(new Callable<Boolean>() {
+                        public Boolean call() throws Exception {
+                            return Boolean.valueOf(TextureMap.this.loadSpriteImages(resourceManager, textureatlassprite3, resourcelocation1, j));
                         }
+                    }));
+                }
+            }
+        }
 
-                        if (k3 < j || this.mipmapLevels > 0) {
-                            int i4 = this.mipmapLevels > 0 ? TextureUtils.scaleToGrid(k3, j) : TextureUtils.scaleToMin(k3, j);
+        for (int j4 = 0; j4 < list2.size(); ++j4) {
+            TextureAtlasSprite textureatlassprite7 = list2.get(j4);
+            Future<Boolean> future = list3.get(j4);
 
-                            if (i4 != k3) {
-                                if (!TextureUtils.isPowerOfTwo(k3)) {
-                                    Config.log("Scaled non power of 2: " + textureatlassprite3.getIconName() + ", " + k3 + " -> " + i4);
-                                } else {
-                                    Config.log("Scaled too small texture: " + textureatlassprite3.getIconName() + ", " + k3 + " -> " + i4);
-                                }
+            if (future == null) {
+                i = Math.min(i, Math.min(textureatlassprite7.getIconWidth(), textureatlassprite7.getIconHeight()));
+                stitcher.addSprite(textureatlassprite7);
+            } else if (getSpriteTask(future).booleanValue()) {
+                i = Math.min(i, Math.min(textureatlassprite7.getIconWidth(), textureatlassprite7.getIconHeight()));
+                int j3 = Math.min(Integer.lowestOneBit(textureatlassprite7.getIconWidth()), Integer.lowestOneBit(textureatlassprite7.getIconHeight()));
 
-                                int j1 = l3 * i4 / k3;
-                                abufferedimage[0] = TextureUtils.scaleImage(abufferedimage[0], i4);
-                            }
-                        }
+                if (j3 < k) {
+                    logger.warn("Texture {} with size {}x{} limits mip level from {} to {}", this.completeResourceLocation(new ResourceLocation(textureatlassprite7.getIconName()), 0), Integer.valueOf(textureatlassprite7.getIconWidth()), Integer.valueOf(textureatlassprite7.getIconHeight()), Integer.valueOf(MathHelper.calculateLogBaseTwo(k)), Integer.valueOf(MathHelper.calculateLogBaseTwo(j3)));
+                    k = j3;
+                }
 
-                        TextureMetadataSection texturemetadatasection = iresource.getMetadata("texture");
+                stitcher.addSprite(textureatlassprite7);
+            }
+        }
 
-                        if (texturemetadatasection != null) {
-                            List<Integer> list1 = texturemetadatasection.getListMipmaps();
+        if (l > 0) {
+            Config.dbg("Custom loader sprites: " + l);
+        }
 
-                            if (!list1.isEmpty()) {
-                                int k1 = abufferedimage[0].getWidth();
-                                int l1 = abufferedimage[0].getHeight();
+        if (i1 > 0) {
+            Config.dbg("Custom loader sprites (skipped): " + i1);
+        }
 
-                                if (MathHelper.roundUpToPowerOfTwo(k1) != k1 || MathHelper.roundUpToPowerOfTwo(l1) != l1) {
-                                    throw new RuntimeException("Unable to load extra miplevels, source-texture is not power of two");
-                                }
-                            }
+        int j2 = Math.min(i, k);
+        int k2 = MathHelper.calculateLogBaseTwo(j2);
 
-                            Iterator iterator1 = list1.iterator();
+        if (k2 < 0) {
+            k2 = 0;
+        }
 
-                            while (iterator1.hasNext()) {
-                                int j4 = ((Integer) iterator1.next()).intValue();
+        if (k2 < this.mipmapLevels) {
+            logger.warn("{}: dropping miplevel from {} to {}, because of minimum power of two: {}", this.basePath, Integer.valueOf(this.mipmapLevels), Integer.valueOf(k2), Integer.valueOf(j2));
+            this.mipmapLevels = k2;
+        }
 
-                                if (j4 > 0 && j4 < abufferedimage.length - 1 && abufferedimage[j4] == null) {
-                                    ResourceLocation resourcelocation = this.completeResourceLocation(resourcelocation1, j4);
+        long j5 = System.nanoTime();
 
-                                    try {
-                                        abufferedimage[j4] = TextureUtil.readBufferedImage(resourceManager.getResource(resourcelocation).getInputStream());
-                                    } catch (IOException ioexception) {
-                                        logger.error("Unable to load miplevel {} from: {}", Integer.valueOf(j4), resourcelocation, ioexception);
-                                    }
-                                }
-                            }
-                        }
+        if (!this.skipFirst) {
+            List<Future<?>> list4 = Lists.newArrayList();
 
-                        AnimationMetadataSection animationmetadatasection = iresource.getMetadata("animation");
-                        textureatlassprite3.loadSprite(abufferedimage, animationmetadatasection);
-                    } catch (RuntimeException runtimeexception) {
-                        logger.error("Unable to parse metadata from " + resourcelocation2, runtimeexception);
-                        continue;
-                    } catch (IOException ioexception1) {
-                        logger.error("Using missing texture, unable to load " + resourcelocation2 + ", " + ioexception1.getClass().getName());
-                        continue;
+            for (final TextureAtlasSprite textureatlassprite1 : this.mapRegisteredSprites.values()) {
+                list4.add(spriteLoaderPool.submit(new Runnable() {
+                    public void run() {
+                        TextureMap.this.generateSpriteMipmaps(textureatlassprite1);
                     }
+                }));
+            }
 
-                    i = Math.min(i, Math.min(textureatlassprite3.getIconWidth(), textureatlassprite3.getIconHeight()));
-                    int j3 = Math.min(Integer.lowestOneBit(textureatlassprite3.getIconWidth()), Integer.lowestOneBit(textureatlassprite3.getIconHeight()));
+            for (Future<?> future1 : list4) {
+                getSpriteTask(future1);
+            }
+        }
 
-                    if (j3 < k) {
-                        logger.warn("Texture {} with size {}x{} limits mip level from {} to {}", resourcelocation2, Integer.valueOf(textureatlassprite3.getIconWidth()), Integer.valueOf(textureatlassprite3.getIconHeight()), Integer.valueOf(MathHelper.calculateLogBaseTwo(k)), Integer.valueOf(MathHelper.calculateLogBaseTwo(j3)));
-                        k = j3;
-                    }
+        this.missingImage.generateMipmaps(this.mipmapLevels);
+        stitcher.addSprite(this.missingImage);
+        this.skipFirst = false;
+
+        long k5 = System.nanoTime();
+
+        try {
+            stitcher.doStitch();
+        } catch (StitcherException stitcherexception) {
+            throw stitcherexception;
+        }
+
+        long l5 = System.nanoTime();
 
-                    stitcher.addSprite(textureatlassprite3);
-                    continue;
+        logger.info("Created: {}x{} {}-atlas", Integer.valueOf(stitcher.getCurrentWidth()), Integer.valueOf(stitcher.getCurrentHeight()), this.basePath);
+
+        if (Config.isShaders()) {
+            ShadersTex.allocateTextureMap(this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight(), stitcher, this);
+        } else {
+            TextureUtil.allocateTextureImpl(this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
+        }
+
+        Map<String, TextureAtlasSprite> map = Maps.newHashMap(this.mapRegisteredSprites);
+
+        for (TextureAtlasSprite textureatlassprite2 : stitcher.getStichSlots()) {
+            String s = textureatlassprite2.getIconName();
+            map.remove(s);
+            this.mapUploadedSprites.put(s, textureatlassprite2);
+
+            try {
+                if (Config.isShaders()) {
+                    ShadersTex.uploadTexSubForLoadAtlas(this, textureatlassprite2.getIconName(), textureatlassprite2.getFrameTextureData(0), textureatlassprite2.getIconWidth(), textureatlassprite2.getIconHeight(), textureatlassprite2.getOriginX(), textureatlassprite2.getOriginY(), false, false);
+                } else {
+                    TextureUtil.uploadTextureMipmap(textureatlassprite2.getFrameTextureData(0), textureatlassprite2.getIconWidth(), textureatlassprite2.getIconHeight(), textureatlassprite2.getOriginX(), textureatlassprite2.getOriginY(), false, false);
                 }
+            } catch (Throwable throwable) {
+                CrashReport crashreport1 = CrashReport.makeCrashReport(throwable, "Stitching texture atlas");
+                CrashReportCategory crashreportcategory1 = crashreport1.makeCategory("Texture being stitched together");
+                crashreportcategory1.addCrashSection("Atlas path", this.basePath);
+                crashreportcategory1.addCrashSection("Sprite", textureatlassprite2);
+                throw new ReportedException(crashreport1);
             }
 
-            if (l > 0) {
-                Config.dbg("Custom loader sprites: " + l);
+            if (textureatlassprite2.hasAnimationMetadata()) {
+                textureatlassprite2.setAnimationIndex(this.listAnimatedSprites.size());
+                this.listAnimatedSprites.add(textureatlassprite2);
             }
+        }
 
-            if (i1 > 0) {
-                Config.dbg("Custom loader sprites (skipped): " + i1);
-            }
+        for (TextureAtlasSprite textureatlassprite4 : map.values()) {
+            textureatlassprite4.copyFrom(this.missingImage);
+        }
 
-            int j2 = Math.min(i, k);
-            int k2 = MathHelper.calculateLogBaseTwo(j2);
+        long i6 = System.nanoTime();
+        logger.info("{}: loaded {} sprites (icons {} ms, decode {} ms, mipmaps {} ms, stitch {} ms, upload {} ms)", this.basePath, Integer.valueOf(list2.size()), Long.valueOf((l4 - k4) / 1000000L), Long.valueOf((j5 - l4) / 1000000L), Long.valueOf((k5 - j5) / 1000000L), Long.valueOf((l5 - k5) / 1000000L), Long.valueOf((i6 - l5) / 1000000L));
 
-            if (k2 < 0) {
-                k2 = 0;
-            }
+        Config.log("Animated sprites: " + this.listAnimatedSprites.size());
 
-            if (k2 < this.mipmapLevels) {
-                logger.warn("{}: dropping miplevel from {} to {}, because of minimum power of two: {}", this.basePath, Integer.valueOf(this.mipmapLevels), Integer.valueOf(k2), Integer.valueOf(j2));
-                this.mipmapLevels = k2;
-            }
+        if (Config.isMultiTexture()) {
+            int l2 = stitcher.getCurrentWidth();
+            int i3 = stitcher.getCurrentHeight();
+
+            for (TextureAtlasSprite textureatlassprite5 : stitcher.getStichSlots()) {
+                textureatlassprite5.sheetWidth = l2;
+                textureatlassprite5.sheetHeight = i3;
+                textureatlassprite5.mipmapLevels = this.mipmapLevels;
+                TextureAtlasSprite textureatlassprite6 = textureatlassprite5.spriteSingle;
+
+                if (textureatlassprite6 != null) {
+                    if (textureatlassprite6.getIconWidth() <= 0) {
+                        textureatlassprite6.setIconWidth(textureatlassprite5.getIconWidth());
+                        textureatlassprite6.setIconHeight(textureatlassprite5.getIconHeight());
+                        textureatlassprite6.initSprite(textureatlassprite5.getIconWidth(), textureatlassprite5.getIconHeight(), 0, 0, false);
+                        textureatlassprite6.clearFramesTextureData();
+                        List<int[][]> list = textureatlassprite5.getFramesTextureData();
+                        textureatlassprite6.setFramesTextureData(list);
+                        textureatlassprite6.setAnimationMetadata(textureatlassprite5.getAnimationMetadata());
+                    }
 
-            for (final TextureAtlasSprite textureatlassprite1 : this.mapRegisteredSprites.values()) {
-                if (this.skipFirst) {
-                    break;
-                }
+                    textureatlassprite6.sheetWidth = l2;
+                    textureatlassprite6.sheetHeight = i3;
+                    textureatlassprite6.mipmapLevels = this.mipmapLevels;
+                    textureatlassprite6.setAnimationIndex(textureatlassprite5.getAnimationIndex());
+                    textureatlassprite5.bindSpriteTexture();
+                    boolean flag1 = false;
+                    boolean flag = true;
 
-                try {
-                    textureatlassprite1.generateMipmaps(this.mipmapLevels);
-                } catch (Throwable throwable1) {
-                    CrashReport crashreport = CrashReport.makeCrashReport(throwable1, "Applying mipmap");
-                    CrashReportCategory crashreportcategory = crashreport.makeCategory("Sprite being mipmapped");
-                    crashreportcategory.addCrashSectionCallable("Sprite name", new Callable<String>() {
-                        public String call() throws Exception {
-                            return textureatlassprite1.getIconName();
-                        }
-                    });
-                    crashreportcategory.addCrashSectionCallable("Sprite size", new Callable<String>() {
-                        public String call() throws Exception {
-                            return textureatlassprite1.getIconWidth() + " x " + textureatlassprite1.getIconHeight();
-                        }
-                    });
-                    crashreportcategory.addCrashSectionCallable("Sprite frames", new Callable<String>() {
-                        public String call() throws Exception {
-                            return textureatlassprite1.getFrameCount() + " frames";
-                        }
-                    });
-                    crashreportcategory.addCrashSection("Mipmap levels", Integer.valueOf(this.mipmapLevels));
-                    throw new ReportedException(crashreport);
+                    try {
+                        TextureUtil.uploadTextureMipmap(textureatlassprite6.getFrameTextureData(0), textureatlassprite6.getIconWidth(), textureatlassprite6.getIconHeight(), textureatlassprite6.getOriginX(), textureatlassprite6.getOriginY(), flag1, flag);
+                    } catch (Exception exception) {
+                        Config.dbg("Error uploading sprite single: " + textureatlassprite6 + ", parent: " + textureatlassprite5);
+                        exception.printStackTrace();
+                    }
                 }
             }
 
-            this.missingImage.generateMipmaps(this.mipmapLevels);
-            stitcher.addSprite(this.missingImage);
-            this.skipFirst = false;
+            Config.getMinecraft().getTextureManager().bindTexture(locationBlocksTexture);
+        }
 
-            try {
-                stitcher.doStitch();
-            } catch (StitcherException stitcherexception) {
-                throw stitcherexception;
-            }
+        this.updateIconGrid(stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
 
-            logger.info("Created: {}x{} {}-atlas", Integer.valueOf(stitcher.getCurrentWidth()), Integer.valueOf(stitcher.getCurrentHeight()), this.basePath);
+        if (Config.equals(System.getProperty("saveTextureMap"), "true")) {
+            Config.dbg("Exporting texture map: " + this.basePath);
+            TextureUtils.saveGlTexture("debug/" + this.basePath.replaceAll("/", "_"), this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
+        }
 
-            if (Config.isShaders()) {
-                ShadersTex.allocateTextureMap(this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight(), stitcher, this);
-            } else {
-                TextureUtil.allocateTextureImpl(this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
-            }
+    }
 
-            Map<String, TextureAtlasSprite> map = Maps.newHashMap(this.mapRegisteredSprites);
+    /**
+     * Reads the sprite's image, any extra mip levels and its metadata, and loads them into the sprite. Runs on the
+     * sprite loader pool. Returns false, having logged why, if the sprite should be left out of the atlas.
+     */
+    private boolean loadSpriteImages(IResourceManager resourceManager, TextureAtlasSprite sprite, ResourceLocation location, int minSpriteSize) {
+        ResourceLocation resourcelocation1 = this.completeResourceLocation(location, 0);
 
-            for (TextureAtlasSprite textureatlassprite2 : stitcher.getStichSlots()) {
-                String s = textureatlassprite2.getIconName();
-                map.remove(s);
-                this.mapUploadedSprites.put(s, textureatlassprite2);
+        try {
+            IResource iresource = resourceManager.getResource(resourcelocation1);
+            BufferedImage[] abufferedimage = new BufferedImage[1 + this.mipmapLevels];
+            abufferedimage[0] = TextureUtil.readBufferedImage(iresource.getInputStream());
+            int k3 = abufferedimage[0].getWidth();
+            int l3 = abufferedimage[0].getHeight();
 
-                try {
-                    if (Config.isShaders()) {
-                        ShadersTex.uploadTexSubForLoadAtlas(this, textureatlassprite2.getIconName(), textureatlassprite2.getFrameTextureData(0), textureatlassprite2.getIconWidth(), textureatlassprite2.getIconHeight(), textureatlassprite2.getOriginX(), textureatlassprite2.getOriginY(), false, false);
+            if (k3 < 1 || l3 < 1) {
+                Config.warn("Invalid sprite size: " + sprite);
+                return false;
+            }
+
+            if (k3 < minSpriteSize || this.mipmapLevels > 0) {
+                int i4 = this.mipmapLevels > 0 ? TextureUtils.scaleToGrid(k3, minSpriteSize) : TextureUtils.scaleToMin(k3, minSpriteSize);
+
+                if (i4 != k3) {
+                    if (!TextureUtils.isPowerOfTwo(k3)) {
+                        Config.log("Scaled non power of 2: " + sprite.getIconName() + ", " + k3 + " -> " + i4);
                     } else {
-                        TextureUtil.uploadTextureMipmap(textureatlassprite2.getFrameTextureData(0), textureatlassprite2.getIconWidth(), textureatlassprite2.getIconHeight(), textureatlassprite2.getOriginX(), textureatlassprite2.getOriginY(), false, false);
+                        Config.log("Scaled too small texture: " + sprite.getIconName() + ", " + k3 + " -> " + i4);
                     }
-                } catch (Throwable throwable) {
-                    CrashReport crashreport1 = CrashReport.makeCrashReport(throwable, "Stitching texture atlas");
-                    CrashReportCategory crashreportcategory1 = crashreport1.makeCategory("Texture being stitched together");
-                    crashreportcategory1.addCrashSection("Atlas path", this.basePath);
-                    crashreportcategory1.addCrashSection("Sprite", textureatlassprite2);
-                    throw new ReportedException(crashreport1);
-                }
 
-                if (textureatlassprite2.hasAnimationMetadata()) {
-                    textureatlassprite2.setAnimationIndex(this.listAnimatedSprites.size());
-                    this.listAnimatedSprites.add(textureatlassprite2);
+                    int j1 = l3 * i4 / k3;
+                    abufferedimage[0] = TextureUtils.scaleImage(abufferedimage[0], i4);
                 }
             }
 
-            for (TextureAtlasSprite textureatlassprite4 : map.values()) {
-                textureatlassprite4.copyFrom(this.missingImage);
-            }
+            TextureMetadataSection texturemetadatasection = iresource.getMetadata("texture");
 
-            Config.log("Animated sprites: " + this.listAnimatedSprites.size());
-
-            if (Config.isMultiTexture()) {
-                int l2 = stitcher.getCurrentWidth();
-                int i3 = stitcher.getCurrentHeight();
-
-                for (TextureAtlasSprite textureatlassprite5 : stitcher.getStichSlots()) {
-                    textureatlassprite5.sheetWidth = l2;
-                    textureatlassprite5.sheetHeight = i3;
-                    textureatlassprite5.mipmapLevels = this.mipmapLevels;
-                    TextureAtlasSprite textureatlassprite6 = textureatlassprite5.spriteSingle;
-
-                    if (textureatlassprite6 != null) {
-                        if (textureatlassprite6.getIconWidth() <= 0) {
-                            textureatlassprite6.setIconWidth(textureatlassprite5.getIconWidth());
-                            textureatlassprite6.setIconHeight(textureatlassprite5.getIconHeight());
-                            textureatlassprite6.initSprite(textureatlassprite5.getIconWidth(), textureatlassprite5.getIconHeight(), 0, 0, false);
-                            textureatlassprite6.clearFramesTextureData();
-                            List<int[][]> list = textureatlassprite5.getFramesTextureData();
-                            textureatlassprite6.setFramesTextureData(list);
-                            textureatlassprite6.setAnimationMetadata(textureatlassprite5.getAnimationMetadata());
-                        }
+            if (texturemetadatasection != null) {
+                List<Integer> list1 = texturemetadatasection.getListMipmaps();
+
+                if (!list1.isEmpty()) {
+                    int k1 = abufferedimage[0].getWidth();
+                    int l1 = abufferedimage[0].getHeight();
+
+                    if (MathHelper.roundUpToPowerOfTwo(k1) != k1 || MathHelper.roundUpToPowerOfTwo(l1) != l1) {
+                        throw new RuntimeException("Unable to load extra miplevels, source-texture is not power of two");
+                    }
+                }
+
+                Iterator iterator1 = list1.iterator();
+
+                while (iterator1.hasNext()) {
+                    int j4 = ((Integer) iterator1.next()).intValue();
 
-                        textureatlassprite6.sheetWidth = l2;
-                        textureatlassprite6.sheetHeight = i3;
-                        textureatlassprite6.mipmapLevels = this.mipmapLevels;
-                        textureatlassprite6.setAnimationIndex(textureatlassprite5.getAnimationIndex());
-                        textureatlassprite5.bindSpriteTexture();
-                        boolean flag1 = false;
-                        boolean flag = true;
+                    if (j4 > 0 && j4 < abufferedimage.length - 1 && abufferedimage[j4] == null) {
+                        ResourceLocation resourcelocation = this.completeResourceLocation(location, j4);
 
                         try {
-                            TextureUtil.uploadTextureMipmap(textureatlassprite6.getFrameTextureData(0), textureatlassprite6.getIconWidth(), textureatlassprite6.getIconHeight(), textureatlassprite6.getOriginX(), textureatlassprite6.getOriginY(), flag1, flag);
-                        } catch (Exception exception) {
-                            Config.dbg("Error uploading sprite single: " + textureatlassprite6 + ", parent: " + textureatlassprite5);
-                            exception.printStackTrace();
+                            abufferedimage[j4] = TextureUtil.readBufferedImage(resourceManager.getResource(resourcelocation).getInputStream());
+                        } catch (IOException ioexception) {
+                            logger.error("Unable to load miplevel {} from: {}", Integer.valueOf(j4), resourcelocation, ioexception);
                         }
                     }
                 }
-
-                Config.getMinecraft().getTextureManager().bindTexture(locationBlocksTexture);
             }
 
-            this.updateIconGrid(stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
+            AnimationMetadataSection animationmetadatasection = iresource.getMetadata("animation");
+            sprite.loadSprite(abufferedimage, animationmetadatasection);
+        } catch (RuntimeException runtimeexception) {
+            logger.error("Unable to parse metadata from " + resourcelocation1, runtimeexception);
+            return false;
+        } catch (IOException ioexception1) {
+            logger.error("Using missing texture, unable to load " + resourcelocation1 + ", " + ioexception1.getClass().getName());
+            return false;
+        }
 
-            if (Config.equals(System.getProperty("saveTextureMap"), "true")) {
-                Config.dbg("Exporting texture map: " + this.basePath);
-                TextureUtils.saveGlTexture("debug/" + this.basePath.replaceAll("/", "_"), this.getGlTextureId(), this.mipmapLevels, stitcher.getCurrentWidth(), stitcher.getCurrentHeight());
-            }
+        return true;
+    }
+
+    /**
+     * Generates the mipmaps of one sprite. Runs on the sprite loader pool.
+     */
+    private void generateSpriteMipmaps(final TextureAtlasSprite sprite) {
+        try {
+            sprite.generateMipmaps(this.mipmapLevels);
+        } catch (Throwable throwable1) {
+            CrashReport crashreport = CrashReport.makeCrashReport(throwable1, "Applying mipmap");
+            CrashReportCategory crashreportcategory = crashreport.makeCategory("Sprite being mipmapped");
+            crashreportcategory.addCrashSectionCallable("Sprite name", new Callable<String>() {
+                public String call() throws Exception {
+                    return sprite.getIconName();
+                }
+            });
+            crashreportcategory.addCrashSectionCallable("Sprite size", new Callable<String>() {
+                public String call() throws Exception {
+                    return sprite.getIconWidth() + " x " + sprite.getIconHeight();
+                }
+            });
+            crashreportcategory.addCrashSectionCallable("Sprite frames", new Callable<String>() {
+                public String call() throws Exception {
+                    return sprite.getFrameCount() + " frames";
+                }
+            });
+            crashreportcategory.addCrashSection("Mipmap levels", Integer.valueOf(this.mipmapLevels));
+            throw new ReportedException(crashreport);
+        }
+    }
 
-            return;
+    private static <T> T getSpriteTask(Future<T> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException executionexception) {
+            throw Throwables.propagate(executionexception.getCause());
         }
     }
 
@@ -0,0 +1,439 @@
+package net.minecraft.client.resources.model;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.block.model.FaceBakery;
+import net.minecraft.client.renderer.block.model.ItemCameraTransforms;
+import net.minecraft.client.renderer.block.model.ItemTransformVec3f;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.client.resources.AbstractResourcePack;
+import net.minecraft.client.resources.IResourcePack;
+import net.minecraft.src.Config;
+import net.minecraft.util.Direction;
+import net.minecraft.util.RegistrySimple;
+import net.minecraft.util.ResourceLocation;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lwjglx.util.vector.Vector3f;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Baked models written to disk after a full bake, so a later launch with the same resource packs can skip reading the
+ * model json and baking. The file is keyed by the enabled packs (names, sizes and modification times), the game
+ * version, the shader vertex format and whether custom item models are registered, and holds the sprites the atlas
+ * needs along with every baked quad. Quad UVs only hold for the atlas they were baked against, so the sprite bounds
+ * are checked again once the atlas is stitched.
+ */
+public class BakedModelCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Off unless the game is started with -Dair.bakedModelCache=true
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("air.bakedModelCache");
+    private static final int FORMAT_VERSION = 1;
+    private static final byte TYPE_SIMPLE = 0;
+    private static final byte TYPE_WEIGHTED = 1;
+    private static final byte TYPE_BUILTIN = 2;
+    private final File file;
+    private final String key;
+    private final ByteArrayOutputStream modelBytes = new ByteArrayOutputStream();
+    private final DataOutputStream modelOutput = new DataOutputStream(this.modelBytes);
+    private int modelCount;
+    private List<ResourceLocation> spriteLocations;
+    private String compassLocation;
+    private String clockLocation;
+    private long atlasHash;
+    private DataInputStream modelInput;
+
+    public BakedModelCache(File fileIn, String keyIn) {
+        this.file = fileIn;
+        this.key = keyIn;
+    }
+
+    public static BakedModelCache create() {
+        return new BakedModelCache(new File(Minecraft.getMinecraft().mcDataDir, "bakedmodels.dat"), getResourcePackKey());
+    }
+
+    /**
+     * Hashes everything the set of models and their baked quads depend on besides the atlas layout. Custom Items
+     * decides whether registerVariantNames adds the CIT models.
+     */
+    private static String getResourcePackKey() {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putInt(FORMAT_VERSION);
+        hasher.putString(Minecraft.getMinecraft().getVersion(), Charsets.UTF_8);
+        hasher.putBoolean(Config.isShaders());
+        hasher.putBoolean(Config.isCustomItems());
+
+        for (Direction enumfacing : Direction.values()) {
+            hasher.putFloat(FaceBakery.getFaceBrightness(enumfacing));
+        }
+
+        List<IResourcePack> list = Lists.newArrayList();
+        list.add(Config.getDefaultResourcePack());
+        list.addAll(Arrays.asList(Config.getResourcePacks()));
+
+        for (IResourcePack iresourcepack : list) {
+            hasher.putString(iresourcepack.getClass().getName(), Charsets.UTF_8);
+            hasher.putString(iresourcepack.getPackName(), Charsets.UTF_8);
+
+            if (iresourcepack instanceof AbstractResourcePack) {
+                File file1 = ((AbstractResourcePack) iresourcepack).resourcePackFile;
+                hasher.putString(file1.getAbsolutePath(), Charsets.UTF_8);
+                putFileInfo(hasher, file1);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    private static void putFileInfo(Hasher hasher, File fileIn) {
+        if (fileIn.isDirectory()) {
+            File[] afile = fileIn.listFiles();
+
+            if (afile != null) {
+                Arrays.sort(afile);
+
+                for (File file1 : afile) {
+                    hasher.putString(file1.getName(), Charsets.UTF_8);
+                    putFileInfo(hasher, file1);
+                }
+            }
+        } else {
+            hasher.putLong(fileIn.length());
+            hasher.putLong(fileIn.lastModified());
+        }
+    }
+
+    /**
+     * Hashes where each of the sprites ended up in the atlas
+     */
+    public static long getAtlasHash(List<ResourceLocation> locations, Map<ResourceLocation, TextureAtlasSprite> sprites) {
+        Hasher hasher = Hashing.md5().newHasher();
+
+        for (ResourceLocation resourcelocation : locations) {
+            TextureAtlasSprite textureatlassprite = sprites.get(resourcelocation);
+
+            if (textureatlassprite == null) {
+                hasher.putBoolean(false);
+            } else {
+                hasher.putString(textureatlassprite.getIconName(), Charsets.UTF_8);
+                hasher.putFloat(textureatlassprite.getMinU());
+                hasher.putFloat(textureatlassprite.getMaxU());
+                hasher.putFloat(textureatlassprite.getMinV());
+                hasher.putFloat(textureatlassprite.getMaxV());
+            }
+        }
+
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * Reads the cache file if it was written for the current resource packs. Only the sprite list is decoded here, the
+     * models are decoded by readModels once the atlas is stitched.
+     */
+    public boolean load() {
+        if (!this.file.isFile()) {
+            return false;
+        } else {
+            try {
+                DataInputStream datainputstream = new DataInputStream(new ByteArrayInputStream(Files.toByteArray(this.file)));
+
+                if (datainputstream.readInt() != FORMAT_VERSION || !this.key.equals(datainputstream.readUTF())) {
+                    LOGGER.info("Baked model cache is out of date, rebaking");
+                    return false;
+                } else {
+                    int i = datainputstream.readInt();
+                    this.spriteLocations = Lists.newArrayListWithCapacity(i);
+
+                    for (int j = 0; j < i; ++j) {
+                        this.spriteLocations.add(new ResourceLocation(datainputstream.readUTF()));
+                    }
+
+                    this.compassLocation = datainputstream.readBoolean() ? datainputstream.readUTF() : null;
+                    this.clockLocation = datainputstream.readBoolean() ? datainputstream.readUTF() : null;
+                    this.atlasHash = datainputstream.readLong();
+                    this.modelInput = datainputstream;
+                    return true;
+                }
+            } catch (IOException ioexception) {
+                LOGGER.warn("Unable to read baked model cache " + this.file, ioexception);
+                return false;
+            }
+        }
+    }
+
+    public List<ResourceLocation> getSpriteLocations() {
+        return this.spriteLocations;
+    }
+
+    public String getCompassLocation() {
+        return this.compassLocation;
+    }
+
+    public String getClockLocation() {
+        return this.clockLocation;
+    }
+
+    public long getAtlasHash() {
+        return this.atlasHash;
+    }
+
+    /**
+     * Decodes the cached models into the registry. Nothing is registered unless every model decodes against the given
+     * sprites.
+     */
+    public boolean readModels(Map<ResourceLocation, TextureAtlasSprite> sprites, RegistrySimple<ModelResourceLocation, IBakedModel> registry) {
+        DataInputStream datainputstream = this.modelInput;
+        this.modelInput = null;
+
+        try {
+            int i = datainputstream.readInt();
+            Map<ModelResourceLocation, IBakedModel> map = Maps.newLinkedHashMap();
+
+            for (int j = 0; j < i; ++j) {
+                ModelResourceLocation modelresourcelocation = new ModelResourceLocation(datainputstream.readUTF());
+                byte b0 = datainputstream.readByte();
+
+                if (b0 == TYPE_SIMPLE) {
+                    map.put(modelresourcelocation, readSimpleModel(datainputstream, sprites));
+                } else if (b0 == TYPE_WEIGHTED) {
+                    WeightedBakedModel.Builder weightedbakedmodel$builder = new WeightedBakedModel.Builder();
+                    int k = datainputstream.readInt();
+
+                    for (int l = 0; l < k; ++l) {
+                        int i1 = datainputstream.readInt();
+                        weightedbakedmodel$builder.add(readSimpleModel(datainputstream, sprites), i1);
+                    }
+
+                    map.put(modelresourcelocation, weightedbakedmodel$builder.build());
+                } else if (b0 == TYPE_BUILTIN) {
+                    map.put(modelresourcelocation, new BuiltInModel(readTransforms(datainputstream)));
+                } else {
+                    throw new IOException("Unknown model type " + b0 + " for " + modelresourcelocation);
+                }
+            }
+
+            for (Entry<ModelResourceLocation, IBakedModel> entry : map.entrySet()) {
+                registry.putObject(entry.getKey(), entry.getValue());
+            }
+
+            LOGGER.info("Loaded " + i + " baked models from " + this.file);
+            return true;
+        } catch (IOException ioexception) {
+            LOGGER.warn("Unable to read baked model cache " + this.file, ioexception);
+            return false;
+        }
+    }
+
+    private static IBakedModel readSimpleModel(DataInputStream input, Map<ResourceLocation, TextureAtlasSprite> sprites) throws IOException {
+        boolean flag = input.readBoolean();
+        boolean flag1 = input.readBoolean();
+        String s = input.readUTF();
+        TextureAtlasSprite textureatlassprite = sprites.get(new ResourceLocation(s));
+
+        if (textureatlassprite == null) {
+            throw new IOException("Missing particle sprite " + s);
+        } else {
+            ItemCameraTransforms itemcameratransforms = readTransforms(input);
+            List<BakedQuad> list = readQuads(input);
+            List<List<BakedQuad>> list1 = Lists.newArrayListWithCapacity(6);
+
+            for (Direction enumfacing : Direction.values()) {
+                list1.add(readQuads(input));
+            }
+
+            return new SimpleBakedModel(list, list1, flag, flag1, textureatlassprite, itemcameratransforms);
+        }
+    }
+
+    private static List<BakedQuad> readQuads(DataInputStream input) throws IOException {
+        int i = input.readInt();
+        List<BakedQuad> list = Lists.newArrayListWithCapacity(i);
+
+        for (int j = 0; j < i; ++j) {
+            int[] aint = new int[input.readUnsignedByte()];
+
+            for (int k = 0; k < aint.length; ++k) {
+                aint[k] = input.readInt();
+            }
+
+            int l = input.readInt();
+            Direction enumfacing = Direction.values()[input.readUnsignedByte()];
+            list.add(new BakedQuad(aint, l, enumfacing));
+        }
+
+        return list;
+    }
+
+    private static ItemCameraTransforms readTransforms(DataInputStream input) throws IOException {
+        return input.readBoolean() ? ItemCameraTransforms.DEFAULT : new ItemCameraTransforms(readTransform(input), readTransform(input), readTransform(input), readTransform(input), readTransform(input), readTransform(input));
+    }
+
+    private static ItemTransformVec3f readTransform(DataInputStream input) throws IOException {
+        return input.readBoolean() ? ItemTransformVec3f.DEFAULT : new ItemTransformVec3f(readVector(input), readVector(input), readVector(input));
+    }
+
+    private static Vector3f readVector(DataInputStream input) throws IOException {
+        return new Vector3f(input.readFloat(), input.readFloat(), input.readFloat());
+    }
+
+    /**
+     * Records a block variant: either one model or the weighted choice between several
+     */
+    public void addVariant(ModelResourceLocation location, List<IBakedModel> models, List<Integer> weights) throws IOException {
+        this.modelOutput.writeUTF(location.toString());
+
+        if (models.size() == 1) {
+            this.modelOutput.writeByte(TYPE_SIMPLE);
+            this.writeSimpleModel(models.get(0));
+        } else {
+            this.modelOutput.writeByte(TYPE_WEIGHTED);
+            this.modelOutput.writeInt(models.size());
+
+            for (int i = 0; i < models.size(); ++i) {
+                this.modelOutput.writeInt(weights.get(i).intValue());
+                this.writeSimpleModel(models.get(i));
+            }
+        }
+
+        ++this.modelCount;
+    }
+
+    public void addModel(ModelResourceLocation location, IBakedModel model) throws IOException {
+        this.modelOutput.writeUTF(location.toString());
+
+        if (model.isBuiltInRenderer()) {
+            this.modelOutput.writeByte(TYPE_BUILTIN);
+            this.writeTransforms(model.getItemCameraTransforms());
+        } else {
+            this.modelOutput.writeByte(TYPE_SIMPLE);
+            this.writeSimpleModel(model);
+        }
+
+        ++this.modelCount;
+    }
+
+    private void writeSimpleModel(IBakedModel model) throws IOException {
+        this.modelOutput.writeBoolean(model.isAmbientOcclusion());
+        this.modelOutput.writeBoolean(model.isGui3d());
+        this.modelOutput.writeUTF(model.getParticleTexture().getIconName());
+        this.writeTransforms(model.getItemCameraTransforms());
+        this.writeQuads(model.getGeneralQuads());
+
+        for (Direction enumfacing : Direction.values()) {
+            this.writeQuads(model.getFaceQuads(enumfacing));
+        }
+    }
+
+    private void writeQuads(List<BakedQuad> quads) throws IOException {
+        this.modelOutput.writeInt(quads.size());
+
+        for (BakedQuad bakedquad : quads) {
+            int[] aint = bakedquad.getVertexData();
+            this.modelOutput.writeByte(aint.length);
+
+            for (int i : aint) {
+                this.modelOutput.writeInt(i);
+            }
+
+            this.modelOutput.writeInt(bakedquad.getTintIndex());
+            this.modelOutput.writeByte(bakedquad.getFace().ordinal());
+        }
+    }
+
+    private void writeTransforms(ItemCameraTransforms transforms) throws IOException {
+        this.modelOutput.writeBoolean(transforms == ItemCameraTransforms.DEFAULT);
+
+        if (transforms != ItemCameraTransforms.DEFAULT) {
+            this.writeTransform(transforms.thirdPerson);
+            this.writeTransform(transforms.firstPerson);
+            this.writeTransform(transforms.head);
+            this.writeTransform(transforms.gui);
+            this.writeTransform(transforms.ground);
+            this.writeTransform(transforms.fixed);
+        }
+    }
+
+    private void writeTransform(ItemTransformVec3f transform) throws IOException {
+        this.modelOutput.writeBoolean(transform == ItemTransformVec3f.DEFAULT);
+
+        if (transform != ItemTransformVec3f.DEFAULT) {
+            this.writeVector(transform.rotation);
+            this.writeVector(transform.translation);
+            this.writeVector(transform.scale);
+        }
+    }
+
+    private void writeVector(Vector3f vector) throws IOException {
+        this.modelOutput.writeFloat(vector.x);
+        this.modelOutput.writeFloat(vector.y);
+        this.modelOutput.writeFloat(vector.z);
+    }
+
+    /**
+     * Writes the sprite list and every model added since construction, replacing the old file only once the new one is
+     * complete
+     */
+    public void save(List<ResourceLocation> sprites, String compass, String clock, long atlasHashIn) {
+        File file1 = new File(this.file.getPath() + ".tmp");
+        DataOutputStream dataoutputstream = null;
+
+        try {
+            dataoutputstream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file1)));
+            dataoutputstream.writeInt(FORMAT_VERSION);
+            dataoutputstream.writeUTF(this.key);
+            dataoutputstream.writeInt(sprites.size());
+
+            for (ResourceLocation resourcelocation : sprites) {
+                dataoutputstream.writeUTF(resourcelocation.toString());
+            }
+
+            dataoutputstream.writeBoolean(compass != null);
+
+            if (compass != null) {
+                dataoutputstream.writeUTF(compass);
+            }
+
+            dataoutputstream.writeBoolean(clock != null);
+
+            if (clock != null) {
+                dataoutputstream.writeUTF(clock);
+            }
+
+            dataoutputstream.writeLong(atlasHashIn);
+            dataoutputstream.writeInt(this.modelCount);
+            this.modelOutput.flush();
+            this.modelBytes.writeTo(dataoutputstream);
+            dataoutputstream.close();
+            dataoutputstream = null;
+
+            if (this.file.exists() && !this.file.delete()) {
+                throw new IOException("Unable to replace " + this.file);
+            }
+
+            if (!file1.renameTo(this.file)) {
+                throw new IOException("Unable to rename " + file1 + " to " + this.file);
+            }
+
+            LOGGER.info("Saved " + this.modelCount + " baked models to " + this.file);
+        } catch (IOException ioexception) {
+            LOGGER.warn("Unable to save baked model cache " + this.file, ioexception);
+        } finally {
+            IOUtils.closeQuietly(dataoutputstream);
+        }
+    }
+}
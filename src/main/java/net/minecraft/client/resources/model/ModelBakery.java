@@ -2,10 +2,13 @@ package net.minecraft.client.resources.model;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import net.minecraft.client.renderer.BlockModelShapes;
 import net.minecraft.client.renderer.block.model.*;
 import net.minecraft.client.renderer.texture.IIconCreator;
@@ -18,6 +21,7 @@ import net.minecraft.init.Items;
 import net.minecraft.item.Item;
 import net.minecraft.util.Direction;
 import net.minecraft.util.IRegistry;
+import net.minecraft.util.MathHelper;
 import net.minecraft.util.RegistrySimple;
 import net.minecraft.util.ResourceLocation;
 import net.optifine.CustomItems;
@@ -31,10 +35,20 @@ import org.apache.logging.log4j.Logger;
 import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ModelBakery {
     private static final Set<ResourceLocation> LOCATIONS_BUILTIN_TEXTURES = Sets.newHashSet(new ResourceLocation("blocks/water_flow"), new ResourceLocation("blocks/water_still"), new ResourceLocation("blocks/lava_flow"), new ResourceLocation("blocks/lava_still"), new ResourceLocation("blocks/destroy_stage_0"), new ResourceLocation("blocks/destroy_stage_1"), new ResourceLocation("blocks/destroy_stage_2"), new ResourceLocation("blocks/destroy_stage_3"), new ResourceLocation("blocks/destroy_stage_4"), new ResourceLocation("blocks/destroy_stage_5"), new ResourceLocation("blocks/destroy_stage_6"), new ResourceLocation("blocks/destroy_stage_7"), new ResourceLocation("blocks/destroy_stage_8"), new ResourceLocation("blocks/destroy_stage_9"), new ResourceLocation("items/empty_armor_slot_helmet"), new ResourceLocation("items/empty_armor_slot_chestplate"), new ResourceLocation("items/empty_armor_slot_leggings"), new ResourceLocation("items/empty_armor_slot_boots"));
     private static final Logger LOGGER = LogManager.getLogger();
+    /**
+     * Reads model json and bakes models off the main thread. Results are merged back in the order the serial code
+     * visited them, so warnings and registry contents come out the same.
+     */
+    private static final ExecutorService modelLoaderPool = Executors.newFixedThreadPool(MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 1, 1, 8), (new ThreadFactoryBuilder()).setNameFormat("Model Loader #%d").setDaemon(true).build());
     protected static final ModelResourceLocation MODEL_MISSING = new ModelResourceLocation("builtin/missing", "missing");
     private static final Map<String, String> BUILT_IN_MODELS = Maps.newHashMap();
     private static final Joiner JOINER = Joiner.on(" -> ");
@@ -54,6 +68,10 @@ public class ModelBakery {
     private final Map<String, ResourceLocation> itemLocations = Maps.newLinkedHashMap();
     private final Map<ResourceLocation, ModelBlockDefinition> blockDefinitions = Maps.newHashMap();
     private final Map<Item, List<String>> variantNames = Maps.newIdentityHashMap();
+    private List<ResourceLocation> spriteLocations;
+    private String compassLocation;
+    private String clockLocation;
+    private BakedModelCache modelCache;
 
     public ModelBakery(IResourceManager p_i46085_1_, TextureMap p_i46085_2_, BlockModelShapes p_i46085_3_) {
         this.resourceManager = p_i46085_1_;
@@ -62,14 +80,60 @@ public class ModelBakery {
     }
 
     public IRegistry<ModelResourceLocation, IBakedModel> setupModelRegistry() {
+        if (BakedModelCache.ENABLED) {
+            this.modelCache = BakedModelCache.create();
+
+            if (this.loadCachedModels()) {
+                return this.bakedRegistry;
+            }
+        }
+
         this.loadVariantItemModels();
         this.loadModelsCheck();
         this.loadSprites();
         this.bakeItemModels();
         this.bakeBlockModels();
+
+        if (this.modelCache != null) {
+            this.modelCache.save(this.spriteLocations, this.compassLocation, this.clockLocation, BakedModelCache.getAtlasHash(this.spriteLocations, this.sprites));
+        }
+
         return this.bakedRegistry;
     }
 
+    /**
+     * Stitches the atlas from the cached sprite list and registers the cached models. Returns false, leaving the
+     * registry empty, when there is no usable cache or the atlas came out different from the one the models were baked
+     * against.
+     */
+    private boolean loadCachedModels() {
+        if (!this.modelCache.load()) {
+            return false;
+        } else {
+            CustomItems.update();
+
+            if (this.modelCache.getCompassLocation() != null) {
+                TextureAtlasSprite.setLocationNameCompass(this.modelCache.getCompassLocation());
+            }
+
+            if (this.modelCache.getClockLocation() != null) {
+                TextureAtlasSprite.setLocationNameClock(this.modelCache.getClockLocation());
+            }
+
+            this.loadSprites(this.modelCache.getSpriteLocations());
+
+            if (BakedModelCache.getAtlasHash(this.modelCache.getSpriteLocations(), this.sprites) != this.modelCache.getAtlasHash()) {
+                LOGGER.info("Texture atlas differs from the baked model cache, rebaking");
+            } else if (this.modelCache.readModels(this.sprites, this.bakedRegistry)) {
+                this.clearSpriteFrames();
+                return true;
+            }
+
+            this.sprites.clear();
+            return false;
+        }
+    }
+
     private void loadVariantItemModels() {
         this.loadVariants(this.blockModelShapes.getBlockStateMapper().putAllStateModelLocations().values());
         this.variants.put(MODEL_MISSING, new ModelBlockDefinition.Variants(MODEL_MISSING.getVariant(), Lists.newArrayList(new ModelBlockDefinition.Variant(new ResourceLocation(MODEL_MISSING.getResourcePath()), ModelRotation.X0_Y0, false, 1))));
@@ -82,6 +146,8 @@ public class ModelBakery {
     }
 
     private void loadVariants(Collection<ModelResourceLocation> p_177591_1_) {
+        this.loadModelBlockDefinitions(p_177591_1_);
+
         for (ModelResourceLocation modelresourcelocation : p_177591_1_) {
             try {
                 ModelBlockDefinition modelblockdefinition = this.getModelBlockDefinition(modelresourcelocation);
@@ -106,31 +172,63 @@ public class ModelBakery {
         ModelBlockDefinition modelblockdefinition = this.blockDefinitions.get(resourcelocation);
 
         if (modelblockdefinition == null) {
-            List<ModelBlockDefinition> list = Lists.newArrayList();
+            modelblockdefinition = this.loadModelBlockDefinition(p_177586_1_, resourcelocation);
+            this.blockDefinitions.put(resourcelocation, modelblockdefinition);
+        }
 
-            try {
-                for (IResource iresource : this.resourceManager.getAllResources(resourcelocation)) {
-                    InputStream inputstream = null;
+        return modelblockdefinition;
+    }
 
-                    try {
-                        inputstream = iresource.getInputStream();
-                        ModelBlockDefinition modelblockdefinition1 = ModelBlockDefinition.parseFromReader(new InputStreamReader(inputstream, Charsets.UTF_8));
-                        list.add(modelblockdefinition1);
-                    } catch (Exception exception) {
-                        throw new RuntimeException("Encountered an exception when loading model definition of '" + p_177586_1_ + "' from: '" + iresource.getResourceLocation() + "' in resourcepack: '" + iresource.getResourcePackName() + "'", exception);
-                    } finally {
-                        IOUtils.closeQuietly(inputstream);
-                    }
+    private ModelBlockDefinition loadModelBlockDefinition(ResourceLocation location, ResourceLocation blockStateLocation) {
+        List<ModelBlockDefinition> list = Lists.newArrayList();
+
+        try {
+            for (IResource iresource : this.resourceManager.getAllResources(blockStateLocation)) {
+                InputStream inputstream = null;
+
+                try {
+                    inputstream = iresource.getInputStream();
+                    ModelBlockDefinition modelblockdefinition = ModelBlockDefinition.parseFromReader(new InputStreamReader(inputstream, Charsets.UTF_8));
+                    list.add(modelblockdefinition);
+                } catch (Exception exception) {
+                    throw new RuntimeException("Encountered an exception when loading model definition of '" + location + "' from: '" + iresource.getResourceLocation() + "' in resourcepack: '" + iresource.getResourcePackName() + "'", exception);
+                } finally {
+                    IOUtils.closeQuietly(inputstream);
                 }
-            } catch (IOException ioexception) {
-                throw new RuntimeException("Encountered an exception when loading model definition of model " + resourcelocation, ioexception);
             }
+        } catch (IOException ioexception) {
+            throw new RuntimeException("Encountered an exception when loading model definition of model " + blockStateLocation, ioexception);
+        }
 
-            modelblockdefinition = new ModelBlockDefinition(list);
-            this.blockDefinitions.put(resourcelocation, modelblockdefinition);
+        return new ModelBlockDefinition(list);
+    }
+
+    /**
+     * Parses the blockstate files of the given models on the loader pool. Definitions that fail to load are left out
+     * without logging: getModelBlockDefinition tries them again on the main thread, where loadVariants logs the error.
+     */
+    private void loadModelBlockDefinitions(Collection<ModelResourceLocation> locations) {
+        Map<ResourceLocation, Future<ModelBlockDefinition>> map = Maps.newLinkedHashMap();
+
+        for (final ModelResourceLocation modelresourcelocation : locations) {
+            final ResourceLocation resourcelocation = this.getBlockStateLocation(modelresourcelocation);
+
+            if (!this.blockDefinitions.containsKey(resourcelocation) && !map.containsKey(resourcelocation)) {
+                map.put(resourcelocation, modelLoaderPool.submit(new Callable<ModelBlockDefinition>() {
+                    public ModelBlockDefinition call() throws Exception {
+                        return ModelBakery.this.loadModelBlockDefinition(modelresourcelocation, resourcelocation);
+                    }
+                }));
+            }
         }
 
-        return modelblockdefinition;
+        for (Entry<ResourceLocation, Future<ModelBlockDefinition>> entry : map.entrySet()) {
+            try {
+                this.blockDefinitions.put(entry.getKey(), Uninterruptibles.getUninterruptibly(entry.getValue()));
+            } catch (ExecutionException executionexception) {
+                ;
+            }
+        }
     }
 
     private ResourceLocation getBlockStateLocation(ResourceLocation p_177584_1_) {
@@ -138,22 +236,41 @@ public class ModelBakery {
     }
 
     private void loadVariantModels() {
-        for (ModelResourceLocation modelresourcelocation : this.variants.keySet()) {
-            for (ModelBlockDefinition.Variant modelblockdefinition$variant : this.variants.get(modelresourcelocation).getVariants()) {
+        Map<ResourceLocation, Future<ModelBlock>> map = Maps.newHashMap();
+
+        for (ModelBlockDefinition.Variants modelblockdefinition$variants : this.variants.values()) {
+            for (ModelBlockDefinition.Variant modelblockdefinition$variant : modelblockdefinition$variants.getVariants()) {
                 ResourceLocation resourcelocation = modelblockdefinition$variant.getModelLocation();
 
-                if (this.models.get(resourcelocation) == null) {
+                if (this.models.get(resourcelocation) == null && !map.containsKey(resourcelocation)) {
+                    map.put(resourcelocation, this.submitModel(resourcelocation));
+                }
+            }
+        }
+
+        for (ModelResourceLocation modelresourcelocation : this.variants.keySet()) {
+            for (ModelBlockDefinition.Variant modelblockdefinition$variant1 : this.variants.get(modelresourcelocation).getVariants()) {
+                ResourceLocation resourcelocation1 = modelblockdefinition$variant1.getModelLocation();
+
+                if (this.models.get(resourcelocation1) == null) {
                     try {
-                        ModelBlock modelblock = this.loadModel(resourcelocation);
-                        this.models.put(resourcelocation, modelblock);
-                    } catch (Exception exception) {
-                        LOGGER.warn("Unable to load block model: '" + resourcelocation + "' for variant: '" + modelresourcelocation + "'", exception);
+                        this.models.put(resourcelocation1, Uninterruptibles.getUninterruptibly(map.get(resourcelocation1)));
+                    } catch (ExecutionException executionexception) {
+                        LOGGER.warn("Unable to load block model: '" + resourcelocation1 + "' for variant: '" + modelresourcelocation + "'", executionexception.getCause());
                     }
                 }
             }
         }
     }
 
+    private Future<ModelBlock> submitModel(final ResourceLocation location) {
+        return modelLoaderPool.submit(new Callable<ModelBlock>() {
+            public ModelBlock call() throws Exception {
+                return ModelBakery.this.loadModel(location);
+            }
+        });
+    }
+
     private ModelBlock loadModel(ResourceLocation p_177594_1_) throws IOException {
         String s = p_177594_1_.getResourcePath();
 
@@ -216,18 +333,28 @@ public class ModelBakery {
 
     private void loadItemModels() {
         this.registerVariantNames();
+        Map<ResourceLocation, Future<ModelBlock>> map = Maps.newHashMap();
 
         for (Item item : Item.itemRegistry) {
             for (String s : this.getVariantNames(item)) {
                 ResourceLocation resourcelocation = this.getItemLocation(s);
-                this.itemLocations.put(s, resourcelocation);
 
-                if (this.models.get(resourcelocation) == null) {
+                if (this.models.get(resourcelocation) == null && !map.containsKey(resourcelocation)) {
+                    map.put(resourcelocation, this.submitModel(resourcelocation));
+                }
+            }
+        }
+
+        for (Item item1 : Item.itemRegistry) {
+            for (String s1 : this.getVariantNames(item1)) {
+                ResourceLocation resourcelocation1 = this.getItemLocation(s1);
+                this.itemLocations.put(s1, resourcelocation1);
+
+                if (this.models.get(resourcelocation1) == null) {
                     try {
-                        ModelBlock modelblock = this.loadModel(resourcelocation);
-                        this.models.put(resourcelocation, modelblock);
-                    } catch (Exception exception) {
-                        LOGGER.warn("Unable to load item model: '" + resourcelocation + "' for item: '" + Item.itemRegistry.getNameForObject(item) + "'", exception);
+                        this.models.put(resourcelocation1, Uninterruptibles.getUninterruptibly(map.get(resourcelocation1)));
+                    } catch (ExecutionException executionexception) {
+                        LOGGER.warn("Unable to load item model: '" + resourcelocation1 + "' for item: '" + Item.itemRegistry.getNameForObject(item1) + "'", executionexception.getCause());
                     }
                 }
             }
@@ -313,17 +440,62 @@ public class ModelBakery {
         return new ResourceLocation(resourcelocation.getResourceDomain(), "item/" + resourcelocation.getResourcePath());
     }
 
+    /**
+     * Bakes every variant and item model on the loader pool, then registers them and logs missing models in order
+     */
     private void bakeBlockModels() {
+        Map<ModelResourceLocation, Future<IBakedModel[]>> map = Maps.newHashMap();
+
+        for (Entry<ModelResourceLocation, ModelBlockDefinition.Variants> entry : this.variants.entrySet()) {
+            final List<ModelBlockDefinition.Variant> list = entry.getValue().getVariants();
+            map.put(entry.getKey(), modelLoaderPool.submit(new Callable<IBakedModel[]>() {
+                public IBakedModel[] call() throws Exception {
+                    IBakedModel[] aibakedmodel = new IBakedModel[list.size()];
+
+                    for (int j = 0; j < aibakedmodel.length; ++j) {
+                        ModelBlockDefinition.Variant modelblockdefinition$variant1 = list.get(j);
+                        ModelBlock modelblock2 = ModelBakery.this.models.get(modelblockdefinition$variant1.getModelLocation());
+
+                        if (modelblock2 != null && modelblock2.isResolved()) {
+                            aibakedmodel[j] = ModelBakery.this.bakeModel(modelblock2, modelblockdefinition$variant1.getRotation(), modelblockdefinition$variant1.isUvLocked());
+                        }
+                    }
+
+                    return aibakedmodel;
+                }
+            }));
+        }
+
+        Map<String, Future<IBakedModel>> map1 = Maps.newHashMap();
+
+        for (Entry<String, ResourceLocation> entry1 : this.itemLocations.entrySet()) {
+            final ModelBlock modelblock = this.models.get(entry1.getValue());
+
+            if (modelblock != null && modelblock.isResolved()) {
+                map1.put(entry1.getKey(), modelLoaderPool.submit(new Callable<IBakedModel>() {
+                    public IBakedModel call() throws Exception {
+                        return ModelBakery.this.isCustomRenderer(modelblock) ? new BuiltInModel(modelblock.getAllTransforms()) : ModelBakery.this.bakeModel(modelblock, ModelRotation.X0_Y0, false);
+                    }
+                }));
+            }
+        }
+
         for (ModelResourceLocation modelresourcelocation : this.variants.keySet()) {
+            List<ModelBlockDefinition.Variant> list1 = this.variants.get(modelresourcelocation).getVariants();
+            IBakedModel[] aibakedmodel1 = getModelTask(map.get(modelresourcelocation));
             WeightedBakedModel.Builder weightedbakedmodel$builder = new WeightedBakedModel.Builder();
+            List<IBakedModel> list2 = Lists.newArrayList();
+            List<Integer> list3 = Lists.newArrayList();
             int i = 0;
 
-            for (ModelBlockDefinition.Variant modelblockdefinition$variant : this.variants.get(modelresourcelocation).getVariants()) {
-                ModelBlock modelblock = this.models.get(modelblockdefinition$variant.getModelLocation());
+            for (int k = 0; k < aibakedmodel1.length; ++k) {
+                ModelBlockDefinition.Variant modelblockdefinition$variant = list1.get(k);
 
-                if (modelblock != null && modelblock.isResolved()) {
+                if (aibakedmodel1[k] != null) {
                     ++i;
-                    weightedbakedmodel$builder.add(this.bakeModel(modelblock, modelblockdefinition$variant.getRotation(), modelblockdefinition$variant.isUvLocked()), modelblockdefinition$variant.getWeight());
+                    weightedbakedmodel$builder.add(aibakedmodel1[k], modelblockdefinition$variant.getWeight());
+                    list2.add(aibakedmodel1[k]);
+                    list3.add(Integer.valueOf(modelblockdefinition$variant.getWeight()));
                 } else {
                     LOGGER.warn("Missing model for: " + modelresourcelocation);
                 }
@@ -331,31 +503,62 @@ public class ModelBakery {
 
             if (i == 0) {
                 LOGGER.warn("No weighted models for: " + modelresourcelocation);
-            } else if (i == 1) {
-                this.bakedRegistry.putObject(modelresourcelocation, weightedbakedmodel$builder.first());
             } else {
-                this.bakedRegistry.putObject(modelresourcelocation, weightedbakedmodel$builder.build());
+                if (i == 1) {
+                    this.bakedRegistry.putObject(modelresourcelocation, weightedbakedmodel$builder.first());
+                } else {
+                    this.bakedRegistry.putObject(modelresourcelocation, weightedbakedmodel$builder.build());
+                }
+
+                this.cacheVariant(modelresourcelocation, list2, list3);
             }
         }
 
-        for (Entry<String, ResourceLocation> entry : this.itemLocations.entrySet()) {
-            ResourceLocation resourcelocation = entry.getValue();
-            ModelResourceLocation modelresourcelocation1 = new ModelResourceLocation(entry.getKey(), "inventory");
+        for (Entry<String, ResourceLocation> entry2 : this.itemLocations.entrySet()) {
+            ResourceLocation resourcelocation = entry2.getValue();
+            ModelResourceLocation modelresourcelocation1 = new ModelResourceLocation(entry2.getKey(), "inventory");
+            Future<IBakedModel> future = map1.get(entry2.getKey());
 
-            ModelBlock modelblock1 = this.models.get(resourcelocation);
-
-            if (modelblock1 != null && modelblock1.isResolved()) {
-                if (this.isCustomRenderer(modelblock1)) {
-                    this.bakedRegistry.putObject(modelresourcelocation1, new BuiltInModel(modelblock1.getAllTransforms()));
-                } else {
-                    this.bakedRegistry.putObject(modelresourcelocation1, this.bakeModel(modelblock1, ModelRotation.X0_Y0, false));
-                }
+            if (future != null) {
+                IBakedModel ibakedmodel = getModelTask(future);
+                this.bakedRegistry.putObject(modelresourcelocation1, ibakedmodel);
+                this.cacheModel(modelresourcelocation1, ibakedmodel);
             } else {
                 LOGGER.warn("Missing model for: " + resourcelocation);
             }
         }
     }
 
+    private void cacheVariant(ModelResourceLocation location, List<IBakedModel> models, List<Integer> weights) {
+        if (this.modelCache != null) {
+            try {
+                this.modelCache.addVariant(location, models, weights);
+            } catch (IOException ioexception) {
+                LOGGER.warn("Unable to cache baked model " + location, ioexception);
+                this.modelCache = null;
+            }
+        }
+    }
+
+    private void cacheModel(ModelResourceLocation location, IBakedModel model) {
+        if (this.modelCache != null) {
+            try {
+                this.modelCache.addModel(location, model);
+            } catch (IOException ioexception) {
+                LOGGER.warn("Unable to cache baked model " + location, ioexception);
+                this.modelCache = null;
+            }
+        }
+    }
+
+    private static <T> T getModelTask(Future<T> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException executionexception) {
+            throw Throwables.propagate(executionexception.getCause());
+        }
+    }
+
     private Set<ResourceLocation> getVariantsTextureLocations() {
         Set<ResourceLocation> set = Sets.newHashSet();
         List<ModelResourceLocation> list = Lists.newArrayList(this.variants.keySet());
@@ -492,12 +695,17 @@ public class ModelBakery {
     }
 
     private void loadSprites() {
-        final Set<ResourceLocation> set = this.getVariantsTextureLocations();
+        Set<ResourceLocation> set = this.getVariantsTextureLocations();
         set.addAll(this.getItemsTextureLocations());
         set.remove(TextureMap.LOCATION_MISSING_TEXTURE);
+        this.spriteLocations = Lists.newArrayList(set);
+        this.loadSprites(this.spriteLocations);
+    }
+
+    private void loadSprites(final Collection<ResourceLocation> locations) {
         IIconCreator iiconcreator = new IIconCreator() {
             public void registerSprites(TextureMap iconRegistry) {
-                for (ResourceLocation resourcelocation : set) {
+                for (ResourceLocation resourcelocation : locations) {
                     TextureAtlasSprite textureatlassprite = iconRegistry.registerSprite(resourcelocation);
                     ModelBakery.this.sprites.put(resourcelocation, textureatlassprite);
                 }
@@ -522,8 +730,10 @@ public class ModelBakery {
 
                         if (modelblock.getRootModel() == MODEL_COMPASS && !TextureMap.LOCATION_MISSING_TEXTURE.equals(resourcelocation2)) {
                             TextureAtlasSprite.setLocationNameCompass(resourcelocation2.toString());
+                            this.compassLocation = resourcelocation2.toString();
                         } else if (modelblock.getRootModel() == MODEL_CLOCK && !TextureMap.LOCATION_MISSING_TEXTURE.equals(resourcelocation2)) {
                             TextureAtlasSprite.setLocationNameClock(resourcelocation2.toString());
+                            this.clockLocation = resourcelocation2.toString();
                         }
 
                         set.add(resourcelocation2);
@@ -577,6 +787,10 @@ public class ModelBakery {
             }
         }
 
+        this.clearSpriteFrames();
+    }
+
+    private void clearSpriteFrames() {
         for (TextureAtlasSprite textureatlassprite : this.sprites.values()) {
             if (!textureatlassprite.hasAnimationMetadata()) {
                 textureatlassprite.clearFramesTextureData();
@@ -15,8 +15,8 @@ import org.apache.commons.lang3.ObjectUtils;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class DataWatcher {
     private final Entity owner;
@@ -26,13 +26,27 @@ public class DataWatcher {
      */
     private boolean isBlank = true;
     private static final Map<Class<?>, Integer> dataTypes = Maps.newHashMap();
-    private final Map<Integer, DataWatcher.WatchableObject> watchedObjects = Maps.newHashMap();
+
+    /**
+     * Watched objects indexed by data value id. Slots are only ever filled, never cleared, and values are volatile,
+     * so readers on any thread need no lock.
+     */
+    private final AtomicReferenceArray<DataWatcher.WatchableObject> watchedObjects = new AtomicReferenceArray(32);
+
+    /**
+     * Bit per id: set for every filled slot
+     */
+    private volatile int presentMask;
+
+    /**
+     * Bit per id: set for every object changed since the last getChanged
+     */
+    private final AtomicInteger dirtyMask = new AtomicInteger();
 
     /**
      * true if one or more object was changed
      */
-    private boolean objectChanged;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean objectChanged;
     public BiomeGenBase spawnBiome = BiomeGenBase.plains;
     public BlockPos spawnPosition = BlockPos.ORIGIN;
 
@@ -47,14 +61,10 @@ public class DataWatcher {
             throw new IllegalArgumentException("Unknown data type: " + object.getClass());
         } else if (id > 31) {
             throw new IllegalArgumentException("Data value id is too big with " + id + "! (Max is " + 31 + ")");
-        } else if (this.watchedObjects.containsKey(Integer.valueOf(id))) {
+        } else if (this.watchedObjects.get(id) != null) {
             throw new IllegalArgumentException("Duplicate id value for " + id + "!");
         } else {
-            DataWatcher.WatchableObject datawatcher$watchableobject = new DataWatcher.WatchableObject(integer.intValue(), id, object);
-            this.lock.writeLock().lock();
-            this.watchedObjects.put(Integer.valueOf(id), datawatcher$watchableobject);
-            this.lock.writeLock().unlock();
-            this.isBlank = false;
+            this.putWatchedObject(new DataWatcher.WatchableObject(integer.intValue(), id, object));
         }
     }
 
@@ -62,13 +72,28 @@ public class DataWatcher {
      * Add a new object for the DataWatcher to watch, using the specified data type.
      */
     public void addObjectByDataType(int id, int type) {
-        DataWatcher.WatchableObject datawatcher$watchableobject = new DataWatcher.WatchableObject(type, id, null);
-        this.lock.writeLock().lock();
-        this.watchedObjects.put(Integer.valueOf(id), datawatcher$watchableobject);
-        this.lock.writeLock().unlock();
+        this.putWatchedObject(new DataWatcher.WatchableObject(type, id, null));
+    }
+
+    /**
+     * New objects start out changed, so the first getChanged after adding them sends them
+     */
+    private void putWatchedObject(DataWatcher.WatchableObject object) {
+        int i = object.getDataValueId();
+        this.watchedObjects.set(i, object);
+        this.presentMask |= 1 << i;
+        this.markDirty(i);
         this.isBlank = false;
     }
 
+    private void markDirty(int id) {
+        int i;
+
+        do {
+            i = this.dirtyMask.get();
+        } while (!this.dirtyMask.compareAndSet(i, i | 1 << id));
+    }
+
     /**
      * gets the bytevalue of a watchable object
      */
@@ -106,23 +131,17 @@ public class DataWatcher {
     }
 
     /**
-     * is threadsafe, unless it throws an exception, then
+     * is threadsafe
      */
     private DataWatcher.WatchableObject getWatchedObject(int id) {
-        this.lock.readLock().lock();
-        DataWatcher.WatchableObject datawatcher$watchableobject;
-
         try {
-            datawatcher$watchableobject = this.watchedObjects.get(Integer.valueOf(id));
+            return this.watchedObjects.get(id);
         } catch (Throwable throwable) {
             CrashReport crashreport = CrashReport.makeCrashReport(throwable, "Getting synched entity data");
             CrashReportCategory crashreportcategory = crashreport.makeCategory("Synched entity data");
             crashreportcategory.addCrashSection("Data ID", Integer.valueOf(id));
             throw new ReportedException(crashreport);
         }
-
-        this.lock.readLock().unlock();
-        return datawatcher$watchableobject;
     }
 
     public Rotations getWatchableObjectRotations(int id) {
@@ -135,13 +154,13 @@ public class DataWatcher {
         if (ObjectUtils.notEqual(newData, datawatcher$watchableobject.getObject())) {
             datawatcher$watchableobject.setObject(newData);
             this.owner.onDataWatcherUpdate(id);
-            datawatcher$watchableobject.setWatched(true);
+            this.markDirty(id);
             this.objectChanged = true;
         }
     }
 
     public void setObjectWatched(int id) {
-        this.getWatchedObject(id).watched = true;
+        this.markDirty(id);
         this.objectChanged = true;
     }
 
@@ -170,21 +189,13 @@ public class DataWatcher {
         List<DataWatcher.WatchableObject> list = null;
 
         if (this.objectChanged) {
-            this.lock.readLock().lock();
-
-            for (DataWatcher.WatchableObject datawatcher$watchableobject : this.watchedObjects.values()) {
-                if (datawatcher$watchableobject.isWatched()) {
-                    datawatcher$watchableobject.setWatched(false);
-
-                    if (list == null) {
-                        list = Lists.newArrayList();
-                    }
-
-                    list.add(datawatcher$watchableobject);
+            for (int i = this.dirtyMask.getAndSet(0) & this.presentMask; i != 0; i &= i - 1) {
+                if (list == null) {
+                    list = Lists.newArrayList();
                 }
-            }
 
-            this.lock.readLock().unlock();
+                list.add(this.watchedObjects.get(Integer.numberOfTrailingZeros(i)));
+            }
         }
 
         this.objectChanged = false;
@@ -192,29 +203,24 @@ public class DataWatcher {
     }
 
     public void writeTo(PacketBuffer buffer) throws IOException {
-        this.lock.readLock().lock();
-
-        for (DataWatcher.WatchableObject datawatcher$watchableobject : this.watchedObjects.values()) {
-            writeWatchableObjectToPacketBuffer(buffer, datawatcher$watchableobject);
+        for (int i = this.presentMask; i != 0; i &= i - 1) {
+            writeWatchableObjectToPacketBuffer(buffer, this.watchedObjects.get(Integer.numberOfTrailingZeros(i)));
         }
 
-        this.lock.readLock().unlock();
         buffer.writeByte(127);
     }
 
     public List<DataWatcher.WatchableObject> getAllWatched() {
         List<DataWatcher.WatchableObject> list = null;
-        this.lock.readLock().lock();
 
-        for (DataWatcher.WatchableObject datawatcher$watchableobject : this.watchedObjects.values()) {
+        for (int i = this.presentMask; i != 0; i &= i - 1) {
             if (list == null) {
                 list = Lists.newArrayList();
             }
 
-            list.add(datawatcher$watchableobject);
+            list.add(this.watchedObjects.get(Integer.numberOfTrailingZeros(i)));
         }
 
-        this.lock.readLock().unlock();
         return list;
     }
 
@@ -325,10 +331,8 @@ public class DataWatcher {
     }
 
     public void updateWatchedObjectsFromList(List<DataWatcher.WatchableObject> p_75687_1_) {
-        this.lock.writeLock().lock();
-
         for (DataWatcher.WatchableObject datawatcher$watchableobject : p_75687_1_) {
-            DataWatcher.WatchableObject datawatcher$watchableobject1 = this.watchedObjects.get(Integer.valueOf(datawatcher$watchableobject.getDataValueId()));
+            DataWatcher.WatchableObject datawatcher$watchableobject1 = this.watchedObjects.get(datawatcher$watchableobject.getDataValueId());
 
             if (datawatcher$watchableobject1 != null) {
                 datawatcher$watchableobject1.setObject(datawatcher$watchableobject.getObject());
@@ -336,7 +340,6 @@ public class DataWatcher {
             }
         }
 
-        this.lock.writeLock().unlock();
         this.objectChanged = true;
     }
 
@@ -362,14 +365,12 @@ public class DataWatcher {
     public static class WatchableObject {
         private final int objectType;
         private final int dataValueId;
-        private Object watchedObject;
-        private boolean watched;
+        private volatile Object watchedObject;
 
         public WatchableObject(int type, int id, Object object) {
             this.dataValueId = id;
             this.watchedObject = object;
             this.objectType = type;
-            this.watched = true;
         }
 
         public int getDataValueId() {
@@ -387,13 +388,5 @@ public class DataWatcher {
         public int getObjectType() {
             return this.objectType;
         }
-
-        public boolean isWatched() {
-            return this.watched;
-        }
-
-        public void setWatched(boolean watched) {
-            this.watched = watched;
-        }
     }
 }
@@ -29,6 +29,7 @@ import net.minecraft.nbt.NBTTagFloat;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.*;
+import net.minecraft.world.CollisionBoxBuffer;
 import net.minecraft.world.Explosion;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
@@ -343,7 +344,7 @@ public abstract class Entity implements ICommandSender {
             while (this.posY > 0.0D && this.posY < 256.0D) {
                 this.setPosition(this.posX, this.posY, this.posZ);
 
-                if (this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox()).isEmpty()) {
+                if (this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox()).isEmpty()) {
                     break;
                 }
 
@@ -569,7 +570,7 @@ public abstract class Entity implements ICommandSender {
      * Determines if a liquid is present within the specified AxisAlignedBB.
      */
     private boolean isLiquidPresentInAABB(AxisAlignedBB bb) {
-        return this.worldObj.getCollidingBoundingBoxes(this, bb).isEmpty() && !this.worldObj.isAnyLiquid(bb);
+        return this.worldObj.gatherCollisionBoxes(this, bb).isEmpty() && !this.worldObj.isAnyLiquid(bb);
     }
 
     /**
@@ -603,7 +604,7 @@ public abstract class Entity implements ICommandSender {
             if (flag) {
                 double d6;
 
-                for (d6 = 0.05D; x != 0.0D && this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox().offset(x, -1.0D, 0.0D)).isEmpty(); d3 = x) {
+                for (d6 = 0.05D; x != 0.0D && this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox().offset(x, -1.0D, 0.0D)).isEmpty(); d3 = x) {
                     if (x < d6 && x >= -d6) {
                         x = 0.0D;
                     } else if (x > 0.0D) {
@@ -613,7 +614,7 @@ public abstract class Entity implements ICommandSender {
                     }
                 }
 
-                for (; z != 0.0D && this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox().offset(0.0D, -1.0D, z)).isEmpty(); d5 = z) {
+                for (; z != 0.0D && this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox().offset(0.0D, -1.0D, z)).isEmpty(); d5 = z) {
                     if (z < d6 && z >= -d6) {
                         z = 0.0D;
                     } else if (z > 0.0D) {
@@ -623,7 +624,7 @@ public abstract class Entity implements ICommandSender {
                     }
                 }
 
-                for (; x != 0.0D && z != 0.0D && this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox().offset(x, -1.0D, z)).isEmpty(); d5 = z) {
+                for (; x != 0.0D && z != 0.0D && this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox().offset(x, -1.0D, z)).isEmpty(); d5 = z) {
                     if (x < d6 && x >= -d6) {
                         x = 0.0D;
                     } else if (x > 0.0D) {
@@ -644,25 +645,19 @@ public abstract class Entity implements ICommandSender {
                 }
             }
 
-            List<AxisAlignedBB> list1 = this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox().addCoord(x, y, z));
+            CollisionBoxBuffer collisionboxbuffer = this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox().addCoord(x, y, z));
             AxisAlignedBB axisalignedbb = this.getEntityBoundingBox();
 
-            for (AxisAlignedBB axisalignedbb1 : list1) {
-                y = axisalignedbb1.calculateYOffset(this.getEntityBoundingBox(), y);
-            }
+            y = collisionboxbuffer.calculateYOffset(this.getEntityBoundingBox(), y);
 
             this.setEntityBoundingBox(this.getEntityBoundingBox().offset(0.0D, y, 0.0D));
             boolean flag1 = this.onGround || d4 != y && d4 < 0.0D;
 
-            for (AxisAlignedBB axisalignedbb2 : list1) {
-                x = axisalignedbb2.calculateXOffset(this.getEntityBoundingBox(), x);
-            }
+            x = collisionboxbuffer.calculateXOffset(this.getEntityBoundingBox(), x);
 
             this.setEntityBoundingBox(this.getEntityBoundingBox().offset(x, 0.0D, 0.0D));
 
-            for (AxisAlignedBB axisalignedbb13 : list1) {
-                z = axisalignedbb13.calculateZOffset(this.getEntityBoundingBox(), z);
-            }
+            z = collisionboxbuffer.calculateZOffset(this.getEntityBoundingBox(), z);
 
             this.setEntityBoundingBox(this.getEntityBoundingBox().offset(0.0D, 0.0D, z));
 
@@ -673,51 +668,21 @@ public abstract class Entity implements ICommandSender {
                 AxisAlignedBB axisalignedbb3 = this.getEntityBoundingBox();
                 this.setEntityBoundingBox(axisalignedbb);
                 y = this.stepHeight;
-                List<AxisAlignedBB> list = this.worldObj.getCollidingBoundingBoxes(this, this.getEntityBoundingBox().addCoord(d3, y, d5));
+                collisionboxbuffer = this.worldObj.gatherCollisionBoxes(this, this.getEntityBoundingBox().addCoord(d3, y, d5));
                 AxisAlignedBB axisalignedbb4 = this.getEntityBoundingBox();
                 AxisAlignedBB axisalignedbb5 = axisalignedbb4.addCoord(d3, 0.0D, d5);
-                double d9 = y;
-
-                for (AxisAlignedBB axisalignedbb6 : list) {
-                    d9 = axisalignedbb6.calculateYOffset(axisalignedbb5, d9);
-                }
-
+                double d9 = collisionboxbuffer.calculateYOffset(axisalignedbb5, y);
                 axisalignedbb4 = axisalignedbb4.offset(0.0D, d9, 0.0D);
-                double d15 = d3;
-
-                for (AxisAlignedBB axisalignedbb7 : list) {
-                    d15 = axisalignedbb7.calculateXOffset(axisalignedbb4, d15);
-                }
-
+                double d15 = collisionboxbuffer.calculateXOffset(axisalignedbb4, d3);
                 axisalignedbb4 = axisalignedbb4.offset(d15, 0.0D, 0.0D);
-                double d16 = d5;
-
-                for (AxisAlignedBB axisalignedbb8 : list) {
-                    d16 = axisalignedbb8.calculateZOffset(axisalignedbb4, d16);
-                }
-
+                double d16 = collisionboxbuffer.calculateZOffset(axisalignedbb4, d5);
                 axisalignedbb4 = axisalignedbb4.offset(0.0D, 0.0D, d16);
                 AxisAlignedBB axisalignedbb14 = this.getEntityBoundingBox();
-                double d17 = y;
-
-                for (AxisAlignedBB axisalignedbb9 : list) {
-                    d17 = axisalignedbb9.calculateYOffset(axisalignedbb14, d17);
-                }
-
+                double d17 = collisionboxbuffer.calculateYOffset(axisalignedbb14, y);
                 axisalignedbb14 = axisalignedbb14.offset(0.0D, d17, 0.0D);
-                double d18 = d3;
-
-                for (AxisAlignedBB axisalignedbb10 : list) {
-                    d18 = axisalignedbb10.calculateXOffset(axisalignedbb14, d18);
-                }
-
+                double d18 = collisionboxbuffer.calculateXOffset(axisalignedbb14, d3);
                 axisalignedbb14 = axisalignedbb14.offset(d18, 0.0D, 0.0D);
-                double d19 = d5;
-
-                for (AxisAlignedBB axisalignedbb11 : list) {
-                    d19 = axisalignedbb11.calculateZOffset(axisalignedbb14, d19);
-                }
-
+                double d19 = collisionboxbuffer.calculateZOffset(axisalignedbb14, d5);
                 axisalignedbb14 = axisalignedbb14.offset(0.0D, 0.0D, d19);
                 double d20 = d15 * d15 + d16 * d16;
                 double d10 = d18 * d18 + d19 * d19;
@@ -734,9 +699,7 @@ public abstract class Entity implements ICommandSender {
                     this.setEntityBoundingBox(axisalignedbb14);
                 }
 
-                for (AxisAlignedBB axisalignedbb12 : list) {
-                    y = axisalignedbb12.calculateYOffset(this.getEntityBoundingBox(), y);
-                }
+                y = collisionboxbuffer.calculateYOffset(this.getEntityBoundingBox(), y);
 
                 this.setEntityBoundingBox(this.getEntityBoundingBox().offset(0.0D, y, 0.0D));
 
@@ -826,27 +789,7 @@ public abstract class Entity implements ICommandSender {
                 throw new ReportedException(crashreport);
             }
 
-            boolean flag2 = this.isWet();
-
-            if (this.worldObj.isFlammableWithin(this.getEntityBoundingBox().contract(0.001D, 0.001D, 0.001D))) {
-                this.dealFireDamage(1);
-
-                if (!flag2) {
-                    ++this.fire;
-
-                    if (this.fire == 0) {
-                        this.setFire(8);
-                    }
-                }
-            } else if (this.fire <= 0) {
-                this.fire = -this.fireResistance;
-            }
-
-            if (flag2 && this.fire > 0) {
-                this.playSound("random.fizz", 0.7F, 1.6F + (this.rand.nextFloat() - this.rand.nextFloat()) * 0.4F);
-                this.fire = -this.fireResistance;
-            }
-
+            this.doFireCollisions();
             this.worldObj.theProfiler.endSection();
         }
     }
@@ -864,6 +807,33 @@ public abstract class Entity implements ICommandSender {
         return "game.neutral.swim";
     }
 
+    /**
+     * Sets the entity on fire after standing in fire or lava long enough, and puts it out with a fizz once it is wet.
+     * Called by moveEntity after the block collisions.
+     */
+    protected void doFireCollisions() {
+        boolean flag = this.isWet();
+
+        if (this.worldObj.isFlammableWithin(this.getEntityBoundingBox().contract(0.001D, 0.001D, 0.001D))) {
+            this.dealFireDamage(1);
+
+            if (!flag) {
+                ++this.fire;
+
+                if (this.fire == 0) {
+                    this.setFire(8);
+                }
+            }
+        } else if (this.fire <= 0) {
+            this.fire = -this.fireResistance;
+        }
+
+        if (flag && this.fire > 0) {
+            this.playSound("random.fizz", 0.7F, 1.6F + (this.rand.nextFloat() - this.rand.nextFloat()) * 0.4F);
+            this.fire = -this.fireResistance;
+        }
+    }
+
     protected void doBlockCollisions() {
         BlockPos blockpos = new BlockPos(this.getEntityBoundingBox().minX + 0.001D, this.getEntityBoundingBox().minY + 0.001D, this.getEntityBoundingBox().minZ + 0.001D);
         BlockPos blockpos1 = new BlockPos(this.getEntityBoundingBox().maxX - 0.001D, this.getEntityBoundingBox().maxY - 0.001D, this.getEntityBoundingBox().maxZ - 0.001D);
@@ -1,6 +1,7 @@
 package net.minecraft.entity;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.crash.CrashReportCategory;
@@ -10,17 +11,22 @@ import net.minecraft.entity.item.*;
 import net.minecraft.entity.passive.EntityBat;
 import net.minecraft.entity.passive.EntitySquid;
 import net.minecraft.entity.passive.IAnimals;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.projectile.*;
 import net.minecraft.network.Packet;
 import net.minecraft.util.IntHashMap;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.util.MathHelper;
 import net.minecraft.util.ReportedException;
+import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -31,6 +37,26 @@ public class EntityTracker {
     private final IntHashMap<EntityTrackerEntry> trackedEntityHashTable = new IntHashMap();
     private final int maxTrackingDistanceThreshold;
 
+    /**
+     * Entries each player is currently tracked by, kept in step with EntityTrackerEntry.trackingPlayers
+     */
+    private final Map<EntityPlayerMP, Set<EntityTrackerEntry>> entriesByTrackingPlayer = Maps.newHashMap();
+
+    /**
+     * The world's players bucketed by chunk-sized cell, built at the start of each update. Null outside of
+     * updateTrackedEntities, when entries fall back to checking every player.
+     */
+    private LongHashMap<List<EntityPlayer>> playerCells;
+    private final Set<EntityPlayer> playersInCells = Sets.newIdentityHashSet();
+    private final List<EntityPlayer> nearbyPlayers = Lists.newArrayList();
+
+    /**
+     * Tracked entries bucketed by the chunk-sized cell of their last sent position, rebuilt on demand once positions
+     * or the set of entries have changed
+     */
+    private LongHashMap<List<EntityTrackerEntry>> entryCells;
+    private final Set<EntityTrackerEntry> nearbyEntries = Sets.newHashSet();
+
     public EntityTracker(WorldServer theWorldIn) {
         this.theWorld = theWorldIn;
         this.maxTrackingDistanceThreshold = theWorldIn.getMinecraftServer().getConfigurationManager().getEntityViewDistance();
@@ -41,7 +67,7 @@ public class EntityTracker {
             this.trackEntity(entityIn, 512, 2);
             EntityPlayerMP entityplayermp = (EntityPlayerMP) entityIn;
 
-            for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
+            for (EntityTrackerEntry entitytrackerentry : this.getEntriesNear(entityplayermp)) {
                 if (entitytrackerentry.trackedEntity != entityplayermp) {
                     entitytrackerentry.updatePlayerEntity(entityplayermp);
                 }
@@ -117,8 +143,10 @@ public class EntityTracker {
             }
 
             EntityTrackerEntry entitytrackerentry = new EntityTrackerEntry(entityIn, trackingRange, updateFrequency, sendVelocityUpdates);
+            entitytrackerentry.tracker = this;
             this.trackedEntities.add(entitytrackerentry);
             this.trackedEntityHashTable.addKey(entityIn.getEntityId(), entitytrackerentry);
+            this.entryCells = null;
             entitytrackerentry.updatePlayerEntities(this.theWorld.playerEntities);
         } catch (Throwable throwable) {
             CrashReport crashreport = CrashReport.makeCrashReport(throwable, "Adding entity to track");
@@ -151,7 +179,7 @@ public class EntityTracker {
         if (entityIn instanceof EntityPlayerMP) {
             EntityPlayerMP entityplayermp = (EntityPlayerMP) entityIn;
 
-            for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
+            for (EntityTrackerEntry entitytrackerentry : this.getEntriesTrackedBy(entityplayermp)) {
                 entitytrackerentry.removeFromTrackedPlayers(entityplayermp);
             }
         }
@@ -160,12 +188,20 @@ public class EntityTracker {
 
         if (entitytrackerentry1 != null) {
             this.trackedEntities.remove(entitytrackerentry1);
+            this.entryCells = null;
             entitytrackerentry1.sendDestroyEntityPacketToTrackedPlayers();
+
+            for (EntityPlayerMP entityplayermp1 : entitytrackerentry1.trackingPlayers) {
+                this.onTrackingStopped(entitytrackerentry1, entityplayermp1);
+            }
+
+            entitytrackerentry1.tracker = null;
         }
     }
 
     public void updateTrackedEntities() {
         List<EntityPlayerMP> list = Lists.newArrayList();
+        this.buildPlayerCells();
 
         for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
             entitytrackerentry.updatePlayerList(this.theWorld.playerEntities);
@@ -175,10 +211,14 @@ public class EntityTracker {
             }
         }
 
+        this.playerCells = null;
+        this.playersInCells.clear();
+        this.entryCells = null;
+
         for (int i = 0; i < list.size(); ++i) {
             EntityPlayerMP entityplayermp = list.get(i);
 
-            for (EntityTrackerEntry entitytrackerentry1 : this.trackedEntities) {
+            for (EntityTrackerEntry entitytrackerentry1 : this.getEntriesNear(entityplayermp)) {
                 if (entitytrackerentry1.trackedEntity != entityplayermp) {
                     entitytrackerentry1.updatePlayerEntity(entityplayermp);
                 }
@@ -187,11 +227,15 @@ public class EntityTracker {
     }
 
     public void func_180245_a(EntityPlayerMP p_180245_1_) {
-        for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
-            if (entitytrackerentry.trackedEntity == p_180245_1_) {
-                entitytrackerentry.updatePlayerEntities(this.theWorld.playerEntities);
-            } else {
-                entitytrackerentry.updatePlayerEntity(p_180245_1_);
+        EntityTrackerEntry entitytrackerentry = this.trackedEntityHashTable.lookup(p_180245_1_.getEntityId());
+
+        if (entitytrackerentry != null) {
+            entitytrackerentry.updatePlayerEntities(this.theWorld.playerEntities);
+        }
+
+        for (EntityTrackerEntry entitytrackerentry1 : this.getEntriesNear(p_180245_1_)) {
+            if (entitytrackerentry1.trackedEntity != p_180245_1_) {
+                entitytrackerentry1.updatePlayerEntity(p_180245_1_);
             }
         }
     }
@@ -213,7 +257,7 @@ public class EntityTracker {
     }
 
     public void removePlayerFromTrackers(EntityPlayerMP p_72787_1_) {
-        for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
+        for (EntityTrackerEntry entitytrackerentry : this.getEntriesTrackedBy(p_72787_1_)) {
             entitytrackerentry.removeTrackedPlayerSymmetric(p_72787_1_);
         }
     }
@@ -225,4 +269,136 @@ public class EntityTracker {
             }
         }
     }
+
+    /**
+     * Players of the world that could be in range of the entry or are tracking it. Vanilla checked every player each
+     * time an entity moved; this only looks at the cells the entry's tracking range covers.
+     */
+    List<EntityPlayer> getPlayersNear(EntityTrackerEntry entry, List<EntityPlayer> players) {
+        if (this.playerCells == null) {
+            return players;
+        } else {
+            this.nearbyPlayers.clear();
+            int i = entry.encodedPosX / 32;
+            int j = entry.encodedPosZ / 32;
+            int k = entry.trackingDistanceThreshold;
+
+            for (int l = i - k >> 4; l <= i + k >> 4; ++l) {
+                for (int i1 = j - k >> 4; i1 <= j + k >> 4; ++i1) {
+                    List<EntityPlayer> list = this.playerCells.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(l, i1));
+
+                    if (list != null) {
+                        this.nearbyPlayers.addAll(list);
+                    }
+                }
+            }
+
+            for (EntityPlayerMP entityplayermp : entry.trackingPlayers) {
+                if (this.playersInCells.contains(entityplayermp) && !this.nearbyPlayers.contains(entityplayermp)) {
+                    this.nearbyPlayers.add(entityplayermp);
+                }
+            }
+
+            return this.nearbyPlayers;
+        }
+    }
+
+    /**
+     * Entries whose last sent position is within the largest tracking range of the player, plus the ones the player is
+     * already tracking, so they can be dropped once out of range
+     */
+    private List<EntityTrackerEntry> getEntriesNear(EntityPlayerMP player) {
+        if (this.entryCells == null) {
+            this.buildEntryCells();
+        }
+
+        int i = this.maxTrackingDistanceThreshold;
+        int j = MathHelper.floor_double(player.posX - (double) i) >> 4;
+        int k = MathHelper.floor_double(player.posX + (double) i) >> 4;
+        int l = MathHelper.floor_double(player.posZ - (double) i) >> 4;
+        int i1 = MathHelper.floor_double(player.posZ + (double) i) >> 4;
+        this.nearbyEntries.clear();
+
+        for (int j1 = j; j1 <= k; ++j1) {
+            for (int k1 = l; k1 <= i1; ++k1) {
+                List<EntityTrackerEntry> list = this.entryCells.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(j1, k1));
+
+                if (list != null) {
+                    this.nearbyEntries.addAll(list);
+                }
+            }
+        }
+
+        Set<EntityTrackerEntry> set = this.entriesByTrackingPlayer.get(player);
+
+        if (set != null) {
+            this.nearbyEntries.addAll(set);
+        }
+
+        List<EntityTrackerEntry> list1 = Lists.newArrayList(this.nearbyEntries);
+        this.nearbyEntries.clear();
+        return list1;
+    }
+
+    private List<EntityTrackerEntry> getEntriesTrackedBy(EntityPlayerMP player) {
+        Set<EntityTrackerEntry> set = this.entriesByTrackingPlayer.get(player);
+        return set == null ? Lists.<EntityTrackerEntry>newArrayList() : Lists.newArrayList(set);
+    }
+
+    private void buildPlayerCells() {
+        this.playerCells = new LongHashMap();
+        this.playersInCells.clear();
+
+        for (EntityPlayer entityplayer : this.theWorld.playerEntities) {
+            long i = ChunkCoordIntPair.chunkXZ2Int(MathHelper.floor_double(entityplayer.posX) >> 4, MathHelper.floor_double(entityplayer.posZ) >> 4);
+            List<EntityPlayer> list = this.playerCells.getValueByKey(i);
+
+            if (list == null) {
+                list = Lists.newArrayList();
+                this.playerCells.add(i, list);
+            }
+
+            list.add(entityplayer);
+            this.playersInCells.add(entityplayer);
+        }
+    }
+
+    private void buildEntryCells() {
+        this.entryCells = new LongHashMap();
+
+        for (EntityTrackerEntry entitytrackerentry : this.trackedEntities) {
+            long i = ChunkCoordIntPair.chunkXZ2Int(entitytrackerentry.encodedPosX / 32 >> 4, entitytrackerentry.encodedPosZ / 32 >> 4);
+            List<EntityTrackerEntry> list = this.entryCells.getValueByKey(i);
+
+            if (list == null) {
+                list = Lists.newArrayList();
+                this.entryCells.add(i, list);
+            }
+
+            list.add(entitytrackerentry);
+        }
+    }
+
+    void onTrackingStarted(EntityTrackerEntry entry, EntityPlayerMP player) {
+        Set<EntityTrackerEntry> set = this.entriesByTrackingPlayer.get(player);
+
+        if (set == null) {
+            set = Sets.newHashSet();
+            this.entriesByTrackingPlayer.put(player, set);
+        }
+
+        set.add(entry);
+    }
+
+    void onTrackingStopped(EntityTrackerEntry entry, EntityPlayerMP player) {
+        Set<EntityTrackerEntry> set = this.entriesByTrackingPlayer.get(player);
+
+        if (set != null) {
+            set.remove(entry);
+
+            if (set.isEmpty()) {
+                this.entriesByTrackingPlayer.remove(player);
+            }
+        }
+    }
 }
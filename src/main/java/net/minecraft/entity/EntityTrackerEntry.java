@@ -86,6 +86,12 @@ public class EntityTrackerEntry {
     public boolean playerEntitiesUpdated;
     public Set<EntityPlayerMP> trackingPlayers = Sets.newHashSet();
 
+    /**
+     * The tracker this entry belongs to, told whenever a player starts or stops tracking the entity so it can look up
+     * the entries a player is tracked by without walking all of them
+     */
+    EntityTracker tracker;
+
     public EntityTrackerEntry(Entity trackedEntityIn, int trackingDistanceThresholdIn, int updateFrequencyIn, boolean sendVelocityUpdatesIn) {
         this.trackedEntity = trackedEntityIn;
         this.trackingDistanceThreshold = trackingDistanceThresholdIn;
@@ -117,7 +123,7 @@ public class EntityTrackerEntry {
             this.lastTrackedEntityPosZ = this.trackedEntity.posZ;
             this.firstUpdateDone = true;
             this.playerEntitiesUpdated = true;
-            this.updatePlayerEntities(players);
+            this.updatePlayerEntities(this.tracker != null ? this.tracker.getPlayersNear(this, players) : players);
         }
 
         if (this.field_85178_v != this.trackedEntity.ridingEntity || this.trackedEntity.ridingEntity != null && this.updateCounter % 60 == 0) {
@@ -297,7 +303,7 @@ public class EntityTrackerEntry {
     public void removeFromTrackedPlayers(EntityPlayerMP playerMP) {
         if (this.trackingPlayers.contains(playerMP)) {
             playerMP.removeEntity(this.trackedEntity);
-            this.trackingPlayers.remove(playerMP);
+            this.removeTrackingPlayer(playerMP);
         }
     }
 
@@ -305,7 +311,7 @@ public class EntityTrackerEntry {
         if (playerMP != this.trackedEntity) {
             if (this.func_180233_c(playerMP)) {
                 if (!this.trackingPlayers.contains(playerMP) && (this.isPlayerWatchingThisChunk(playerMP) || this.trackedEntity.forceSpawn)) {
-                    this.trackingPlayers.add(playerMP);
+                    this.addTrackingPlayer(playerMP);
                     Packet packet = this.createSpawnPacket();
                     playerMP.playerNetServerHandler.sendPacket(packet);
 
@@ -371,7 +377,7 @@ public class EntityTrackerEntry {
                     }
                 }
             } else if (this.trackingPlayers.contains(playerMP)) {
-                this.trackingPlayers.remove(playerMP);
+                this.removeTrackingPlayer(playerMP);
                 playerMP.removeEntity(this.trackedEntity);
             }
         }
@@ -493,8 +499,24 @@ public class EntityTrackerEntry {
      */
     public void removeTrackedPlayerSymmetric(EntityPlayerMP playerMP) {
         if (this.trackingPlayers.contains(playerMP)) {
-            this.trackingPlayers.remove(playerMP);
+            this.removeTrackingPlayer(playerMP);
             playerMP.removeEntity(this.trackedEntity);
         }
     }
+
+    private void addTrackingPlayer(EntityPlayerMP playerMP) {
+        this.trackingPlayers.add(playerMP);
+
+        if (this.tracker != null) {
+            this.tracker.onTrackingStarted(this, playerMP);
+        }
+    }
+
+    private void removeTrackingPlayer(EntityPlayerMP playerMP) {
+        this.trackingPlayers.remove(playerMP);
+
+        if (this.tracker != null) {
+            this.tracker.onTrackingStopped(this, playerMP);
+        }
+    }
 }
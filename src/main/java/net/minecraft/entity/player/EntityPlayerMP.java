@@ -35,6 +35,7 @@ import net.minecraft.scoreboard.Score;
 import net.minecraft.scoreboard.ScoreObjective;
 import net.minecraft.scoreboard.Team;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.management.ChunkSendQueue;
 import net.minecraft.server.management.ItemInWorldManager;
 import net.minecraft.server.management.UserListOpsEntry;
 import net.minecraft.stats.AchievementList;
@@ -83,7 +84,11 @@ public class EntityPlayerMP extends EntityPlayer implements ICrafting {
      * player Z position as seen by PlayerManager
      */
     public double managedPosZ;
-    public final List<ChunkCoordIntPair> loadedChunks = Lists.newLinkedList();
+
+    /**
+     * Chunks watched through the PlayerManager that still have to be sent, nearest first
+     */
+    public final ChunkSendQueue loadedChunks = new ChunkSendQueue();
     private final List<Integer> destroyedItemsNetCache = Lists.newLinkedList();
     private final StatisticsFile statsFile;
 
@@ -259,27 +264,30 @@ public class EntityPlayerMP extends EntityPlayer implements ICrafting {
 
         if (!this.loadedChunks.isEmpty()) {
             List<Chunk> list = Lists.newArrayList();
-            Iterator<ChunkCoordIntPair> iterator1 = this.loadedChunks.iterator();
             List<TileEntity> list1 = Lists.newArrayList();
+            boolean flag = !this.worldObj.provider.getHasNoSky();
+            int k = 0;
+            this.loadedChunks.setCenter(MathHelper.floor_double(this.posX) >> 4, MathHelper.floor_double(this.posZ) >> 4);
 
-            while (iterator1.hasNext() && list.size() < 10) {
-                ChunkCoordIntPair chunkcoordintpair = iterator1.next();
+            for (ChunkCoordIntPair chunkcoordintpair : this.loadedChunks.getSendOrder()) {
+                if (list.size() >= ChunkSendQueue.MAX_CHUNKS_PER_TICK || k >= ChunkSendQueue.BYTES_PER_TICK) {
+                    break;
+                }
 
-                if (chunkcoordintpair != null) {
-                    if (this.worldObj.isBlockLoaded(new BlockPos(chunkcoordintpair.chunkXPos << 4, 0, chunkcoordintpair.chunkZPos << 4))) {
-                        Chunk chunk = this.worldObj.getChunkFromChunkCoords(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos);
+                if (this.worldObj.isBlockLoaded(new BlockPos(chunkcoordintpair.chunkXPos << 4, 0, chunkcoordintpair.chunkZPos << 4))) {
+                    Chunk chunk = this.worldObj.getChunkFromChunkCoords(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos);
 
-                        if (chunk.isPopulated()) {
-                            list.add(chunk);
-                            list1.addAll(((WorldServer) this.worldObj).getTileEntitiesIn(chunkcoordintpair.chunkXPos * 16, 0, chunkcoordintpair.chunkZPos * 16, chunkcoordintpair.chunkXPos * 16 + 16, 256, chunkcoordintpair.chunkZPos * 16 + 16));
-                            iterator1.remove();
-                        }
+                    if (chunk.isPopulated()) {
+                        list.add(chunk);
+                        list1.addAll(((WorldServer) this.worldObj).getTileEntitiesIn(chunkcoordintpair.chunkXPos * 16, 0, chunkcoordintpair.chunkZPos * 16, chunkcoordintpair.chunkXPos * 16 + 16, 256, chunkcoordintpair.chunkZPos * 16 + 16));
+                        k += ChunkSendQueue.getPacketSize(chunk, flag);
+                        this.loadedChunks.remove(chunkcoordintpair);
                     }
-                } else {
-                    iterator1.remove();
                 }
             }
 
+            this.loadedChunks.setBytesSentLastTick(k);
+
             if (!list.isEmpty()) {
                 if (list.size() == 1) {
                     this.playerNetServerHandler.sendPacket(new S21PacketChunkData(list.get(0), true, 65535));
@@ -0,0 +1,513 @@
+package net.minecraft.nbt;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes NBT straight from and to a ByteBuf, in the same format as CompressedStreamTools.read/write, without
+ * going through DataInput/DataOutput streams. Compounds read this way are lazy: the bytes are only checked and
+ * measured up front, and each compound decodes its own entries the first time it is accessed. Compounds that are never
+ * touched are written back out as a plain copy of the bytes they were read from. The first pass records where every
+ * compound ends, so decoding one never scans its nested compounds again.
+ */
+public class NBTBufferCodec {
+    /**
+     * Reads a root compound. The whole tree is walked once to check it is well formed and within the size tracker's
+     * limit, charging the tracker what an eager read would, but no tags are created. A tree with a key repeated in one
+     * compound is decoded eagerly instead: only the last of the repeated entries is kept, as an eager read does, which
+     * a copy of the original bytes would not do.
+     */
+    public static NBTTagCompound read(ByteBuf buf, NBTSizeTracker sizeTracker) throws IOException {
+        byte b0 = buf.readByte();
+
+        if (b0 != 10) {
+            throw new IOException("Root tag must be a named compound tag");
+        } else {
+            skipUTF(buf);
+            int i = buf.readerIndex();
+            NBTBufferCodec.Layout nbtbuffercodec$layout = new NBTBufferCodec.Layout(i);
+            skipTag((byte) 10, buf, 0, sizeTracker, nbtbuffercodec$layout);
+            int j = buf.readerIndex() - i;
+            byte[] abyte = new byte[j];
+            buf.getBytes(i, abyte);
+
+            if (nbtbuffercodec$layout.duplicateKeys) {
+                NBTTagCompound nbttagcompound = new NBTTagCompound();
+                nbttagcompound.read(new DataInputStream(new ByteArrayInputStream(abyte)), 0, NBTSizeTracker.INFINITE);
+                return nbttagcompound;
+            } else {
+                return NBTTagCompound.createLazy(abyte, 0, j, nbtbuffercodec$layout.toArray(), 0);
+            }
+        }
+    }
+
+    /**
+     * Writes a root compound with an empty name
+     */
+    public static void write(NBTTagCompound nbt, ByteBuf buf) throws IOException {
+        buf.writeByte(10);
+        buf.writeShort(0);
+        writeTag(nbt, buf);
+    }
+
+    /**
+     * Decodes the entries of a compound body read by {@link #read}. Nested compounds stay lazy and share the array and
+     * layout. Args: data, offset, length, layout, index of the compound in the layout, map to decode into
+     */
+    static void readCompoundEntries(byte[] data, int offset, int length, int[] layout, int index, Map<String, NBTBase> tagMap) throws IOException {
+        ByteBuf bytebuf = Unpooled.wrappedBuffer(data, offset, length);
+        int[] aint = new int[] {index + 1};
+        byte b0;
+
+        while ((b0 = bytebuf.readByte()) != 0) {
+            String s = readUTF(bytebuf);
+            tagMap.put(s, readTag(b0, bytebuf, data, offset, layout, aint));
+        }
+    }
+
+    /**
+     * Reads a tag of a compound body starting at data[offset]. The first element of nextCompound is the layout index of
+     * the next nested compound, advanced past each compound this creates and everything nested in it.
+     */
+    private static NBTBase readTag(byte id, ByteBuf buf, byte[] data, int offset, int[] layout, int[] nextCompound) throws IOException {
+        switch (id) {
+            case 1:
+                return new NBTTagByte(buf.readByte());
+
+            case 2:
+                return new NBTTagShort(buf.readShort());
+
+            case 3:
+                return new NBTTagInt(buf.readInt());
+
+            case 4:
+                return new NBTTagLong(buf.readLong());
+
+            case 5:
+                return new NBTTagFloat(buf.readFloat());
+
+            case 6:
+                return new NBTTagDouble(buf.readDouble());
+
+            case 7:
+                byte[] abyte = new byte[buf.readInt()];
+                buf.readBytes(abyte);
+                return new NBTTagByteArray(abyte);
+
+            case 8:
+                return new NBTTagString(readUTF(buf));
+
+            case 9:
+                byte b0 = buf.readByte();
+                int i = buf.readInt();
+                List<NBTBase> list = Lists.newArrayListWithCapacity(i);
+
+                for (int j = 0; j < i; ++j) {
+                    list.add(readTag(b0, buf, data, offset, layout, nextCompound));
+                }
+
+                NBTTagList nbttaglist = new NBTTagList();
+                nbttaglist.setTags(b0, list);
+                return nbttaglist;
+
+            case 10:
+                int k = nextCompound[0];
+                int i1 = offset + buf.readerIndex();
+                buf.readerIndex(layout[k * 2] - offset);
+                nextCompound[0] = layout[k * 2 + 1];
+                return NBTTagCompound.createLazy(data, i1, layout[k * 2] - i1, layout, k);
+
+            case 11:
+                int[] aint = new int[buf.readInt()];
+
+                for (int l = 0; l < aint.length; ++l) {
+                    aint[l] = buf.readInt();
+                }
+
+                return new NBTTagIntArray(aint);
+
+            default:
+                throw new IOException("Invalid NBT tag type " + id);
+        }
+    }
+
+    /**
+     * Steps over the payload of a tag, charging the size tracker the same amounts the tag's read method would and
+     * recording the compounds in it
+     */
+    private static void skipTag(byte id, ByteBuf buf, int depth, NBTSizeTracker sizeTracker, NBTBufferCodec.Layout layout) throws IOException {
+        switch (id) {
+            case 0:
+                sizeTracker.read(64L);
+                break;
+
+            case 1:
+                sizeTracker.read(72L);
+                buf.skipBytes(1);
+                break;
+
+            case 2:
+                sizeTracker.read(80L);
+                buf.skipBytes(2);
+                break;
+
+            case 3:
+                sizeTracker.read(96L);
+                buf.skipBytes(4);
+                break;
+
+            case 4:
+                sizeTracker.read(128L);
+                buf.skipBytes(8);
+                break;
+
+            case 5:
+                sizeTracker.read(96L);
+                buf.skipBytes(4);
+                break;
+
+            case 6:
+                sizeTracker.read(128L);
+                buf.skipBytes(8);
+                break;
+
+            case 7:
+                sizeTracker.read(192L);
+                int i = buf.readInt();
+                sizeTracker.read(8L * i);
+                buf.skipBytes(i);
+                break;
+
+            case 8:
+                sizeTracker.read(288L);
+                sizeTracker.read(16L * skipUTF(buf));
+                break;
+
+            case 9:
+                sizeTracker.read(296L);
+
+                if (depth > 512) {
+                    throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > 512");
+                }
+
+                byte b0 = buf.readByte();
+                int j = buf.readInt();
+
+                if (b0 == 0 && j > 0) {
+                    throw new RuntimeException("Missing type on ListTag");
+                }
+
+                sizeTracker.read(32L * (long) j);
+
+                for (int k = 0; k < j; ++k) {
+                    skipTag(b0, buf, depth + 1, sizeTracker, layout);
+                }
+
+                break;
+
+            case 10:
+                sizeTracker.read(384L);
+
+                if (depth > 512) {
+                    throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > 512");
+                }
+
+                int i1 = layout.begin();
+                String s = null;
+                Set<String> set = null;
+                byte b1;
+
+                while ((b1 = buf.readByte()) != 0) {
+                    String s1 = readUTF(buf);
+                    sizeTracker.read(224 + 16L * s1.length());
+                    skipTag(b1, buf, depth + 1, sizeTracker, layout);
+
+                    if (s == null) {
+                        s = s1;
+                    } else {
+                        if (set == null) {
+                            set = Sets.newHashSet(s);
+                        }
+
+                        if (!set.add(s1)) {
+                            sizeTracker.read(288L);
+                            layout.duplicateKeys = true;
+                        }
+                    }
+                }
+
+                layout.end(i1, buf.readerIndex());
+                break;
+
+            case 11:
+                sizeTracker.read(192L);
+                int l = buf.readInt();
+                sizeTracker.read(32L * l);
+                buf.skipBytes(4 * l);
+                break;
+
+            default:
+                throw new IOException("Invalid NBT tag type " + id);
+        }
+    }
+
+    private static void writeTag(NBTBase nbt, ByteBuf buf) throws IOException {
+        switch (nbt.getId()) {
+            case 1:
+                buf.writeByte(((NBTBase.NBTPrimitive) nbt).getByte());
+                break;
+
+            case 2:
+                buf.writeShort(((NBTBase.NBTPrimitive) nbt).getShort());
+                break;
+
+            case 3:
+                buf.writeInt(((NBTBase.NBTPrimitive) nbt).getInt());
+                break;
+
+            case 4:
+                buf.writeLong(((NBTBase.NBTPrimitive) nbt).getLong());
+                break;
+
+            case 5:
+                buf.writeFloat(((NBTBase.NBTPrimitive) nbt).getFloat());
+                break;
+
+            case 6:
+                buf.writeDouble(((NBTBase.NBTPrimitive) nbt).getDouble());
+                break;
+
+            case 7:
+                byte[] abyte = ((NBTTagByteArray) nbt).getByteArray();
+                buf.writeInt(abyte.length);
+                buf.writeBytes(abyte);
+                break;
+
+            case 8:
+                writeUTF(nbt.getString(), buf);
+                break;
+
+            case 9:
+                NBTTagList nbttaglist = (NBTTagList) nbt;
+                int i = nbttaglist.tagCount();
+                buf.writeByte(i > 0 ? nbttaglist.get(0).getId() : 0);
+                buf.writeInt(i);
+
+                for (int j = 0; j < i; ++j) {
+                    writeTag(nbttaglist.get(j), buf);
+                }
+
+                break;
+
+            case 10:
+                ((NBTTagCompound) nbt).writeTo(buf);
+                break;
+
+            case 11:
+                int[] aint = ((NBTTagIntArray) nbt).getIntArray();
+                buf.writeInt(aint.length);
+
+                for (int k = 0; k < aint.length; ++k) {
+                    buf.writeInt(aint[k]);
+                }
+        }
+    }
+
+    /**
+     * Writes the entries of a compound that has been decoded or built in memory, followed by the end tag
+     */
+    static void writeCompoundEntries(Map<String, NBTBase> tagMap, ByteBuf buf) throws IOException {
+        for (Map.Entry<String, NBTBase> entry : tagMap.entrySet()) {
+            NBTBase nbtbase = entry.getValue();
+            buf.writeByte(nbtbase.getId());
+
+            if (nbtbase.getId() != 0) {
+                writeUTF(entry.getKey(), buf);
+                writeTag(nbtbase, buf);
+            }
+        }
+
+        buf.writeByte(0);
+    }
+
+    /**
+     * Writes a string as DataOutput.writeUTF does: a short byte count followed by modified UTF-8
+     */
+    private static void writeUTF(String s, ByteBuf buf) throws IOException {
+        int i = s.length();
+        int j = i;
+
+        for (int k = 0; k < i; ++k) {
+            char c0 = s.charAt(k);
+
+            if (c0 >= 128 || c0 == 0) {
+                j += c0 >= 2048 ? 2 : 1;
+            }
+        }
+
+        if (j > 65535) {
+            throw new UTFDataFormatException("encoded string too long: " + j + " bytes");
+        } else {
+            buf.writeShort(j);
+
+            for (int l = 0; l < i; ++l) {
+                char c1 = s.charAt(l);
+
+                if (c1 >= 1 && c1 < 128) {
+                    buf.writeByte(c1);
+                } else if (c1 >= 2048) {
+                    buf.writeByte(224 | c1 >> 12 & 15);
+                    buf.writeByte(128 | c1 >> 6 & 63);
+                    buf.writeByte(128 | c1 & 63);
+                } else {
+                    buf.writeByte(192 | c1 >> 6 & 31);
+                    buf.writeByte(128 | c1 & 63);
+                }
+            }
+        }
+    }
+
+    private static String readUTF(ByteBuf buf) throws IOException {
+        int i = buf.readUnsignedShort();
+        char[] achar = new char[i];
+        int j = decodeUTF(buf, i, achar);
+        return new String(achar, 0, j);
+    }
+
+    /**
+     * Steps over a string, returning its length in chars
+     */
+    private static int skipUTF(ByteBuf buf) throws IOException {
+        return decodeUTF(buf, buf.readUnsignedShort(), null);
+    }
+
+    /**
+     * Decodes modified UTF-8 as DataInput.readUTF does, rejecting the same malformed input. Chars are stored into the
+     * given array unless it is null. Returns the number of chars.
+     */
+    private static int decodeUTF(ByteBuf buf, int byteLength, char[] chars) throws IOException {
+        int i = buf.readerIndex();
+        int j = i + byteLength;
+        int k = 0;
+
+        if (j > buf.writerIndex()) {
+            throw new IOException("String of " + byteLength + " bytes is longer than the remaining data");
+        } else {
+            while (i < j) {
+                int l = buf.getByte(i) & 255;
+                char c0;
+
+                switch (l >> 4) {
+                    case 0:
+                    case 1:
+                    case 2:
+                    case 3:
+                    case 4:
+                    case 5:
+                    case 6:
+                    case 7:
+                        ++i;
+                        c0 = (char) l;
+                        break;
+
+                    case 8:
+                    case 9:
+                    case 10:
+                    case 11:
+                    default:
+                        throw new UTFDataFormatException("malformed input around byte " + (i - buf.readerIndex()));
+
+                    case 12:
+                    case 13:
+                        i += 2;
+
+                        if (i > j) {
+                            throw new UTFDataFormatException("malformed input: partial character at end");
+                        }
+
+                        int i1 = buf.getByte(i - 1);
+
+                        if ((i1 & 192) != 128) {
+                            throw new UTFDataFormatException("malformed input around byte " + (i - buf.readerIndex()));
+                        }
+
+                        c0 = (char) ((l & 31) << 6 | i1 & 63);
+                        break;
+
+                    case 14:
+                        i += 3;
+
+                        if (i > j) {
+                            throw new UTFDataFormatException("malformed input: partial character at end");
+                        }
+
+                        int j1 = buf.getByte(i - 2);
+                        int k1 = buf.getByte(i - 1);
+
+                        if ((j1 & 192) != 128 || (k1 & 192) != 128) {
+                            throw new UTFDataFormatException("malformed input around byte " + (i - 1 - buf.readerIndex()));
+                        }
+
+                        c0 = (char) ((l & 15) << 12 | (j1 & 63) << 6 | k1 & 63);
+                }
+
+                if (chars != null) {
+                    chars[k] = c0;
+                }
+
+                ++k;
+            }
+
+            buf.readerIndex(j);
+            return k;
+        }
+    }
+
+    /**
+     * Where each compound of a tree ends, in the order their tags start. Entry 2 * i is the end of compound i, just past
+     * its end tag, relative to the start of the root body, and entry 2 * i + 1 is the index following the compounds
+     * nested in it.
+     */
+    static class Layout {
+        private final int base;
+        private int[] entries = new int[16];
+        private int count;
+
+        /**
+         * Whether some compound repeats a key
+         */
+        private boolean duplicateKeys;
+
+        Layout(int base) {
+            this.base = base;
+        }
+
+        private int begin() {
+            if (this.count * 2 + 2 > this.entries.length) {
+                this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+            }
+
+            return this.count++;
+        }
+
+        private void end(int index, int readerIndex) {
+            this.entries[index * 2] = readerIndex - this.base;
+            this.entries[index * 2 + 1] = this.count;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(this.entries, this.count * 2);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.minecraft.nbt;
 
 import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.crash.CrashReportCategory;
 import net.minecraft.util.ReportedException;
@@ -16,16 +17,84 @@ import java.util.concurrent.Callable;
 public class NBTTagCompound extends NBTBase {
     private final Map<String, NBTBase> tagMap = Maps.newHashMap();
 
+    /**
+     * Undecoded entries when this compound was read by NBTBufferCodec: the compound's body, from its first entry up to
+     * and including the end tag. Cleared once the entries are decoded into tagMap.
+     */
+    private volatile byte[] lazyData;
+    private int lazyOffset;
+    private int lazyLength;
+
+    /**
+     * Where the compounds of the tree read by NBTBufferCodec end, and the index of this one among them
+     */
+    private int[] lazyLayout;
+    private int lazyIndex;
+
+    static NBTTagCompound createLazy(byte[] data, int offset, int length, int[] layout, int index) {
+        NBTTagCompound nbttagcompound = new NBTTagCompound();
+        nbttagcompound.lazyOffset = offset;
+        nbttagcompound.lazyLength = length;
+        nbttagcompound.lazyLayout = layout;
+        nbttagcompound.lazyIndex = index;
+        nbttagcompound.lazyData = data;
+        return nbttagcompound;
+    }
+
+    /**
+     * Returns the entries, decoding them first if this compound is still lazy
+     */
+    private Map<String, NBTBase> getTagMap() {
+        if (this.lazyData != null) {
+            synchronized (this) {
+                byte[] abyte = this.lazyData;
+
+                if (abyte != null) {
+                    try {
+                        NBTBufferCodec.readCompoundEntries(abyte, this.lazyOffset, this.lazyLength, this.lazyLayout, this.lazyIndex, this.tagMap);
+                    } catch (IOException ioexception) {
+                        CrashReport crashreport = CrashReport.makeCrashReport(ioexception, "Loading NBT data");
+                        crashreport.makeCategory("NBT Tag").addCrashSection("Tag type", Byte.valueOf((byte) 10));
+                        throw new ReportedException(crashreport);
+                    }
+
+                    this.lazyData = null;
+                }
+            }
+        }
+
+        return this.tagMap;
+    }
+
+    /**
+     * Writes the body of this compound for NBTBufferCodec, copying the original bytes if it was never decoded
+     */
+    void writeTo(ByteBuf buf) throws IOException {
+        byte[] abyte = this.lazyData;
+
+        if (abyte != null) {
+            buf.writeBytes(abyte, this.lazyOffset, this.lazyLength);
+        } else {
+            NBTBufferCodec.writeCompoundEntries(this.tagMap, buf);
+        }
+    }
+
     /**
      * Write the actual data contents of the tag, implemented in NBT extension classes
      */
     void write(DataOutput output) throws IOException {
-        for (String s : this.tagMap.keySet()) {
-            NBTBase nbtbase = this.tagMap.get(s);
-            writeEntry(s, nbtbase, output);
-        }
+        byte[] abyte = this.lazyData;
 
-        output.writeByte(0);
+        if (abyte != null) {
+            output.write(abyte, this.lazyOffset, this.lazyLength);
+        } else {
+            for (String s : this.tagMap.keySet()) {
+                NBTBase nbtbase = this.tagMap.get(s);
+                writeEntry(s, nbtbase, output);
+            }
+
+            output.writeByte(0);
+        }
     }
 
     void read(DataInput input, int depth, NBTSizeTracker sizeTracker) throws IOException {
@@ -34,6 +103,7 @@ public class NBTTagCompound extends NBTBase {
         if (depth > 512) {
             throw new RuntimeException("Tried to read NBT tag with too high complexity, depth > 512");
         } else {
+            this.lazyData = null;
             this.tagMap.clear();
             byte b0;
 
@@ -42,7 +112,7 @@ public class NBTTagCompound extends NBTBase {
                 sizeTracker.read(224 + 16L * s.length());
                 NBTBase nbtbase = readNBT(b0, s, input, depth + 1, sizeTracker);
 
-                if (this.tagMap.put(s, nbtbase) != null) {
+                if (this.getTagMap().put(s, nbtbase) != null) {
                     sizeTracker.read(288L);
                 }
             }
@@ -50,7 +120,7 @@ public class NBTTagCompound extends NBTBase {
     }
 
     public Set<String> getKeySet() {
-        return this.tagMap.keySet();
+        return this.getTagMap().keySet();
     }
 
     /**
@@ -64,70 +134,70 @@ public class NBTTagCompound extends NBTBase {
      * Stores the given tag into the map with the given string key. This is mostly used to store tag lists.
      */
     public void setTag(String key, NBTBase value) {
-        this.tagMap.put(key, value);
+        this.getTagMap().put(key, value);
     }
 
     /**
      * Stores a new NBTTagByte with the given byte value into the map with the given string key.
      */
     public void setByte(String key, byte value) {
-        this.tagMap.put(key, new NBTTagByte(value));
+        this.getTagMap().put(key, new NBTTagByte(value));
     }
 
     /**
      * Stores a new NBTTagShort with the given short value into the map with the given string key.
      */
     public void setShort(String key, short value) {
-        this.tagMap.put(key, new NBTTagShort(value));
+        this.getTagMap().put(key, new NBTTagShort(value));
     }
 
     /**
      * Stores a new NBTTagInt with the given integer value into the map with the given string key.
      */
     public void setInteger(String key, int value) {
-        this.tagMap.put(key, new NBTTagInt(value));
+        this.getTagMap().put(key, new NBTTagInt(value));
     }
 
     /**
      * Stores a new NBTTagLong with the given long value into the map with the given string key.
      */
     public void setLong(String key, long value) {
-        this.tagMap.put(key, new NBTTagLong(value));
+        this.getTagMap().put(key, new NBTTagLong(value));
     }
 
     /**
      * Stores a new NBTTagFloat with the given float value into the map with the given string key.
      */
     public void setFloat(String key, float value) {
-        this.tagMap.put(key, new NBTTagFloat(value));
+        this.getTagMap().put(key, new NBTTagFloat(value));
     }
 
     /**
      * Stores a new NBTTagDouble with the given double value into the map with the given string key.
      */
     public void setDouble(String key, double value) {
-        this.tagMap.put(key, new NBTTagDouble(value));
+        this.getTagMap().put(key, new NBTTagDouble(value));
     }
 
     /**
      * Stores a new NBTTagString with the given string value into the map with the given string key.
      */
     public void setString(String key, String value) {
-        this.tagMap.put(key, new NBTTagString(value));
+        this.getTagMap().put(key, new NBTTagString(value));
     }
 
     /**
      * Stores a new NBTTagByteArray with the given array as data into the map with the given string key.
      */
     public void setByteArray(String key, byte[] value) {
-        this.tagMap.put(key, new NBTTagByteArray(value));
+        this.getTagMap().put(key, new NBTTagByteArray(value));
     }
 
     /**
      * Stores a new NBTTagIntArray with the given array as data into the map with the given string key.
      */
     public void setIntArray(String key, int[] value) {
-        this.tagMap.put(key, new NBTTagIntArray(value));
+        this.getTagMap().put(key, new NBTTagIntArray(value));
     }
 
     /**
@@ -141,14 +211,14 @@ public class NBTTagCompound extends NBTBase {
      * gets a generic tag with the specified name
      */
     public NBTBase getTag(String key) {
-        return this.tagMap.get(key);
+        return this.getTagMap().get(key);
     }
 
     /**
      * Gets the ID byte for the given tag key
      */
     public byte getTagId(String key) {
-        NBTBase nbtbase = this.tagMap.get(key);
+        NBTBase nbtbase = this.getTagMap().get(key);
         return nbtbase != null ? nbtbase.getId() : 0;
     }
 
@@ -156,7 +226,7 @@ public class NBTTagCompound extends NBTBase {
      * Returns whether the given string has been previously stored as a key in the map.
      */
     public boolean hasKey(String key) {
-        return this.tagMap.containsKey(key);
+        return this.getTagMap().containsKey(key);
     }
 
     public boolean hasKey(String key, int type) {
@@ -179,7 +249,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public byte getByte(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getByte();
+            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getByte();
         } catch (ClassCastException var3) {
             return (byte) 0;
         }
@@ -190,7 +260,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public short getShort(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getShort();
+            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getShort();
         } catch (ClassCastException var3) {
             return (short) 0;
         }
@@ -201,7 +271,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public int getInteger(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getInt();
+            return !this.hasKey(key, 99) ? 0 : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getInt();
         } catch (ClassCastException var3) {
             return 0;
         }
@@ -212,7 +282,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public long getLong(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0L : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getLong();
+            return !this.hasKey(key, 99) ? 0L : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getLong();
         } catch (ClassCastException var3) {
             return 0L;
         }
@@ -223,7 +293,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public float getFloat(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0.0F : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getFloat();
+            return !this.hasKey(key, 99) ? 0.0F : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getFloat();
         } catch (ClassCastException var3) {
             return 0.0F;
         }
@@ -234,7 +304,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public double getDouble(String key) {
         try {
-            return !this.hasKey(key, 99) ? 0.0D : ((NBTBase.NBTPrimitive) this.tagMap.get(key)).getDouble();
+            return !this.hasKey(key, 99) ? 0.0D : ((NBTBase.NBTPrimitive) this.getTagMap().get(key)).getDouble();
         } catch (ClassCastException var3) {
             return 0.0D;
         }
@@ -245,7 +315,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public String getString(String key) {
         try {
-            return !this.hasKey(key, 8) ? "" : this.tagMap.get(key).getString();
+            return !this.hasKey(key, 8) ? "" : this.getTagMap().get(key).getString();
         } catch (ClassCastException var3) {
             return "";
         }
@@ -256,7 +326,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public byte[] getByteArray(String key) {
         try {
-            return !this.hasKey(key, 7) ? new byte[0] : ((NBTTagByteArray) this.tagMap.get(key)).getByteArray();
+            return !this.hasKey(key, 7) ? new byte[0] : ((NBTTagByteArray) this.getTagMap().get(key)).getByteArray();
         } catch (ClassCastException classcastexception) {
             throw new ReportedException(this.createCrashReport(key, 7, classcastexception));
         }
@@ -267,7 +337,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public int[] getIntArray(String key) {
         try {
-            return !this.hasKey(key, 11) ? new int[0] : ((NBTTagIntArray) this.tagMap.get(key)).getIntArray();
+            return !this.hasKey(key, 11) ? new int[0] : ((NBTTagIntArray) this.getTagMap().get(key)).getIntArray();
         } catch (ClassCastException classcastexception) {
             throw new ReportedException(this.createCrashReport(key, 11, classcastexception));
         }
@@ -279,7 +349,7 @@ public class NBTTagCompound extends NBTBase {
      */
     public NBTTagCompound getCompoundTag(String key) {
         try {
-            return !this.hasKey(key, 10) ? new NBTTagCompound() : (NBTTagCompound) this.tagMap.get(key);
+            return !this.hasKey(key, 10) ? new NBTTagCompound() : (NBTTagCompound) this.getTagMap().get(key);
         } catch (ClassCastException classcastexception) {
             throw new ReportedException(this.createCrashReport(key, 10, classcastexception));
         }
@@ -293,7 +363,7 @@ public class NBTTagCompound extends NBTBase {
             if (this.getTagId(key) != 9) {
                 return new NBTTagList();
             } else {
-                NBTTagList nbttaglist = (NBTTagList) this.tagMap.get(key);
+                NBTTagList nbttaglist = (NBTTagList) this.getTagMap().get(key);
                 return nbttaglist.tagCount() > 0 && nbttaglist.getTagType() != type ? new NBTTagList() : nbttaglist;
             }
         } catch (ClassCastException classcastexception) {
@@ -313,13 +383,13 @@ public class NBTTagCompound extends NBTBase {
      * Remove the specified tag.
      */
     public void removeTag(String key) {
-        this.tagMap.remove(key);
+        this.getTagMap().remove(key);
     }
 
     public String toString() {
         StringBuilder stringbuilder = new StringBuilder("{");
 
-        for (Entry<String, NBTBase> entry : this.tagMap.entrySet()) {
+        for (Entry<String, NBTBase> entry : this.getTagMap().entrySet()) {
             if (stringbuilder.length() != 1) {
                 stringbuilder.append(',');
             }
@@ -334,7 +404,7 @@ public class NBTTagCompound extends NBTBase {
      * Return whether this compound has no tags.
      */
     public boolean hasNoTags() {
-        return this.tagMap.isEmpty();
+        return this.lazyData != null ? this.lazyLength <= 1 : this.tagMap.isEmpty();
     }
 
     /**
@@ -345,7 +415,7 @@ public class NBTTagCompound extends NBTBase {
         CrashReportCategory crashreportcategory = crashreport.makeCategoryDepth("Corrupt NBT tag", 1);
         crashreportcategory.addCrashSectionCallable("Tag type found", new Callable<String>() {
             public String call() throws Exception {
-                return NBTBase.NBT_TYPES[NBTTagCompound.this.tagMap.get(key).getId()];
+                return NBTBase.NBT_TYPES[NBTTagCompound.this.getTagMap().get(key).getId()];
             }
         });
         crashreportcategory.addCrashSectionCallable("Tag type expected", new Callable<String>() {
@@ -361,26 +431,32 @@ public class NBTTagCompound extends NBTBase {
      * Creates a clone of the tag.
      */
     public NBTBase copy() {
-        NBTTagCompound nbttagcompound = new NBTTagCompound();
+        byte[] abyte = this.lazyData;
 
-        for (String s : this.tagMap.keySet()) {
-            nbttagcompound.setTag(s, this.tagMap.get(s).copy());
-        }
+        if (abyte != null) {
+            return createLazy(abyte, this.lazyOffset, this.lazyLength, this.lazyLayout, this.lazyIndex);
+        } else {
+            NBTTagCompound nbttagcompound = new NBTTagCompound();
 
-        return nbttagcompound;
+            for (String s : this.tagMap.keySet()) {
+                nbttagcompound.setTag(s, this.tagMap.get(s).copy());
+            }
+
+            return nbttagcompound;
+        }
     }
 
     public boolean equals(Object p_equals_1_) {
         if (super.equals(p_equals_1_)) {
             NBTTagCompound nbttagcompound = (NBTTagCompound) p_equals_1_;
-            return this.tagMap.entrySet().equals(nbttagcompound.tagMap.entrySet());
+            return this.getTagMap().entrySet().equals(nbttagcompound.getTagMap().entrySet());
         } else {
             return false;
         }
     }
 
     public int hashCode() {
-        return super.hashCode() ^ this.tagMap.hashCode();
+        return super.hashCode() ^ this.getTagMap().hashCode();
     }
 
     private static void writeEntry(String name, NBTBase data, DataOutput output) throws IOException {
@@ -420,8 +496,8 @@ public class NBTTagCompound extends NBTBase {
      * types of tags are overwritten from the given compound.
      */
     public void merge(NBTTagCompound other) {
-        for (String s : other.tagMap.keySet()) {
-            NBTBase nbtbase = other.tagMap.get(s);
+        for (String s : other.getTagMap().keySet()) {
+            NBTBase nbtbase = other.getTagMap().get(s);
 
             if (nbtbase.getId() == 10) {
                 if (this.hasKey(s, 10)) {
@@ -60,6 +60,14 @@ public class NBTTagList extends NBTBase {
         }
     }
 
+    /**
+     * Replaces the contents with tags already decoded elsewhere, keeping the type byte as read even for empty lists
+     */
+    void setTags(byte type, List<NBTBase> tags) {
+        this.tagType = type;
+        this.tagList = tags;
+    }
+
     /**
      * Gets the type byte for the tag.
      */
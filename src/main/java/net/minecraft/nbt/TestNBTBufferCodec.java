@@ -0,0 +1,232 @@
+package net.minecraft.nbt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks NBTBufferCodec against CompressedStreamTools: random trees must read back equal, write back byte for byte
+ * while untouched, charge the size tracker the same total and fail the same size limits. Also covers compounds that
+ * repeat a key, which only a hand-written stream can contain. Args: [trees]
+ */
+public class TestNBTBufferCodec {
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        int i = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(0L);
+
+        for (int j = 0; j < i; ++j) {
+            checkTree(randomCompound(random, 0), random);
+        }
+
+        checkDuplicateKeys();
+        System.out.println(i + " random trees, " + failures + " failures");
+    }
+
+    private static void checkTree(NBTTagCompound nbt, Random random) throws IOException {
+        ByteArrayOutputStream bytearrayoutputstream = new ByteArrayOutputStream();
+        CompressedStreamTools.write(nbt, new DataOutputStream(bytearrayoutputstream));
+        byte[] abyte = bytearrayoutputstream.toByteArray();
+        TestNBTBufferCodec.CountingSizeTracker testnbtbuffercodec$countingsizetracker = new TestNBTBufferCodec.CountingSizeTracker(Long.MAX_VALUE);
+        TestNBTBufferCodec.CountingSizeTracker testnbtbuffercodec$countingsizetracker1 = new TestNBTBufferCodec.CountingSizeTracker(Long.MAX_VALUE);
+        NBTTagCompound nbttagcompound = CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(abyte)), testnbtbuffercodec$countingsizetracker);
+        NBTTagCompound nbttagcompound1 = NBTBufferCodec.read(Unpooled.wrappedBuffer(abyte), testnbtbuffercodec$countingsizetracker1);
+        check(testnbtbuffercodec$countingsizetracker.total == testnbtbuffercodec$countingsizetracker1.total, "Size tracker charged " + testnbtbuffercodec$countingsizetracker1.total + ", stream read charged " + testnbtbuffercodec$countingsizetracker.total);
+        check(Arrays.equals(abyte, write(nbttagcompound1.copy())), "Untouched copy did not write back the bytes it was read from");
+        check(Arrays.equals(abyte, write(nbttagcompound1)), "Untouched compound did not write back the bytes it was read from");
+        touch(nbttagcompound1, random);
+        check(nbttagcompound.equals(CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(write(nbttagcompound1))))), "Partly decoded compound wrote back a different tree");
+        check(nbttagcompound.equals(nbttagcompound1), "Read a different tree than the stream read");
+        check(nbt.equals(nbttagcompound1), "Read a different tree than was written");
+        checkLimit(abyte, testnbtbuffercodec$countingsizetracker.total);
+    }
+
+    /**
+     * The codec must fail a limit one byte under the total and pass the total, as the stream read does
+     */
+    private static void checkLimit(byte[] data, long total) throws IOException {
+        check(!readsWithin(data, total - 1L, false) && !readsWithin(data, total - 1L, true), "Read past a limit one byte under the total");
+        check(readsWithin(data, total, false) && readsWithin(data, total, true), "Failed a limit equal to the total");
+    }
+
+    private static boolean readsWithin(byte[] data, long max, boolean codec) throws IOException {
+        try {
+            if (codec) {
+                NBTBufferCodec.read(Unpooled.wrappedBuffer(data), new NBTSizeTracker(max));
+            } else {
+                CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(data)), new NBTSizeTracker(max));
+            }
+
+            return true;
+        } catch (RuntimeException runtimeexception) {
+            return false;
+        }
+    }
+
+    /**
+     * {a: 1, a: 2, b: {c: 3b, c: 4b}}, written by hand since NBTTagCompound cannot hold a repeated key
+     */
+    private static void checkDuplicateKeys() throws IOException {
+        ByteArrayOutputStream bytearrayoutputstream = new ByteArrayOutputStream();
+        DataOutputStream dataoutputstream = new DataOutputStream(bytearrayoutputstream);
+        dataoutputstream.writeByte(10);
+        dataoutputstream.writeUTF("");
+        dataoutputstream.writeByte(3);
+        dataoutputstream.writeUTF("a");
+        dataoutputstream.writeInt(1);
+        dataoutputstream.writeByte(3);
+        dataoutputstream.writeUTF("a");
+        dataoutputstream.writeInt(2);
+        dataoutputstream.writeByte(10);
+        dataoutputstream.writeUTF("b");
+        dataoutputstream.writeByte(1);
+        dataoutputstream.writeUTF("c");
+        dataoutputstream.writeByte(3);
+        dataoutputstream.writeByte(1);
+        dataoutputstream.writeUTF("c");
+        dataoutputstream.writeByte(4);
+        dataoutputstream.writeByte(0);
+        dataoutputstream.writeByte(0);
+        byte[] abyte = bytearrayoutputstream.toByteArray();
+        TestNBTBufferCodec.CountingSizeTracker testnbtbuffercodec$countingsizetracker = new TestNBTBufferCodec.CountingSizeTracker(Long.MAX_VALUE);
+        TestNBTBufferCodec.CountingSizeTracker testnbtbuffercodec$countingsizetracker1 = new TestNBTBufferCodec.CountingSizeTracker(Long.MAX_VALUE);
+        NBTTagCompound nbttagcompound = CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(abyte)), testnbtbuffercodec$countingsizetracker);
+        NBTTagCompound nbttagcompound1 = NBTBufferCodec.read(Unpooled.wrappedBuffer(abyte), testnbtbuffercodec$countingsizetracker1);
+        check(testnbtbuffercodec$countingsizetracker.total == testnbtbuffercodec$countingsizetracker1.total, "Repeated keys: size tracker charged " + testnbtbuffercodec$countingsizetracker1.total + ", stream read charged " + testnbtbuffercodec$countingsizetracker.total);
+        check(Arrays.equals(write(nbttagcompound), write(nbttagcompound1)), "Repeated keys were written back verbatim");
+        check(nbttagcompound.getInteger("a") == 2 && nbttagcompound1.getInteger("a") == 2 && nbttagcompound1.getCompoundTag("b").getByte("c") == 4, "Repeated keys did not keep the last entry");
+        checkLimit(abyte, testnbtbuffercodec$countingsizetracker.total);
+    }
+
+    /**
+     * Decodes some of the compounds in the tree and leaves the rest lazy
+     */
+    private static void touch(NBTBase nbt, Random random) {
+        if (nbt instanceof NBTTagCompound && random.nextBoolean()) {
+            NBTTagCompound nbttagcompound = (NBTTagCompound) nbt;
+
+            for (String s : nbttagcompound.getKeySet()) {
+                touch(nbttagcompound.getTag(s), random);
+            }
+        } else if (nbt instanceof NBTTagList) {
+            NBTTagList nbttaglist = (NBTTagList) nbt;
+
+            for (int i = 0; i < nbttaglist.tagCount(); ++i) {
+                touch(nbttaglist.get(i), random);
+            }
+        }
+    }
+
+    private static byte[] write(NBTBase nbt) throws IOException {
+        ByteBuf bytebuf = Unpooled.buffer();
+        NBTBufferCodec.write((NBTTagCompound) nbt, bytebuf);
+        byte[] abyte = new byte[bytebuf.readableBytes()];
+        bytebuf.readBytes(abyte);
+        return abyte;
+    }
+
+    private static NBTTagCompound randomCompound(Random random, int depth) {
+        NBTTagCompound nbttagcompound = new NBTTagCompound();
+        int i = random.nextInt(depth < 4 ? 8 : 3);
+
+        for (int j = 0; j < i; ++j) {
+            nbttagcompound.setTag(randomKey(random), randomTag(random, 1 + random.nextInt(depth < 4 ? 11 : 8), depth));
+        }
+
+        return nbttagcompound;
+    }
+
+    private static NBTBase randomTag(Random random, int id, int depth) {
+        switch (id) {
+            case 1:
+                return new NBTTagByte((byte) random.nextInt());
+
+            case 2:
+                return new NBTTagShort((short) random.nextInt());
+
+            case 3:
+                return new NBTTagInt(random.nextInt());
+
+            case 4:
+                return new NBTTagLong(random.nextLong());
+
+            case 5:
+                return new NBTTagFloat(random.nextFloat());
+
+            case 6:
+                return new NBTTagDouble(random.nextDouble());
+
+            case 7:
+                byte[] abyte = new byte[random.nextInt(32)];
+                random.nextBytes(abyte);
+                return new NBTTagByteArray(abyte);
+
+            case 8:
+                return new NBTTagString(randomKey(random));
+
+            case 9:
+                NBTTagList nbttaglist = new NBTTagList();
+                int i = 1 + random.nextInt(depth < 4 ? 11 : 8);
+                int j = random.nextInt(4);
+
+                for (int k = 0; k < j; ++k) {
+                    nbttaglist.appendTag(randomTag(random, i, depth + 1));
+                }
+
+                return nbttaglist;
+
+            case 10:
+                return randomCompound(random, depth + 1);
+
+            default:
+                int[] aint = new int[random.nextInt(8)];
+
+                for (int l = 0; l < aint.length; ++l) {
+                    aint[l] = random.nextInt();
+                }
+
+                return new NBTTagIntArray(aint);
+        }
+    }
+
+    /**
+     * Short keys from a small alphabet, including chars that take two and three bytes in modified UTF-8
+     */
+    private static String randomKey(Random random) {
+        char[] achar = new char[random.nextInt(6)];
+
+        for (int i = 0; i < achar.length; ++i) {
+            achar[i] = "ab\0\u00e9\u4e2d".charAt(random.nextInt(5));
+        }
+
+        return new String(achar);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            ++failures;
+            System.out.println(message);
+        }
+    }
+
+    static class CountingSizeTracker extends NBTSizeTracker {
+        private long total;
+
+        public CountingSizeTracker(long max) {
+            super(max);
+        }
+
+        public void read(long bits) {
+            this.total += bits / 8L;
+            super.read(bits);
+        }
+    }
+}
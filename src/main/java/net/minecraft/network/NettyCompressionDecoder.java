@@ -1,18 +1,24 @@
 package net.minecraft.network;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderException;
 
 import java.util.List;
+import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
 public class NettyCompressionDecoder extends ByteToMessageDecoder {
     private final Inflater inflater;
     private int treshold;
 
+    /**
+     * Scratch copy of the compressed payload for inputs without an accessible backing array, grown on demand and
+     * reused
+     */
+    private byte[] inputBuffer = new byte[0];
+
     public NettyCompressionDecoder(int treshold) {
         this.treshold = treshold;
         this.inflater = new Inflater();
@@ -34,13 +40,33 @@ public class NettyCompressionDecoder extends ByteToMessageDecoder {
                     throw new DecoderException("Badly compressed packet - size of " + i + " is larger than protocol maximum of " + 2097152);
                 }
 
-                byte[] abyte = new byte[packetbuffer.readableBytes()];
-                packetbuffer.readBytes(abyte);
-                this.inflater.setInput(abyte);
-                byte[] abyte1 = new byte[i];
-                this.inflater.inflate(abyte1);
-                p_decode_3_.add(Unpooled.wrappedBuffer(abyte1));
-                this.inflater.reset();
+                int j = p_decode_2_.readableBytes();
+
+                if (p_decode_2_.hasArray()) {
+                    this.inflater.setInput(p_decode_2_.array(), p_decode_2_.arrayOffset() + p_decode_2_.readerIndex(), j);
+                } else {
+                    if (this.inputBuffer.length < j) {
+                        this.inputBuffer = new byte[j];
+                    }
+
+                    p_decode_2_.getBytes(p_decode_2_.readerIndex(), this.inputBuffer, 0, j);
+                    this.inflater.setInput(this.inputBuffer, 0, j);
+                }
+
+                p_decode_2_.skipBytes(j);
+                ByteBuf bytebuf = p_decode_1_.alloc().heapBuffer(i, i);
+
+                try {
+                    this.inflater.inflate(bytebuf.array(), bytebuf.arrayOffset(), i);
+                    bytebuf.writerIndex(i);
+                } catch (DataFormatException dataformatexception) {
+                    bytebuf.release();
+                    throw dataformatexception;
+                } finally {
+                    this.inflater.reset();
+                }
+
+                p_decode_3_.add(bytebuf);
             }
         }
     }
@@ -11,7 +11,14 @@ public class NettyCompressionEncoder extends MessageToByteEncoder<ByteBuf> {
     private final Deflater deflater;
     private int treshold;
 
+    /**
+     * Scratch copy of the packet for inputs without an accessible backing array, grown on demand and reused
+     */
+    private byte[] inputBuffer = new byte[0];
+
     public NettyCompressionEncoder(int treshold) {
+        // Ask for pooled heap buffers so the deflater can write straight into the outgoing buffer's array
+        super(false);
         this.treshold = treshold;
         this.deflater = new Deflater();
     }
@@ -24,15 +31,31 @@ public class NettyCompressionEncoder extends MessageToByteEncoder<ByteBuf> {
             packetbuffer.writeVarIntToBuffer(0);
             packetbuffer.writeBytes(p_encode_2_);
         } else {
-            byte[] abyte = new byte[i];
-            p_encode_2_.readBytes(abyte);
-            packetbuffer.writeVarIntToBuffer(abyte.length);
-            this.deflater.setInput(abyte, 0, i);
+            packetbuffer.writeVarIntToBuffer(i);
+
+            if (p_encode_2_.hasArray()) {
+                this.deflater.setInput(p_encode_2_.array(), p_encode_2_.arrayOffset() + p_encode_2_.readerIndex(), i);
+            } else {
+                if (this.inputBuffer.length < i) {
+                    this.inputBuffer = new byte[i];
+                }
+
+                p_encode_2_.getBytes(p_encode_2_.readerIndex(), this.inputBuffer, 0, i);
+                this.deflater.setInput(this.inputBuffer, 0, i);
+            }
+
+            p_encode_2_.skipBytes(i);
             this.deflater.finish();
 
             while (!this.deflater.finished()) {
-                int j = this.deflater.deflate(this.buffer);
-                packetbuffer.writeBytes(this.buffer, 0, j);
+                if (p_encode_3_.hasArray()) {
+                    p_encode_3_.ensureWritable(this.buffer.length);
+                    int j = this.deflater.deflate(p_encode_3_.array(), p_encode_3_.arrayOffset() + p_encode_3_.writerIndex(), p_encode_3_.writableBytes());
+                    p_encode_3_.writerIndex(p_encode_3_.writerIndex() + j);
+                } else {
+                    int j = this.deflater.deflate(this.buffer);
+                    p_encode_3_.writeBytes(this.buffer, 0, j);
+                }
             }
 
             this.deflater.reset();
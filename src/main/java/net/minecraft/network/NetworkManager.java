@@ -42,7 +42,7 @@ import javax.crypto.SecretKey;
 import java.net.InetAddress;
 import java.net.SocketAddress;
 import java.util.Queue;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
     private static final Logger logger = LogManager.getLogger();
@@ -65,7 +65,22 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
         }
     };
     private final Queue<NetworkManager.InboundHandlerTuplePacketListener> outboundPacketsQueue = Queues.newConcurrentLinkedQueue();
-    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    /**
+     * Packets handed to the channel but not yet written. Any thread may add to it; only the event loop drains it, in
+     * one task that writes everything pending and flushes once.
+     */
+    private final Queue<NetworkManager.InboundHandlerTuplePacketListener> pendingWrites = Queues.newConcurrentLinkedQueue();
+
+    /**
+     * Set while a drain task is submitted to the event loop and has not started yet
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainTask = new Runnable() {
+        public void run() {
+            NetworkManager.this.drainPendingWrites();
+        }
+    };
 
     /**
      * The active channel
@@ -168,13 +183,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
             this.flushOutboundQueue();
             this.dispatchPacket(packetIn, null);
         } else {
-            this.readWriteLock.writeLock().lock();
-
-            try {
-                this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(packetIn, (GenericFutureListener[]) null));
-            } finally {
-                this.readWriteLock.writeLock().unlock();
-            }
+            this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(packetIn, (GenericFutureListener[]) null));
         }
     }
 
@@ -189,13 +198,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
             this.flushOutboundQueue();
             this.dispatchPacket(event.getPacket(), null);
         } else {
-            this.readWriteLock.writeLock().lock();
-
-            try {
-                this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(event.getPacket(), (GenericFutureListener[]) null));
-            } finally {
-                this.readWriteLock.writeLock().unlock();
-            }
+            this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(event.getPacket(), (GenericFutureListener[]) null));
         }
     }
 
@@ -204,57 +207,57 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
             this.flushOutboundQueue();
             this.dispatchPacket(packetIn, ArrayUtils.add(listeners, 0, listener));
         } else {
-            this.readWriteLock.writeLock().lock();
-
-            try {
-                this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(packetIn, ArrayUtils.add(listeners, 0, listener)));
-            } finally {
-                this.readWriteLock.writeLock().unlock();
-            }
+            this.outboundPacketsQueue.add(new NetworkManager.InboundHandlerTuplePacketListener(packetIn, ArrayUtils.add(listeners, 0, listener)));
         }
     }
 
     /**
-     * Will commit the packet to the channel. If the current thread 'owns' the channel it will write and flush the
-     * packet, otherwise it will add a task for the channel eventloop thread to do that.
+     * Will commit the packet to the channel. The packet joins the pending writes, which the event loop writes in order
+     * and flushes once per drain; if the current thread 'owns' the channel the drain runs right away, otherwise a
+     * single drain task is submitted for however many packets arrive before it runs.
      */
     private void dispatchPacket(final Packet inPacket, final GenericFutureListener<? extends Future<? super Void>>[] futureListeners) {
-        final EnumConnectionState enumconnectionstate = EnumConnectionState.getFromPacket(inPacket);
-        final EnumConnectionState enumconnectionstate1 = this.channel.attr(attrKeyConnectionState).get();
-
-        if (enumconnectionstate1 != enumconnectionstate) {
+        if (this.channel.attr(attrKeyConnectionState).get() != EnumConnectionState.getFromPacket(inPacket)) {
             logger.debug("Disabled auto read");
             this.channel.config().setAutoRead(false);
         }
 
+        this.pendingWrites.add(new NetworkManager.InboundHandlerTuplePacketListener(inPacket, futureListeners));
+
         if (this.channel.eventLoop().inEventLoop()) {
-            if (enumconnectionstate != enumconnectionstate1) {
+            this.drainPendingWrites();
+        } else if (this.drainScheduled.compareAndSet(false, true)) {
+            this.channel.eventLoop().execute(this.drainTask);
+        }
+    }
+
+    /**
+     * Writes every pending packet and flushes the channel once. Must run on the channel's event loop.
+     */
+    private void drainPendingWrites() {
+        this.drainScheduled.set(false);
+        boolean flag = false;
+        NetworkManager.InboundHandlerTuplePacketListener networkmanager$inboundhandlertuplepacketlistener;
+
+        while ((networkmanager$inboundhandlertuplepacketlistener = this.pendingWrites.poll()) != null) {
+            EnumConnectionState enumconnectionstate = EnumConnectionState.getFromPacket(networkmanager$inboundhandlertuplepacketlistener.packet);
+
+            if (enumconnectionstate != this.channel.attr(attrKeyConnectionState).get()) {
                 this.setConnectionState(enumconnectionstate);
             }
 
-            ChannelFuture channelfuture = this.channel.writeAndFlush(inPacket);
+            ChannelFuture channelfuture = this.channel.write(networkmanager$inboundhandlertuplepacketlistener.packet);
 
-            if (futureListeners != null) {
-                channelfuture.addListeners(futureListeners);
+            if (networkmanager$inboundhandlertuplepacketlistener.futureListeners != null) {
+                channelfuture.addListeners(networkmanager$inboundhandlertuplepacketlistener.futureListeners);
             }
 
             channelfuture.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
-        } else {
-            this.channel.eventLoop().execute(new Runnable() {
-                public void run() {
-                    if (enumconnectionstate != enumconnectionstate1) {
-                        NetworkManager.this.setConnectionState(enumconnectionstate);
-                    }
-
-                    ChannelFuture channelfuture1 = NetworkManager.this.channel.writeAndFlush(inPacket);
-
-                    if (futureListeners != null) {
-                        channelfuture1.addListeners(futureListeners);
-                    }
+            flag = true;
+        }
 
-                    channelfuture1.addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
-                }
-            });
+        if (flag) {
+            this.channel.flush();
         }
     }
 
@@ -263,15 +266,10 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
      */
     private void flushOutboundQueue() {
         if (this.channel != null && this.channel.isOpen()) {
-            this.readWriteLock.readLock().lock();
+            NetworkManager.InboundHandlerTuplePacketListener networkmanager$inboundhandlertuplepacketlistener;
 
-            try {
-                while (!this.outboundPacketsQueue.isEmpty()) {
-                    NetworkManager.InboundHandlerTuplePacketListener networkmanager$inboundhandlertuplepacketlistener = this.outboundPacketsQueue.poll();
-                    this.dispatchPacket(networkmanager$inboundhandlertuplepacketlistener.packet, networkmanager$inboundhandlertuplepacketlistener.futureListeners);
-                }
-            } finally {
-                this.readWriteLock.readLock().unlock();
+            while ((networkmanager$inboundhandlertuplepacketlistener = this.outboundPacketsQueue.poll()) != null) {
+                this.dispatchPacket(networkmanager$inboundhandlertuplepacketlistener.packet, networkmanager$inboundhandlertuplepacketlistener.futureListeners);
             }
         }
     }
@@ -421,7 +419,7 @@ public class NetworkManager extends SimpleChannelInboundHandler<Packet> {
             }
 
             if (this.channel.pipeline().get("compress") instanceof NettyCompressionEncoder) {
-                ((NettyCompressionEncoder) this.channel.pipeline().get("decompress")).setCompressionTreshold(threshold);
+                ((NettyCompressionEncoder) this.channel.pipeline().get("compress")).setCompressionTreshold(threshold);
             } else {
                 this.channel.pipeline().addBefore("encoder", "compress", new NettyCompressionEncoder(threshold));
             }
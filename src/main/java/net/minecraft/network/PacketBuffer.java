@@ -6,7 +6,7 @@ import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTBufferCodec;
 import net.minecraft.nbt.NBTSizeTracker;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
@@ -163,7 +163,7 @@ public class PacketBuffer extends ByteBuf {
             this.writeByte(0);
         } else {
             try {
-                CompressedStreamTools.write(nbt, new ByteBufOutputStream(this));
+                NBTBufferCodec.write(nbt, this.buf);
             } catch (IOException ioexception) {
                 throw new EncoderException(ioexception);
             }
@@ -181,7 +181,7 @@ public class PacketBuffer extends ByteBuf {
             return null;
         } else {
             this.readerIndex(i);
-            return CompressedStreamTools.read(new ByteBufInputStream(this), new NBTSizeTracker(2097152L));
+            return NBTBufferCodec.read(this.buf, new NBTSizeTracker(2097152L));
         }
     }
 
@@ -5,6 +5,7 @@ import net.minecraft.network.Packet;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.INetHandlerPlayClient;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.DecodedChunkData;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import java.io.IOException;
@@ -15,6 +16,7 @@ public class S21PacketChunkData implements Packet<INetHandlerPlayClient> {
     private int chunkZ;
     private S21PacketChunkData.Extracted extractedData;
     private boolean field_149279_g;
+    private DecodedChunkData decodedData;
 
     public S21PacketChunkData() {
     }
@@ -60,7 +62,26 @@ public class S21PacketChunkData implements Packet<INetHandlerPlayClient> {
         return this.extractedData.data;
     }
 
-    protected static int func_180737_a(int p_180737_0_, boolean p_180737_1_, boolean p_180737_2_) {
+    /**
+     * Unpacks the chunk data ahead of the main thread. The packet does not say whether the world has sky light, so
+     * that is inferred from the data length.
+     */
+    public void decodeChunkData() {
+        if (this.decodedData == null && (!this.field_149279_g || this.extractedData.dataSize != 0)) {
+            int i = this.extractedData.dataSize & 65535;
+            boolean flag = this.extractedData.data.length == func_180737_a(Integer.bitCount(i), true, this.field_149279_g);
+            this.decodedData = DecodedChunkData.decode(this.extractedData.data, i, this.field_149279_g, flag);
+        }
+    }
+
+    /**
+     * Returns the chunk data unpacked by {@link #decodeChunkData}, or null if it was not decoded
+     */
+    public DecodedChunkData getDecodedData() {
+        return this.decodedData;
+    }
+
+    public static int func_180737_a(int p_180737_0_, boolean p_180737_1_, boolean p_180737_2_) {
         int i = p_180737_0_ * 2 * 16 * 16 * 16;
         int j = p_180737_0_ * 16 * 16 * 16 / 2;
         int k = p_180737_1_ ? p_180737_0_ * 16 * 16 * 16 / 2 : 0;
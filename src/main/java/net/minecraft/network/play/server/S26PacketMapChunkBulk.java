@@ -4,6 +4,7 @@ import net.minecraft.network.Packet;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.INetHandlerPlayClient;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.DecodedChunkData;
 
 import java.io.IOException;
 import java.util.List;
@@ -13,6 +14,7 @@ public class S26PacketMapChunkBulk implements Packet<INetHandlerPlayClient> {
     private int[] zPositions;
     private S21PacketChunkData.Extracted[] chunksData;
     private boolean isOverworld;
+    private DecodedChunkData[] decodedData;
 
     public S26PacketMapChunkBulk() {
     }
@@ -81,6 +83,28 @@ public class S26PacketMapChunkBulk implements Packet<INetHandlerPlayClient> {
         handler.handleMapChunkBulk(this);
     }
 
+    /**
+     * Unpacks the data of every chunk in the packet ahead of the main thread
+     */
+    public void decodeChunkData() {
+        if (this.decodedData == null) {
+            DecodedChunkData[] adecodedchunkdata = new DecodedChunkData[this.chunksData.length];
+
+            for (int i = 0; i < adecodedchunkdata.length; ++i) {
+                adecodedchunkdata[i] = DecodedChunkData.decode(this.chunksData[i].data, this.chunksData[i].dataSize & 65535, true, this.isOverworld);
+            }
+
+            this.decodedData = adecodedchunkdata;
+        }
+    }
+
+    /**
+     * Returns the data of the given chunk unpacked by {@link #decodeChunkData}, or null if it was not decoded
+     */
+    public DecodedChunkData getDecodedData(int index) {
+        return this.decodedData != null ? this.decodedData[index] : null;
+    }
+
     public int getChunkX(int p_149255_1_) {
         return this.xPositions[p_149255_1_];
     }
@@ -11,6 +11,17 @@ public class Score {
             return p_compare_1_.getScorePoints() > p_compare_2_.getScorePoints() ? 1 : (p_compare_1_.getScorePoints() < p_compare_2_.getScorePoints() ? -1 : p_compare_2_.getPlayerName().compareToIgnoreCase(p_compare_1_.getPlayerName()));
         }
     };
+
+    /**
+     * Orders like scoreComparator, breaking its ties on the case sensitive name so that only scores of the same holder
+     * compare equal. Used by the sorted score index of each objective.
+     */
+    static final Comparator<Score> sortedIndexComparator = new Comparator<Score>() {
+        public int compare(Score p_compare_1_, Score p_compare_2_) {
+            int i = Score.scoreComparator.compare(p_compare_1_, p_compare_2_);
+            return i != 0 ? i : p_compare_2_.getPlayerName().compareTo(p_compare_1_.getPlayerName());
+        }
+    };
     private final Scoreboard theScoreboard;
     private final ScoreObjective theScoreObjective;
     private final String scorePlayerName;
@@ -55,8 +66,13 @@ public class Score {
 
     public void setScorePoints(int points) {
         int i = this.scorePoints;
+        boolean flag = i != points && this.theScoreboard.removeSortedScore(this);
         this.scorePoints = points;
 
+        if (flag) {
+            this.theScoreboard.addSortedScore(this);
+        }
+
         if (i != points || this.forceUpdate) {
             this.forceUpdate = false;
             this.getScoreScoreboard().func_96536_a(this);
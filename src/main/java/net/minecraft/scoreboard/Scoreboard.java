@@ -1,5 +1,6 @@
 package net.minecraft.scoreboard;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import net.minecraft.entity.Entity;
@@ -8,14 +9,21 @@ import net.minecraft.util.EnumChatFormatting;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 public class Scoreboard {
     private final Map<String, ScoreObjective> scoreObjectives = Maps.newHashMap();
     private final Map<IScoreObjectiveCriteria, List<ScoreObjective>> scoreObjectiveCriterias = Maps.newHashMap();
     private final Map<String, Map<ScoreObjective, Score>> entitiesScoreObjectives = Maps.newHashMap();
 
+    /**
+     * Every score of an objective in getSortedScores order, kept up to date as scores are added, changed and removed
+     */
+    private final Map<ScoreObjective, TreeSet<Score>> sortedScores = Maps.newHashMap();
+
     /**
      * Index 0 is tab menu, 1 is sidebar, and 2 is below name
      */
@@ -97,6 +105,7 @@ public class Scoreboard {
             if (score == null) {
                 score = new Score(this, objective, name);
                 map.put(objective, score);
+                this.addSortedScore(score);
             }
 
             return score;
@@ -104,20 +113,61 @@ public class Scoreboard {
     }
 
     public Collection<Score> getSortedScores(ScoreObjective objective) {
+        TreeSet<Score> treeset = this.sortedScores.get(objective);
+        return treeset == null ? Lists.<Score>newArrayList() : Lists.newArrayList(treeset);
+    }
+
+    /**
+     * Returns up to count of the highest scores of the objective that pass the filter, lowest first like
+     * getSortedScores. Only the scores from the top down to the last one returned are looked at.
+     */
+    public List<Score> getTopScores(ScoreObjective objective, int count, Predicate<Score> filter) {
         List<Score> list = Lists.newArrayList();
+        TreeSet<Score> treeset = this.sortedScores.get(objective);
 
-        for (Map<ScoreObjective, Score> map : this.entitiesScoreObjectives.values()) {
-            Score score = map.get(objective);
+        if (treeset != null) {
+            Iterator<Score> iterator = treeset.descendingIterator();
+
+            while (list.size() < count && iterator.hasNext()) {
+                Score score = iterator.next();
 
-            if (score != null) {
-                list.add(score);
+                if (filter.apply(score)) {
+                    list.add(score);
+                }
             }
+
+            Collections.reverse(list);
         }
 
-        Collections.sort(list, Score.scoreComparator);
         return list;
     }
 
+    void addSortedScore(Score score) {
+        TreeSet<Score> treeset = this.sortedScores.get(score.getObjective());
+
+        if (treeset == null) {
+            treeset = new TreeSet<Score>(Score.sortedIndexComparator);
+            this.sortedScores.put(score.getObjective(), treeset);
+        }
+
+        treeset.add(score);
+    }
+
+    /**
+     * Takes the score out of its objective's index, if this very score is in it, so that its points can change. A
+     * score the scoreboard has already dropped is not confused with the one since created for the same holder.
+     */
+    boolean removeSortedScore(Score score) {
+        TreeSet<Score> treeset = this.sortedScores.get(score.getObjective());
+
+        if (treeset != null && treeset.floor(score) == score) {
+            treeset.remove(score);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     public Collection<ScoreObjective> getScoreObjectives() {
         return this.scoreObjectives.values();
     }
@@ -134,6 +184,10 @@ public class Scoreboard {
             Map<ScoreObjective, Score> map = this.entitiesScoreObjectives.remove(name);
 
             if (map != null) {
+                for (Score score : map.values()) {
+                    this.removeSortedScore(score);
+                }
+
                 this.func_96516_a(name);
             }
         } else {
@@ -142,6 +196,10 @@ public class Scoreboard {
             if (map2 != null) {
                 Score score = map2.remove(objective);
 
+                if (score != null) {
+                    this.removeSortedScore(score);
+                }
+
                 if (map2.size() < 1) {
                     Map<ScoreObjective, Score> map1 = this.entitiesScoreObjectives.remove(name);
 
@@ -195,6 +253,8 @@ public class Scoreboard {
             map.remove(p_96519_1_);
         }
 
+        this.sortedScores.remove(p_96519_1_);
+
         this.onScoreObjectiveRemoved(p_96519_1_);
     }
 
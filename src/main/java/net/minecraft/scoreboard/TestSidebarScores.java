@@ -0,0 +1,79 @@
+package net.minecraft.scoreboard;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times picking the sidebar's top 15 visible scores of one objective with many holders, the old way by copying and
+ * sorting every score of the objective each frame and the new way through Scoreboard.getTopScores, with some scores
+ * changing between frames. Both must pick the same scores in the same order. Args: [holders] [frames]
+ */
+public class TestSidebarScores {
+    private static final Predicate<Score> sidebarScoreFilter = new Predicate<Score>() {
+        public boolean apply(Score p_apply_1_) {
+            return p_apply_1_.getPlayerName() != null && !p_apply_1_.getPlayerName().startsWith("#");
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int i = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int j = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Scoreboard scoreboard = new Scoreboard();
+        ScoreObjective scoreobjective = scoreboard.addScoreObjective("sidebar", IScoreObjectiveCriteria.DUMMY);
+        List<Score> list = Lists.newArrayList();
+        Random random = new Random(0L);
+
+        for (int k = 0; k < i; ++k) {
+            Score score = scoreboard.getValueFromObjective((random.nextInt(8) == 0 ? "#holder" : "holder") + k, scoreobjective);
+            score.setScorePoints(random.nextInt(1000));
+            list.add(score);
+        }
+
+        long l = 0L;
+        long i1 = 0L;
+        int j1 = 0;
+
+        for (int k1 = 0; k1 < j; ++k1) {
+            for (int l1 = 0; l1 < 50; ++l1) {
+                list.get(random.nextInt(i)).increseScore(random.nextInt(21) - 10);
+            }
+
+            long i2 = System.nanoTime();
+            List<Score> list1 = getTopScoresBySorting(list);
+            long j2 = System.nanoTime();
+            List<Score> list2 = scoreboard.getTopScores(scoreobjective, 15, sidebarScoreFilter);
+            long k2 = System.nanoTime();
+            l += j2 - i2;
+            i1 += k2 - j2;
+
+            if (!list1.equals(list2)) {
+                ++j1;
+            }
+        }
+
+        System.out.println(i + " holders, " + j + " frames: copy and sort " + l / (long) j / 1000L + " us/frame, getTopScores " + i1 / (long) j / 1000L + " us/frame, " + j1 + " frames differ");
+        System.exit(j1 == 0 ? 0 : 1);
+    }
+
+    /**
+     * What the sidebar did before the scoreboard kept its scores sorted: sort a copy of every score of the objective,
+     * drop the hidden holders and keep the last 15
+     */
+    private static List<Score> getTopScoresBySorting(List<Score> scores) {
+        List<Score> list = Lists.newArrayList(scores);
+        Collections.sort(list, Score.scoreComparator);
+        List<Score> list1 = Lists.newArrayList();
+
+        for (Score score : list) {
+            if (sidebarScoreFilter.apply(score)) {
+                list1.add(score);
+            }
+        }
+
+        return list1.size() > 15 ? Lists.newArrayList(list1.subList(list1.size() - 15, list1.size())) : list1;
+    }
+}
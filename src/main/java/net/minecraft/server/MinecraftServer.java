@@ -340,19 +340,35 @@ public abstract class MinecraftServer implements Runnable, ICommandSender, IThre
         WorldServer worldserver = this.worldServers[j1];
         BlockPos blockpos = worldserver.getSpawnPoint();
         long k1 = getCurrentTimeMillis();
+        List<ChunkCoordIntPair> list = Lists.newArrayListWithCapacity(625);
 
-        for (int l1 = -192; l1 <= 192 && this.isServerRunning(); l1 += 16) {
-            for (int i2 = -192; i2 <= 192 && this.isServerRunning(); i2 += 16) {
-                long j2 = getCurrentTimeMillis();
+        for (int l1 = -192; l1 <= 192; l1 += 16) {
+            for (int i2 = -192; i2 <= 192; i2 += 16) {
+                list.add(new ChunkCoordIntPair(blockpos.getX() + l1 >> 4, blockpos.getZ() + i2 >> 4));
+            }
+        }
 
-                if (j2 - k1 > 1000L) {
-                    this.outputPercentRemaining("Preparing spawn area", i1 * 100 / 625);
-                    k1 = j2;
-                }
+        int k2 = 0;
+
+        for (ChunkCoordIntPair chunkcoordintpair : list) {
+            if (!this.isServerRunning()) {
+                break;
+            }
 
-                ++i1;
-                worldserver.theChunkProviderServer.loadChunk(blockpos.getX() + l1 >> 4, blockpos.getZ() + i2 >> 4);
+            // Keep a window of chunks ahead of this one loading or generating on other threads
+            for (; k2 < list.size() && k2 < i1 + 64; ++k2) {
+                worldserver.theChunkProviderServer.prefetchChunk(list.get(k2).chunkXPos, list.get(k2).chunkZPos);
             }
+
+            long j2 = getCurrentTimeMillis();
+
+            if (j2 - k1 > 1000L) {
+                this.outputPercentRemaining("Preparing spawn area", i1 * 100 / 625);
+                k1 = j2;
+            }
+
+            ++i1;
+            worldserver.theChunkProviderServer.loadChunk(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos);
         }
 
         this.clearCurrentTask();
@@ -0,0 +1,147 @@
+package net.minecraft.server.management;
+
+import com.google.common.collect.Lists;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chunks a player watches but has not been sent yet, handed out nearest first to the chunk the player is in. Membership
+ * is a hash lookup on the packed coordinates. Removed entries are only dropped from the ordered list the next time the
+ * order is asked for, and the list is only re-sorted after chunks were added or the player changed chunk.
+ */
+public class ChunkSendQueue {
+    /**
+     * Rough number of chunk data bytes a player is sent per tick. At least one chunk is always sent.
+     */
+    public static final int BYTES_PER_TICK = Integer.getInteger("air.chunkSendBytesPerTick", 524288).intValue();
+
+    /**
+     * Most chunks put in one bulk packet
+     */
+    public static final int MAX_CHUNKS_PER_TICK = 10;
+    private final LongHashMap<ChunkCoordIntPair> queued = new LongHashMap();
+    private final List<ChunkCoordIntPair> order = Lists.newArrayList();
+    private int centerX;
+    private int centerZ;
+    private boolean needsSort;
+    private int removedCount;
+    private int bytesSentLastTick;
+    private final Comparator<ChunkCoordIntPair> distanceComparator = new Comparator<ChunkCoordIntPair>() {
+        public int compare(ChunkCoordIntPair p_compare_1_, ChunkCoordIntPair p_compare_2_) {
+            int i = ChunkSendQueue.this.getDistanceSq(p_compare_1_);
+            int j = ChunkSendQueue.this.getDistanceSq(p_compare_2_);
+            return i != j ? (i < j ? -1 : 1) : (p_compare_1_.chunkXPos != p_compare_2_.chunkXPos ? (p_compare_1_.chunkXPos < p_compare_2_.chunkXPos ? -1 : 1) : (p_compare_1_.chunkZPos < p_compare_2_.chunkZPos ? -1 : (p_compare_1_.chunkZPos > p_compare_2_.chunkZPos ? 1 : 0)));
+        }
+    };
+
+    private static long getKey(ChunkCoordIntPair coords) {
+        return (long) coords.chunkXPos + 2147483647L | (long) coords.chunkZPos + 2147483647L << 32;
+    }
+
+    private int getDistanceSq(ChunkCoordIntPair coords) {
+        int i = coords.chunkXPos - this.centerX;
+        int j = coords.chunkZPos - this.centerZ;
+        return i * i + j * j;
+    }
+
+    /**
+     * Queues the chunk unless it already is. A copy of the coordinates is kept, so an entry removed and queued again is
+     * not confused with the stale one still in the ordered list.
+     */
+    public void add(ChunkCoordIntPair coords) {
+        long i = getKey(coords);
+
+        if (!this.queued.containsItem(i)) {
+            ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(coords.chunkXPos, coords.chunkZPos);
+            this.queued.add(i, chunkcoordintpair);
+            this.order.add(chunkcoordintpair);
+            this.needsSort = true;
+        }
+    }
+
+    public void remove(ChunkCoordIntPair coords) {
+        if (this.queued.remove(getKey(coords)) != null) {
+            ++this.removedCount;
+        }
+    }
+
+    public boolean contains(ChunkCoordIntPair coords) {
+        return this.queued.containsItem(getKey(coords));
+    }
+
+    public int size() {
+        return this.queued.getNumHashElements();
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Sets the chunk the queue is ordered around
+     */
+    public void setCenter(int chunkX, int chunkZ) {
+        if (chunkX != this.centerX || chunkZ != this.centerZ) {
+            this.centerX = chunkX;
+            this.centerZ = chunkZ;
+            this.needsSort = true;
+        }
+    }
+
+    /**
+     * Returns the queued chunks nearest first. Chunks removed while walking the list stay in it until the next call.
+     */
+    public List<ChunkCoordIntPair> getSendOrder() {
+        if (this.removedCount > 0) {
+            int i = 0;
+
+            for (int j = 0; j < this.order.size(); ++j) {
+                ChunkCoordIntPair chunkcoordintpair = this.order.get(j);
+
+                if (this.queued.getValueByKey(getKey(chunkcoordintpair)) == chunkcoordintpair) {
+                    this.order.set(i++, chunkcoordintpair);
+                }
+            }
+
+            this.order.subList(i, this.order.size()).clear();
+            this.removedCount = 0;
+        }
+
+        if (this.needsSort) {
+            Collections.sort(this.order, this.distanceComparator);
+            this.needsSort = false;
+        }
+
+        return this.order;
+    }
+
+    /**
+     * Size of the chunk data a bulk packet carries for the chunk, as S21PacketChunkData.getExtractedData lays it out
+     */
+    public static int getPacketSize(Chunk chunk, boolean hasSkylight) {
+        int i = 0;
+
+        for (ExtendedBlockStorage extendedblockstorage : chunk.getBlockStorageArray()) {
+            if (extendedblockstorage != null && !extendedblockstorage.isEmpty()) {
+                ++i;
+            }
+        }
+
+        return S21PacketChunkData.func_180737_a(i, hasSkylight, true);
+    }
+
+    public int getBytesSentLastTick() {
+        return this.bytesSentLastTick;
+    }
+
+    public void setBytesSentLastTick(int bytes) {
+        this.bytesSentLastTick = bytes;
+    }
+}
@@ -1,6 +1,7 @@
 package net.minecraft.server.management;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.Packet;
 import net.minecraft.network.play.server.S21PacketChunkData;
@@ -9,6 +10,7 @@ import net.minecraft.network.play.server.S23PacketBlockChange;
 import net.minecraft.src.Config;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
+import net.minecraft.util.IntHashMap;
 import net.minecraft.util.LongHashMap;
 import net.minecraft.util.MathHelper;
 import net.minecraft.world.ChunkCoordIntPair;
@@ -27,7 +29,7 @@ public class PlayerManager {
     private final WorldServer theWorldServer;
     private final List<EntityPlayerMP> players = Lists.newArrayList();
     private final LongHashMap<PlayerManager.PlayerInstance> playerInstances = new LongHashMap();
-    private final List<PlayerManager.PlayerInstance> playerInstancesToUpdate = Lists.newArrayList();
+    private final Set<PlayerManager.PlayerInstance> playerInstancesToUpdate = Sets.newLinkedHashSet();
     private final List<PlayerManager.PlayerInstance> playerInstanceList = Lists.newArrayList();
 
     /**
@@ -39,11 +41,6 @@ public class PlayerManager {
      * time what is using to check if InhabitedTime should be calculated
      */
     private long previousTotalWorldTime;
-
-    /**
-     * x, z direction vectors: east, south, west, north
-     */
-    private final int[][] xzDirectionsConst = new int[][]{{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
     private final Map<EntityPlayerMP, Set<ChunkCoordIntPair>> mapPlayerPendingEntries = new HashMap();
 
     public PlayerManager(WorldServer serverWorld) {
@@ -81,7 +78,21 @@ public class PlayerManager {
                         i = this.playerViewRadius * 2 + 1;
                     }
 
-                    for (ChunkCoordIntPair chunkcoordintpair : this.getNearest(set1, entityplayermp, i)) {
+                    // Look twice as far ahead as this tick loads so next tick's chunks are already parsed off-thread
+                    PriorityQueue<ChunkCoordIntPair> priorityqueue = this.getNearest(set1, entityplayermp, i * 2);
+                    List<ChunkCoordIntPair> list = Lists.newArrayListWithCapacity(priorityqueue.size());
+
+                    while (!priorityqueue.isEmpty()) {
+                        list.add(priorityqueue.poll());
+                    }
+
+                    Collections.reverse(list);
+
+                    for (ChunkCoordIntPair chunkcoordintpair1 : list) {
+                        this.theWorldServer.theChunkProviderServer.prefetchChunk(chunkcoordintpair1.chunkXPos, chunkcoordintpair1.chunkZPos);
+                    }
+
+                    for (ChunkCoordIntPair chunkcoordintpair : list.subList(0, Math.min(i, list.size()))) {
                         PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos, true);
                         playermanager$playerinstance.addPlayer(entityplayermp);
                         set1.remove(chunkcoordintpair);
@@ -101,8 +112,7 @@ public class PlayerManager {
                 playermanager$playerinstance1.processChunk();
             }
         } else {
-            for (int l = 0; l < this.playerInstancesToUpdate.size(); ++l) {
-                PlayerManager.PlayerInstance playermanager$playerinstance2 = this.playerInstancesToUpdate.get(l);
+            for (PlayerManager.PlayerInstance playermanager$playerinstance2 : this.playerInstancesToUpdate) {
                 playermanager$playerinstance2.onUpdate();
             }
         }
@@ -164,6 +174,12 @@ public class PlayerManager {
         int k1 = j + k;
         Set<ChunkCoordIntPair> set = this.getPendingEntriesSafe(player);
 
+        for (int j2 = l; j2 <= i1; ++j2) {
+            for (int k2 = j1; k2 <= k1; ++k2) {
+                this.theWorldServer.theChunkProviderServer.prefetchChunk(j2, k2);
+            }
+        }
+
         for (int l1 = i - this.playerViewRadius; l1 <= i + this.playerViewRadius; ++l1) {
             for (int i2 = j - this.playerViewRadius; i2 <= j + this.playerViewRadius; ++i2) {
                 if (l1 >= l && l1 <= i1 && i2 >= j1 && i2 <= k1) {
@@ -179,48 +195,20 @@ public class PlayerManager {
     }
 
     /**
-     * Removes all chunks from the given player's chunk load queue that are not in viewing range of the player.
+     * Removes all chunks from the given player's chunk load queue that are not in viewing range of the player, and orders
+     * the rest around the chunk the player is in.
      */
     public void filterChunkLoadQueue(EntityPlayerMP player) {
-        List<ChunkCoordIntPair> list = Lists.newArrayList(player.loadedChunks);
-        int i = 0;
-        int j = this.playerViewRadius;
-        int k = (int) player.posX >> 4;
-        int l = (int) player.posZ >> 4;
-        int i1 = 0;
-        int j1 = 0;
-        ChunkCoordIntPair chunkcoordintpair = this.getPlayerInstance(k, l, true).chunkCoords;
-        player.loadedChunks.clear();
-
-        if (list.contains(chunkcoordintpair)) {
-            player.loadedChunks.add(chunkcoordintpair);
-        }
-
-        for (int k1 = 1; k1 <= j * 2; ++k1) {
-            for (int l1 = 0; l1 < 2; ++l1) {
-                int[] aint = this.xzDirectionsConst[i++ % 4];
-
-                for (int i2 = 0; i2 < k1; ++i2) {
-                    i1 += aint[0];
-                    j1 += aint[1];
-                    chunkcoordintpair = this.getPlayerInstance(k + i1, l + j1, true).chunkCoords;
-
-                    if (list.contains(chunkcoordintpair)) {
-                        player.loadedChunks.add(chunkcoordintpair);
-                    }
-                }
-            }
-        }
-
-        i = i % 4;
+        int i = (int) player.posX >> 4;
+        int j = (int) player.posZ >> 4;
+        player.loadedChunks.setCenter(i, j);
+        List<ChunkCoordIntPair> list = player.loadedChunks.getSendOrder();
 
-        for (int j2 = 0; j2 < j * 2; ++j2) {
-            i1 += this.xzDirectionsConst[i][0];
-            j1 += this.xzDirectionsConst[i][1];
-            chunkcoordintpair = this.getPlayerInstance(k + i1, l + j1, true).chunkCoords;
+        for (int k = 0; k < list.size(); ++k) {
+            ChunkCoordIntPair chunkcoordintpair = list.get(k);
 
-            if (list.contains(chunkcoordintpair)) {
-                player.loadedChunks.add(chunkcoordintpair);
+            if (!this.overlaps(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos, i, j, this.playerViewRadius)) {
+                player.loadedChunks.remove(chunkcoordintpair);
             }
         }
     }
@@ -256,6 +244,49 @@ public class PlayerManager {
         return i >= -radius && i <= radius && j >= -radius && j <= radius;
     }
 
+    /**
+     * Chunks within the radius of the first center that are not within the radius of the second, so a player moving
+     * only visits the rows and columns it entered or left rather than the whole square
+     */
+    private List<ChunkCoordIntPair> getChunksOutside(int x1, int z1, int x2, int z2, int radius) {
+        List<ChunkCoordIntPair> list = Lists.newArrayList();
+
+        for (int i = x1 - radius; i <= x1 + radius; ++i) {
+            if (i >= x2 - radius && i <= x2 + radius) {
+                for (int j = z1 - radius; j <= z1 + radius && j < z2 - radius; ++j) {
+                    list.add(new ChunkCoordIntPair(i, j));
+                }
+
+                for (int k = Math.max(z1 - radius, z2 + radius + 1); k <= z1 + radius; ++k) {
+                    list.add(new ChunkCoordIntPair(i, k));
+                }
+            } else {
+                for (int l = z1 - radius; l <= z1 + radius; ++l) {
+                    list.add(new ChunkCoordIntPair(i, l));
+                }
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Chunks within the outer radius of the center but not within the inner one
+     */
+    private List<ChunkCoordIntPair> getRing(int x, int z, int innerRadius, int outerRadius) {
+        List<ChunkCoordIntPair> list = Lists.newArrayList();
+
+        for (int i = x - outerRadius; i <= x + outerRadius; ++i) {
+            for (int j = z - outerRadius; j <= z + outerRadius; ++j) {
+                if (!this.overlaps(i, j, x, z, innerRadius)) {
+                    list.add(new ChunkCoordIntPair(i, j));
+                }
+            }
+        }
+
+        return list;
+    }
+
     /**
      * update chunks around a player being moved by server logic (e.g. cart, boat)
      */
@@ -275,25 +306,29 @@ public class PlayerManager {
 
             if (j1 != 0 || k1 != 0) {
                 Set<ChunkCoordIntPair> set = this.getPendingEntriesSafe(player);
+                List<ChunkCoordIntPair> list = this.getChunksOutside(i, j, k, l, i1);
+                List<ChunkCoordIntPair> list1 = this.getChunksOutside(k, l, i, j, i1);
 
-                for (int l1 = i - i1; l1 <= i + i1; ++l1) {
-                    for (int i2 = j - i1; i2 <= j + i1; ++i2) {
-                        if (!this.overlaps(l1, i2, k, l, i1)) {
-                            if (Config.isLazyChunkLoading()) {
-                                set.add(new ChunkCoordIntPair(l1, i2));
-                            } else {
-                                this.getPlayerInstance(l1, i2, true).addPlayer(player);
-                            }
-                        }
+                if (!Config.isLazyChunkLoading()) {
+                    for (ChunkCoordIntPair chunkcoordintpair : list) {
+                        this.theWorldServer.theChunkProviderServer.prefetchChunk(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos);
+                    }
+                }
 
-                        if (!this.overlaps(l1 - j1, i2 - k1, i, j, i1)) {
-                            set.remove(new ChunkCoordIntPair(l1 - j1, i2 - k1));
-                            PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(l1 - j1, i2 - k1, false);
+                for (ChunkCoordIntPair chunkcoordintpair1 : list) {
+                    if (Config.isLazyChunkLoading()) {
+                        set.add(chunkcoordintpair1);
+                    } else {
+                        this.getPlayerInstance(chunkcoordintpair1.chunkXPos, chunkcoordintpair1.chunkZPos, true).addPlayer(player);
+                    }
+                }
 
-                            if (playermanager$playerinstance != null) {
-                                playermanager$playerinstance.removePlayer(player);
-                            }
-                        }
+                for (ChunkCoordIntPair chunkcoordintpair2 : list1) {
+                    set.remove(chunkcoordintpair2);
+                    PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(chunkcoordintpair2.chunkXPos, chunkcoordintpair2.chunkZPos, false);
+
+                    if (playermanager$playerinstance != null) {
+                        playermanager$playerinstance.removePlayer(player);
                     }
                 }
 
@@ -306,7 +341,7 @@ public class PlayerManager {
 
     public boolean isPlayerWatchingChunk(EntityPlayerMP player, int chunkX, int chunkZ) {
         PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(chunkX, chunkZ, false);
-        return playermanager$playerinstance != null && playermanager$playerinstance.playersWatchingChunk.contains(player) && !player.loadedChunks.contains(playermanager$playerinstance.chunkCoords);
+        return playermanager$playerinstance != null && playermanager$playerinstance.isWatchedBy(player) && !player.loadedChunks.contains(playermanager$playerinstance.chunkCoords);
     }
 
     public void setPlayerViewRadius(int radius) {
@@ -316,35 +351,29 @@ public class PlayerManager {
             int i = radius - this.playerViewRadius;
 
             for (EntityPlayerMP entityplayermp : Lists.newArrayList(this.players)) {
-                int j = (int) entityplayermp.posX >> 4;
-                int k = (int) entityplayermp.posZ >> 4;
+                int j = (int) entityplayermp.managedPosX >> 4;
+                int k = (int) entityplayermp.managedPosZ >> 4;
                 Set<ChunkCoordIntPair> set = this.getPendingEntriesSafe(entityplayermp);
 
                 if (i > 0) {
-                    for (int j1 = j - radius; j1 <= j + radius; ++j1) {
-                        for (int k1 = k - radius; k1 <= k + radius; ++k1) {
-                            if (Config.isLazyChunkLoading()) {
-                                set.add(new ChunkCoordIntPair(j1, k1));
-                            } else {
-                                PlayerManager.PlayerInstance playermanager$playerinstance1 = this.getPlayerInstance(j1, k1, true);
-
-                                if (!playermanager$playerinstance1.playersWatchingChunk.contains(entityplayermp)) {
-                                    playermanager$playerinstance1.addPlayer(entityplayermp);
-                                }
+                    for (ChunkCoordIntPair chunkcoordintpair : this.getRing(j, k, this.playerViewRadius, radius)) {
+                        if (Config.isLazyChunkLoading()) {
+                            set.add(chunkcoordintpair);
+                        } else {
+                            PlayerManager.PlayerInstance playermanager$playerinstance1 = this.getPlayerInstance(chunkcoordintpair.chunkXPos, chunkcoordintpair.chunkZPos, true);
+
+                            if (!playermanager$playerinstance1.isWatchedBy(entityplayermp)) {
+                                playermanager$playerinstance1.addPlayer(entityplayermp);
                             }
                         }
                     }
                 } else {
-                    for (int l = j - this.playerViewRadius; l <= j + this.playerViewRadius; ++l) {
-                        for (int i1 = k - this.playerViewRadius; i1 <= k + this.playerViewRadius; ++i1) {
-                            if (!this.overlaps(l, i1, j, k, radius)) {
-                                set.remove(new ChunkCoordIntPair(l, i1));
-                                PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(l, i1, true);
-
-                                if (playermanager$playerinstance != null) {
-                                    playermanager$playerinstance.removePlayer(entityplayermp);
-                                }
-                            }
+                    for (ChunkCoordIntPair chunkcoordintpair1 : this.getRing(j, k, radius, this.playerViewRadius)) {
+                        set.remove(chunkcoordintpair1);
+                        PlayerManager.PlayerInstance playermanager$playerinstance = this.getPlayerInstance(chunkcoordintpair1.chunkXPos, chunkcoordintpair1.chunkZPos, false);
+
+                        if (playermanager$playerinstance != null) {
+                            playermanager$playerinstance.removePlayer(entityplayermp);
                         }
                     }
                 }
@@ -354,6 +383,20 @@ public class PlayerManager {
         }
     }
 
+    /**
+     * Number of chunks the player watches but has not been sent yet, plus those still waiting to be watched when lazy
+     * chunk loading is on
+     */
+    public int getPendingChunkSends(EntityPlayerMP player) {
+        Set<ChunkCoordIntPair> set = this.mapPlayerPendingEntries.get(player);
+        return player.loadedChunks.size() + (set != null ? set.size() : 0);
+    }
+
+    public String getDebugInfo(EntityPlayerMP player) {
+        Set<ChunkCoordIntPair> set = this.mapPlayerPendingEntries.get(player);
+        return String.format("Chunk sends: %d queued, %d pending, %d KB last tick", Integer.valueOf(player.loadedChunks.size()), Integer.valueOf(set != null ? set.size() : 0), Integer.valueOf(player.loadedChunks.getBytesSentLastTick() / 1024));
+    }
+
     /**
      * Get the furthest viewable block given player's view distance
      */
@@ -413,6 +456,11 @@ public class PlayerManager {
 
     class PlayerInstance {
         private final List<EntityPlayerMP> playersWatchingChunk = Lists.newArrayList();
+
+        /**
+         * Entity ids of the players in playersWatchingChunk, for membership checks
+         */
+        private final IntHashMap<EntityPlayerMP> playerIdsWatchingChunk = new IntHashMap();
         private final ChunkCoordIntPair chunkCoords;
         private final short[] locationOfBlockChange = new short[64];
         private int numBlocksToUpdate;
@@ -424,8 +472,12 @@ public class PlayerManager {
             PlayerManager.this.getWorldServer().theChunkProviderServer.loadChunk(chunkX, chunkZ);
         }
 
+        public boolean isWatchedBy(EntityPlayerMP player) {
+            return this.playerIdsWatchingChunk.lookup(player.getEntityId()) == player;
+        }
+
         public void addPlayer(EntityPlayerMP player) {
-            if (this.playersWatchingChunk.contains(player)) {
+            if (this.isWatchedBy(player)) {
                 PlayerManager.pmLogger.debug("Failed to add player. {} already is in chunk {}, {}", player, Integer.valueOf(this.chunkCoords.chunkXPos), Integer.valueOf(this.chunkCoords.chunkZPos));
             } else {
                 if (this.playersWatchingChunk.isEmpty()) {
@@ -433,12 +485,13 @@ public class PlayerManager {
                 }
 
                 this.playersWatchingChunk.add(player);
+                this.playerIdsWatchingChunk.addKey(player.getEntityId(), player);
                 player.loadedChunks.add(this.chunkCoords);
             }
         }
 
         public void removePlayer(EntityPlayerMP player) {
-            if (this.playersWatchingChunk.contains(player)) {
+            if (this.isWatchedBy(player)) {
                 Chunk chunk = PlayerManager.this.theWorldServer.getChunkFromChunkCoords(this.chunkCoords.chunkXPos, this.chunkCoords.chunkZPos);
 
                 if (chunk.isPopulated()) {
@@ -446,6 +499,7 @@ public class PlayerManager {
                 }
 
                 this.playersWatchingChunk.remove(player);
+                this.playerIdsWatchingChunk.removeObject(player.getEntityId());
                 player.loadedChunks.remove(this.chunkCoords);
 
                 if (this.playersWatchingChunk.isEmpty()) {
@@ -454,9 +508,7 @@ public class PlayerManager {
                     PlayerManager.this.playerInstances.remove(i);
                     PlayerManager.this.playerInstanceList.remove(this);
 
-                    if (this.numBlocksToUpdate > 0) {
-                        PlayerManager.this.playerInstancesToUpdate.remove(this);
-                    }
+                    PlayerManager.this.playerInstancesToUpdate.remove(this);
 
                     PlayerManager.this.getWorldServer().theChunkProviderServer.dropChunk(this.chunkCoords.chunkXPos, this.chunkCoords.chunkZPos);
                 }
@@ -0,0 +1,153 @@
+package net.minecraft.world;
+
+import com.google.common.collect.Lists;
+import net.minecraft.util.AxisAlignedBB;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collision boxes found by {@link World#gatherCollisionBoxes}, kept as six doubles per box (minX, minY, minZ, maxX, maxY,
+ * maxZ) in order. Each thread reuses one buffer, so the contents are only valid until the thread's next query. The
+ * offset methods return the same as calling the AxisAlignedBB methods of every box in turn.
+ */
+public class CollisionBoxBuffer {
+    private double[] boxes = new double[384];
+    private int size;
+
+    /**
+     * Scratch list for blocks that add their own boxes
+     */
+    final List<AxisAlignedBB> blockBoxes = Lists.newArrayList();
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    void add(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int i = this.size * 6;
+
+        if (i == this.boxes.length) {
+            this.boxes = Arrays.copyOf(this.boxes, i * 2);
+        }
+
+        this.boxes[i] = minX;
+        this.boxes[i + 1] = minY;
+        this.boxes[i + 2] = minZ;
+        this.boxes[i + 3] = maxX;
+        this.boxes[i + 4] = maxY;
+        this.boxes[i + 5] = maxZ;
+        ++this.size;
+    }
+
+    void add(AxisAlignedBB bb) {
+        this.add(bb.minX, bb.minY, bb.minZ, bb.maxX, bb.maxY, bb.maxZ);
+    }
+
+    public AxisAlignedBB get(int index) {
+        int i = index * 6;
+        return new AxisAlignedBB(this.boxes[i], this.boxes[i + 1], this.boxes[i + 2], this.boxes[i + 3], this.boxes[i + 4], this.boxes[i + 5]);
+    }
+
+    /**
+     * Copies the boxes out into a new list
+     */
+    public List<AxisAlignedBB> toList() {
+        List<AxisAlignedBB> list = Lists.newArrayListWithCapacity(this.size);
+
+        for (int i = 0; i < this.size; ++i) {
+            list.add(this.get(i));
+        }
+
+        return list;
+    }
+
+    /**
+     * How far the box can move along X by the given offset before hitting one of the boxes
+     */
+    public double calculateXOffset(AxisAlignedBB other, double offsetX) {
+        double[] adouble = this.boxes;
+
+        for (int i = 0; i < this.size * 6; i += 6) {
+            if (other.maxY > adouble[i + 1] && other.minY < adouble[i + 4] && other.maxZ > adouble[i + 2] && other.minZ < adouble[i + 5]) {
+                if (offsetX > 0.0D && other.maxX <= adouble[i]) {
+                    double d1 = adouble[i] - other.maxX;
+
+                    if (d1 < offsetX) {
+                        offsetX = d1;
+                    }
+                } else if (offsetX < 0.0D && other.minX >= adouble[i + 3]) {
+                    double d0 = adouble[i + 3] - other.minX;
+
+                    if (d0 > offsetX) {
+                        offsetX = d0;
+                    }
+                }
+            }
+        }
+
+        return offsetX;
+    }
+
+    /**
+     * How far the box can move along Y by the given offset before hitting one of the boxes
+     */
+    public double calculateYOffset(AxisAlignedBB other, double offsetY) {
+        double[] adouble = this.boxes;
+
+        for (int i = 0; i < this.size * 6; i += 6) {
+            if (other.maxX > adouble[i] && other.minX < adouble[i + 3] && other.maxZ > adouble[i + 2] && other.minZ < adouble[i + 5]) {
+                if (offsetY > 0.0D && other.maxY <= adouble[i + 1]) {
+                    double d1 = adouble[i + 1] - other.maxY;
+
+                    if (d1 < offsetY) {
+                        offsetY = d1;
+                    }
+                } else if (offsetY < 0.0D && other.minY >= adouble[i + 4]) {
+                    double d0 = adouble[i + 4] - other.minY;
+
+                    if (d0 > offsetY) {
+                        offsetY = d0;
+                    }
+                }
+            }
+        }
+
+        return offsetY;
+    }
+
+    /**
+     * How far the box can move along Z by the given offset before hitting one of the boxes
+     */
+    public double calculateZOffset(AxisAlignedBB other, double offsetZ) {
+        double[] adouble = this.boxes;
+
+        for (int i = 0; i < this.size * 6; i += 6) {
+            if (other.maxX > adouble[i] && other.minX < adouble[i + 3] && other.maxY > adouble[i + 1] && other.minY < adouble[i + 4]) {
+                if (offsetZ > 0.0D && other.maxZ <= adouble[i + 2]) {
+                    double d1 = adouble[i + 2] - other.maxZ;
+
+                    if (d1 < offsetZ) {
+                        offsetZ = d1;
+                    }
+                } else if (offsetZ < 0.0D && other.minZ >= adouble[i + 5]) {
+                    double d0 = adouble[i + 5] - other.minZ;
+
+                    if (d0 > offsetZ) {
+                        offsetZ = d0;
+                    }
+                }
+            }
+        }
+
+        return offsetZ;
+    }
+}
@@ -0,0 +1,279 @@
+package net.minecraft.world;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.Direction;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.Arrays;
+
+/**
+ * Block and sky light propagation for {@link World#checkLightFor}. Runs the same two-pass flood fill as vanilla, but
+ * works on int coordinates against chunks resolved once per update, so the inner loop allocates no BlockPos and skips
+ * the chunk provider lookup on every neighbour.
+ */
+public class LightEngine {
+    /**
+     * Chunks cached per update: a light update never reads further than 18 blocks from its origin, so a 5x5 grid of
+     * chunks around the origin chunk covers it
+     */
+    private static final int CACHE_RADIUS = 2;
+    private static final int CACHE_SIZE = CACHE_RADIUS * 2 + 1;
+    private final World world;
+
+    /**
+     * is a temporary list of blocks and light values used when updating light levels. Holds up to 32x32x32 blocks (the
+     * maximum influence of a light source.) Every element is a packed bit value: 0000000000LLLLzzzzzzyyyyyyxxxxxx. The
+     * 4-bit L is a light level used when darkening blocks. 6-bit numbers x, y and z represent the block's offset from
+     * the original block, plus 32 (i.e. value of 31 would mean a -1 offset
+     */
+    private final int[] lightUpdateBlockList = new int[32768];
+    private final Chunk[] chunkCache = new Chunk[CACHE_SIZE * CACHE_SIZE];
+    private final boolean[] chunkCached = new boolean[CACHE_SIZE * CACHE_SIZE];
+    private final BlockPos.MutableBlockPos notifyPos = new BlockPos.MutableBlockPos();
+    private int originChunkX;
+    private int originChunkZ;
+    private boolean debugWorld;
+
+    public LightEngine(World worldIn) {
+        this.world = worldIn;
+    }
+
+    public boolean checkLightFor(EnumSkyBlock lightType, BlockPos pos) {
+        if (!this.world.isAreaLoaded(pos, 17, false)) {
+            return false;
+        } else {
+            int i = 0;
+            int j = 0;
+            int i1 = pos.getX();
+            int j1 = pos.getY();
+            int k1 = pos.getZ();
+            int[] aint = this.lightUpdateBlockList;
+            this.originChunkX = i1 >> 4;
+            this.originChunkZ = k1 >> 4;
+            this.debugWorld = this.world.getWorldType() == WorldType.DEBUG_WORLD;
+            Arrays.fill(this.chunkCached, false);
+            this.world.theProfiler.startSection("getBrightness");
+            int k = this.getLightFor(lightType, i1, j1, k1);
+            int l = this.getRawLight(lightType, i1, j1, k1);
+
+            if (l > k) {
+                aint[j++] = 133152;
+            } else if (l < k) {
+                aint[j++] = 133152 | k << 18;
+
+                while (i < j) {
+                    int l1 = aint[i++];
+                    int i2 = (l1 & 63) - 32 + i1;
+                    int j2 = (l1 >> 6 & 63) - 32 + j1;
+                    int k2 = (l1 >> 12 & 63) - 32 + k1;
+                    int l2 = l1 >> 18 & 15;
+                    int i3 = this.getLightFor(lightType, i2, j2, k2);
+
+                    if (i3 == l2) {
+                        this.setLightFor(lightType, i2, j2, k2, 0);
+
+                        if (l2 > 0) {
+                            int j3 = Math.abs(i2 - i1);
+                            int k3 = Math.abs(j2 - j1);
+                            int l3 = Math.abs(k2 - k1);
+
+                            if (j3 + k3 + l3 < 17) {
+                                for (Direction enumfacing : Direction.VALUES) {
+                                    int i4 = i2 + enumfacing.getFrontOffsetX();
+                                    int j4 = j2 + enumfacing.getFrontOffsetY();
+                                    int k4 = k2 + enumfacing.getFrontOffsetZ();
+                                    int l4 = Math.max(1, this.getBlock(i4, j4, k4).getLightOpacity());
+                                    i3 = this.getLightFor(lightType, i4, j4, k4);
+
+                                    if (i3 == l2 - l4 && j < aint.length) {
+                                        aint[j++] = i4 - i1 + 32 | j4 - j1 + 32 << 6 | k4 - k1 + 32 << 12 | l2 - l4 << 18;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+
+                i = 0;
+            }
+
+            this.world.theProfiler.endSection();
+            this.world.theProfiler.startSection("checkedPosition < toCheckCount");
+
+            while (i < j) {
+                int i5 = aint[i++];
+                int j5 = (i5 & 63) - 32 + i1;
+                int k5 = (i5 >> 6 & 63) - 32 + j1;
+                int l5 = (i5 >> 12 & 63) - 32 + k1;
+                int i6 = this.getLightFor(lightType, j5, k5, l5);
+                int j6 = this.getRawLight(lightType, j5, k5, l5);
+
+                if (j6 != i6) {
+                    this.setLightFor(lightType, j5, k5, l5, j6);
+
+                    if (j6 > i6) {
+                        int k6 = Math.abs(j5 - i1);
+                        int l6 = Math.abs(k5 - j1);
+                        int i7 = Math.abs(l5 - k1);
+                        boolean flag = j < aint.length - 6;
+
+                        if (k6 + l6 + i7 < 17 && flag) {
+                            int j7 = j5 - i1 + 32 | k5 - j1 + 32 << 6 | l5 - k1 + 32 << 12;
+
+                            if (this.getLightFor(lightType, j5 - 1, k5, l5) < j6) {
+                                aint[j++] = j7 - 1;
+                            }
+
+                            if (this.getLightFor(lightType, j5 + 1, k5, l5) < j6) {
+                                aint[j++] = j7 + 1;
+                            }
+
+                            if (this.getLightFor(lightType, j5, k5 - 1, l5) < j6) {
+                                aint[j++] = j7 - (1 << 6);
+                            }
+
+                            if (this.getLightFor(lightType, j5, k5 + 1, l5) < j6) {
+                                aint[j++] = j7 + (1 << 6);
+                            }
+
+                            if (this.getLightFor(lightType, j5, k5, l5 - 1) < j6) {
+                                aint[j++] = j7 - (1 << 12);
+                            }
+
+                            if (this.getLightFor(lightType, j5, k5, l5 + 1) < j6) {
+                                aint[j++] = j7 + (1 << 12);
+                            }
+                        }
+                    }
+                }
+            }
+
+            this.world.theProfiler.endSection();
+            Arrays.fill(this.chunkCache, null);
+            return true;
+        }
+    }
+
+    /**
+     * gets the light level at the supplied position
+     */
+    private int getRawLight(EnumSkyBlock lightType, int x, int y, int z) {
+        if (lightType == EnumSkyBlock.SKY && this.canSeeSky(x, y, z)) {
+            return 15;
+        } else {
+            Block block = this.getBlock(x, y, z);
+            int i = lightType == EnumSkyBlock.SKY ? 0 : block.getLightValue();
+            int j = block.getLightOpacity();
+
+            if (j >= 15 && block.getLightValue() > 0) {
+                j = 1;
+            }
+
+            if (j < 1) {
+                j = 1;
+            }
+
+            if (j >= 15) {
+                return 0;
+            } else if (i >= 14) {
+                return i;
+            } else {
+                for (Direction enumfacing : Direction.VALUES) {
+                    int k = this.getLightFor(lightType, x + enumfacing.getFrontOffsetX(), y + enumfacing.getFrontOffsetY(), z + enumfacing.getFrontOffsetZ()) - j;
+
+                    if (k > i) {
+                        i = k;
+                    }
+
+                    if (i >= 14) {
+                        return i;
+                    }
+                }
+
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Mirrors World.getLightFor
+     */
+    private int getLightFor(EnumSkyBlock type, int x, int y, int z) {
+        if (y < 0) {
+            y = 0;
+        }
+
+        if (!this.isValid(x, y, z)) {
+            return type.defaultLightValue;
+        } else {
+            Chunk chunk = this.getLoadedChunk(x >> 4, z >> 4);
+            return chunk == null ? type.defaultLightValue : chunk.getLightFor(type, x & 15, y, z & 15);
+        }
+    }
+
+    /**
+     * Mirrors World.setLightFor
+     */
+    private void setLightFor(EnumSkyBlock type, int x, int y, int z, int lightValue) {
+        if (this.isValid(x, y, z)) {
+            Chunk chunk = this.getLoadedChunk(x >> 4, z >> 4);
+
+            if (chunk != null) {
+                chunk.setLightFor(type, x & 15, y, z & 15, lightValue);
+                this.world.notifyLightSet(this.notifyPos.set(x, y, z));
+            }
+        }
+    }
+
+    /**
+     * Mirrors World.getBlockState(pos).getBlock()
+     */
+    private Block getBlock(int x, int y, int z) {
+        if (!this.isValid(x, y, z)) {
+            return Blocks.air;
+        } else if (this.debugWorld) {
+            return this.world.getBlockState(new BlockPos(x, y, z)).getBlock();
+        } else {
+            Chunk chunk = this.getLoadedChunk(x >> 4, z >> 4);
+            return chunk != null ? chunk.getBlock(x & 15, y, z & 15) : this.world.getBlockState(new BlockPos(x, y, z)).getBlock();
+        }
+    }
+
+    /**
+     * Mirrors World.canSeeSky
+     */
+    private boolean canSeeSky(int x, int y, int z) {
+        Chunk chunk = this.getLoadedChunk(x >> 4, z >> 4);
+        return chunk != null ? chunk.canSeeSky(x & 15, y, z & 15) : this.world.canSeeSky(new BlockPos(x, y, z));
+    }
+
+    /**
+     * Mirrors World.isValid
+     */
+    private boolean isValid(int x, int y, int z) {
+        return x >= -30000000 && z >= -30000000 && x < 30000000 && z < 30000000 && y >= this.world.getMinHeight() && y < this.world.getHeight();
+    }
+
+    /**
+     * Returns the chunk at the given chunk coordinates if it is loaded, null otherwise
+     */
+    private Chunk getLoadedChunk(int chunkX, int chunkZ) {
+        int i = chunkX - this.originChunkX + CACHE_RADIUS;
+        int j = chunkZ - this.originChunkZ + CACHE_RADIUS;
+
+        if (i >= 0 && i < CACHE_SIZE && j >= 0 && j < CACHE_SIZE) {
+            int k = i * CACHE_SIZE + j;
+
+            if (!this.chunkCached[k]) {
+                this.chunkCache[k] = this.world.chunkProvider.chunkExists(chunkX, chunkZ) ? this.world.chunkProvider.provideChunk(chunkX, chunkZ) : null;
+                this.chunkCached[k] = true;
+            }
+
+            return this.chunkCache[k];
+        } else {
+            return this.world.chunkProvider.chunkExists(chunkX, chunkZ) ? this.world.chunkProvider.provideChunk(chunkX, chunkZ) : null;
+        }
+    }
+}
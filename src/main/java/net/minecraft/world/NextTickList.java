@@ -0,0 +1,312 @@
+package net.minecraft.world;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Pending scheduled block ticks of a world. Entries sit on a hashed timing wheel keyed by scheduled time, so taking
+ * the ticks due this tick only looks at the one slot for that time, and are indexed per chunk, so saving or unloading
+ * a chunk only looks at the entries in that chunk. Entries come out in the same order as the TreeSet this replaces:
+ * by scheduled time, then priority, then the order they were created in.
+ */
+public class NextTickList {
+    private static final int WHEEL_SIZE = 256;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Pending entries by position, chained through NextTickListEntry.nextAtPosition when several blocks have a tick
+     * at the same position. Wheel slots are cleaned lazily, so a slot entry is only live while it is still chained
+     * here. A HashMap is not used because NextTickListEntry's compareTo disagrees with equals, which breaks lookups
+     * once a HashMap bin turns into a tree.
+     */
+    private final LongHashMap<NextTickListEntry> entriesByPosition = new LongHashMap();
+    private final LongHashMap<Set<NextTickListEntry>> entriesByChunk = new LongHashMap();
+    private final List<NextTickListEntry>[] wheel = new List[WHEEL_SIZE];
+
+    /**
+     * Entries scheduled before the wheel cursor, e.g. ticks re-queued while ticking or loaded with a chunk
+     */
+    private final TreeSet<NextTickListEntry> overdue = new TreeSet();
+    private final List<NextTickListEntry> due = Lists.newArrayList();
+
+    /**
+     * Every live entry on the wheel is scheduled at or after this time
+     */
+    private long cursor = Long.MAX_VALUE;
+    private int wheelCount;
+    private int count;
+
+    public NextTickList() {
+        for (int i = 0; i < WHEEL_SIZE; ++i) {
+            this.wheel[i] = Lists.newArrayList();
+        }
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    public boolean contains(NextTickListEntry entry) {
+        for (NextTickListEntry nextticklistentry = this.entriesByPosition.getValueByKey(entry.position.toLong()); nextticklistentry != null; nextticklistentry = nextticklistentry.nextAtPosition) {
+            if (nextticklistentry.equals(entry)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isPending(NextTickListEntry entry) {
+        for (NextTickListEntry nextticklistentry = this.entriesByPosition.getValueByKey(entry.position.toLong()); nextticklistentry != null; nextticklistentry = nextticklistentry.nextAtPosition) {
+            if (nextticklistentry == entry) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds the entry unless an equal one (same position and block) is already pending
+     */
+    public boolean add(NextTickListEntry entry) {
+        if (this.contains(entry)) {
+            return false;
+        } else {
+            long j = entry.position.toLong();
+            entry.nextAtPosition = this.entriesByPosition.getValueByKey(j);
+            this.entriesByPosition.add(j, entry);
+            ++this.count;
+            long i = getChunkKey(entry);
+            Set<NextTickListEntry> set = this.entriesByChunk.getValueByKey(i);
+
+            if (set == null) {
+                set = Sets.newIdentityHashSet();
+                this.entriesByChunk.add(i, set);
+            }
+
+            set.add(entry);
+
+            if (entry.scheduledTime >= this.cursor) {
+                this.wheel[(int) (entry.scheduledTime & WHEEL_MASK)].add(entry);
+                ++this.wheelCount;
+            } else {
+                this.overdue.add(entry);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Removes up to limit entries, in order, into the given list. Unless force is set only entries scheduled at or
+     * before the given time are taken.
+     */
+    public void poll(long worldTime, int limit, boolean force, List<NextTickListEntry> out) {
+        if (force) {
+            List<NextTickListEntry> list = Lists.newArrayList(this.overdue);
+
+            for (List<NextTickListEntry> list2 : this.wheel) {
+                for (NextTickListEntry nextticklistentry3 : list2) {
+                    if (this.isPending(nextticklistentry3)) {
+                        list.add(nextticklistentry3);
+                    }
+                }
+            }
+
+            Collections.sort(list);
+
+            for (int i = 0; i < list.size() && i < limit; ++i) {
+                NextTickListEntry nextticklistentry = list.get(i);
+                this.remove(nextticklistentry);
+                out.add(nextticklistentry);
+            }
+        } else {
+            if (this.wheelCount == 0) {
+                this.cursor = worldTime + 1L;
+            }
+
+            int j = 0;
+            int k = 0;
+
+            while (k < limit) {
+                if (j == this.due.size() && this.cursor <= worldTime) {
+                    this.due.clear();
+                    j = 0;
+                    this.collectDue(this.cursor);
+
+                    if (this.due.isEmpty()) {
+                        ++this.cursor;
+                        continue;
+                    }
+                }
+
+                NextTickListEntry nextticklistentry1 = j < this.due.size() ? this.due.get(j) : null;
+                NextTickListEntry nextticklistentry2 = this.overdue.isEmpty() ? null : this.overdue.first();
+
+                if (nextticklistentry2 != null && nextticklistentry2.scheduledTime > worldTime) {
+                    nextticklistentry2 = null;
+                }
+
+                if (nextticklistentry2 != null && (nextticklistentry1 == null || nextticklistentry2.compareTo(nextticklistentry1) < 0)) {
+                    this.overdue.pollFirst();
+                    this.removeIndexed(nextticklistentry2);
+                    out.add(nextticklistentry2);
+                } else if (nextticklistentry1 != null) {
+                    ++j;
+                    --this.wheelCount;
+                    this.removeIndexed(nextticklistentry1);
+                    out.add(nextticklistentry1);
+
+                    if (j == this.due.size()) {
+                        ++this.cursor;
+                    }
+                } else {
+                    break;
+                }
+
+                ++k;
+            }
+
+            if (j < this.due.size()) {
+                List<NextTickListEntry> list1 = this.wheel[(int) (this.cursor & WHEEL_MASK)];
+
+                for (int l = j; l < this.due.size(); ++l) {
+                    list1.add(this.due.get(l));
+                }
+            }
+
+            this.due.clear();
+        }
+    }
+
+    /**
+     * Moves the live entries scheduled at exactly the given time out of their wheel slot into the due list, sorted,
+     * and drops dead entries from the slot on the way
+     */
+    private void collectDue(long time) {
+        List<NextTickListEntry> list = this.wheel[(int) (time & WHEEL_MASK)];
+        int i = 0;
+
+        for (int j = 0; j < list.size(); ++j) {
+            NextTickListEntry nextticklistentry = list.get(j);
+
+            if (this.isPending(nextticklistentry)) {
+                if (nextticklistentry.scheduledTime == time) {
+                    this.due.add(nextticklistentry);
+                } else {
+                    list.set(i++, nextticklistentry);
+                }
+            }
+        }
+
+        list.subList(i, list.size()).clear();
+
+        if (this.due.size() > 1) {
+            Collections.sort(this.due);
+        }
+    }
+
+    /**
+     * Returns the entries whose x and z fall inside the box, in order, or null if there are none. Only chunks
+     * overlapping the box are looked at.
+     */
+    public List<NextTickListEntry> getEntriesInBox(StructureBoundingBox structureBB, boolean remove) {
+        List<NextTickListEntry> list = null;
+        int i = structureBB.minX >> 4;
+        int j = structureBB.maxX - 1 >> 4;
+        int k = structureBB.minZ >> 4;
+        int l = structureBB.maxZ - 1 >> 4;
+
+        for (int i1 = i; i1 <= j; ++i1) {
+            for (int j1 = k; j1 <= l; ++j1) {
+                Set<NextTickListEntry> set = this.entriesByChunk.getValueByKey(ChunkCoordIntPair.chunkXZ2Int(i1, j1));
+
+                if (set != null) {
+                    for (NextTickListEntry nextticklistentry : set) {
+                        int k1 = nextticklistentry.position.getX();
+                        int l1 = nextticklistentry.position.getZ();
+
+                        if (k1 >= structureBB.minX && k1 < structureBB.maxX && l1 >= structureBB.minZ && l1 < structureBB.maxZ) {
+                            if (list == null) {
+                                list = Lists.newArrayList();
+                            }
+
+                            list.add(nextticklistentry);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (list != null) {
+            Collections.sort(list);
+
+            if (remove) {
+                for (NextTickListEntry nextticklistentry1 : list) {
+                    this.remove(nextticklistentry1);
+                }
+            }
+        }
+
+        return list;
+    }
+
+    private void remove(NextTickListEntry entry) {
+        this.removeIndexed(entry);
+
+        if (this.overdue.isEmpty() || !this.overdue.remove(entry)) {
+            --this.wheelCount;
+        }
+    }
+
+    /**
+     * Removes the entry from the position and chunk lookups, leaving the wheel slot to be cleaned lazily
+     */
+    private void removeIndexed(NextTickListEntry entry) {
+        long j = entry.position.toLong();
+        NextTickListEntry nextticklistentry = this.entriesByPosition.getValueByKey(j);
+
+        if (nextticklistentry == entry) {
+            if (entry.nextAtPosition != null) {
+                this.entriesByPosition.add(j, entry.nextAtPosition);
+            } else {
+                this.entriesByPosition.remove(j);
+            }
+        } else {
+            while (nextticklistentry.nextAtPosition != entry) {
+                nextticklistentry = nextticklistentry.nextAtPosition;
+            }
+
+            nextticklistentry.nextAtPosition = entry.nextAtPosition;
+        }
+
+        entry.nextAtPosition = null;
+        --this.count;
+        long i = getChunkKey(entry);
+        Set<NextTickListEntry> set = this.entriesByChunk.getValueByKey(i);
+
+        if (set != null) {
+            set.remove(entry);
+
+            if (set.isEmpty()) {
+                this.entriesByChunk.remove(i);
+            }
+        }
+    }
+
+    private static long getChunkKey(NextTickListEntry entry) {
+        return ChunkCoordIntPair.chunkXZ2Int(entry.position.getX() >> 4, entry.position.getZ() >> 4);
+    }
+}
@@ -22,6 +22,11 @@ public class NextTickListEntry implements Comparable<NextTickListEntry> {
      */
     private final long tickEntryID;
 
+    /**
+     * Next pending entry at the same position, used by NextTickList
+     */
+    NextTickListEntry nextAtPosition;
+
     public NextTickListEntry(BlockPos positionIn, Block blockIn) {
         this.tickEntryID = nextTickEntryID++;
         this.position = positionIn;
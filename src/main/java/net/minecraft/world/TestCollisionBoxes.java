@@ -0,0 +1,255 @@
+package net.minecraft.world;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.border.WorldBorder;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.gen.ChunkProviderDebug;
+import net.minecraft.world.storage.WorldInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks World.gatherCollisionBoxes against the copy-into-a-list getCollidingBoundingBoxes it replaced: for random
+ * boxes and motions through chunks of random block states, both must find the same boxes in the same order and stop
+ * the motion at the same offsets. Args: [seed] [boxes]
+ */
+public class TestCollisionBoxes {
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        long i = args.length > 0 ? Long.parseLong(args[0]) : 0L;
+        int j = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        Bootstrap.register();
+        World world = createWorld(i);
+        Entity entity = createEntity(world);
+        Random random = new Random(i);
+
+        for (int k = 0; k < j; ++k) {
+            double d0 = 0.2D + random.nextDouble() * 2.8D;
+            double d1 = 0.2D + random.nextDouble() * 2.8D;
+            double d2 = (random.nextDouble() - 0.5D) * 64.0D;
+            double d3 = 56.0D + random.nextDouble() * 32.0D;
+            double d4 = (random.nextDouble() - 0.5D) * 64.0D;
+            entity.setPosition(d2, d3, d4);
+            AxisAlignedBB axisalignedbb = new AxisAlignedBB(d2 - d0 / 2.0D, d3, d4 - d0 / 2.0D, d2 + d0 / 2.0D, d3 + d1, d4 + d0 / 2.0D);
+            double d5 = (random.nextDouble() - 0.5D) * 4.0D;
+            double d6 = (random.nextDouble() - 0.5D) * 4.0D;
+            double d7 = (random.nextDouble() - 0.5D) * 4.0D;
+            AxisAlignedBB axisalignedbb1 = axisalignedbb.addCoord(d5, d6, d7);
+            List<AxisAlignedBB> list = getCollidingBoundingBoxes(world, entity, axisalignedbb1);
+            CollisionBoxBuffer collisionboxbuffer = world.gatherCollisionBoxes(entity, axisalignedbb1);
+            check(isSameBoxes(list, collisionboxbuffer.toList()), "Box " + axisalignedbb1 + ": found " + collisionboxbuffer.size() + " boxes, the list found " + list.size());
+            double d8 = d6;
+
+            for (AxisAlignedBB axisalignedbb2 : list) {
+                d8 = axisalignedbb2.calculateYOffset(axisalignedbb, d8);
+            }
+
+            AxisAlignedBB axisalignedbb3 = axisalignedbb.offset(0.0D, d8, 0.0D);
+            double d9 = d5;
+
+            for (AxisAlignedBB axisalignedbb4 : list) {
+                d9 = axisalignedbb4.calculateXOffset(axisalignedbb3, d9);
+            }
+
+            AxisAlignedBB axisalignedbb5 = axisalignedbb3.offset(d9, 0.0D, 0.0D);
+            double d10 = d7;
+
+            for (AxisAlignedBB axisalignedbb6 : list) {
+                d10 = axisalignedbb6.calculateZOffset(axisalignedbb5, d10);
+            }
+
+            double d11 = collisionboxbuffer.calculateYOffset(axisalignedbb, d6);
+            double d12 = collisionboxbuffer.calculateXOffset(axisalignedbb.offset(0.0D, d11, 0.0D), d5);
+            double d13 = collisionboxbuffer.calculateZOffset(axisalignedbb.offset(d12, d11, 0.0D), d7);
+            check(d8 == d11 && d9 == d12 && d10 == d13, "Box " + axisalignedbb + " moving " + d5 + "," + d6 + "," + d7 + ": stopped at " + d12 + "," + d11 + "," + d13 + ", the list stopped at " + d9 + "," + d8 + "," + d10);
+        }
+
+        System.out.println(j + " boxes, " + failures + " failures");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * getCollidingBoundingBoxes as it was before the boxes were gathered into a CollisionBoxBuffer
+     */
+    private static List<AxisAlignedBB> getCollidingBoundingBoxes(World world, Entity entityIn, AxisAlignedBB bb) {
+        List<AxisAlignedBB> list = Lists.newArrayList();
+        int i = MathHelper.floor_double(bb.minX);
+        int j = MathHelper.floor_double(bb.maxX + 1.0D);
+        int k = MathHelper.floor_double(bb.minY);
+        int l = MathHelper.floor_double(bb.maxY + 1.0D);
+        int i1 = MathHelper.floor_double(bb.minZ);
+        int j1 = MathHelper.floor_double(bb.maxZ + 1.0D);
+        WorldBorder worldborder = world.getWorldBorder();
+        boolean flag = entityIn.isOutsideBorder();
+        boolean flag1 = world.isInsideBorder(worldborder, entityIn);
+        IBlockState iblockstate = Blocks.stone.getDefaultState();
+        BlockPos.MutableBlockPos blockpos$mutableblockpos = new BlockPos.MutableBlockPos();
+
+        for (int k1 = i; k1 < j; ++k1) {
+            for (int l1 = i1; l1 < j1; ++l1) {
+                if (world.isBlockLoaded(blockpos$mutableblockpos.set(k1, 64, l1))) {
+                    for (int i2 = k - 1; i2 < l; ++i2) {
+                        blockpos$mutableblockpos.set(k1, i2, l1);
+
+                        if (flag && flag1) {
+                            entityIn.setOutsideBorder(false);
+                        } else if (!flag && !flag1) {
+                            entityIn.setOutsideBorder(true);
+                        }
+
+                        IBlockState iblockstate1 = iblockstate;
+
+                        if (worldborder.contains(blockpos$mutableblockpos) || !flag1) {
+                            iblockstate1 = world.getBlockState(blockpos$mutableblockpos);
+                        }
+
+                        iblockstate1.getBlock().addCollisionBoxesToList(world, blockpos$mutableblockpos, iblockstate1, bb, list, entityIn);
+                    }
+                }
+            }
+        }
+
+        List<Entity> list1 = world.getEntitiesWithinAABBExcludingEntity(entityIn, bb.expand(0.25D, 0.25D, 0.25D));
+
+        for (int j2 = 0; j2 < list1.size(); ++j2) {
+            AxisAlignedBB axisalignedbb = list1.get(j2).getCollisionBoundingBox();
+
+            if (axisalignedbb != null && axisalignedbb.intersectsWith(bb)) {
+                list.add(axisalignedbb);
+            }
+
+            axisalignedbb = entityIn.getCollisionBox(list1.get(j2));
+
+            if (axisalignedbb != null && axisalignedbb.intersectsWith(bb)) {
+                list.add(axisalignedbb);
+            }
+        }
+
+        return list;
+    }
+
+    private static boolean isSameBoxes(List<AxisAlignedBB> list, List<AxisAlignedBB> list1) {
+        if (list.size() != list1.size()) {
+            return false;
+        } else {
+            for (int i = 0; i < list.size(); ++i) {
+                AxisAlignedBB axisalignedbb = list.get(i);
+                AxisAlignedBB axisalignedbb1 = list1.get(i);
+
+                if (axisalignedbb.minX != axisalignedbb1.minX || axisalignedbb.minY != axisalignedbb1.minY || axisalignedbb.minZ != axisalignedbb1.minZ || axisalignedbb.maxX != axisalignedbb1.maxX || axisalignedbb.maxY != axisalignedbb1.maxY || axisalignedbb.maxZ != axisalignedbb1.maxZ) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            ++failures;
+            System.out.println(message);
+        }
+    }
+
+    private static World createWorld(final long seed) {
+        WorldInfo worldinfo = new WorldInfo(new WorldSettings(seed, WorldSettings.GameType.SURVIVAL, false, false, WorldType.DEFAULT), "collisions");
+        WorldProvider worldprovider = WorldProvider.getProviderForDimension(0);
+        World world = new World(null, worldinfo, worldprovider, new Profiler(), false) {
+            {
+                this.chunkProvider = this.createChunkProvider();
+            }
+
+            protected IChunkProvider createChunkProvider() {
+                return new TestCollisionBoxes.RandomChunkProvider(this, seed);
+            }
+
+            protected int getRenderDistanceChunks() {
+                return 0;
+            }
+        };
+        worldprovider.registerWorld(world);
+        return world;
+    }
+
+    private static Entity createEntity(World world) {
+        return new Entity(world) {
+            protected void entityInit() {
+            }
+
+            protected void readEntityFromNBT(NBTTagCompound tagCompund) {
+            }
+
+            protected void writeEntityToNBT(NBTTagCompound tagCompound) {
+            }
+        };
+    }
+
+    /**
+     * Every chunk is loaded and holds a random block state, without a tile entity, in about half of the positions
+     * between y 48 and 96; the rest is air. Chunks are kept once made so that both queries see the same blocks.
+     */
+    static class RandomChunkProvider extends ChunkProviderDebug {
+        private final List<IBlockState> states = Lists.newArrayList();
+        private final Map<Long, Chunk> chunks = Maps.newHashMap();
+        private final World world;
+        private final long seed;
+
+        public RandomChunkProvider(World worldIn, long seed) {
+            super(worldIn);
+            this.world = worldIn;
+            this.seed = seed;
+
+            for (IBlockState iblockstate : Block.BLOCK_STATE_IDS) {
+                if (iblockstate.getBlock() != Blocks.air && !iblockstate.getBlock().hasTileEntity()) {
+                    this.states.add(iblockstate);
+                }
+            }
+        }
+
+        public Chunk provideChunk(int x, int z) {
+            long i = ChunkCoordIntPair.chunkXZ2Int(x, z);
+            Chunk chunk = this.chunks.get(Long.valueOf(i));
+
+            if (chunk == null) {
+                Random random = new Random(this.seed ^ i * 341873128712L);
+                ChunkPrimer chunkprimer = new ChunkPrimer();
+
+                for (int j = 0; j < 16; ++j) {
+                    for (int k = 0; k < 16; ++k) {
+                        for (int l = 48; l < 96; ++l) {
+                            if (random.nextBoolean()) {
+                                chunkprimer.setBlockState(j, l, k, this.states.get(random.nextInt(this.states.size())));
+                            }
+                        }
+                    }
+                }
+
+                chunk = new Chunk(this.world, chunkprimer, x, z);
+                this.chunks.put(Long.valueOf(i), chunk);
+            }
+
+            return chunk;
+        }
+
+        public Chunk provideChunk(BlockPos blockPosIn) {
+            return this.provideChunk(blockPosIn.getX() >> 4, blockPosIn.getZ() >> 4);
+        }
+    }
+}
@@ -36,6 +36,15 @@ import java.util.*;
 import java.util.concurrent.Callable;
 
 public abstract class World implements IBlockAccess {
+    /**
+     * Per thread, as server worlds, client worlds and concurrently ticked particles gather collisions on their own
+     * threads
+     */
+    private static final ThreadLocal<CollisionBoxBuffer> collisionBoxBuffers = new ThreadLocal<CollisionBoxBuffer>() {
+        protected CollisionBoxBuffer initialValue() {
+            return new CollisionBoxBuffer();
+        }
+    };
     private int seaLevel = 63;
 
     /**
@@ -136,19 +145,13 @@ public abstract class World implements IBlockAccess {
     private boolean processingLoadedTiles;
     private final WorldBorder worldBorder;
 
-    /**
-     * is a temporary list of blocks and light values used when updating light levels. Holds up to 32x32x32 blocks (the
-     * maximum influence of a light source.) Every element is a packed bit value: 0000000000LLLLzzzzzzyyyyyyxxxxxx. The
-     * 4-bit L is a light level used when darkening blocks. 6-bit numbers x, y and z represent the block's offset from
-     * the original block, plus 32 (i.e. value of 31 would mean a -1 offset
-     */
-    int[] lightUpdateBlockList;
+    private final LightEngine lightEngine;
 
     protected World(ISaveHandler saveHandlerIn, WorldInfo info, WorldProvider providerIn, Profiler profilerIn, boolean client) {
         this.ambientTickCountdown = this.rand.nextInt(12000);
         this.spawnHostileMobs = true;
         this.spawnPeacefulMobs = true;
-        this.lightUpdateBlockList = new int[32768];
+        this.lightEngine = new LightEngine(this);
         this.saveHandler = saveHandlerIn;
         this.theProfiler = profilerIn;
         this.worldInfo = info;
@@ -1022,7 +1025,19 @@ public abstract class World implements IBlockAccess {
     }
 
     public List<AxisAlignedBB> getCollidingBoundingBoxes(Entity entityIn, AxisAlignedBB bb) {
-        List<AxisAlignedBB> list = Lists.newArrayList();
+        return this.gatherCollisionBoxes(entityIn, bb).toList();
+    }
+
+    /**
+     * Finds the same boxes as getCollidingBoundingBoxes, in the same order, into this thread's reusable buffer. Each
+     * chunk is looked up once, and blocks with a full collision cube add their box to the buffer directly instead of
+     * creating an AxisAlignedBB. The result is only valid until the next call on the same thread, which overwrites
+     * it: use it before gathering again and never keep it, or copy it out with toList.
+     */
+    public CollisionBoxBuffer gatherCollisionBoxes(Entity entityIn, AxisAlignedBB bb) {
+        CollisionBoxBuffer collisionboxbuffer = collisionBoxBuffers.get();
+        List<AxisAlignedBB> list = collisionboxbuffer.blockBoxes;
+        collisionboxbuffer.clear();
         int i = MathHelper.floor_double(bb.minX);
         int j = MathHelper.floor_double(bb.maxX + 1.0D);
         int k = MathHelper.floor_double(bb.minY);
@@ -1034,10 +1049,21 @@ public abstract class World implements IBlockAccess {
         boolean flag1 = this.isInsideBorder(worldborder, entityIn);
         IBlockState iblockstate = Blocks.stone.getDefaultState();
         BlockPos.MutableBlockPos blockpos$mutableblockpos = new BlockPos.MutableBlockPos();
+        Chunk chunk = null;
+        int i3 = Integer.MAX_VALUE;
+        int j3 = Integer.MAX_VALUE;
 
         for (int k1 = i; k1 < j; ++k1) {
             for (int l1 = i1; l1 < j1; ++l1) {
-                if (this.isBlockLoaded(blockpos$mutableblockpos.set(k1, 64, l1))) {
+                if (k1 >> 4 != i3 || l1 >> 4 != j3) {
+                    i3 = k1 >> 4;
+                    j3 = l1 >> 4;
+                    chunk = this.isChunkLoaded(i3, j3, true) ? this.getChunkFromChunkCoords(i3, j3) : null;
+                }
+
+                if (chunk != null && this.isValid(blockpos$mutableblockpos.set(k1, 64, l1))) {
+                    boolean flag2 = worldborder.contains(blockpos$mutableblockpos) || !flag1;
+
                     for (int i2 = k - 1; i2 < l; ++i2) {
                         blockpos$mutableblockpos.set(k1, i2, l1);
 
@@ -1049,11 +1075,25 @@ public abstract class World implements IBlockAccess {
 
                         IBlockState iblockstate1 = iblockstate;
 
-                        if (worldborder.contains(blockpos$mutableblockpos) || !flag1) {
-                            iblockstate1 = this.getBlockState(blockpos$mutableblockpos);
+                        if (flag2) {
+                            iblockstate1 = this.isValid(blockpos$mutableblockpos) ? chunk.getBlockState(blockpos$mutableblockpos) : Blocks.air.getDefaultState();
                         }
 
-                        iblockstate1.getBlock().addCollisionBoxesToList(this, blockpos$mutableblockpos, iblockstate1, bb, list, entityIn);
+                        Block block = iblockstate1.getBlock();
+
+                        if (block.hasFullCollisionCube()) {
+                            if ((double) (k1 + 1) > bb.minX && (double) k1 < bb.maxX && (double) (i2 + 1) > bb.minY && (double) i2 < bb.maxY && (double) (l1 + 1) > bb.minZ && (double) l1 < bb.maxZ) {
+                                collisionboxbuffer.add(k1, i2, l1, k1 + 1, i2 + 1, l1 + 1);
+                            }
+                        } else {
+                            block.addCollisionBoxesToList(this, blockpos$mutableblockpos, iblockstate1, bb, list, entityIn);
+
+                            for (int k3 = 0; k3 < list.size(); ++k3) {
+                                collisionboxbuffer.add(list.get(k3));
+                            }
+
+                            list.clear();
+                        }
                     }
                 }
             }
@@ -1067,18 +1107,18 @@ public abstract class World implements IBlockAccess {
                 AxisAlignedBB axisalignedbb = list1.get(j2).getCollisionBoundingBox();
 
                 if (axisalignedbb != null && axisalignedbb.intersectsWith(bb)) {
-                    list.add(axisalignedbb);
+                    collisionboxbuffer.add(axisalignedbb);
                 }
 
                 axisalignedbb = entityIn.getCollisionBox(list1.get(j2));
 
                 if (axisalignedbb != null && axisalignedbb.intersectsWith(bb)) {
-                    list.add(axisalignedbb);
+                    collisionboxbuffer.add(axisalignedbb);
                 }
             }
         }
 
-        return list;
+        return collisionboxbuffer;
     }
 
     public boolean isInsideBorder(WorldBorder worldBorderIn, Entity entityIn) {
@@ -2267,159 +2307,8 @@ public abstract class World implements IBlockAccess {
         return flag;
     }
 
-    /**
-     * gets the light level at the supplied position
-     */
-    private int getRawLight(BlockPos pos, EnumSkyBlock lightType) {
-        if (lightType == EnumSkyBlock.SKY && this.canSeeSky(pos)) {
-            return 15;
-        } else {
-            Block block = this.getBlockState(pos).getBlock();
-            int i = lightType == EnumSkyBlock.SKY ? 0 : block.getLightValue();
-            int j = block.getLightOpacity();
-
-            if (j >= 15 && block.getLightValue() > 0) {
-                j = 1;
-            }
-
-            if (j < 1) {
-                j = 1;
-            }
-
-            if (j >= 15) {
-                return 0;
-            } else if (i >= 14) {
-                return i;
-            } else {
-                for (Direction enumfacing : Direction.values()) {
-                    BlockPos blockpos = pos.offset(enumfacing);
-                    int k = this.getLightFor(lightType, blockpos) - j;
-
-                    if (k > i) {
-                        i = k;
-                    }
-
-                    if (i >= 14) {
-                        return i;
-                    }
-                }
-
-                return i;
-            }
-        }
-    }
-
     public boolean checkLightFor(EnumSkyBlock lightType, BlockPos pos) {
-        if (!this.isAreaLoaded(pos, 17, false)) {
-            return false;
-        } else {
-            int i = 0;
-            int j = 0;
-            this.theProfiler.startSection("getBrightness");
-            int k = this.getLightFor(lightType, pos);
-            int l = this.getRawLight(pos, lightType);
-            int i1 = pos.getX();
-            int j1 = pos.getY();
-            int k1 = pos.getZ();
-
-            if (l > k) {
-                this.lightUpdateBlockList[j++] = 133152;
-            } else if (l < k) {
-                this.lightUpdateBlockList[j++] = 133152 | k << 18;
-
-                while (i < j) {
-                    int l1 = this.lightUpdateBlockList[i++];
-                    int i2 = (l1 & 63) - 32 + i1;
-                    int j2 = (l1 >> 6 & 63) - 32 + j1;
-                    int k2 = (l1 >> 12 & 63) - 32 + k1;
-                    int l2 = l1 >> 18 & 15;
-                    BlockPos blockpos = new BlockPos(i2, j2, k2);
-                    int i3 = this.getLightFor(lightType, blockpos);
-
-                    if (i3 == l2) {
-                        this.setLightFor(lightType, blockpos, 0);
-
-                        if (l2 > 0) {
-                            int j3 = MathHelper.abs_int(i2 - i1);
-                            int k3 = MathHelper.abs_int(j2 - j1);
-                            int l3 = MathHelper.abs_int(k2 - k1);
-
-                            if (j3 + k3 + l3 < 17) {
-                                BlockPos.MutableBlockPos blockpos$mutableblockpos = new BlockPos.MutableBlockPos();
-
-                                for (Direction enumfacing : Direction.values()) {
-                                    int i4 = i2 + enumfacing.getFrontOffsetX();
-                                    int j4 = j2 + enumfacing.getFrontOffsetY();
-                                    int k4 = k2 + enumfacing.getFrontOffsetZ();
-                                    blockpos$mutableblockpos.set(i4, j4, k4);
-                                    int l4 = Math.max(1, this.getBlockState(blockpos$mutableblockpos).getBlock().getLightOpacity());
-                                    i3 = this.getLightFor(lightType, blockpos$mutableblockpos);
-
-                                    if (i3 == l2 - l4 && j < this.lightUpdateBlockList.length) {
-                                        this.lightUpdateBlockList[j++] = i4 - i1 + 32 | j4 - j1 + 32 << 6 | k4 - k1 + 32 << 12 | l2 - l4 << 18;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-
-                i = 0;
-            }
-
-            this.theProfiler.endSection();
-            this.theProfiler.startSection("checkedPosition < toCheckCount");
-
-            while (i < j) {
-                int i5 = this.lightUpdateBlockList[i++];
-                int j5 = (i5 & 63) - 32 + i1;
-                int k5 = (i5 >> 6 & 63) - 32 + j1;
-                int l5 = (i5 >> 12 & 63) - 32 + k1;
-                BlockPos blockpos1 = new BlockPos(j5, k5, l5);
-                int i6 = this.getLightFor(lightType, blockpos1);
-                int j6 = this.getRawLight(blockpos1, lightType);
-
-                if (j6 != i6) {
-                    this.setLightFor(lightType, blockpos1, j6);
-
-                    if (j6 > i6) {
-                        int k6 = Math.abs(j5 - i1);
-                        int l6 = Math.abs(k5 - j1);
-                        int i7 = Math.abs(l5 - k1);
-                        boolean flag = j < this.lightUpdateBlockList.length - 6;
-
-                        if (k6 + l6 + i7 < 17 && flag) {
-                            if (this.getLightFor(lightType, blockpos1.west()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 - 1 - i1 + 32 + (k5 - j1 + 32 << 6) + (l5 - k1 + 32 << 12);
-                            }
-
-                            if (this.getLightFor(lightType, blockpos1.east()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 + 1 - i1 + 32 + (k5 - j1 + 32 << 6) + (l5 - k1 + 32 << 12);
-                            }
-
-                            if (this.getLightFor(lightType, blockpos1.down()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 - i1 + 32 + (k5 - 1 - j1 + 32 << 6) + (l5 - k1 + 32 << 12);
-                            }
-
-                            if (this.getLightFor(lightType, blockpos1.up()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 - i1 + 32 + (k5 + 1 - j1 + 32 << 6) + (l5 - k1 + 32 << 12);
-                            }
-
-                            if (this.getLightFor(lightType, blockpos1.north()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 - i1 + 32 + (k5 - j1 + 32 << 6) + (l5 - 1 - k1 + 32 << 12);
-                            }
-
-                            if (this.getLightFor(lightType, blockpos1.south()) < j6) {
-                                this.lightUpdateBlockList[j++] = j5 - i1 + 32 + (k5 - j1 + 32 << 6) + (l5 + 1 - k1 + 32 << 12);
-                            }
-                        }
-                    }
-                }
-            }
-
-            this.theProfiler.endSection();
-            return true;
-        }
+        return this.lightEngine.checkLightFor(lightType, pos);
     }
 
     /**
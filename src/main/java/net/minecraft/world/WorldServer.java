@@ -53,8 +53,7 @@ public class WorldServer extends World implements IThreadListener {
     private final MinecraftServer mcServer;
     private final EntityTracker theEntityTracker;
     private final PlayerManager thePlayerManager;
-    private final Set<NextTickListEntry> pendingTickListEntriesHashSet = Sets.newHashSet();
-    private final TreeSet<NextTickListEntry> pendingTickListEntriesTreeSet = new TreeSet();
+    private final NextTickList pendingTickList = new NextTickList();
     private final Map<UUID, Entity> entitiesByUuid = Maps.newHashMap();
     public ChunkProviderServer theChunkProviderServer;
 
@@ -408,10 +407,7 @@ public class WorldServer extends World implements IThreadListener {
                 nextticklistentry.setPriority(priority);
             }
 
-            if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry)) {
-                this.pendingTickListEntriesHashSet.add(nextticklistentry);
-                this.pendingTickListEntriesTreeSet.add(nextticklistentry);
-            }
+            this.pendingTickList.add(nextticklistentry);
         }
     }
 
@@ -423,10 +419,7 @@ public class WorldServer extends World implements IThreadListener {
             nextticklistentry.setScheduledTime((long) delay + this.worldInfo.getWorldTotalTime());
         }
 
-        if (!this.pendingTickListEntriesHashSet.contains(nextticklistentry)) {
-            this.pendingTickListEntriesHashSet.add(nextticklistentry);
-            this.pendingTickListEntriesTreeSet.add(nextticklistentry);
-        }
+        this.pendingTickList.add(nextticklistentry);
     }
 
     /**
@@ -458,60 +451,38 @@ public class WorldServer extends World implements IThreadListener {
         if (this.worldInfo.getTerrainType() == WorldType.DEBUG_WORLD) {
             return false;
         } else {
-            int i = this.pendingTickListEntriesTreeSet.size();
-
-            if (i != this.pendingTickListEntriesHashSet.size()) {
-                throw new IllegalStateException("TickNextTick list out of synch");
-            } else {
-                if (i > 1000) {
-                    i = 1000;
-                }
-
-                this.theProfiler.startSection("cleaning");
-
-                for (int j = 0; j < i; ++j) {
-                    NextTickListEntry nextticklistentry = this.pendingTickListEntriesTreeSet.first();
-
-                    if (!p_72955_1_ && nextticklistentry.scheduledTime > this.worldInfo.getWorldTotalTime()) {
-                        break;
-                    }
-
-                    this.pendingTickListEntriesTreeSet.remove(nextticklistentry);
-                    this.pendingTickListEntriesHashSet.remove(nextticklistentry);
-                    this.pendingTickListEntriesThisTick.add(nextticklistentry);
-                }
+            this.theProfiler.startSection("cleaning");
+            this.pendingTickList.poll(this.worldInfo.getWorldTotalTime(), 1000, p_72955_1_, this.pendingTickListEntriesThisTick);
+            this.theProfiler.endSection();
+            this.theProfiler.startSection("ticking");
+            Iterator<NextTickListEntry> iterator = this.pendingTickListEntriesThisTick.iterator();
 
-                this.theProfiler.endSection();
-                this.theProfiler.startSection("ticking");
-                Iterator<NextTickListEntry> iterator = this.pendingTickListEntriesThisTick.iterator();
-
-                while (iterator.hasNext()) {
-                    NextTickListEntry nextticklistentry1 = iterator.next();
-                    iterator.remove();
-                    int k = 0;
-
-                    if (this.isAreaLoaded(nextticklistentry1.position.add(-k, -k, -k), nextticklistentry1.position.add(k, k, k))) {
-                        IBlockState iblockstate = this.getBlockState(nextticklistentry1.position);
-
-                        if (iblockstate.getBlock().getMaterial() != Material.air && Block.isEqualTo(iblockstate.getBlock(), nextticklistentry1.getBlock())) {
-                            try {
-                                iblockstate.getBlock().updateTick(this, nextticklistentry1.position, iblockstate, this.rand);
-                            } catch (Throwable throwable) {
-                                CrashReport crashreport = CrashReport.makeCrashReport(throwable, "Exception while ticking a block");
-                                CrashReportCategory crashreportcategory = crashreport.makeCategory("Block being ticked");
-                                CrashReportCategory.addBlockInfo(crashreportcategory, nextticklistentry1.position, iblockstate);
-                                throw new ReportedException(crashreport);
-                            }
+            while (iterator.hasNext()) {
+                NextTickListEntry nextticklistentry1 = iterator.next();
+                iterator.remove();
+                int k = 0;
+
+                if (this.isAreaLoaded(nextticklistentry1.position.add(-k, -k, -k), nextticklistentry1.position.add(k, k, k))) {
+                    IBlockState iblockstate = this.getBlockState(nextticklistentry1.position);
+
+                    if (iblockstate.getBlock().getMaterial() != Material.air && Block.isEqualTo(iblockstate.getBlock(), nextticklistentry1.getBlock())) {
+                        try {
+                            iblockstate.getBlock().updateTick(this, nextticklistentry1.position, iblockstate, this.rand);
+                        } catch (Throwable throwable) {
+                            CrashReport crashreport = CrashReport.makeCrashReport(throwable, "Exception while ticking a block");
+                            CrashReportCategory crashreportcategory = crashreport.makeCategory("Block being ticked");
+                            CrashReportCategory.addBlockInfo(crashreportcategory, nextticklistentry1.position, iblockstate);
+                            throw new ReportedException(crashreport);
                         }
-                    } else {
-                        this.scheduleUpdate(nextticklistentry1.position, nextticklistentry1.getBlock(), 0);
                     }
+                } else {
+                    this.scheduleUpdate(nextticklistentry1.position, nextticklistentry1.getBlock(), 0);
                 }
-
-                this.theProfiler.endSection();
-                this.pendingTickListEntriesThisTick.clear();
-                return !this.pendingTickListEntriesTreeSet.isEmpty();
             }
+
+            this.theProfiler.endSection();
+            this.pendingTickListEntriesThisTick.clear();
+            return !this.pendingTickList.isEmpty();
         }
     }
 
@@ -525,16 +496,10 @@ public class WorldServer extends World implements IThreadListener {
     }
 
     public List<NextTickListEntry> func_175712_a(StructureBoundingBox structureBB, boolean p_175712_2_) {
-        List<NextTickListEntry> list = null;
-
-        for (int i = 0; i < 2; ++i) {
-            Iterator<NextTickListEntry> iterator;
+        List<NextTickListEntry> list = this.pendingTickList.getEntriesInBox(structureBB, p_175712_2_);
 
-            if (i == 0) {
-                iterator = this.pendingTickListEntriesTreeSet.iterator();
-            } else {
-                iterator = this.pendingTickListEntriesThisTick.iterator();
-            }
+        if (!this.pendingTickListEntriesThisTick.isEmpty()) {
+            Iterator<NextTickListEntry> iterator = this.pendingTickListEntriesThisTick.iterator();
 
             while (iterator.hasNext()) {
                 NextTickListEntry nextticklistentry = iterator.next();
@@ -542,7 +507,6 @@ public class WorldServer extends World implements IThreadListener {
 
                 if (blockpos.getX() >= structureBB.minX && blockpos.getX() < structureBB.maxX && blockpos.getZ() >= structureBB.minZ && blockpos.getZ() < structureBB.maxZ) {
                     if (p_175712_2_) {
-                        this.pendingTickListEntriesHashSet.remove(nextticklistentry);
                         iterator.remove();
                     }
 
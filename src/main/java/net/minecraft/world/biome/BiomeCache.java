@@ -24,18 +24,31 @@ public class BiomeCache {
     }
 
     /**
-     * Returns a biome cache block at location specified.
+     * Returns a biome cache block at location specified. Safe to call from several threads; a missing block is
+     * generated outside the lock, and if two threads race to generate the same block the first one stored wins.
      */
     public BiomeCache.Block getBiomeCacheBlock(int x, int z) {
         x = x >> 4;
         z = z >> 4;
         long i = (long) x & 4294967295L | ((long) z & 4294967295L) << 32;
-        BiomeCache.Block biomecache$block = this.cacheMap.getValueByKey(i);
+        BiomeCache.Block biomecache$block;
+
+        synchronized (this) {
+            biomecache$block = this.cacheMap.getValueByKey(i);
+        }
 
         if (biomecache$block == null) {
-            biomecache$block = new BiomeCache.Block(x, z);
-            this.cacheMap.add(i, biomecache$block);
-            this.cache.add(biomecache$block);
+            BiomeCache.Block biomecache$block1 = new BiomeCache.Block(x, z);
+
+            synchronized (this) {
+                biomecache$block = this.cacheMap.getValueByKey(i);
+
+                if (biomecache$block == null) {
+                    biomecache$block = biomecache$block1;
+                    this.cacheMap.add(i, biomecache$block);
+                    this.cache.add(biomecache$block);
+                }
+            }
         }
 
         biomecache$block.lastAccessTime = MinecraftServer.getCurrentTimeMillis();
@@ -50,7 +63,7 @@ public class BiomeCache {
     /**
      * Removes BiomeCacheBlocks from this cache that haven't been accessed in at least 30 seconds.
      */
-    public void cleanupCache() {
+    public synchronized void cleanupCache() {
         long i = MinecraftServer.getCurrentTimeMillis();
         long j = i - this.lastCleanupTime;
 
@@ -82,7 +95,7 @@ public class BiomeCache {
         public BiomeGenBase[] biomes = new BiomeGenBase[256];
         public int xPosition;
         public int zPosition;
-        public long lastAccessTime;
+        public volatile long lastAccessTime;
 
         public Block(int x, int z) {
             this.xPosition = x;
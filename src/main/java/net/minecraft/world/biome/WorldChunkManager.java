@@ -14,12 +14,11 @@ import java.util.List;
 import java.util.Random;
 
 public class WorldChunkManager {
-    private GenLayer genBiomes;
-
     /**
-     * A GenLayer containing the indices into BiomeGenBase.biomeList[]
+     * The GenLayer chains of each thread, as layers keep their random state between calls. Element 0 gives the biomes
+     * at generation scale and element 1 the indices into BiomeGenBase.biomeList[] per block.
      */
-    private GenLayer biomeIndexLayer;
+    private ThreadLocal<GenLayer[]> genLayers;
 
     /**
      * The biome list.
@@ -41,12 +40,14 @@ public class WorldChunkManager {
         this.biomesToSpawnIn.add(BiomeGenBase.jungleHills);
     }
 
-    public WorldChunkManager(long seed, WorldType worldTypeIn, String options) {
+    public WorldChunkManager(final long seed, final WorldType worldTypeIn, final String options) {
         this();
         this.generatorOptions = options;
-        GenLayer[] agenlayer = GenLayer.initializeAllBiomeGenerators(seed, worldTypeIn, options);
-        this.genBiomes = agenlayer[0];
-        this.biomeIndexLayer = agenlayer[1];
+        this.genLayers = new ThreadLocal<GenLayer[]>() {
+            protected GenLayer[] initialValue() {
+                return GenLayer.initializeAllBiomeGenerators(seed, worldTypeIn, options);
+            }
+        };
     }
 
     public WorldChunkManager(World worldIn) {
@@ -78,7 +79,7 @@ public class WorldChunkManager {
             listToReuse = new float[width * length];
         }
 
-        int[] aint = this.biomeIndexLayer.getInts(x, z, width, length);
+        int[] aint = this.genLayers.get()[1].getInts(x, z, width, length);
 
         for (int i = 0; i < width * length; ++i) {
             try {
@@ -122,7 +123,7 @@ public class WorldChunkManager {
             biomes = new BiomeGenBase[width * height];
         }
 
-        int[] aint = this.genBiomes.getInts(x, z, width, height);
+        int[] aint = this.genLayers.get()[0].getInts(x, z, width, height);
 
         try {
             for (int i = 0; i < width * height; ++i) {
@@ -165,7 +166,7 @@ public class WorldChunkManager {
             BiomeGenBase[] abiomegenbase = this.biomeCache.getCachedBiomes(x, z);
             System.arraycopy(abiomegenbase, 0, listToReuse, 0, width * length);
         } else {
-            int[] aint = this.biomeIndexLayer.getInts(x, z, width, length);
+            int[] aint = this.genLayers.get()[1].getInts(x, z, width, length);
 
             for (int i = 0; i < width * length; ++i) {
                 listToReuse[i] = BiomeGenBase.getBiomeFromBiomeList(aint[i], BiomeGenBase.field_180279_ad);
@@ -186,7 +187,8 @@ public class WorldChunkManager {
         int l = p_76940_2_ + p_76940_3_ >> 2;
         int i1 = k - i + 1;
         int j1 = l - j + 1;
-        int[] aint = this.genBiomes.getInts(i, j, i1, j1);
+        GenLayer genlayer = this.genLayers.get()[0];
+        int[] aint = genlayer.getInts(i, j, i1, j1);
 
         try {
             for (int k1 = 0; k1 < i1 * j1; ++k1) {
@@ -201,7 +203,7 @@ public class WorldChunkManager {
         } catch (Throwable throwable) {
             CrashReport crashreport = CrashReport.makeCrashReport(throwable, "Invalid Biome id");
             CrashReportCategory crashreportcategory = crashreport.makeCategory("Layer");
-            crashreportcategory.addCrashSection("Layer", this.genBiomes.toString());
+            crashreportcategory.addCrashSection("Layer", genlayer.toString());
             crashreportcategory.addCrashSection("x", Integer.valueOf(p_76940_1_));
             crashreportcategory.addCrashSection("z", Integer.valueOf(p_76940_2_));
             crashreportcategory.addCrashSection("radius", Integer.valueOf(p_76940_3_));
@@ -218,7 +220,7 @@ public class WorldChunkManager {
         int l = z + range >> 2;
         int i1 = k - i + 1;
         int j1 = l - j + 1;
-        int[] aint = this.genBiomes.getInts(i, j, i1, j1);
+        int[] aint = this.genLayers.get()[0].getInts(i, j, i1, j1);
         BlockPos blockpos = null;
         int k1 = 0;
 
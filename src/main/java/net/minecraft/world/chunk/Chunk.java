@@ -655,21 +655,29 @@ public class Chunk {
     }
 
     public int getLightFor(EnumSkyBlock p_177413_1_, BlockPos pos) {
-        int i = pos.getX() & 15;
-        int j = pos.getY();
-        int k = pos.getZ() & 15;
-        ExtendedBlockStorage extendedblockstorage = this.storageArrays[j >> 4];
-        return extendedblockstorage == null ? (this.canSeeSky(pos) ? p_177413_1_.defaultLightValue : 0) : (p_177413_1_ == EnumSkyBlock.SKY ? (this.worldObj.provider.getHasNoSky() ? 0 : extendedblockstorage.getExtSkylightValue(i, j & 15, k)) : (p_177413_1_ == EnumSkyBlock.BLOCK ? extendedblockstorage.getExtBlocklightValue(i, j & 15, k) : p_177413_1_.defaultLightValue));
+        return this.getLightFor(p_177413_1_, pos.getX() & 15, pos.getY(), pos.getZ() & 15);
+    }
+
+    /**
+     * Gets the light at the given chunk-local x and z, without needing a BlockPos
+     */
+    public int getLightFor(EnumSkyBlock p_177413_1_, int x, int y, int z) {
+        ExtendedBlockStorage extendedblockstorage = this.storageArrays[y >> 4];
+        return extendedblockstorage == null ? (this.canSeeSky(x, y, z) ? p_177413_1_.defaultLightValue : 0) : (p_177413_1_ == EnumSkyBlock.SKY ? (this.worldObj.provider.getHasNoSky() ? 0 : extendedblockstorage.getExtSkylightValue(x, y & 15, z)) : (p_177413_1_ == EnumSkyBlock.BLOCK ? extendedblockstorage.getExtBlocklightValue(x, y & 15, z) : p_177413_1_.defaultLightValue));
     }
 
     public void setLightFor(EnumSkyBlock p_177431_1_, BlockPos pos, int value) {
-        int i = pos.getX() & 15;
-        int j = pos.getY();
-        int k = pos.getZ() & 15;
-        ExtendedBlockStorage extendedblockstorage = this.storageArrays[j >> 4];
+        this.setLightFor(p_177431_1_, pos.getX() & 15, pos.getY(), pos.getZ() & 15, value);
+    }
+
+    /**
+     * Sets the light at the given chunk-local x and z, without needing a BlockPos
+     */
+    public void setLightFor(EnumSkyBlock p_177431_1_, int x, int y, int z, int value) {
+        ExtendedBlockStorage extendedblockstorage = this.storageArrays[y >> 4];
 
         if (extendedblockstorage == null) {
-            extendedblockstorage = this.storageArrays[j >> 4] = new ExtendedBlockStorage(j >> 4 << 4, !this.worldObj.provider.getHasNoSky());
+            extendedblockstorage = this.storageArrays[y >> 4] = new ExtendedBlockStorage(y >> 4 << 4, !this.worldObj.provider.getHasNoSky());
             this.generateSkylightMap();
         }
 
@@ -677,10 +685,10 @@ public class Chunk {
 
         if (p_177431_1_ == EnumSkyBlock.SKY) {
             if (!this.worldObj.provider.getHasNoSky()) {
-                extendedblockstorage.setExtSkylightValue(i, j & 15, k, value);
+                extendedblockstorage.setExtSkylightValue(x, y & 15, z, value);
             }
         } else if (p_177431_1_ == EnumSkyBlock.BLOCK) {
-            extendedblockstorage.setExtBlocklightValue(i, j & 15, k, value);
+            extendedblockstorage.setExtBlocklightValue(x, y & 15, z, value);
         }
     }
 
@@ -758,10 +766,14 @@ public class Chunk {
     }
 
     public boolean canSeeSky(BlockPos pos) {
-        int i = pos.getX() & 15;
-        int j = pos.getY();
-        int k = pos.getZ() & 15;
-        return j >= this.heightMap[k << 4 | i];
+        return this.canSeeSky(pos.getX() & 15, pos.getY(), pos.getZ() & 15);
+    }
+
+    /**
+     * Checks the sky at the given chunk-local x and z, without needing a BlockPos
+     */
+    public boolean canSeeSky(int x, int y, int z) {
+        return y >= this.heightMap[z << 4 | x];
     }
 
     private TileEntity createNewTileEntity(BlockPos pos) {
@@ -1133,6 +1145,52 @@ public class Chunk {
         }
     }
 
+    /**
+     * Fills this chunk from data already unpacked by {@link DecodedChunkData#decode}. Produces the same result as
+     * {@link #fillChunk(byte[], int, boolean)} on the raw bytes, falling back to it if the data was decoded for a world
+     * with a different sky setting.
+     */
+    public void fillChunk(DecodedChunkData data) {
+        if (data.hasSky() != !this.worldObj.provider.getHasNoSky()) {
+            this.fillChunk(data.getRawData(), data.getSectionMask(), data.isFullChunk());
+        } else {
+            ExtendedBlockStorage[] aextendedblockstorage = data.getSections();
+
+            for (int i = 0; i < this.storageArrays.length; ++i) {
+                if ((data.getSectionMask() & 1 << i) != 0) {
+                    this.storageArrays[i] = aextendedblockstorage[i];
+                } else if (data.isFullChunk()) {
+                    this.storageArrays[i] = null;
+                }
+            }
+
+            this.isLightPopulated = true;
+            this.isTerrainPopulated = true;
+
+            if (data.isFullChunk()) {
+                System.arraycopy(data.getBiomes(), 0, this.blockBiomeArray, 0, this.blockBiomeArray.length);
+                int[] aint = data.getHeightMap();
+
+                for (int j = 0; j < aint.length; ++j) {
+                    this.precipitationHeightMap[j] = -999;
+
+                    if (aint[j] >= 0) {
+                        this.heightMap[j] = aint[j];
+                    }
+                }
+
+                this.heightMapMinimum = data.getHeightMapMinimum();
+                this.isModified = true;
+            } else {
+                this.generateHeightMap();
+            }
+
+            for (TileEntity tileentity : this.chunkTileEntityMap.values()) {
+                tileentity.updateContainingBlockInfo();
+            }
+        }
+    }
+
     public BiomeGenBase getBiome(BlockPos pos, WorldChunkManager chunkManager) {
         int i = pos.getX() & 15;
         int j = pos.getZ() & 15;
@@ -0,0 +1,166 @@
+package net.minecraft.world.chunk;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Chunk packet data unpacked into fresh block storage off the main thread. {@link Chunk#fillChunk(DecodedChunkData)}
+ * then only has to swap the sections in, which keeps the per-chunk cost on the render thread down to a few array
+ * copies.
+ */
+public class DecodedChunkData {
+    private final byte[] rawData;
+    private final int sectionMask;
+    private final boolean fullChunk;
+    private final boolean hasSky;
+    private final ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+    private final byte[] biomes;
+
+    /**
+     * Height map over the decoded sections, or null for partial chunks. Columns without an opaque block are -1 so
+     * the chunk keeps its current value, as Chunk.generateHeightMap does
+     */
+    private final int[] heightMap;
+    private final int heightMapMinimum;
+
+    private DecodedChunkData(byte[] rawDataIn, int sectionMaskIn, boolean fullChunkIn, boolean hasSkyIn) {
+        this.rawData = rawDataIn;
+        this.sectionMask = sectionMaskIn;
+        this.fullChunk = fullChunkIn;
+        this.hasSky = hasSkyIn;
+        int i = 0;
+
+        for (int j = 0; j < this.sections.length; ++j) {
+            if ((sectionMaskIn & 1 << j) != 0) {
+                ExtendedBlockStorage extendedblockstorage = new ExtendedBlockStorage(j << 4, hasSkyIn);
+                char[] achar = extendedblockstorage.getData();
+
+                for (int k = 0; k < achar.length; ++k) {
+                    achar[k] = (char) ((rawDataIn[i + 1] & 255) << 8 | rawDataIn[i] & 255);
+                    i += 2;
+                }
+
+                this.sections[j] = extendedblockstorage;
+            }
+        }
+
+        for (ExtendedBlockStorage extendedblockstorage1 : this.sections) {
+            if (extendedblockstorage1 != null) {
+                byte[] abyte = extendedblockstorage1.getBlocklightArray().getData();
+                System.arraycopy(rawDataIn, i, abyte, 0, abyte.length);
+                i += abyte.length;
+            }
+        }
+
+        if (hasSkyIn) {
+            for (ExtendedBlockStorage extendedblockstorage2 : this.sections) {
+                if (extendedblockstorage2 != null) {
+                    byte[] abyte1 = extendedblockstorage2.getSkylightArray().getData();
+                    System.arraycopy(rawDataIn, i, abyte1, 0, abyte1.length);
+                    i += abyte1.length;
+                }
+            }
+        }
+
+        if (fullChunkIn) {
+            this.biomes = new byte[256];
+            System.arraycopy(rawDataIn, i, this.biomes, 0, this.biomes.length);
+        } else {
+            this.biomes = null;
+        }
+
+        for (ExtendedBlockStorage extendedblockstorage3 : this.sections) {
+            if (extendedblockstorage3 != null) {
+                extendedblockstorage3.removeInvalidBlocks();
+            }
+        }
+
+        if (fullChunkIn) {
+            this.heightMap = new int[256];
+            this.heightMapMinimum = this.generateHeightMap();
+        } else {
+            this.heightMap = null;
+            this.heightMapMinimum = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Decodes the data of a chunk packet. Returns null if the data does not have the length the section mask calls
+     * for, in which case the caller should hand the raw bytes to {@link Chunk#fillChunk(byte[], int, boolean)}.
+     */
+    public static DecodedChunkData decode(byte[] data, int sectionMask, boolean fullChunk, boolean hasSky) {
+        int i = Integer.bitCount(sectionMask & 65535);
+        int j = i * 8192 + i * 2048 + (hasSky ? i * 2048 : 0) + (fullChunk ? 256 : 0);
+        return data != null && data.length == j ? new DecodedChunkData(data, sectionMask, fullChunk, hasSky) : null;
+    }
+
+    private int generateHeightMap() {
+        int i = 0;
+        int j = Integer.MAX_VALUE;
+
+        for (int k = this.sections.length - 1; k >= 0; --k) {
+            if (this.sections[k] != null) {
+                i = k << 4;
+                break;
+            }
+        }
+
+        for (int l = 0; l < 16; ++l) {
+            for (int i1 = 0; i1 < 16; ++i1) {
+                this.heightMap[i1 << 4 | l] = -1;
+
+                for (int j1 = i + 16; j1 > 0; --j1) {
+                    ExtendedBlockStorage extendedblockstorage = this.sections[j1 - 1 >> 4];
+
+                    if (extendedblockstorage != null) {
+                        Block block = extendedblockstorage.getBlockByExtId(l, j1 - 1 & 15, i1);
+
+                        if (block.getLightOpacity() != 0) {
+                            this.heightMap[i1 << 4 | l] = j1;
+
+                            if (j1 < j) {
+                                j = j1;
+                            }
+
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return j;
+    }
+
+    public byte[] getRawData() {
+        return this.rawData;
+    }
+
+    public int getSectionMask() {
+        return this.sectionMask;
+    }
+
+    public boolean isFullChunk() {
+        return this.fullChunk;
+    }
+
+    public boolean hasSky() {
+        return this.hasSky;
+    }
+
+    public ExtendedBlockStorage[] getSections() {
+        return this.sections;
+    }
+
+    public byte[] getBiomes() {
+        return this.biomes;
+    }
+
+    public int[] getHeightMap() {
+        return this.heightMap;
+    }
+
+    public int getHeightMapMinimum() {
+        return this.heightMapMinimum;
+    }
+}
@@ -60,9 +60,16 @@ public class EmptyChunk extends Chunk {
         return p_177413_1_.defaultLightValue;
     }
 
+    public int getLightFor(EnumSkyBlock p_177413_1_, int x, int y, int z) {
+        return p_177413_1_.defaultLightValue;
+    }
+
     public void setLightFor(EnumSkyBlock p_177431_1_, BlockPos pos, int value) {
     }
 
+    public void setLightFor(EnumSkyBlock p_177431_1_, int x, int y, int z, int value) {
+    }
+
     public int getLightSubtracted(BlockPos pos, int amount) {
         return 0;
     }
@@ -89,6 +96,10 @@ public class EmptyChunk extends Chunk {
         return false;
     }
 
+    public boolean canSeeSky(int x, int y, int z) {
+        return false;
+    }
+
     public TileEntity getTileEntity(BlockPos pos, Chunk.EnumCreateEntityType p_177424_2_) {
         return null;
     }
@@ -1,5 +1,7 @@
 package net.minecraft.world.chunk.storage;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.minecraft.block.Block;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityList;
@@ -8,6 +10,7 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
+import net.minecraft.util.MathHelper;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.MinecraftException;
@@ -25,14 +28,31 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
 
 public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
     private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Shared pool that reads, inflates and parses chunk NBT ahead of the server thread asking for it
+     */
+    private static final ExecutorService chunkReaderPool = Executors.newFixedThreadPool(MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 1, 1, 4), (new ThreadFactoryBuilder()).setNameFormat("Chunk Reader #%d").setDaemon(true).build());
+
+    /**
+     * Upper bound on prefetched chunks held per loader, so a fast-moving player cannot queue up unbounded NBT
+     */
+    private static final int MAX_CHUNKS_TO_LOAD = 1024;
+
+    /**
+     * Max chunks of one region file written per writeNextIO call
+     */
+    private static final int MAX_WRITE_BATCH = 32;
     private final Map<ChunkCoordIntPair, NBTTagCompound> chunksToRemove = new ConcurrentHashMap();
+    private final Map<ChunkCoordIntPair, Future<NBTTagCompound>> chunksToLoad = new ConcurrentHashMap();
     private final Set<ChunkCoordIntPair> pendingAnvilChunksCoordinates = Collections.<ChunkCoordIntPair>newSetFromMap(new ConcurrentHashMap());
 
     /**
@@ -40,6 +60,7 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
      */
     private final File chunkSaveLocation;
     private boolean field_183014_e = false;
+    private int chunkTickCounter;
 
     public AnvilChunkLoader(File chunkSaveLocationIn) {
         this.chunkSaveLocation = chunkSaveLocationIn;
@@ -49,20 +70,81 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
      * Loads the specified(XZ) chunk into the specified world.
      */
     public Chunk loadChunk(World worldIn, int x, int z) throws IOException {
+        NBTTagCompound nbttagcompound = this.loadChunkNBT(x, z);
+        return nbttagcompound == null ? null : this.checkedReadChunkFromNBT(worldIn, x, z, nbttagcompound);
+    }
+
+    /**
+     * Returns the newest NBT of the chunk at x, z: the copy waiting to be saved if there is one, else a finished
+     * prefetch, else what the region file holds. A prefetch that has not finished is cancelled and the chunk read on
+     * the calling thread, since it may still be queued behind many other reads on the pool.
+     */
+    NBTTagCompound loadChunkNBT(int x, int z) throws IOException {
         ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(x, z);
         NBTTagCompound nbttagcompound = this.chunksToRemove.get(chunkcoordintpair);
+        Future<NBTTagCompound> future = this.chunksToLoad.remove(chunkcoordintpair);
 
-        if (nbttagcompound == null) {
-            DataInputStream datainputstream = RegionFileCache.getChunkInputStream(this.chunkSaveLocation, x, z);
-
-            if (datainputstream == null) {
-                return null;
+        if (nbttagcompound == null && future != null) {
+            if (!future.isDone()) {
+                future.cancel(false);
+            } else {
+                try {
+                    nbttagcompound = future.get();
+                } catch (InterruptedException interruptedexception) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException executionexception) {
+                    logger.warn("Couldn't prefetch chunk at " + x + "," + z + ", reading it again", executionexception.getCause());
+                }
             }
+        }
+
+        return nbttagcompound == null ? this.readChunkNBT(x, z) : nbttagcompound;
+    }
+
+    /**
+     * Starts reading, inflating and parsing the chunk at x, z on the chunk reader pool, so a later loadChunk for it
+     * only has to build the Chunk. Does nothing if the chunk is already queued for saving or being prefetched.
+     */
+    public void prefetchChunk(final int x, final int z) {
+        final ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(x, z);
+
+        if (!this.chunksToRemove.containsKey(chunkcoordintpair) && !this.chunksToLoad.containsKey(chunkcoordintpair) && this.chunksToLoad.size() < MAX_CHUNKS_TO_LOAD) {
+            this.chunksToLoad.put(chunkcoordintpair, chunkReaderPool.submit(new Callable<NBTTagCompound>() {
+                public NBTTagCompound call() throws Exception {
+                    // A save in flight may be newer than the region file; leave it to loadChunk on the server thread
+                    return !AnvilChunkLoader.this.chunksToRemove.containsKey(chunkcoordintpair) && !AnvilChunkLoader.this.pendingAnvilChunksCoordinates.contains(chunkcoordintpair) ? AnvilChunkLoader.this.readChunkNBT(x, z) : null;
+                }
+            }));
+        }
+    }
 
-            nbttagcompound = CompressedStreamTools.read(datainputstream);
+    /**
+     * Whether the chunk at x, z has been saved, either to its region file or to the queue of chunks waiting to be
+     * written. Does not create region files that do not exist yet.
+     */
+    public boolean isChunkStored(int x, int z) {
+        ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(x, z);
+
+        if (!this.chunksToRemove.containsKey(chunkcoordintpair) && !this.pendingAnvilChunksCoordinates.contains(chunkcoordintpair)) {
+            File file1 = new File(new File(this.chunkSaveLocation, "region"), "r." + (x >> 5) + "." + (z >> 5) + ".mca");
+
+            if (!file1.exists()) {
+                return false;
+            } else {
+                try {
+                    return ChannelRegionFileCache.ENABLED ? ChannelRegionFileCache.isChunkSaved(this.chunkSaveLocation, x, z) : RegionFileCache.createOrLoadRegionFile(this.chunkSaveLocation, x, z).isChunkSaved(x & 31, z & 31);
+                } catch (IOException var6) {
+                    return true;
+                }
+            }
+        } else {
+            return true;
         }
+    }
 
-        return this.checkedReadChunkFromNBT(worldIn, x, z, nbttagcompound);
+    private NBTTagCompound readChunkNBT(int x, int z) throws IOException {
+        DataInputStream datainputstream = ChannelRegionFileCache.ENABLED ? ChannelRegionFileCache.getChunkInputStream(this.chunkSaveLocation, x, z) : RegionFileCache.getChunkInputStream(this.chunkSaveLocation, x, z);
+        return datainputstream == null ? null : CompressedStreamTools.read(datainputstream);
     }
 
     /**
@@ -107,16 +189,19 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
         }
     }
 
+    /**
+     * Queues the chunk NBT for the file IO thread. A copy already queued, or being written, is replaced, so the newest
+     * save always reaches the region file.
+     */
     protected void addChunkToPending(ChunkCoordIntPair p_75824_1_, NBTTagCompound p_75824_2_) {
-        if (!this.pendingAnvilChunksCoordinates.contains(p_75824_1_)) {
-            this.chunksToRemove.put(p_75824_1_, p_75824_2_);
-        }
-
+        this.chunksToRemove.put(p_75824_1_, p_75824_2_);
         ThreadedFileIOBase.getThreadedIOInstance().queueIO(this);
     }
 
     /**
-     * Returns a boolean stating if the write was unsuccessful.
+     * Returns a boolean stating if the write was unsuccessful. Writes up to MAX_WRITE_BATCH queued chunks of one
+     * region. Each stays in chunksToRemove until it is on disk, so loads see it meanwhile, and is then only dropped if
+     * no newer copy was queued during the write.
      */
     public boolean writeNextIO() {
         if (this.chunksToRemove.isEmpty()) {
@@ -127,31 +212,41 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
             return false;
         } else {
             ChunkCoordIntPair chunkcoordintpair = this.chunksToRemove.keySet().iterator().next();
-            boolean lvt_3_1_;
+            List<ChunkCoordIntPair> list = Lists.newArrayList(chunkcoordintpair);
+
+            for (ChunkCoordIntPair chunkcoordintpair1 : this.chunksToRemove.keySet()) {
+                if (list.size() >= MAX_WRITE_BATCH) {
+                    break;
+                }
+
+                if (chunkcoordintpair1.chunkXPos >> 5 == chunkcoordintpair.chunkXPos >> 5 && chunkcoordintpair1.chunkZPos >> 5 == chunkcoordintpair.chunkZPos >> 5 && !chunkcoordintpair1.equals(chunkcoordintpair)) {
+                    list.add(chunkcoordintpair1);
+                }
+            }
 
-            try {
-                this.pendingAnvilChunksCoordinates.add(chunkcoordintpair);
-                NBTTagCompound nbttagcompound = this.chunksToRemove.remove(chunkcoordintpair);
+            for (ChunkCoordIntPair chunkcoordintpair2 : list) {
+                NBTTagCompound nbttagcompound = this.chunksToRemove.get(chunkcoordintpair2);
 
                 if (nbttagcompound != null) {
+                    this.pendingAnvilChunksCoordinates.add(chunkcoordintpair2);
+
                     try {
-                        this.func_183013_b(chunkcoordintpair, nbttagcompound);
+                        this.func_183013_b(chunkcoordintpair2, nbttagcompound);
                     } catch (Exception exception) {
                         logger.error("Failed to save chunk", exception);
+                    } finally {
+                        this.chunksToRemove.remove(chunkcoordintpair2, nbttagcompound);
+                        this.pendingAnvilChunksCoordinates.remove(chunkcoordintpair2);
                     }
                 }
-
-                lvt_3_1_ = true;
-            } finally {
-                this.pendingAnvilChunksCoordinates.remove(chunkcoordintpair);
             }
 
-            return lvt_3_1_;
+            return true;
         }
     }
 
     private void func_183013_b(ChunkCoordIntPair p_183013_1_, NBTTagCompound p_183013_2_) throws IOException {
-        DataOutputStream dataoutputstream = RegionFileCache.getChunkOutputStream(this.chunkSaveLocation, p_183013_1_.chunkXPos, p_183013_1_.chunkZPos);
+        DataOutputStream dataoutputstream = ChannelRegionFileCache.ENABLED ? ChannelRegionFileCache.getChunkOutputStream(this.chunkSaveLocation, p_183013_1_.chunkXPos, p_183013_1_.chunkZPos) : RegionFileCache.getChunkOutputStream(this.chunkSaveLocation, p_183013_1_.chunkXPos, p_183013_1_.chunkZPos);
         CompressedStreamTools.write(p_183013_2_, dataoutputstream);
         dataoutputstream.close();
     }
@@ -167,6 +262,17 @@ public class AnvilChunkLoader implements IChunkLoader, IThreadedFileIO {
      * Called every World.tick()
      */
     public void chunkTick() {
+        if (++this.chunkTickCounter >= 200) {
+            this.chunkTickCounter = 0;
+            Iterator<Future<NBTTagCompound>> iterator = this.chunksToLoad.values().iterator();
+
+            while (iterator.hasNext()) {
+                // Finished prefetches nobody claimed; if one is still wanted, loadChunk just reads it again
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+        }
     }
 
     /**
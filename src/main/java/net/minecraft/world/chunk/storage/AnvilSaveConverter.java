@@ -72,6 +72,7 @@ public class AnvilSaveConverter extends SaveFormatOld {
 
     public void flushCache() {
         RegionFileCache.clearRegionFileReferences();
+        ChannelRegionFileCache.clearRegionFileReferences();
     }
 
     /**
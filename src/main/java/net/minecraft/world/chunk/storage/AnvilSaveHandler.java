@@ -53,5 +53,6 @@ public class AnvilSaveHandler extends SaveHandler {
         }
 
         RegionFileCache.clearRegionFileReferences();
+        ChannelRegionFileCache.clearRegionFileReferences();
     }
 }
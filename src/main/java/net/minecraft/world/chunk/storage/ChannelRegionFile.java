@@ -0,0 +1,270 @@
+package net.minecraft.world.chunk.storage;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Anvil region file backed by a {@link FileChannel}. The 8 KiB offset/timestamp header is read once and kept on the
+ * heap, with changed entries written straight through, and chunk payloads are read with positional reads, so any
+ * number of chunk loads can run against one region at the same time. Writes take the exclusive side of the region's
+ * lock. The on-disk format is identical to {@link RegionFile}.
+ */
+public class ChannelRegionFile {
+    private static final byte[] emptyByte = new byte[1];
+    private final File fileName;
+    private final FileChannel dataFile;
+    private final ByteBuffer header = ByteBuffer.allocate(8192);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Set bits mark sectors in use; everything at or beyond sectorCount is implicitly free
+     */
+    private final BitSet sectorsUsed = new BitSet();
+    private int sectorCount;
+    private volatile boolean closed;
+
+    public ChannelRegionFile(File fileNameIn) throws IOException {
+        this.fileName = fileNameIn;
+        this.dataFile = new RandomAccessFile(fileNameIn, "rw").getChannel();
+
+        try {
+            long i = this.dataFile.size();
+
+            if (i < 8192L) {
+                this.writeFully(ByteBuffer.allocate(8192 - (int) i), i);
+                i = 8192L;
+            }
+
+            if ((i & 4095L) != 0L) {
+                this.writeFully(ByteBuffer.allocate(4096 - (int) (i & 4095L)), i);
+                i = (i | 4095L) + 1L;
+            }
+
+            this.sectorCount = (int) (i / 4096L);
+            this.readFully(this.header, 0L);
+            this.sectorsUsed.set(0, 2);
+
+            for (int j = 0; j < 1024; ++j) {
+                int k = this.header.getInt(j * 4);
+
+                if (k != 0 && (k >> 8) + (k & 255) <= this.sectorCount) {
+                    this.sectorsUsed.set(k >> 8, (k >> 8) + (k & 255));
+                }
+            }
+        } catch (IOException ioexception) {
+            this.dataFile.close();
+            throw ioexception;
+        }
+    }
+
+    /**
+     * Returns an uncompressed chunk stream from the region file, or null if the chunk is absent or corrupt. Throws
+     * {@link ClosedChannelException} if this region was closed concurrently.
+     */
+    public DataInputStream getChunkDataInputStream(int x, int z) throws IOException {
+        if (this.outOfBounds(x, z)) {
+            return null;
+        } else {
+            byte[] abyte;
+            byte b0;
+            this.lock.readLock().lock();
+
+            try {
+                this.ensureOpen();
+                int i = this.getOffset(x, z);
+
+                if (i == 0) {
+                    return null;
+                }
+
+                int j = i >> 8;
+                int k = i & 255;
+
+                if (j + k > this.sectorCount) {
+                    return null;
+                }
+
+                ByteBuffer bytebuffer = ByteBuffer.allocate(5);
+                this.readFully(bytebuffer, j * 4096L);
+                bytebuffer.flip();
+                int l = bytebuffer.getInt();
+                b0 = bytebuffer.get();
+
+                if (l > 4096 * k || l <= 0) {
+                    return null;
+                }
+
+                abyte = new byte[l - 1];
+                this.readFully(ByteBuffer.wrap(abyte), j * 4096L + 5L);
+            } finally {
+                this.lock.readLock().unlock();
+            }
+
+            if (b0 == 1) {
+                return new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(abyte))));
+            } else if (b0 == 2) {
+                return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(abyte))));
+            } else {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * args: x, z, data, length - write chunk data at (x, z) to disk. Throws {@link ClosedChannelException} if this
+     * region was closed concurrently.
+     */
+    public void write(int x, int z, byte[] data, int length) throws IOException {
+        if (!this.outOfBounds(x, z)) {
+            int i = (length + 5) / 4096 + 1;
+
+            if (i < 256) {
+                this.lock.writeLock().lock();
+
+                try {
+                    this.ensureOpen();
+                    int j = this.getOffset(x, z);
+                    int k = j >> 8;
+                    int l = j & 255;
+
+                    if (k == 0 || l != i) {
+                        if (k != 0) {
+                            this.sectorsUsed.clear(k, k + l);
+                        }
+
+                        k = this.findFreeSectors(i);
+                        this.sectorsUsed.set(k, k + i);
+
+                        if (k + i > this.sectorCount) {
+                            this.writeFully(ByteBuffer.wrap(emptyByte), (k + i) * 4096L - 1L);
+                            this.sectorCount = k + i;
+                        }
+                    }
+
+                    this.write(k, data, length);
+                    this.writeHeader((x + z * 32) * 4, k << 8 | i);
+                    this.writeHeader(4096 + (x + z * 32) * 4, (int) (MinecraftServer.getCurrentTimeMillis() / 1000L));
+                } finally {
+                    this.lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first sector of a free run of the given length. Sectors past the end of the file count as free, so
+     * this always succeeds, extending the file when nothing inside it fits.
+     */
+    private int findFreeSectors(int count) {
+        int i = this.sectorsUsed.nextClearBit(2);
+
+        while (true) {
+            int j = this.sectorsUsed.nextSetBit(i);
+
+            if (j == -1 || j - i >= count) {
+                return i;
+            }
+
+            i = this.sectorsUsed.nextClearBit(j);
+        }
+    }
+
+    /**
+     * args: sectorNumber, data, length - write the chunk data to this region file
+     */
+    private void write(int sectorNumber, byte[] data, int length) throws IOException {
+        ByteBuffer bytebuffer = ByteBuffer.allocate(5);
+        bytebuffer.putInt(length + 1);
+        bytebuffer.put((byte) 2);
+        bytebuffer.flip();
+        this.writeFully(bytebuffer, sectorNumber * 4096L);
+        this.writeFully(ByteBuffer.wrap(data, 0, length), sectorNumber * 4096L + 5L);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int i = this.dataFile.read(buffer, position);
+
+            if (i < 0) {
+                throw new EOFException("Unexpected end of region file " + this.fileName);
+            }
+
+            position += i;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += this.dataFile.write(buffer, position);
+        }
+    }
+
+    private void writeHeader(int index, int value) throws IOException {
+        this.header.putInt(index, value);
+        ByteBuffer bytebuffer = ByteBuffer.allocate(4);
+        bytebuffer.putInt(value);
+        bytebuffer.flip();
+        this.writeFully(bytebuffer, index);
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (this.closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * args: x, z - check region bounds
+     */
+    private boolean outOfBounds(int x, int z) {
+        return x < 0 || x >= 32 || z < 0 || z >= 32;
+    }
+
+    /**
+     * args: x, z - get chunk's offset in region file
+     */
+    private int getOffset(int x, int z) {
+        return this.header.getInt((x + z * 32) * 4);
+    }
+
+    /**
+     * args: x, z, - true if chunk has been saved / converted. Throws {@link ClosedChannelException} if this region was
+     * closed concurrently, since a closed region cannot tell a missing chunk from an evicted one.
+     */
+    public boolean isChunkSaved(int x, int z) throws ClosedChannelException {
+        this.lock.readLock().lock();
+
+        try {
+            this.ensureOpen();
+            return this.getOffset(x, z) != 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for in-flight reads and writes, then closes the file. Later calls on this region throw
+     * {@link ClosedChannelException}.
+     */
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+
+        try {
+            if (!this.closed) {
+                this.closed = true;
+                this.dataFile.close();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package net.minecraft.world.chunk.storage;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link RegionFileCache} counterpart for {@link ChannelRegionFile}. Regions are kept in access order and only the
+ * least recently used one is closed when the cache is full. The cache lock only covers the lookup: a region is opened
+ * and closed outside it by the thread that added or evicted it, and other threads asking for the same file wait on its
+ * future, so chunk I/O on different regions (and reads on the same region) proceeds in parallel. A file is not opened
+ * again until an earlier instance of it has finished closing, so two instances never allocate sectors of one file.
+ */
+public class ChannelRegionFileCache {
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * Whether AnvilChunkLoader should use this backend instead of RegionFileCache
+     */
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("air.channelRegionFiles", "false"));
+    private static final int MAX_OPEN_REGIONS = 256;
+    private static final Map<File, SettableFuture<ChannelRegionFile>> regionsByFilename = new LinkedHashMap(16, 0.75F, true);
+
+    /**
+     * Evicted regions that are still waiting for in-flight I/O before closing, completed once the file is closed
+     */
+    private static final Map<File, SettableFuture<Void>> closingRegions = Maps.newHashMap();
+
+    public static ChannelRegionFile createOrLoadRegionFile(File worldDir, int chunkX, int chunkZ) throws IOException {
+        File file1 = new File(worldDir, "region");
+        File file2 = new File(file1, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+        SettableFuture<ChannelRegionFile> settablefuture;
+        SettableFuture<Void> settablefuture1 = null;
+        File evictedFile = null;
+        SettableFuture<ChannelRegionFile> evicted = null;
+        SettableFuture<Void> evictedClose = null;
+        boolean flag = false;
+
+        synchronized (regionsByFilename) {
+            settablefuture = regionsByFilename.get(file2);
+
+            if (settablefuture == null) {
+                if (regionsByFilename.size() >= MAX_OPEN_REGIONS) {
+                    evictedFile = regionsByFilename.keySet().iterator().next();
+                    evicted = regionsByFilename.remove(evictedFile);
+                    evictedClose = SettableFuture.create();
+                    closingRegions.put(evictedFile, evictedClose);
+                }
+
+                settablefuture = SettableFuture.create();
+                settablefuture1 = closingRegions.get(file2);
+                regionsByFilename.put(file2, settablefuture);
+                flag = true;
+            }
+        }
+
+        if (evicted != null) {
+            closeRegion(evictedFile, evicted, evictedClose);
+        }
+
+        if (flag) {
+            try {
+                if (settablefuture1 != null) {
+                    Uninterruptibles.getUninterruptibly(settablefuture1);
+                }
+
+                if (!file1.exists()) {
+                    file1.mkdirs();
+                }
+
+                settablefuture.set(new ChannelRegionFile(file2));
+            } catch (Throwable throwable) {
+                synchronized (regionsByFilename) {
+                    regionsByFilename.remove(file2, settablefuture);
+                }
+
+                settablefuture.setException(throwable);
+            }
+        }
+
+        try {
+            return Uninterruptibles.getUninterruptibly(settablefuture);
+        } catch (ExecutionException executionexception) {
+            Throwables.propagateIfInstanceOf(executionexception.getCause(), IOException.class);
+            throw Throwables.propagate(executionexception.getCause());
+        }
+    }
+
+    /**
+     * Closes an evicted region once it has finished opening. ChannelRegionFile.close waits for reads and writes already
+     * running on it, and calls arriving later fail and look the file up again, which waits for the close.
+     */
+    private static void closeRegion(File file, SettableFuture<ChannelRegionFile> region, SettableFuture<Void> closed) {
+        try {
+            Uninterruptibles.getUninterruptibly(region).close();
+        } catch (ExecutionException var8) {
+            // Failed to open, nothing to close
+        } catch (IOException ioexception) {
+            logger.warn("Couldn't close region file " + file, ioexception);
+        } finally {
+            synchronized (regionsByFilename) {
+                closingRegions.remove(file, closed);
+            }
+
+            closed.set(null);
+        }
+    }
+
+    /**
+     * clears region file references
+     */
+    public static void clearRegionFileReferences() {
+        List<Map.Entry<File, SettableFuture<ChannelRegionFile>>> list;
+        List<SettableFuture<Void>> list1 = Lists.newArrayList();
+
+        synchronized (regionsByFilename) {
+            list = Lists.newArrayList(regionsByFilename.entrySet());
+            regionsByFilename.clear();
+            list1.addAll(closingRegions.values());
+
+            for (Map.Entry<File, SettableFuture<ChannelRegionFile>> entry : list) {
+                SettableFuture<Void> settablefuture = SettableFuture.create();
+                closingRegions.put(entry.getKey(), settablefuture);
+                list1.add(settablefuture);
+            }
+        }
+
+        int i = list1.size() - list.size();
+
+        for (int j = 0; j < list.size(); ++j) {
+            closeRegion(list.get(j).getKey(), list.get(j).getValue(), list1.get(i + j));
+        }
+
+        for (SettableFuture<Void> settablefuture1 : list1) {
+            try {
+                Uninterruptibles.getUninterruptibly(settablefuture1);
+            } catch (ExecutionException var7) {
+                // Closes never fail their future
+            }
+        }
+    }
+
+    /**
+     * Returns an input stream for the specified chunk. Args: worldDir, chunkX, chunkZ
+     */
+    public static DataInputStream getChunkInputStream(File worldDir, int chunkX, int chunkZ) throws IOException {
+        while (true) {
+            ChannelRegionFile regionfile = createOrLoadRegionFile(worldDir, chunkX, chunkZ);
+
+            try {
+                return regionfile.getChunkDataInputStream(chunkX & 31, chunkZ & 31);
+            } catch (ClosedChannelException var5) {
+                // Evicted between lookup and read, reopen it
+            }
+        }
+    }
+
+    /**
+     * Whether the specified chunk has been written to its region file. Args: worldDir, chunkX, chunkZ
+     */
+    public static boolean isChunkSaved(File worldDir, int chunkX, int chunkZ) throws IOException {
+        while (true) {
+            ChannelRegionFile regionfile = createOrLoadRegionFile(worldDir, chunkX, chunkZ);
+
+            try {
+                return regionfile.isChunkSaved(chunkX & 31, chunkZ & 31);
+            } catch (ClosedChannelException var5) {
+                // Evicted between lookup and check, reopen it
+            }
+        }
+    }
+
+    /**
+     * Returns an output stream for the specified chunk. Data is on disk when the returned stream is closed. Args:
+     * worldDir, chunkX, chunkZ
+     */
+    public static DataOutputStream getChunkOutputStream(File worldDir, int chunkX, int chunkZ) {
+        return new DataOutputStream(new DeflaterOutputStream(new ChannelRegionFileCache.ChunkBuffer(worldDir, chunkX, chunkZ)));
+    }
+
+    private static void write(File worldDir, int chunkX, int chunkZ, byte[] data, int length) throws IOException {
+        while (true) {
+            ChannelRegionFile regionfile = createOrLoadRegionFile(worldDir, chunkX, chunkZ);
+
+            try {
+                regionfile.write(chunkX & 31, chunkZ & 31, data, length);
+                return;
+            } catch (ClosedChannelException var7) {
+                // Evicted between lookup and write, reopen it
+            }
+        }
+    }
+
+    static class ChunkBuffer extends ByteArrayOutputStream {
+        private final File worldDir;
+        private final int chunkX;
+        private final int chunkZ;
+
+        public ChunkBuffer(File worldDir, int x, int z) {
+            super(8096);
+            this.worldDir = worldDir;
+            this.chunkX = x;
+            this.chunkZ = z;
+        }
+
+        public void close() throws IOException {
+            ChannelRegionFileCache.write(this.worldDir, this.chunkX, this.chunkZ, this.buf, this.count);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package net.minecraft.world.chunk.storage;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.storage.ThreadedFileIOBase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Saves and loads the chunks of one region over and over while the file IO thread writes them in batches, checking
+ * that every load returns the last save of that chunk and nothing else. Re-saving a chunk while its region batch is
+ * being written is the case that matters. Args: [saveDir] [iterations]
+ */
+public class TestChunkSaves {
+    public static void main(String[] args) throws Exception {
+        File file1 = args.length > 0 ? new File(args[0]) : Files.createTempDirectory("chunksaves").toFile();
+        int i = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        AnvilChunkLoader anvilchunkloader = new AnvilChunkLoader(file1);
+        Random random = new Random(0L);
+        int[] aint = new int[64];
+        int j = 0;
+
+        for (int k = 0; k < i; ++k) {
+            int l = random.nextInt(aint.length);
+
+            if (random.nextInt(4) == 0) {
+                int i1 = random.nextInt(aint.length);
+
+                if (i1 != l) {
+                    anvilchunkloader.prefetchChunk(i1 & 7, i1 >> 3);
+                }
+            }
+
+            j += check(anvilchunkloader, l, aint[l]);
+            NBTTagCompound nbttagcompound = new NBTTagCompound();
+            byte[] abyte = new byte[random.nextInt(12000)];
+            random.nextBytes(abyte);
+            nbttagcompound.setInteger("xPos", l & 7);
+            nbttagcompound.setInteger("zPos", l >> 3);
+            nbttagcompound.setInteger("Generation", ++aint[l]);
+            nbttagcompound.setByteArray("Data", abyte);
+            anvilchunkloader.addChunkToPending(new ChunkCoordIntPair(l & 7, l >> 3), nbttagcompound);
+        }
+
+        ThreadedFileIOBase.getThreadedIOInstance().waitForFinish();
+        RegionFileCache.clearRegionFileReferences();
+        ChannelRegionFileCache.clearRegionFileReferences();
+        AnvilChunkLoader anvilchunkloader1 = new AnvilChunkLoader(file1);
+
+        for (int j1 = 0; j1 < aint.length; ++j1) {
+            j += check(anvilchunkloader1, j1, aint[j1]);
+        }
+
+        System.out.println(i + " saves, " + j + " lost or misplaced chunks (" + (ChannelRegionFileCache.ENABLED ? "ChannelRegionFileCache" : "RegionFileCache") + ")");
+        System.exit(j == 0 ? 0 : 1);
+    }
+
+    private static int check(AnvilChunkLoader loader, int index, int generation) throws Exception {
+        int i = index & 7;
+        int j = index >> 3;
+        NBTTagCompound nbttagcompound = loader.loadChunkNBT(i, j);
+        int k = nbttagcompound == null ? 0 : nbttagcompound.getInteger("Generation");
+
+        if (nbttagcompound != null && (nbttagcompound.getInteger("xPos") != i || nbttagcompound.getInteger("zPos") != j)) {
+            System.out.println("Chunk " + i + "," + j + " holds chunk " + nbttagcompound.getInteger("xPos") + "," + nbttagcompound.getInteger("zPos"));
+            return 1;
+        } else if (k != generation) {
+            System.out.println("Chunk " + i + "," + j + " loaded save " + k + ", expected " + generation);
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+}
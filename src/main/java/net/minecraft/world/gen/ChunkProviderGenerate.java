@@ -1,5 +1,7 @@
 package net.minecraft.world.gen;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockFalling;
 import net.minecraft.entity.EnumCreatureType;
@@ -19,14 +21,42 @@ import net.minecraft.world.gen.feature.WorldGenDungeons;
 import net.minecraft.world.gen.feature.WorldGenLakes;
 import net.minecraft.world.gen.structure.*;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.*;
 
 public class ChunkProviderGenerate implements IChunkProvider {
     /**
-     * RNG.
+     * Threads generating prefetched terrain, one less than the cores available and at most 4 unless overridden
      */
-    private final Random rand;
+    public static final int TERRAIN_GENERATOR_THREADS = Integer.getInteger("air.terrainGeneratorThreads", MathHelper.clamp_int(Runtime.getRuntime().availableProcessors() - 1, 1, 4)).intValue();
+
+    /**
+     * Shared pool that generates the terrain of chunks hinted by prefetchTerrain ahead of the server thread asking
+     * for them
+     */
+    private static final ExecutorService terrainGeneratorPool = Executors.newFixedThreadPool(TERRAIN_GENERATOR_THREADS, (new ThreadFactoryBuilder()).setNameFormat("Terrain Generator #%d").setDaemon(true).build());
+
+    /**
+     * Upper bound on prefetched terrain held per generator; each one keeps a full ChunkPrimer
+     */
+    private static final int MAX_TERRAIN_TO_GENERATE = 256;
+
+    /**
+     * Held while covering a chunk's surface and carving it. Some biomes keep the surface blocks of the column they
+     * are working on in fields of the shared biome instance, and caves and ravines read them back, so these steps of
+     * two chunks must not interleave or the output would depend on thread timing. Only the overworld generates with
+     * this provider, so one lock per provider is enough and other worlds never wait on it.
+     */
+    private final Object surfaceLock = new Object();
+
+    /**
+     * RNG. Replaced by the generator of each chunk this provides, so it ends up in the same state as if the chunk had
+     * been generated on the calling thread.
+     */
+    private Random rand;
     private final NoiseGeneratorOctaves field_147431_j;
     private final NoiseGeneratorOctaves field_147432_k;
     private final NoiseGeneratorOctaves field_147429_l;
@@ -53,11 +83,9 @@ public class ChunkProviderGenerate implements IChunkProvider {
      */
     private final boolean mapFeaturesEnabled;
     private final WorldType field_177475_o;
-    private final double[] field_147434_q;
     private final float[] parabolicField;
     private ChunkProviderSettings settings;
     private Block oceanBlockTmpl = Blocks.water;
-    private double[] stoneNoise = new double[256];
     private final MapGenBase caveGenerator = new MapGenCaves();
 
     /**
@@ -83,13 +111,15 @@ public class ChunkProviderGenerate implements IChunkProvider {
     private final StructureOceanMonument oceanMonumentGenerator = new StructureOceanMonument();
 
     /**
-     * The biomes that are used to generate the chunk
+     * Noise arrays of each thread generating terrain
      */
-    private BiomeGenBase[] biomesForGeneration;
-    double[] mainNoiseArray;
-    double[] lowerLimitNoiseArray;
-    double[] upperLimitNoiseArray;
-    double[] depthNoiseArray;
+    private final ThreadLocal<ChunkProviderGenerate.NoiseBuffers> noiseBuffers = new ThreadLocal<ChunkProviderGenerate.NoiseBuffers>() {
+        protected ChunkProviderGenerate.NoiseBuffers initialValue() {
+            return new ChunkProviderGenerate.NoiseBuffers();
+        }
+    };
+    private final Map<ChunkCoordIntPair, Future<ChunkProviderGenerate.Terrain>> terrainToGenerate = new ConcurrentHashMap();
+    private int terrainTickCounter;
 
     public ChunkProviderGenerate(World worldIn, long seed, boolean generateStructures, String structuresJson) {
         this.worldObj = worldIn;
@@ -103,7 +133,6 @@ public class ChunkProviderGenerate implements IChunkProvider {
         this.noiseGen5 = new NoiseGeneratorOctaves(this.rand, 10);
         this.noiseGen6 = new NoiseGeneratorOctaves(this.rand, 16);
         this.mobSpawnerNoise = new NoiseGeneratorOctaves(this.rand, 8);
-        this.field_147434_q = new double[825];
         this.parabolicField = new float[25];
 
         for (int i = -2; i <= 2; ++i) {
@@ -121,11 +150,14 @@ public class ChunkProviderGenerate implements IChunkProvider {
     }
 
     /**
-     * Generates a bare-bones chunk of nothing but stone or ocean blocks, formed, but featureless.
+     * Generates a bare-bones chunk of nothing but stone or ocean blocks, formed, but featureless. Safe to call from
+     * several threads.
      */
     public void setBlocksInChunk(int x, int z, ChunkPrimer primer) {
-        this.biomesForGeneration = this.worldObj.getWorldChunkManager().getBiomesForGeneration(this.biomesForGeneration, x * 4 - 2, z * 4 - 2, 10, 10);
-        this.func_147423_a(x * 4, 0, z * 4);
+        ChunkProviderGenerate.NoiseBuffers chunkprovidergenerate$noisebuffers = this.noiseBuffers.get();
+        chunkprovidergenerate$noisebuffers.biomesForGeneration = this.worldObj.getWorldChunkManager().getBiomesForGeneration(chunkprovidergenerate$noisebuffers.biomesForGeneration, x * 4 - 2, z * 4 - 2, 10, 10);
+        this.func_147423_a(chunkprovidergenerate$noisebuffers, x * 4, 0, z * 4);
+        double[] adouble = chunkprovidergenerate$noisebuffers.density;
 
         for (int i = 0; i < 4; ++i) {
             int j = i * 5;
@@ -139,14 +171,14 @@ public class ChunkProviderGenerate implements IChunkProvider {
 
                 for (int i2 = 0; i2 < 32; ++i2) {
                     double d0 = 0.125D;
-                    double d1 = this.field_147434_q[i1 + i2];
-                    double d2 = this.field_147434_q[j1 + i2];
-                    double d3 = this.field_147434_q[k1 + i2];
-                    double d4 = this.field_147434_q[l1 + i2];
-                    double d5 = (this.field_147434_q[i1 + i2 + 1] - d1) * d0;
-                    double d6 = (this.field_147434_q[j1 + i2 + 1] - d2) * d0;
-                    double d7 = (this.field_147434_q[k1 + i2 + 1] - d3) * d0;
-                    double d8 = (this.field_147434_q[l1 + i2 + 1] - d4) * d0;
+                    double d1 = adouble[i1 + i2];
+                    double d2 = adouble[j1 + i2];
+                    double d3 = adouble[k1 + i2];
+                    double d4 = adouble[l1 + i2];
+                    double d5 = (adouble[i1 + i2 + 1] - d1) * d0;
+                    double d6 = (adouble[j1 + i2 + 1] - d2) * d0;
+                    double d7 = (adouble[k1 + i2 + 1] - d3) * d0;
+                    double d8 = (adouble[l1 + i2 + 1] - d4) * d0;
 
                     for (int j2 = 0; j2 < 8; ++j2) {
                         double d9 = 0.25D;
@@ -184,38 +216,84 @@ public class ChunkProviderGenerate implements IChunkProvider {
 
     /**
      * Possibly reshapes the biome if appropriate for the biome type, and replaces some stone with things like dirt,
-     * grass, gravel, ice
+     * grass, gravel, ice. Callers must hold surfaceLock.
      */
-    public void replaceBlocksForBiome(int x, int z, ChunkPrimer primer, BiomeGenBase[] biomeGens) {
+    public void replaceBlocksForBiome(int x, int z, ChunkPrimer primer, BiomeGenBase[] biomeGens, Random random) {
+        ChunkProviderGenerate.NoiseBuffers chunkprovidergenerate$noisebuffers = this.noiseBuffers.get();
         double d0 = 0.03125D;
-        this.stoneNoise = this.field_147430_m.func_151599_a(this.stoneNoise, x * 16, z * 16, 16, 16, d0 * 2.0D, d0 * 2.0D, 1.0D);
+        chunkprovidergenerate$noisebuffers.stoneNoise = this.field_147430_m.func_151599_a(chunkprovidergenerate$noisebuffers.stoneNoise, x * 16, z * 16, 16, 16, d0 * 2.0D, d0 * 2.0D, 1.0D);
 
         for (int i = 0; i < 16; ++i) {
             for (int j = 0; j < 16; ++j) {
                 BiomeGenBase biomegenbase = biomeGens[j + i * 16];
-                biomegenbase.genTerrainBlocks(this.worldObj, this.rand, primer, x * 16 + i, z * 16 + j, this.stoneNoise[j + i * 16]);
+                biomegenbase.genTerrainBlocks(this.worldObj, random, primer, x * 16 + i, z * 16 + j, chunkprovidergenerate$noisebuffers.stoneNoise[j + i * 16]);
             }
         }
     }
 
     /**
-     * Will return back a chunk, if it doesn't exist and its not a MP client it will generates all the blocks for the
-     * specified chunk from the map seed and chunk seed
+     * Hints that the chunk at x, z is about to be generated, so its terrain can be generated on the terrain generator
+     * pool in the meantime. Does nothing if it is already queued or too many chunks are.
      */
-    public Chunk provideChunk(int x, int z) {
-        this.rand.setSeed((long) x * 341873128712L + (long) z * 132897987541L);
+    public void prefetchTerrain(final int x, final int z) {
+        ChunkCoordIntPair chunkcoordintpair = new ChunkCoordIntPair(x, z);
+
+        if (!this.terrainToGenerate.containsKey(chunkcoordintpair) && this.terrainToGenerate.size() < MAX_TERRAIN_TO_GENERATE) {
+            this.terrainToGenerate.put(chunkcoordintpair, terrainGeneratorPool.submit(new Callable<ChunkProviderGenerate.Terrain>() {
+                public ChunkProviderGenerate.Terrain call() throws Exception {
+                    return ChunkProviderGenerate.this.generateTerrain(x, z);
+                }
+            }));
+        }
+    }
+
+    /**
+     * The parts of generating a chunk that only depend on the seed: density noise, surface blocks, caves and
+     * ravines. The noise step runs fully in parallel, the surface and carving steps one chunk at a time.
+     */
+    private ChunkProviderGenerate.Terrain generateTerrain(int x, int z) {
+        Random random = new Random((long) x * 341873128712L + (long) z * 132897987541L);
         ChunkPrimer chunkprimer = new ChunkPrimer();
         this.setBlocksInChunk(x, z, chunkprimer);
-        this.biomesForGeneration = this.worldObj.getWorldChunkManager().loadBlockGeneratorData(this.biomesForGeneration, x * 16, z * 16, 16, 16);
-        this.replaceBlocksForBiome(x, z, chunkprimer, this.biomesForGeneration);
+        BiomeGenBase[] abiomegenbase = this.worldObj.getWorldChunkManager().loadBlockGeneratorData(null, x * 16, z * 16, 16, 16);
+
+        synchronized (this.surfaceLock) {
+            this.replaceBlocksForBiome(x, z, chunkprimer, abiomegenbase, random);
 
-        if (this.settings.useCaves) {
-            this.caveGenerator.generate(this, this.worldObj, x, z, chunkprimer);
+            if (this.settings.useCaves) {
+                this.caveGenerator.generate(this, this.worldObj, x, z, chunkprimer);
+            }
+
+            if (this.settings.useRavines) {
+                this.ravineGenerator.generate(this, this.worldObj, x, z, chunkprimer);
+            }
+        }
+
+        return new ChunkProviderGenerate.Terrain(chunkprimer, abiomegenbase, random);
+    }
+
+    /**
+     * Will return back a chunk, if it doesn't exist and its not a MP client it will generates all the blocks for the
+     * specified chunk from the map seed and chunk seed. Terrain that is still queued or being generated on the pool
+     * is cancelled and generated inline, rather than waiting behind the other chunks queued before it.
+     */
+    public Chunk provideChunk(int x, int z) {
+        Future<ChunkProviderGenerate.Terrain> future = this.terrainToGenerate.remove(new ChunkCoordIntPair(x, z));
+        ChunkProviderGenerate.Terrain chunkprovidergenerate$terrain = null;
+
+        if (future != null) {
+            if (future.isDone()) {
+                chunkprovidergenerate$terrain = Futures.getUnchecked(future);
+            } else {
+                future.cancel(false);
+            }
         }
 
-        if (this.settings.useRavines) {
-            this.ravineGenerator.generate(this, this.worldObj, x, z, chunkprimer);
+        if (chunkprovidergenerate$terrain == null) {
+            chunkprovidergenerate$terrain = this.generateTerrain(x, z);
         }
+        ChunkPrimer chunkprimer = chunkprovidergenerate$terrain.primer;
+        this.rand = chunkprovidergenerate$terrain.rand;
 
         if (this.settings.useMineShafts && this.mapFeaturesEnabled) {
             this.mineshaftGenerator.generate(this, this.worldObj, x, z, chunkprimer);
@@ -241,20 +319,20 @@ public class ChunkProviderGenerate implements IChunkProvider {
         byte[] abyte = chunk.getBiomeArray();
 
         for (int i = 0; i < abyte.length; ++i) {
-            abyte[i] = (byte) this.biomesForGeneration[i].biomeID;
+            abyte[i] = (byte) chunkprovidergenerate$terrain.biomes[i].biomeID;
         }
 
         chunk.generateSkylightMap();
         return chunk;
     }
 
-    private void func_147423_a(int x, int y, int z) {
-        this.depthNoiseArray = this.noiseGen6.generateNoiseOctaves(this.depthNoiseArray, x, z, 5, 5, this.settings.depthNoiseScaleX, this.settings.depthNoiseScaleZ, this.settings.depthNoiseScaleExponent);
+    private void func_147423_a(ChunkProviderGenerate.NoiseBuffers buffers, int x, int y, int z) {
+        buffers.depthNoiseArray = this.noiseGen6.generateNoiseOctaves(buffers.depthNoiseArray, x, z, 5, 5, this.settings.depthNoiseScaleX, this.settings.depthNoiseScaleZ, this.settings.depthNoiseScaleExponent);
         float f = this.settings.coordinateScale;
         float f1 = this.settings.heightScale;
-        this.mainNoiseArray = this.field_147429_l.generateNoiseOctaves(this.mainNoiseArray, x, y, z, 5, 33, 5, f / this.settings.mainNoiseScaleX, f1 / this.settings.mainNoiseScaleY, f / this.settings.mainNoiseScaleZ);
-        this.lowerLimitNoiseArray = this.field_147431_j.generateNoiseOctaves(this.lowerLimitNoiseArray, x, y, z, 5, 33, 5, f, f1, f);
-        this.upperLimitNoiseArray = this.field_147432_k.generateNoiseOctaves(this.upperLimitNoiseArray, x, y, z, 5, 33, 5, f, f1, f);
+        buffers.mainNoiseArray = this.field_147429_l.generateNoiseOctaves(buffers.mainNoiseArray, x, y, z, 5, 33, 5, f / this.settings.mainNoiseScaleX, f1 / this.settings.mainNoiseScaleY, f / this.settings.mainNoiseScaleZ);
+        buffers.lowerLimitNoiseArray = this.field_147431_j.generateNoiseOctaves(buffers.lowerLimitNoiseArray, x, y, z, 5, 33, 5, f, f1, f);
+        buffers.upperLimitNoiseArray = this.field_147432_k.generateNoiseOctaves(buffers.upperLimitNoiseArray, x, y, z, 5, 33, 5, f, f1, f);
         z = 0;
         x = 0;
         int i = 0;
@@ -266,11 +344,11 @@ public class ChunkProviderGenerate implements IChunkProvider {
                 float f3 = 0.0F;
                 float f4 = 0.0F;
                 int i1 = 2;
-                BiomeGenBase biomegenbase = this.biomesForGeneration[k + 2 + (l + 2) * 10];
+                BiomeGenBase biomegenbase = buffers.biomesForGeneration[k + 2 + (l + 2) * 10];
 
                 for (int j1 = -i1; j1 <= i1; ++j1) {
                     for (int k1 = -i1; k1 <= i1; ++k1) {
-                        BiomeGenBase biomegenbase1 = this.biomesForGeneration[k + j1 + 2 + (l + k1 + 2) * 10];
+                        BiomeGenBase biomegenbase1 = buffers.biomesForGeneration[k + j1 + 2 + (l + k1 + 2) * 10];
                         float f5 = this.settings.biomeDepthOffSet + biomegenbase1.minHeight * this.settings.biomeDepthWeight;
                         float f6 = this.settings.biomeScaleOffset + biomegenbase1.maxHeight * this.settings.biomeScaleWeight;
 
@@ -295,7 +373,7 @@ public class ChunkProviderGenerate implements IChunkProvider {
                 f3 = f3 / f4;
                 f2 = f2 * 0.9F + 0.1F;
                 f3 = (f3 * 4.0F - 1.0F) / 8.0F;
-                double d7 = this.depthNoiseArray[j] / 8000.0D;
+                double d7 = buffers.depthNoiseArray[j] / 8000.0D;
 
                 if (d7 < 0.0D) {
                     d7 = -d7 * 0.3D;
@@ -334,9 +412,9 @@ public class ChunkProviderGenerate implements IChunkProvider {
                         d1 *= 4.0D;
                     }
 
-                    double d2 = this.lowerLimitNoiseArray[i] / (double) this.settings.lowerLimitScale;
-                    double d3 = this.upperLimitNoiseArray[i] / (double) this.settings.upperLimitScale;
-                    double d4 = (this.mainNoiseArray[i] / 10.0D + 1.0D) / 2.0D;
+                    double d2 = buffers.lowerLimitNoiseArray[i] / (double) this.settings.lowerLimitScale;
+                    double d3 = buffers.upperLimitNoiseArray[i] / (double) this.settings.upperLimitScale;
+                    double d4 = (buffers.mainNoiseArray[i] / 10.0D + 1.0D) / 2.0D;
                     double d5 = MathHelper.denormalizeClamp(d2, d3, d4) - d1;
 
                     if (l1 > 29) {
@@ -344,7 +422,7 @@ public class ChunkProviderGenerate implements IChunkProvider {
                         d5 = d5 * (1.0D - d6) + -10.0D * d6;
                     }
 
-                    this.field_147434_q[i] = d5;
+                    buffers.density[i] = d5;
                     ++i;
                 }
             }
@@ -471,6 +549,18 @@ public class ChunkProviderGenerate implements IChunkProvider {
      * Unloads chunks that are marked to be unloaded. This is not guaranteed to unload every such chunk.
      */
     public boolean unloadQueuedChunks() {
+        if (++this.terrainTickCounter >= 200) {
+            this.terrainTickCounter = 0;
+            Iterator<Future<ChunkProviderGenerate.Terrain>> iterator = this.terrainToGenerate.values().iterator();
+
+            while (iterator.hasNext()) {
+                // Finished terrain nobody claimed; if it is still wanted, provideChunk just generates it again
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+        }
+
         return false;
     }
 
@@ -537,4 +627,30 @@ public class ChunkProviderGenerate implements IChunkProvider {
     public Chunk provideChunk(BlockPos blockPosIn) {
         return this.provideChunk(blockPosIn.getX() >> 4, blockPosIn.getZ() >> 4);
     }
+
+    static class NoiseBuffers {
+        private final double[] density = new double[825];
+        private BiomeGenBase[] biomesForGeneration;
+        private double[] mainNoiseArray;
+        private double[] lowerLimitNoiseArray;
+        private double[] upperLimitNoiseArray;
+        private double[] depthNoiseArray;
+        private double[] stoneNoise = new double[256];
+    }
+
+    static class Terrain {
+        private final ChunkPrimer primer;
+        private final BiomeGenBase[] biomes;
+
+        /**
+         * The chunk's generator after covering the surface
+         */
+        private final Random rand;
+
+        public Terrain(ChunkPrimer primerIn, BiomeGenBase[] biomesIn, Random randIn) {
+            this.primer = primerIn;
+            this.biomes = biomesIn;
+            this.rand = randIn;
+        }
+    }
 }
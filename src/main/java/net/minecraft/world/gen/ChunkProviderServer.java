@@ -16,6 +16,7 @@ import net.minecraft.world.biome.BiomeGenBase;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.EmptyChunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.chunk.storage.IChunkLoader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -136,6 +137,22 @@ public class ChunkProviderServer implements IChunkProvider {
         return chunk == null ? (!this.worldObj.isFindingSpawnPoint() && !this.chunkLoadOverride ? this.dummyChunk : this.loadChunk(x, z)) : chunk;
     }
 
+    /**
+     * Hints that the chunk at x, z will be loaded soon, letting the chunk loader read and parse it off-thread, or the
+     * generator generate its terrain off-thread if it has not been saved yet
+     */
+    public void prefetchChunk(int x, int z) {
+        if (this.chunkLoader instanceof AnvilChunkLoader && !this.chunkExists(x, z)) {
+            AnvilChunkLoader anvilchunkloader = (AnvilChunkLoader) this.chunkLoader;
+
+            if (anvilchunkloader.isChunkStored(x, z)) {
+                anvilchunkloader.prefetchChunk(x, z);
+            } else if (this.serverChunkGenerator instanceof ChunkProviderGenerate) {
+                ((ChunkProviderGenerate) this.serverChunkGenerator).prefetchTerrain(x, z);
+            }
+        }
+    }
+
     private Chunk loadChunkFromFile(int x, int z) {
         if (this.chunkLoader == null) {
             return null;
@@ -1,6 +1,8 @@
 package net.minecraft.world.gen;
 
+import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
 import net.minecraft.world.chunk.ChunkPrimer;
 import net.minecraft.world.chunk.IChunkProvider;
 
@@ -44,4 +46,12 @@ public class MapGenBase {
      */
     protected void recursiveGenerate(World worldIn, int chunkX, int chunkZ, int p_180701_4_, int p_180701_5_, ChunkPrimer chunkPrimerIn) {
     }
+
+    /**
+     * Biome at a position in the chunk being generated. That chunk is never loaded yet, so this is what
+     * World.getBiomeGenForCoords would return, without reading the world's loaded chunks from a generation thread.
+     */
+    protected BiomeGenBase getBiomeGenForCoords(BlockPos pos) {
+        return this.worldObj.getWorldChunkManager().getBiomeGenerator(pos, BiomeGenBase.plains);
+    }
 }
@@ -150,7 +150,7 @@ public class MapGenRavine extends MapGenBase {
 
                                                     if (flag && p_180707_5_.getBlockState(j3, j2 - 1, i2).getBlock() == Blocks.dirt) {
                                                         blockpos$mutableblockpos.set(j3 + p_180707_3_ * 16, 0, i2 + p_180707_4_ * 16);
-                                                        p_180707_5_.setBlockState(j3, j2 - 1, i2, this.worldObj.getBiomeGenForCoords(blockpos$mutableblockpos).topBlock);
+                                                        p_180707_5_.setBlockState(j3, j2 - 1, i2, this.getBiomeGenForCoords(blockpos$mutableblockpos).topBlock);
                                                     }
                                                 }
                                             }
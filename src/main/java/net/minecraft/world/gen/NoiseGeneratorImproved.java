@@ -19,6 +19,15 @@ public class NoiseGeneratorImproved extends NoiseGenerator {
     private static final double[] field_152384_h = new double[]{1.0D, -1.0D, 1.0D, -1.0D, 1.0D, -1.0D, 1.0D, -1.0D, 0.0D, 0.0D, 0.0D, 0.0D, 1.0D, 0.0D, -1.0D, 0.0D};
     private static final double[] field_152385_i = new double[]{0.0D, 0.0D, 0.0D, 0.0D, 1.0D, 1.0D, -1.0D, -1.0D, 1.0D, 1.0D, -1.0D, -1.0D, 0.0D, 1.0D, 0.0D, -1.0D};
 
+    /**
+     * Scratch tables of each thread sampling noise, as terrain is generated on several
+     */
+    static final ThreadLocal<NoiseGeneratorImproved.AxisTables> axisTables = new ThreadLocal<NoiseGeneratorImproved.AxisTables>() {
+        protected NoiseGeneratorImproved.AxisTables initialValue() {
+            return new NoiseGeneratorImproved.AxisTables();
+        }
+    };
+
     public NoiseGeneratorImproved() {
         this(new Random());
     }
@@ -59,123 +68,157 @@ public class NoiseGeneratorImproved extends NoiseGenerator {
      * noiseArray should be xSize*ySize*zSize in size
      */
     public void populateNoiseArray(double[] noiseArray, double xOffset, double yOffset, double zOffset, int xSize, int ySize, int zSize, double xScale, double yScale, double zScale, double noiseScale) {
+        this.populateNoiseArray(axisTables.get(), noiseArray, xOffset, yOffset, zOffset, xSize, ySize, zSize, xScale, yScale, zScale, noiseScale);
+    }
+
+    /**
+     * Same as the public overload, with the lattice cells, offsets and fade curves of each axis worked out once up
+     * front instead of once per sample. Corner gradients are only recomputed when the y cell changes along a column,
+     * using the y offset of the first sample in the new cell, exactly as the per-sample version did.
+     */
+    void populateNoiseArray(NoiseGeneratorImproved.AxisTables tables, double[] noiseArray, double xOffset, double yOffset, double zOffset, int xSize, int ySize, int zSize, double xScale, double yScale, double zScale, double noiseScale) {
+        int[] aint = this.permutations;
+        NoiseGeneratorImproved.Axis noisegeneratorimproved$axis = tables.x.fill(xOffset, xSize, xScale, this.xCoord);
+        NoiseGeneratorImproved.Axis noisegeneratorimproved$axis1 = tables.z.fill(zOffset, zSize, zScale, this.zCoord);
+        int[] aint1 = noisegeneratorimproved$axis.cells;
+        double[] adouble = noisegeneratorimproved$axis.offsets;
+        double[] adouble1 = noisegeneratorimproved$axis.fades;
+        int[] aint2 = noisegeneratorimproved$axis1.cells;
+        double[] adouble2 = noisegeneratorimproved$axis1.offsets;
+        double[] adouble3 = noisegeneratorimproved$axis1.fades;
+
         if (ySize == 1) {
-            int i5 = 0;
-            int j5 = 0;
-            int j = 0;
-            int k5 = 0;
-            double d14 = 0.0D;
-            double d15 = 0.0D;
             int l5 = 0;
             double d16 = 1.0D / noiseScale;
 
             for (int j2 = 0; j2 < xSize; ++j2) {
-                double d17 = xOffset + (double) j2 * xScale + this.xCoord;
-                int i6 = (int) d17;
-
-                if (d17 < (double) i6) {
-                    --i6;
-                }
-
-                int k2 = i6 & 255;
-                d17 = d17 - (double) i6;
-                double d18 = d17 * d17 * d17 * (d17 * (d17 * 6.0D - 15.0D) + 10.0D);
+                int k2 = aint1[j2];
+                double d17 = adouble[j2];
+                double d18 = adouble1[j2];
+                int i5 = aint[aint[k2]];
+                int j = aint[aint[k2 + 1]];
 
                 for (int j6 = 0; j6 < zSize; ++j6) {
-                    double d19 = zOffset + (double) j6 * zScale + this.zCoord;
-                    int k6 = (int) d19;
-
-                    if (d19 < (double) k6) {
-                        --k6;
-                    }
-
-                    int l6 = k6 & 255;
-                    d19 = d19 - (double) k6;
-                    double d20 = d19 * d19 * d19 * (d19 * (d19 * 6.0D - 15.0D) + 10.0D);
-                    i5 = this.permutations[k2];
-                    j5 = this.permutations[i5] + l6;
-                    j = this.permutations[k2 + 1];
-                    k5 = this.permutations[j] + l6;
-                    d14 = this.lerp(d18, this.func_76309_a(this.permutations[j5], d17, d19), this.grad(this.permutations[k5], d17 - 1.0D, 0.0D, d19));
-                    d15 = this.lerp(d18, this.grad(this.permutations[j5 + 1], d17, 0.0D, d19 - 1.0D), this.grad(this.permutations[k5 + 1], d17 - 1.0D, 0.0D, d19 - 1.0D));
-                    double d21 = this.lerp(d20, d14, d15);
-                    int i7 = l5++;
-                    noiseArray[i7] += d21 * d16;
+                    int l6 = aint2[j6];
+                    double d19 = adouble2[j6];
+                    int j5 = i5 + l6;
+                    int k5 = j + l6;
+                    double d14 = this.lerp(d18, this.func_76309_a(aint[j5], d17, d19), this.grad(aint[k5], d17 - 1.0D, 0.0D, d19));
+                    double d15 = this.lerp(d18, this.grad(aint[j5 + 1], d17, 0.0D, d19 - 1.0D), this.grad(aint[k5 + 1], d17 - 1.0D, 0.0D, d19 - 1.0D));
+                    double d21 = this.lerp(adouble3[j6], d14, d15);
+                    noiseArray[l5++] += d21 * d16;
                 }
             }
         } else {
+            NoiseGeneratorImproved.Axis noisegeneratorimproved$axis2 = tables.y.fill(yOffset, ySize, yScale, this.yCoord);
+            int[] aint3 = noisegeneratorimproved$axis2.cells;
+            double[] adouble4 = noisegeneratorimproved$axis2.offsets;
+            double[] adouble5 = noisegeneratorimproved$axis2.fades;
+            int[] aint4 = tables.getHashes(ySize);
             int i = 0;
             double d0 = 1.0D / noiseScale;
-            int k = -1;
-            int l = 0;
-            int i1 = 0;
-            int j1 = 0;
-            int k1 = 0;
-            int l1 = 0;
-            int i2 = 0;
             double d1 = 0.0D;
             double d2 = 0.0D;
             double d3 = 0.0D;
             double d4 = 0.0D;
 
             for (int l2 = 0; l2 < xSize; ++l2) {
-                double d5 = xOffset + (double) l2 * xScale + this.xCoord;
-                int i3 = (int) d5;
-
-                if (d5 < (double) i3) {
-                    --i3;
+                int j3 = aint1[l2];
+                double d5 = adouble[l2];
+                double d6 = adouble1[l2];
+
+                for (int i3 = 0; i3 < ySize; ++i3) {
+                    if (i3 == 0 || aint3[i3] != aint3[i3 - 1]) {
+                        int l = aint[j3] + aint3[i3];
+                        int k1 = aint[j3 + 1] + aint3[i3];
+                        aint4[i3 * 4] = aint[l];
+                        aint4[i3 * 4 + 1] = aint[l + 1];
+                        aint4[i3 * 4 + 2] = aint[k1];
+                        aint4[i3 * 4 + 3] = aint[k1 + 1];
+                    }
                 }
 
-                int j3 = i3 & 255;
-                d5 = d5 - (double) i3;
-                double d6 = d5 * d5 * d5 * (d5 * (d5 * 6.0D - 15.0D) + 10.0D);
-
                 for (int k3 = 0; k3 < zSize; ++k3) {
-                    double d7 = zOffset + (double) k3 * zScale + this.zCoord;
-                    int l3 = (int) d7;
-
-                    if (d7 < (double) l3) {
-                        --l3;
-                    }
-
-                    int i4 = l3 & 255;
-                    d7 = d7 - (double) l3;
-                    double d8 = d7 * d7 * d7 * (d7 * (d7 * 6.0D - 15.0D) + 10.0D);
+                    int i4 = aint2[k3];
+                    double d7 = adouble2[k3];
+                    double d8 = adouble3[k3];
 
                     for (int j4 = 0; j4 < ySize; ++j4) {
-                        double d9 = yOffset + (double) j4 * yScale + this.yCoord;
-                        int k4 = (int) d9;
-
-                        if (d9 < (double) k4) {
-                            --k4;
-                        }
-
-                        int l4 = k4 & 255;
-                        d9 = d9 - (double) k4;
-                        double d10 = d9 * d9 * d9 * (d9 * (d9 * 6.0D - 15.0D) + 10.0D);
-
-                        if (j4 == 0 || l4 != k) {
-                            k = l4;
-                            l = this.permutations[j3] + l4;
-                            i1 = this.permutations[l] + i4;
-                            j1 = this.permutations[l + 1] + i4;
-                            k1 = this.permutations[j3 + 1] + l4;
-                            l1 = this.permutations[k1] + i4;
-                            i2 = this.permutations[k1 + 1] + i4;
-                            d1 = this.lerp(d6, this.grad(this.permutations[i1], d5, d9, d7), this.grad(this.permutations[l1], d5 - 1.0D, d9, d7));
-                            d2 = this.lerp(d6, this.grad(this.permutations[j1], d5, d9 - 1.0D, d7), this.grad(this.permutations[i2], d5 - 1.0D, d9 - 1.0D, d7));
-                            d3 = this.lerp(d6, this.grad(this.permutations[i1 + 1], d5, d9, d7 - 1.0D), this.grad(this.permutations[l1 + 1], d5 - 1.0D, d9, d7 - 1.0D));
-                            d4 = this.lerp(d6, this.grad(this.permutations[j1 + 1], d5, d9 - 1.0D, d7 - 1.0D), this.grad(this.permutations[i2 + 1], d5 - 1.0D, d9 - 1.0D, d7 - 1.0D));
+                        if (j4 == 0 || aint3[j4] != aint3[j4 - 1]) {
+                            double d9 = adouble4[j4];
+                            int i1 = aint4[j4 * 4] + i4;
+                            int j1 = aint4[j4 * 4 + 1] + i4;
+                            int l1 = aint4[j4 * 4 + 2] + i4;
+                            int i2 = aint4[j4 * 4 + 3] + i4;
+                            d1 = this.lerp(d6, this.grad(aint[i1], d5, d9, d7), this.grad(aint[l1], d5 - 1.0D, d9, d7));
+                            d2 = this.lerp(d6, this.grad(aint[j1], d5, d9 - 1.0D, d7), this.grad(aint[i2], d5 - 1.0D, d9 - 1.0D, d7));
+                            d3 = this.lerp(d6, this.grad(aint[i1 + 1], d5, d9, d7 - 1.0D), this.grad(aint[l1 + 1], d5 - 1.0D, d9, d7 - 1.0D));
+                            d4 = this.lerp(d6, this.grad(aint[j1 + 1], d5, d9 - 1.0D, d7 - 1.0D), this.grad(aint[i2 + 1], d5 - 1.0D, d9 - 1.0D, d7 - 1.0D));
                         }
 
+                        double d10 = adouble5[j4];
                         double d11 = this.lerp(d10, d1, d2);
                         double d12 = this.lerp(d10, d3, d4);
                         double d13 = this.lerp(d8, d11, d12);
-                        int j7 = i++;
-                        noiseArray[j7] += d13 * d0;
+                        noiseArray[i++] += d13 * d0;
                     }
                 }
             }
         }
     }
+
+    /**
+     * Lattice cell, offset within the cell and fade curve of each sample along one axis
+     */
+    static class Axis {
+        private int[] cells = new int[0];
+        private double[] offsets = new double[0];
+        private double[] fades = new double[0];
+
+        private NoiseGeneratorImproved.Axis fill(double offset, int size, double scale, double coord) {
+            if (this.cells.length < size) {
+                this.cells = new int[size];
+                this.offsets = new double[size];
+                this.fades = new double[size];
+            }
+
+            for (int i = 0; i < size; ++i) {
+                double d0 = offset + (double) i * scale + coord;
+                int j = (int) d0;
+
+                if (d0 < (double) j) {
+                    --j;
+                }
+
+                d0 = d0 - (double) j;
+                this.cells[i] = j & 255;
+                this.offsets[i] = d0;
+                this.fades[i] = d0 * d0 * d0 * (d0 * (d0 * 6.0D - 15.0D) + 10.0D);
+            }
+
+            return this;
+        }
+    }
+
+    /**
+     * Scratch space for populateNoiseArray, reused between calls on one thread
+     */
+    static class AxisTables {
+        private final NoiseGeneratorImproved.Axis x = new NoiseGeneratorImproved.Axis();
+        private final NoiseGeneratorImproved.Axis y = new NoiseGeneratorImproved.Axis();
+        private final NoiseGeneratorImproved.Axis z = new NoiseGeneratorImproved.Axis();
+
+        /**
+         * Permutation lookups that only depend on the x and y cells, four per y sample
+         */
+        private int[] hashes = new int[0];
+
+        private int[] getHashes(int ySize) {
+            if (this.hashes.length < ySize * 4) {
+                this.hashes = new int[ySize * 4];
+            }
+
+            return this.hashes;
+        }
+    }
 }
@@ -34,6 +34,7 @@ public class NoiseGeneratorOctaves extends NoiseGenerator {
         }
 
         double d3 = 1.0D;
+        NoiseGeneratorImproved.AxisTables noisegeneratorimproved$axistables = NoiseGeneratorImproved.axisTables.get();
 
         for (int j = 0; j < this.octaves; ++j) {
             double d0 = (double) xOffset * d3 * xScale;
@@ -47,7 +48,7 @@ public class NoiseGeneratorOctaves extends NoiseGenerator {
             l = l % 16777216L;
             d0 = d0 + (double) k;
             d2 = d2 + (double) l;
-            this.generatorCollection[j].populateNoiseArray(noiseArray, d0, d1, d2, xSize, ySize, zSize, xScale * d3, yScale * d3, zScale * d3, d3);
+            this.generatorCollection[j].populateNoiseArray(noisegeneratorimproved$axistables, noiseArray, d0, d1, d2, xSize, ySize, zSize, xScale * d3, yScale * d3, zScale * d3, d3);
             d3 /= 2.0D;
         }
 
@@ -0,0 +1,92 @@
+package net.minecraft.world.gen;
+
+import net.minecraft.init.Bootstrap;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.storage.WorldInfo;
+
+import java.util.Arrays;
+
+/**
+ * Times generating the terrain of a 25x25 chunk spawn area the way MinecraftServer.initialWorldChunkLoad does, once
+ * inline and once with a window of 64 chunks prefetched on the terrain generator pool, and checks both give the same
+ * blocks and biomes. Run once per core count with -Dair.terrainGeneratorThreads=N. Args: [seed] [runs]
+ */
+public class TestSpawnAreaGeneration {
+    public static void main(String[] args) throws Exception {
+        long i = args.length > 0 ? Long.parseLong(args[0]) : 0L;
+        int j = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Bootstrap.register();
+        System.out.println(ChunkProviderGenerate.TERRAIN_GENERATOR_THREADS + " terrain generator threads, seed " + i);
+
+        for (int k = 0; k < j; ++k) {
+            Chunk[] achunk = new Chunk[625];
+            Chunk[] achunk1 = new Chunk[625];
+            long l = System.nanoTime();
+            generate(createProvider(i), achunk, false);
+            long i1 = System.nanoTime();
+            generate(createProvider(i), achunk1, true);
+            long j1 = System.nanoTime();
+            int k1 = 0;
+
+            for (int l1 = 0; l1 < achunk.length; ++l1) {
+                if (!isSameTerrain(achunk[l1], achunk1[l1])) {
+                    ++k1;
+                }
+            }
+
+            System.out.println("Run " + (k + 1) + ": inline " + (i1 - l) / 1000000L + " ms, prefetched " + (j1 - i1) / 1000000L + " ms, " + k1 + " chunks differ");
+        }
+    }
+
+    private static ChunkProviderGenerate createProvider(long seed) {
+        WorldInfo worldinfo = new WorldInfo(new WorldSettings(seed, WorldSettings.GameType.SURVIVAL, false, false, WorldType.DEFAULT), "benchmark");
+        WorldProvider worldprovider = WorldProvider.getProviderForDimension(0);
+        World world = new World(null, worldinfo, worldprovider, new Profiler(), false) {
+            protected IChunkProvider createChunkProvider() {
+                return null;
+            }
+
+            protected int getRenderDistanceChunks() {
+                return 0;
+            }
+        };
+        worldprovider.registerWorld(world);
+        return new ChunkProviderGenerate(world, seed, false, worldinfo.getGeneratorOptions());
+    }
+
+    private static void generate(ChunkProviderGenerate provider, Chunk[] chunks, boolean prefetch) {
+        int i = 0;
+
+        for (int j = 0; j < chunks.length; ++j) {
+            for (; prefetch && i < chunks.length && i < j + 64; ++i) {
+                provider.prefetchTerrain(i / 25 - 12, i % 25 - 12);
+            }
+
+            chunks[j] = provider.provideChunk(j / 25 - 12, j % 25 - 12);
+        }
+    }
+
+    private static boolean isSameTerrain(Chunk chunk, Chunk chunk1) {
+        if (!Arrays.equals(chunk.getBiomeArray(), chunk1.getBiomeArray())) {
+            return false;
+        } else {
+            ExtendedBlockStorage[] aextendedblockstorage = chunk.getBlockStorageArray();
+            ExtendedBlockStorage[] aextendedblockstorage1 = chunk1.getBlockStorageArray();
+
+            for (int i = 0; i < aextendedblockstorage.length; ++i) {
+                if ((aextendedblockstorage[i] == null) != (aextendedblockstorage1[i] == null) || aextendedblockstorage[i] != null && !Arrays.equals(aextendedblockstorage[i].getData(), aextendedblockstorage1[i].getData())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -3,66 +3,101 @@ package net.minecraft.world.gen.layer;
 import com.google.common.collect.Lists;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Pool of the int arrays GenLayer.getInts chains hand between layers. Each thread has its own arena, so biome
+ * generation on one thread never waits for another. Arrays come in power of two size classes from 256 up, and an
+ * array handed out since the thread's last resetIntCache is never handed out again until the next one.
+ */
 public class IntCache {
-    private static int intCacheSize = 256;
-    private static final List<int[]> freeSmallArrays = Lists.newArrayList();
-    private static final List<int[]> inUseSmallArrays = Lists.newArrayList();
-    private static final List<int[]> freeLargeArrays = Lists.newArrayList();
-    private static final List<int[]> inUseLargeArrays = Lists.newArrayList();
-
-    public static synchronized int[] getIntCache(int p_76445_0_) {
-        if (p_76445_0_ <= 256) {
-            if (freeSmallArrays.isEmpty()) {
-                int[] aint4 = new int[256];
-                inUseSmallArrays.add(aint4);
-                return aint4;
-            } else {
-                int[] aint3 = freeSmallArrays.remove(freeSmallArrays.size() - 1);
-                inUseSmallArrays.add(aint3);
-                return aint3;
-            }
-        } else if (p_76445_0_ > intCacheSize) {
-            intCacheSize = p_76445_0_;
-            freeLargeArrays.clear();
-            inUseLargeArrays.clear();
-            int[] aint2 = new int[intCacheSize];
-            inUseLargeArrays.add(aint2);
-            return aint2;
-        } else if (freeLargeArrays.isEmpty()) {
-            int[] aint1 = new int[intCacheSize];
-            inUseLargeArrays.add(aint1);
-            return aint1;
-        } else {
-            int[] aint = freeLargeArrays.remove(freeLargeArrays.size() - 1);
-            inUseLargeArrays.add(aint);
-            return aint;
+    private static final int SMALLEST_SIZE_BITS = 8;
+    private static final AtomicInteger arenaCount = new AtomicInteger();
+    private static final ThreadLocal<IntCache.Arena> arenas = new ThreadLocal<IntCache.Arena>() {
+        protected IntCache.Arena initialValue() {
+            IntCache.arenaCount.incrementAndGet();
+            return new IntCache.Arena();
         }
+    };
+
+    /**
+     * Returns an array of at least the given length from the calling thread's arena. Its contents are left over from
+     * earlier use.
+     */
+    public static int[] getIntCache(int p_76445_0_) {
+        return arenas.get().get(p_76445_0_);
+    }
+
+    /**
+     * Mark all of the calling thread's arrays as available for re-use. Arrays that went unused since the last reset
+     * are dropped one per size class, so a thread that stops asking for big arrays lets go of them.
+     */
+    public static void resetIntCache() {
+        arenas.get().reset();
     }
 
     /**
-     * Mark all pre-allocated arrays as available for re-use by moving them to the appropriate free lists.
+     * Gets a human-readable string that indicates the sizes of the calling thread's arena
      */
-    public static synchronized void resetIntCache() {
-        if (!freeLargeArrays.isEmpty()) {
-            freeLargeArrays.remove(freeLargeArrays.size() - 1);
+    public static String getCacheSizes() {
+        IntCache.Arena intcache$arena = arenas.get();
+        return "cache: " + intcache$arena.countFree() + ", allocated: " + intcache$arena.countInUse() + ", arenas: " + arenaCount.get();
+    }
+
+    private static int getSizeClass(int size) {
+        return size <= 1 << SMALLEST_SIZE_BITS ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1) - SMALLEST_SIZE_BITS;
+    }
+
+    static class Arena {
+        private final List<List<int[]>> freeArrays = Lists.newArrayList();
+        private final List<List<int[]>> inUseArrays = Lists.newArrayList();
+
+        public int[] get(int size) {
+            int i = IntCache.getSizeClass(size);
+
+            while (this.freeArrays.size() <= i) {
+                this.freeArrays.add(Lists.<int[]>newArrayList());
+                this.inUseArrays.add(Lists.<int[]>newArrayList());
+            }
+
+            List<int[]> list = this.freeArrays.get(i);
+            int[] aint = list.isEmpty() ? new int[1 << i + IntCache.SMALLEST_SIZE_BITS] : list.remove(list.size() - 1);
+            this.inUseArrays.get(i).add(aint);
+            return aint;
         }
 
-        if (!freeSmallArrays.isEmpty()) {
-            freeSmallArrays.remove(freeSmallArrays.size() - 1);
+        public void reset() {
+            for (int i = 0; i < this.freeArrays.size(); ++i) {
+                List<int[]> list = this.freeArrays.get(i);
+                List<int[]> list1 = this.inUseArrays.get(i);
+
+                if (!list.isEmpty()) {
+                    list.remove(list.size() - 1);
+                }
+
+                list.addAll(list1);
+                list1.clear();
+            }
         }
 
-        freeLargeArrays.addAll(inUseLargeArrays);
-        freeSmallArrays.addAll(inUseSmallArrays);
-        inUseLargeArrays.clear();
-        inUseSmallArrays.clear();
-    }
+        public int countFree() {
+            int i = 0;
 
-    /**
-     * Gets a human-readable string that indicates the sizes of all the cache fields.  Basically a synchronized static
-     * toString.
-     */
-    public static synchronized String getCacheSizes() {
-        return "cache: " + freeLargeArrays.size() + ", tcache: " + freeSmallArrays.size() + ", allocated: " + inUseLargeArrays.size() + ", tallocated: " + inUseSmallArrays.size();
+            for (List<int[]> list : this.freeArrays) {
+                i += list.size();
+            }
+
+            return i;
+        }
+
+        public int countInUse() {
+            int i = 0;
+
+            for (List<int[]> list : this.inUseArrays) {
+                i += list.size();
+            }
+
+            return i;
+        }
     }
 }
@@ -35,6 +35,11 @@ import java.util.Properties;
 
 public class DynamicLights {
     private static final DynamicLightsMap mapDynamicLights = new DynamicLightsMap();
+
+    /**
+     * Lights as of the last update, read without locking by chunk compile threads
+     */
+    private static volatile DynamicLightsIndex lightsIndex = DynamicLightsIndex.EMPTY;
     private static final Map<Class, Integer> mapEntityLightLevels = new HashMap();
     private static final Map<Item, Integer> mapItemLightLevels = new HashMap();
     private static long timeUpdateMs = 0L;
@@ -58,6 +63,7 @@ public class DynamicLights {
 
             if (dynamiclight != null) {
                 dynamiclight.updateLitChunks(renderGlobal);
+                lightsIndex = DynamicLightsIndex.build(mapDynamicLights.valueList());
             }
         }
     }
@@ -83,6 +89,8 @@ public class DynamicLights {
                         dynamiclight.update(renderGlobal);
                     }
                 }
+
+                lightsIndex = DynamicLightsIndex.build(mapDynamicLights.valueList());
             }
         }
     }
@@ -204,44 +212,7 @@ public class DynamicLights {
     }
 
     public static double getLightLevel(BlockPos pos) {
-        double d0 = 0.0D;
-
-        synchronized (mapDynamicLights) {
-            List<DynamicLight> list = mapDynamicLights.valueList();
-            int i = list.size();
-
-            for (int j = 0; j < i; ++j) {
-                DynamicLight dynamiclight = list.get(j);
-                int k = dynamiclight.getLastLightLevel();
-
-                if (k > 0) {
-                    double d1 = dynamiclight.getLastPosX();
-                    double d2 = dynamiclight.getLastPosY();
-                    double d3 = dynamiclight.getLastPosZ();
-                    double d4 = (double) pos.getX() - d1;
-                    double d5 = (double) pos.getY() - d2;
-                    double d6 = (double) pos.getZ() - d3;
-                    double d7 = d4 * d4 + d5 * d5 + d6 * d6;
-
-                    if (dynamiclight.isUnderwater() && !Config.isClearWater()) {
-                        k = Config.limit(k - 2, 0, 15);
-                        d7 *= 2.0D;
-                    }
-
-                    if (d7 <= 56.25D) {
-                        double d8 = Math.sqrt(d7);
-                        double d9 = 1.0D - d8 / 7.5D;
-                        double d10 = d9 * (double) k;
-
-                        if (d10 > d0) {
-                            d0 = d10;
-                        }
-                    }
-                }
-            }
-        }
-
-        return Config.limit(d0, 0.0D, 15.0D);
+        return lightsIndex.getLightLevel(pos);
     }
 
     public static int getLightLevel(ItemStack itemStack) {
@@ -358,12 +329,14 @@ public class DynamicLights {
             }
 
             mapDynamicLights.clear();
+            lightsIndex = DynamicLightsIndex.EMPTY;
         }
     }
 
     public static void clear() {
         synchronized (mapDynamicLights) {
             mapDynamicLights.clear();
+            lightsIndex = DynamicLightsIndex.EMPTY;
         }
     }
 
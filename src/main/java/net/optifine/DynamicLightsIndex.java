@@ -0,0 +1,143 @@
+package net.optifine;
+
+import net.minecraft.src.Config;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.util.MathHelper;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable copy of the dynamic lights taken after each update, bucketed by the 16x16x16 chunk sections each light
+ * can reach. Chunk compile threads read the published copy without locking and only test the lights in the section
+ * of the queried block.
+ */
+public class DynamicLightsIndex {
+    public static final DynamicLightsIndex EMPTY = new DynamicLightsIndex(new double[0], new double[0], new double[0], new int[0], new boolean[0]);
+    private static final double MAX_DIST = 7.5D;
+    private static final double MAX_DIST_SQ = 56.25D;
+    private final double[] posX;
+    private final double[] posY;
+    private final double[] posZ;
+    private final int[] lightLevels;
+    private final boolean[] underwater;
+    private final LongHashMap<int[]> lightsBySection = new LongHashMap();
+
+    private DynamicLightsIndex(double[] posX, double[] posY, double[] posZ, int[] lightLevels, boolean[] underwater) {
+        this.posX = posX;
+        this.posY = posY;
+        this.posZ = posZ;
+        this.lightLevels = lightLevels;
+        this.underwater = underwater;
+
+        for (int i = 0; i < lightLevels.length; ++i) {
+            int j = MathHelper.floor_double(posX[i] - MAX_DIST) >> 4;
+            int k = MathHelper.floor_double(posX[i] + MAX_DIST) >> 4;
+            int l = MathHelper.floor_double(posY[i] - MAX_DIST) >> 4;
+            int i1 = MathHelper.floor_double(posY[i] + MAX_DIST) >> 4;
+            int j1 = MathHelper.floor_double(posZ[i] - MAX_DIST) >> 4;
+            int k1 = MathHelper.floor_double(posZ[i] + MAX_DIST) >> 4;
+
+            for (int l1 = j; l1 <= k; ++l1) {
+                for (int i2 = l; i2 <= i1; ++i2) {
+                    for (int j2 = j1; j2 <= k1; ++j2) {
+                        long k2 = getSectionKey(l1, i2, j2);
+                        int[] aint = this.lightsBySection.getValueByKey(k2);
+
+                        if (aint == null) {
+                            aint = new int[]{i};
+                        } else {
+                            aint = Arrays.copyOf(aint, aint.length + 1);
+                            aint[aint.length - 1] = i;
+                        }
+
+                        this.lightsBySection.add(k2, aint);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the last position, light level and water state of every light that currently gives off light
+     */
+    public static DynamicLightsIndex build(List<DynamicLight> lights) {
+        int i = 0;
+
+        for (int j = 0; j < lights.size(); ++j) {
+            if (lights.get(j).getLastLightLevel() > 0) {
+                ++i;
+            }
+        }
+
+        if (i == 0) {
+            return EMPTY;
+        } else {
+            double[] adouble = new double[i];
+            double[] adouble1 = new double[i];
+            double[] adouble2 = new double[i];
+            int[] aint = new int[i];
+            boolean[] aboolean = new boolean[i];
+            int k = 0;
+
+            for (int l = 0; l < lights.size(); ++l) {
+                DynamicLight dynamiclight = lights.get(l);
+
+                if (dynamiclight.getLastLightLevel() > 0) {
+                    adouble[k] = dynamiclight.getLastPosX();
+                    adouble1[k] = dynamiclight.getLastPosY();
+                    adouble2[k] = dynamiclight.getLastPosZ();
+                    aint[k] = dynamiclight.getLastLightLevel();
+                    aboolean[k] = dynamiclight.isUnderwater();
+                    ++k;
+                }
+            }
+
+            return new DynamicLightsIndex(adouble, adouble1, adouble2, aint, aboolean);
+        }
+    }
+
+    /**
+     * Same falloff as the lights gave before: full level at the light, fading linearly to nothing at 7.5 blocks, with
+     * underwater lights two levels dimmer and reaching half as far in squared distance unless clear water is on
+     */
+    public double getLightLevel(BlockPos pos) {
+        double d0 = 0.0D;
+        int[] aint = this.lightsBySection.getValueByKey(getSectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+
+        if (aint != null) {
+            boolean flag = !Config.isClearWater();
+
+            for (int i = 0; i < aint.length; ++i) {
+                int j = aint[i];
+                int k = this.lightLevels[j];
+                double d4 = (double) pos.getX() - this.posX[j];
+                double d5 = (double) pos.getY() - this.posY[j];
+                double d6 = (double) pos.getZ() - this.posZ[j];
+                double d7 = d4 * d4 + d5 * d5 + d6 * d6;
+
+                if (this.underwater[j] && flag) {
+                    k = Config.limit(k - 2, 0, 15);
+                    d7 *= 2.0D;
+                }
+
+                if (d7 <= MAX_DIST_SQ) {
+                    double d8 = Math.sqrt(d7);
+                    double d9 = 1.0D - d8 / MAX_DIST;
+                    double d10 = d9 * (double) k;
+
+                    if (d10 > d0) {
+                        d0 = d10;
+                    }
+                }
+            }
+        }
+
+        return Config.limit(d0, 0.0D, 15.0D);
+    }
+
+    private static long getSectionKey(int x, int y, int z) {
+        return ((long) x & 4194303L) << 42 | ((long) y & 1048575L) << 22 | (long) z & 4194303L;
+    }
+}
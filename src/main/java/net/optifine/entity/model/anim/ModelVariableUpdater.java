@@ -1,6 +1,7 @@
 package net.optifine.entity.model.anim;
 
 import net.minecraft.src.Config;
+import net.optifine.expr.ExpressionCompiler;
 import net.optifine.expr.ExpressionParser;
 import net.optifine.expr.IExpressionFloat;
 import net.optifine.expr.ParseException;
@@ -20,7 +21,7 @@ public class ModelVariableUpdater {
         } else {
             try {
                 ExpressionParser expressionparser = new ExpressionParser(mr);
-                this.expression = expressionparser.parseFloat(this.expressionText);
+                this.expression = (IExpressionFloat) ExpressionCompiler.compile(expressionparser.parseFloat(this.expressionText));
                 return true;
             } catch (ParseException parseexception) {
                 Config.warn("Error parsing expression: " + this.expressionText);
@@ -0,0 +1,26 @@
+package net.optifine.expr;
+
+/**
+ * Base class of the bool expressions generated by {@link ExpressionCompiler}
+ */
+public abstract class CompiledExpressionBool implements IExpressionBool {
+    private final IExpression source;
+    protected final IExpression[] leaves;
+
+    protected CompiledExpressionBool(IExpression source, IExpression[] leaves) {
+        this.source = source;
+        this.leaves = leaves;
+    }
+
+    public IExpression getSource() {
+        return this.source;
+    }
+
+    public ExpressionType getExpressionType() {
+        return ExpressionType.BOOL;
+    }
+
+    public String toString() {
+        return "compiled(" + this.source + ")";
+    }
+}
@@ -0,0 +1,26 @@
+package net.optifine.expr;
+
+/**
+ * Base class of the float expressions generated by {@link ExpressionCompiler}
+ */
+public abstract class CompiledExpressionFloat implements IExpressionFloat {
+    private final IExpression source;
+    protected final IExpression[] leaves;
+
+    protected CompiledExpressionFloat(IExpression source, IExpression[] leaves) {
+        this.source = source;
+        this.leaves = leaves;
+    }
+
+    public IExpression getSource() {
+        return this.source;
+    }
+
+    public ExpressionType getExpressionType() {
+        return ExpressionType.FLOAT;
+    }
+
+    public String toString() {
+        return "compiled(" + this.source + ")";
+    }
+}
@@ -0,0 +1,664 @@
+package net.optifine.expr;
+
+import net.minecraft.src.Config;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.util.*;
+
+/**
+ * Turns a parsed expression tree into a generated class whose eval() runs the whole tree as straight bytecode, so
+ * the JIT sees one method instead of a chain of interface calls and enum switches.
+ * <p>
+ * The generated code does the same float operations, in the same order and through the same MathHelper / MathUtils
+ * methods as {@link FunctionType#evalFloat} and {@link FunctionType#evalBool}, so it returns exactly what the
+ * interpreter would. On top of that, functions whose arguments are all constant are folded at compile time, and a
+ * subexpression that appears more than once is evaluated once per eval() and reused. random(), time() and smooth() are
+ * never folded or shared. Nodes the compiler does not know (parameters, variables, time(), smooth(), ...) are kept as
+ * leaves and called through their own eval().
+ * <p>
+ * Can be turned off with -Dshaders.expr.compile=false, in which case {@link #compile} returns the tree unchanged.
+ */
+public class ExpressionCompiler {
+    private static final boolean enabled = System.getProperty("shaders.expr.compile", "true").equals("true");
+    private static final Set<FunctionType> COMPILED_TYPES = EnumSet.complementOf(EnumSet.of(FunctionType.TIME, FunctionType.SMOOTH, FunctionType.VEC2, FunctionType.VEC3, FunctionType.VEC4));
+    private static final String EXPRESSION = Type.getInternalName(IExpression.class);
+    private static final String EXPRESSION_FLOAT = Type.getInternalName(IExpressionFloat.class);
+    private static final String EXPRESSION_BOOL = Type.getInternalName(IExpressionBool.class);
+    private static final String MATH_HELPER = "net/minecraft/util/MathHelper";
+    private static final String MATH_UTILS = "net/optifine/util/MathUtils";
+    private static final String MATH = "java/lang/Math";
+    private static int classCounter;
+    private final List<IExpression> leaves = new ArrayList();
+    private final Map<IExpression, Integer> leafIndexes = new IdentityHashMap();
+    private final Map<IExpression, Object> constants = new IdentityHashMap();
+    private final Map<IExpression, String> keys = new IdentityHashMap();
+    private final Map<String, Integer> keyCounts = new HashMap();
+    private final Map<String, Boolean> keyBools = new HashMap();
+    private final Map<String, Integer> sharedSlots = new HashMap();
+    private String className;
+    private MethodVisitor mv;
+    private int nextLocal = 1;
+
+    /**
+     * Returns a compiled version of the expression, or the expression itself if compiling is off, there is nothing to
+     * compile or compiling fails. Float arrays keep their node and get each component compiled.
+     */
+    public static IExpression compile(IExpression expr) {
+        if (!enabled) {
+            return expr;
+        } else if (expr instanceof FunctionFloatArray) {
+            FunctionFloatArray functionfloatarray = (FunctionFloatArray) expr;
+            IExpression[] aiexpression = functionfloatarray.getArguments();
+            IExpression[] aiexpression1 = new IExpression[aiexpression.length];
+            boolean flag = false;
+
+            for (int i = 0; i < aiexpression.length; ++i) {
+                aiexpression1[i] = compile(aiexpression[i]);
+                flag |= aiexpression1[i] != aiexpression[i];
+            }
+
+            return flag ? new FunctionFloatArray(functionfloatarray.getType(), aiexpression1) : expr;
+        } else if (!isCompiled(expr)) {
+            return expr;
+        } else {
+            try {
+                return new ExpressionCompiler().compileRoot(expr);
+            } catch (Throwable throwable) {
+                Config.warn("Error compiling expression: " + expr + ", " + throwable.getClass().getName() + ": " + throwable.getMessage());
+                return expr;
+            }
+        }
+    }
+
+    private static boolean isCompiled(IExpression expr) {
+        return expr instanceof FunctionFloat ? COMPILED_TYPES.contains(((FunctionFloat) expr).getType()) : expr instanceof FunctionBool && COMPILED_TYPES.contains(((FunctionBool) expr).getType());
+    }
+
+    private IExpression compileRoot(IExpression expr) throws Exception {
+        boolean flag = expr instanceof IExpressionBool;
+        this.analyze(expr, flag);
+        String s = flag ? Type.getInternalName(CompiledExpressionBool.class) : Type.getInternalName(CompiledExpressionFloat.class);
+        String s1 = "(L" + EXPRESSION + ";[L" + EXPRESSION + ";)V";
+        this.className = "net/optifine/expr/CompiledExpression" + nextClassId();
+        ClassWriter classwriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classwriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, this.className, null, s, null);
+        MethodVisitor methodvisitor = classwriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", s1, null, null);
+        methodvisitor.visitCode();
+        methodvisitor.visitVarInsn(Opcodes.ALOAD, 0);
+        methodvisitor.visitVarInsn(Opcodes.ALOAD, 1);
+        methodvisitor.visitVarInsn(Opcodes.ALOAD, 2);
+        methodvisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, s, "<init>", s1, false);
+        methodvisitor.visitInsn(Opcodes.RETURN);
+        methodvisitor.visitMaxs(0, 0);
+        methodvisitor.visitEnd();
+        this.mv = classwriter.visitMethod(Opcodes.ACC_PUBLIC, "eval", flag ? "()Z" : "()F", null, null);
+        this.mv.visitCode();
+
+        for (Map.Entry<String, Integer> entry : this.keyCounts.entrySet()) {
+            if (entry.getValue() > 1) {
+                int i = this.nextLocal;
+                this.nextLocal += 2;
+                this.sharedSlots.put(entry.getKey(), i);
+                this.mv.visitInsn(this.keyBools.get(entry.getKey()) ? Opcodes.ICONST_0 : Opcodes.FCONST_0);
+                this.mv.visitVarInsn(this.keyBools.get(entry.getKey()) ? Opcodes.ISTORE : Opcodes.FSTORE, i);
+                this.mv.visitInsn(Opcodes.ICONST_0);
+                this.mv.visitVarInsn(Opcodes.ISTORE, i + 1);
+            }
+        }
+
+        if (flag) {
+            this.emitBool(expr);
+            this.mv.visitInsn(Opcodes.IRETURN);
+        } else {
+            this.emitFloat(expr);
+            this.mv.visitInsn(Opcodes.FRETURN);
+        }
+
+        this.mv.visitMaxs(0, 0);
+        this.mv.visitEnd();
+        classwriter.visitEnd();
+        Class<?> oclass = new ExpressionClassLoader(ExpressionCompiler.class.getClassLoader()).define(this.className.replace('/', '.'), classwriter.toByteArray());
+        Constructor<?> constructor = oclass.getConstructor(IExpression.class, IExpression[].class);
+        return (IExpression) constructor.newInstance(expr, this.leaves.toArray(new IExpression[this.leaves.size()]));
+    }
+
+    private static synchronized int nextClassId() {
+        return classCounter++;
+    }
+
+    /**
+     * Folds constant functions and gives every node a key describing what it computes, counting the keys of nodes that
+     * can be shared. Returns true if the node always gives the same value for the same leaf values.
+     */
+    private boolean analyze(IExpression expr, boolean bool) {
+        if (expr instanceof ConstantFloat) {
+            float f = ((ConstantFloat) expr).eval();
+            this.constants.put(expr, f);
+            this.keys.put(expr, "c" + Float.floatToRawIntBits(f));
+            return true;
+        } else if (isCompiled(expr)) {
+            FunctionType functiontype = getType(expr);
+            IExpression[] aiexpression = getArguments(expr);
+            ExpressionType[] aexpressiontype = functiontype.getParameterTypes(aiexpression);
+            boolean flag = functiontype != FunctionType.RANDOM;
+            boolean flag1 = flag;
+            StringBuilder stringbuilder = new StringBuilder(functiontype.name()).append('(');
+
+            for (int i = 0; i < aiexpression.length; ++i) {
+                flag &= this.analyze(aiexpression[i], aexpressiontype[i] == ExpressionType.BOOL);
+                flag1 &= this.constants.containsKey(aiexpression[i]);
+                stringbuilder.append(i > 0 ? "," : "").append(this.keys.get(aiexpression[i]));
+            }
+
+            stringbuilder.append(')');
+
+            if (flag1) {
+                Object object = bool ? (Object) ((IExpressionBool) expr).eval() : (Object) ((IExpressionFloat) expr).eval();
+                this.constants.put(expr, object);
+                this.keys.put(expr, (bool ? "b" : "c") + (bool ? object : Float.floatToRawIntBits((Float) object)));
+            } else {
+                this.keys.put(expr, stringbuilder.toString());
+
+                if (flag) {
+                    this.countKey(stringbuilder.toString(), bool);
+                }
+            }
+
+            return flag;
+        } else {
+            Integer integer = this.leafIndexes.get(expr);
+
+            if (integer == null) {
+                integer = this.leaves.size();
+                this.leaves.add(expr);
+                this.leafIndexes.put(expr, integer);
+            }
+
+            String s = "l" + integer;
+            this.keys.put(expr, s);
+            boolean flag2 = !(expr instanceof FunctionFloat) && !(expr instanceof FunctionBool) && !(expr instanceof FunctionFloatArray);
+
+            if (flag2) {
+                this.countKey(s, bool);
+            }
+
+            return flag2;
+        }
+    }
+
+    private void countKey(String key, boolean bool) {
+        Integer integer = this.keyCounts.get(key);
+        this.keyCounts.put(key, integer == null ? 1 : integer + 1);
+        this.keyBools.put(key, bool);
+    }
+
+    private void emitFloat(IExpression expr) {
+        Object object = this.constants.get(expr);
+
+        if (object != null) {
+            this.mv.visitLdcInsn(object);
+        } else {
+            Integer integer = this.sharedSlots.get(this.keys.get(expr));
+
+            if (integer != null) {
+                Label label = new Label();
+                this.mv.visitVarInsn(Opcodes.ILOAD, integer + 1);
+                this.mv.visitJumpInsn(Opcodes.IFNE, label);
+                this.emitFloatValue(expr);
+                this.mv.visitVarInsn(Opcodes.FSTORE, integer);
+                this.mv.visitInsn(Opcodes.ICONST_1);
+                this.mv.visitVarInsn(Opcodes.ISTORE, integer + 1);
+                this.mv.visitLabel(label);
+                this.mv.visitVarInsn(Opcodes.FLOAD, integer);
+            } else {
+                this.emitFloatValue(expr);
+            }
+        }
+    }
+
+    private void emitBool(IExpression expr) {
+        Object object = this.constants.get(expr);
+
+        if (object != null) {
+            this.mv.visitInsn((Boolean) object ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+        } else {
+            Integer integer = this.sharedSlots.get(this.keys.get(expr));
+
+            if (integer != null) {
+                Label label = new Label();
+                this.mv.visitVarInsn(Opcodes.ILOAD, integer + 1);
+                this.mv.visitJumpInsn(Opcodes.IFNE, label);
+                this.emitBoolValue(expr);
+                this.mv.visitVarInsn(Opcodes.ISTORE, integer);
+                this.mv.visitInsn(Opcodes.ICONST_1);
+                this.mv.visitVarInsn(Opcodes.ISTORE, integer + 1);
+                this.mv.visitLabel(label);
+                this.mv.visitVarInsn(Opcodes.ILOAD, integer);
+            } else {
+                this.emitBoolValue(expr);
+            }
+        }
+    }
+
+    private void emitLeaf(IExpression expr, boolean bool) {
+        this.mv.visitVarInsn(Opcodes.ALOAD, 0);
+        this.mv.visitFieldInsn(Opcodes.GETFIELD, this.className, "leaves", "[L" + EXPRESSION + ";");
+        this.mv.visitLdcInsn(this.leafIndexes.get(expr));
+        this.mv.visitInsn(Opcodes.AALOAD);
+        this.mv.visitTypeInsn(Opcodes.CHECKCAST, bool ? EXPRESSION_BOOL : EXPRESSION_FLOAT);
+        this.mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, bool ? EXPRESSION_BOOL : EXPRESSION_FLOAT, "eval", bool ? "()Z" : "()F", true);
+    }
+
+    private void emitFloatValue(IExpression expr) {
+        if (!isCompiled(expr)) {
+            this.emitLeaf(expr, false);
+        } else {
+            IExpression[] aiexpression = getArguments(expr);
+
+            switch (getType(expr)) {
+                case PLUS:
+                    this.emitFloatOp(aiexpression, Opcodes.FADD);
+                    break;
+
+                case MINUS:
+                    this.emitFloatOp(aiexpression, Opcodes.FSUB);
+                    break;
+
+                case MUL:
+                    this.emitFloatOp(aiexpression, Opcodes.FMUL);
+                    break;
+
+                case DIV:
+                    this.emitFloatOp(aiexpression, Opcodes.FDIV);
+                    break;
+
+                case MOD:
+                    int i = this.emitStoreFloat(aiexpression[0]);
+                    int j = this.emitStoreFloat(aiexpression[1]);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, i);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, j);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, i);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, j);
+                    this.mv.visitInsn(Opcodes.FDIV);
+                    this.mv.visitInsn(Opcodes.F2I);
+                    this.mv.visitInsn(Opcodes.I2F);
+                    this.mv.visitInsn(Opcodes.FMUL);
+                    this.mv.visitInsn(Opcodes.FSUB);
+                    break;
+
+                case NEG:
+                    this.emitFloat(aiexpression[0]);
+                    this.mv.visitInsn(Opcodes.FNEG);
+                    break;
+
+                case PI:
+                    this.mv.visitFieldInsn(Opcodes.GETSTATIC, MATH_HELPER, "PI", "F");
+                    break;
+
+                case SIN:
+                    this.emitFloatCall(aiexpression, MATH_HELPER, "sin");
+                    break;
+
+                case COS:
+                    this.emitFloatCall(aiexpression, MATH_HELPER, "cos");
+                    break;
+
+                case ASIN:
+                    this.emitFloatCall(aiexpression, MATH_UTILS, "asin");
+                    break;
+
+                case ACOS:
+                    this.emitFloatCall(aiexpression, MATH_UTILS, "acos");
+                    break;
+
+                case TAN:
+                    this.emitDoubleCall(aiexpression, MATH, "tan");
+                    break;
+
+                case ATAN:
+                    this.emitDoubleCall(aiexpression, MATH, "atan");
+                    break;
+
+                case ATAN2:
+                    this.emitDoubleCall(aiexpression, MATH_HELPER, "atan2");
+                    break;
+
+                case TORAD:
+                    this.emitFloatCall(aiexpression, MATH_UTILS, "toRad");
+                    break;
+
+                case TODEG:
+                    this.emitFloatCall(aiexpression, MATH_UTILS, "toDeg");
+                    break;
+
+                case MIN:
+                    this.emitMinMax(aiexpression, "min", Opcodes.FCMPG, Opcodes.IFGE);
+                    break;
+
+                case MAX:
+                    this.emitMinMax(aiexpression, "max", Opcodes.FCMPL, Opcodes.IFLE);
+                    break;
+
+                case CLAMP:
+                    this.emitFloatCall(aiexpression, MATH_HELPER, "clamp_float");
+                    break;
+
+                case ABS:
+                    this.emitFloatCall(aiexpression, MATH_HELPER, "abs");
+                    break;
+
+                case EXP:
+                    this.emitDoubleCall(aiexpression, MATH, "exp");
+                    break;
+
+                case FLOOR:
+                    this.emitFloat(aiexpression[0]);
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH_HELPER, "floor_float", "(F)I", false);
+                    this.mv.visitInsn(Opcodes.I2F);
+                    break;
+
+                case CEIL:
+                    this.emitFloat(aiexpression[0]);
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH_HELPER, "ceiling_float_int", "(F)I", false);
+                    this.mv.visitInsn(Opcodes.I2F);
+                    break;
+
+                case FRAC:
+                    this.emitDoubleCall(aiexpression, MATH_HELPER, "func_181162_h");
+                    break;
+
+                case LOG:
+                    this.emitDoubleCall(aiexpression, MATH, "log");
+                    break;
+
+                case POW:
+                    this.emitDoubleCall(aiexpression, MATH, "pow");
+                    break;
+
+                case RANDOM:
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH, "random", "()D", false);
+                    this.mv.visitInsn(Opcodes.D2F);
+                    break;
+
+                case ROUND:
+                    this.emitFloat(aiexpression[0]);
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH, "round", "(F)I", false);
+                    this.mv.visitInsn(Opcodes.I2F);
+                    break;
+
+                case SIGNUM:
+                    this.emitFloatCall(aiexpression, MATH, "signum");
+                    break;
+
+                case SQRT:
+                    this.emitFloatCall(aiexpression, MATH_HELPER, "sqrt_float");
+                    break;
+
+                case FMOD:
+                    int k = this.emitStoreFloat(aiexpression[0]);
+                    int l = this.emitStoreFloat(aiexpression[1]);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, k);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, l);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, k);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, l);
+                    this.mv.visitInsn(Opcodes.FDIV);
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH_HELPER, "floor_float", "(F)I", false);
+                    this.mv.visitInsn(Opcodes.I2F);
+                    this.mv.visitInsn(Opcodes.FMUL);
+                    this.mv.visitInsn(Opcodes.FSUB);
+                    break;
+
+                case IF:
+                    int i1 = (aiexpression.length - 1) / 2;
+                    Label label = new Label();
+
+                    for (int j1 = 0; j1 < i1; ++j1) {
+                        Label label1 = new Label();
+                        this.emitBool(aiexpression[j1 * 2]);
+                        this.mv.visitJumpInsn(Opcodes.IFEQ, label1);
+                        this.emitFloat(aiexpression[j1 * 2 + 1]);
+                        this.mv.visitJumpInsn(Opcodes.GOTO, label);
+                        this.mv.visitLabel(label1);
+                    }
+
+                    this.emitFloat(aiexpression[i1 * 2]);
+                    this.mv.visitLabel(label);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown function type: " + getType(expr));
+            }
+        }
+    }
+
+    private void emitBoolValue(IExpression expr) {
+        if (!isCompiled(expr)) {
+            this.emitLeaf(expr, true);
+        } else {
+            IExpression[] aiexpression = getArguments(expr);
+
+            switch (getType(expr)) {
+                case TRUE:
+                    this.mv.visitInsn(Opcodes.ICONST_1);
+                    break;
+
+                case FALSE:
+                    this.mv.visitInsn(Opcodes.ICONST_0);
+                    break;
+
+                case NOT:
+                    this.emitBool(aiexpression[0]);
+                    this.mv.visitInsn(Opcodes.ICONST_1);
+                    this.mv.visitInsn(Opcodes.IXOR);
+                    break;
+
+                case AND:
+                    this.emitShortCircuit(aiexpression, Opcodes.IFEQ);
+                    break;
+
+                case OR:
+                    this.emitShortCircuit(aiexpression, Opcodes.IFNE);
+                    break;
+
+                case GREATER:
+                    this.emitCompare(aiexpression, Opcodes.FCMPL, Opcodes.IFLE);
+                    break;
+
+                case GREATER_OR_EQUAL:
+                    this.emitCompare(aiexpression, Opcodes.FCMPL, Opcodes.IFLT);
+                    break;
+
+                case SMALLER:
+                    this.emitCompare(aiexpression, Opcodes.FCMPG, Opcodes.IFGE);
+                    break;
+
+                case SMALLER_OR_EQUAL:
+                    this.emitCompare(aiexpression, Opcodes.FCMPG, Opcodes.IFGT);
+                    break;
+
+                case EQUAL:
+                    this.emitCompare(aiexpression, Opcodes.FCMPL, Opcodes.IFNE);
+                    break;
+
+                case NOT_EQUAL:
+                    this.emitCompare(aiexpression, Opcodes.FCMPL, Opcodes.IFEQ);
+                    break;
+
+                case BETWEEN:
+                    Label label = new Label();
+                    Label label1 = new Label();
+                    int i = this.emitStoreFloat(aiexpression[0]);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, i);
+                    this.emitFloat(aiexpression[1]);
+                    this.mv.visitInsn(Opcodes.FCMPL);
+                    this.mv.visitJumpInsn(Opcodes.IFLT, label);
+                    this.mv.visitVarInsn(Opcodes.FLOAD, i);
+                    this.emitFloat(aiexpression[2]);
+                    this.mv.visitInsn(Opcodes.FCMPG);
+                    this.mv.visitJumpInsn(Opcodes.IFGT, label);
+                    this.emitResult(label, label1);
+                    break;
+
+                case EQUALS:
+                    Label label2 = new Label();
+                    Label label3 = new Label();
+                    this.emitFloatOp(aiexpression, Opcodes.FSUB);
+                    this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, MATH, "abs", "(F)F", false);
+                    this.emitFloat(aiexpression[2]);
+                    this.mv.visitInsn(Opcodes.FCMPG);
+                    this.mv.visitJumpInsn(Opcodes.IFGT, label2);
+                    this.emitResult(label2, label3);
+                    break;
+
+                case IN:
+                    Label label4 = new Label();
+                    Label label5 = new Label();
+                    int j = this.emitStoreFloat(aiexpression[0]);
+
+                    for (int k = 1; k < aiexpression.length; ++k) {
+                        this.mv.visitVarInsn(Opcodes.FLOAD, j);
+                        this.emitFloat(aiexpression[k]);
+                        this.mv.visitInsn(Opcodes.FCMPL);
+                        this.mv.visitJumpInsn(Opcodes.IFEQ, label4);
+                    }
+
+                    this.mv.visitInsn(Opcodes.ICONST_0);
+                    this.mv.visitJumpInsn(Opcodes.GOTO, label5);
+                    this.mv.visitLabel(label4);
+                    this.mv.visitInsn(Opcodes.ICONST_1);
+                    this.mv.visitLabel(label5);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown function type: " + getType(expr));
+            }
+        }
+    }
+
+    private void emitFloatOp(IExpression[] args, int opcode) {
+        this.emitFloat(args[0]);
+        this.emitFloat(args[1]);
+        this.mv.visitInsn(opcode);
+    }
+
+    /**
+     * Calls a static method taking as many floats as there are arguments and returning a float
+     */
+    private void emitFloatCall(IExpression[] args, String owner, String name) {
+        StringBuilder stringbuilder = new StringBuilder("(");
+
+        for (IExpression iexpression : args) {
+            this.emitFloat(iexpression);
+            stringbuilder.append('F');
+        }
+
+        this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, owner, name, stringbuilder.append(")F").toString(), false);
+    }
+
+    /**
+     * Calls a static method taking as many doubles as there are arguments and returning a double, widening the
+     * arguments and narrowing the result
+     */
+    private void emitDoubleCall(IExpression[] args, String owner, String name) {
+        StringBuilder stringbuilder = new StringBuilder("(");
+
+        for (IExpression iexpression : args) {
+            this.emitFloat(iexpression);
+            this.mv.visitInsn(Opcodes.F2D);
+            stringbuilder.append('D');
+        }
+
+        this.mv.visitMethodInsn(Opcodes.INVOKESTATIC, owner, name, stringbuilder.append(")D").toString(), false);
+        this.mv.visitInsn(Opcodes.D2F);
+    }
+
+    private void emitMinMax(IExpression[] args, String name, int compareOpcode, int skipOpcode) {
+        if (args.length == 2) {
+            this.emitFloatCall(args, MATH, name);
+        } else {
+            int i = this.emitStoreFloat(args[0]);
+
+            for (int j = 1; j < args.length; ++j) {
+                Label label = new Label();
+                int k = this.emitStoreFloat(args[j]);
+                this.mv.visitVarInsn(Opcodes.FLOAD, k);
+                this.mv.visitVarInsn(Opcodes.FLOAD, i);
+                this.mv.visitInsn(compareOpcode);
+                this.mv.visitJumpInsn(skipOpcode, label);
+                this.mv.visitVarInsn(Opcodes.FLOAD, k);
+                this.mv.visitVarInsn(Opcodes.FSTORE, i);
+                this.mv.visitLabel(label);
+            }
+
+            this.mv.visitVarInsn(Opcodes.FLOAD, i);
+        }
+    }
+
+    private void emitShortCircuit(IExpression[] args, int skipOpcode) {
+        Label label = new Label();
+        this.emitBool(args[0]);
+        this.mv.visitInsn(Opcodes.DUP);
+        this.mv.visitJumpInsn(skipOpcode, label);
+        this.mv.visitInsn(Opcodes.POP);
+        this.emitBool(args[1]);
+        this.mv.visitLabel(label);
+    }
+
+    private void emitCompare(IExpression[] args, int compareOpcode, int falseOpcode) {
+        Label label = new Label();
+        Label label1 = new Label();
+        this.emitFloat(args[0]);
+        this.emitFloat(args[1]);
+        this.mv.visitInsn(compareOpcode);
+        this.mv.visitJumpInsn(falseOpcode, label);
+        this.emitResult(label, label1);
+    }
+
+    /**
+     * Pushes true, or false when jumped to the false label
+     */
+    private void emitResult(Label falseLabel, Label endLabel) {
+        this.mv.visitInsn(Opcodes.ICONST_1);
+        this.mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+        this.mv.visitLabel(falseLabel);
+        this.mv.visitInsn(Opcodes.ICONST_0);
+        this.mv.visitLabel(endLabel);
+    }
+
+    /**
+     * Evaluates the expression into a new local, returning its index
+     */
+    private int emitStoreFloat(IExpression expr) {
+        this.emitFloat(expr);
+        int i = this.nextLocal++;
+        this.mv.visitVarInsn(Opcodes.FSTORE, i);
+        return i;
+    }
+
+    private static FunctionType getType(IExpression expr) {
+        return expr instanceof FunctionFloat ? ((FunctionFloat) expr).getType() : ((FunctionBool) expr).getType();
+    }
+
+    private static IExpression[] getArguments(IExpression expr) {
+        return expr instanceof FunctionFloat ? ((FunctionFloat) expr).getArguments() : ((FunctionBool) expr).getArguments();
+    }
+
+    /**
+     * Every compiled class gets a loader of its own, so the class can be unloaded together with the shader pack or
+     * model that uses it
+     */
+    private static class ExpressionClassLoader extends ClassLoader {
+        public ExpressionClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -13,6 +13,14 @@ public class FunctionBool implements IExpressionBool {
         return this.type.evalBool(this.arguments);
     }
 
+    public FunctionType getType() {
+        return this.type;
+    }
+
+    public IExpression[] getArguments() {
+        return this.arguments;
+    }
+
     public ExpressionType getExpressionType() {
         return ExpressionType.BOOL;
     }
@@ -40,6 +40,14 @@ public class FunctionFloat implements IExpressionFloat {
         return iexpressionfloat.eval();
     }
 
+    public FunctionType getType() {
+        return this.type;
+    }
+
+    public IExpression[] getArguments() {
+        return this.arguments;
+    }
+
     public ExpressionType getExpressionType() {
         return ExpressionType.FLOAT;
     }
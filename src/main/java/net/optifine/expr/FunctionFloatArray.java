@@ -13,6 +13,14 @@ public class FunctionFloatArray implements IExpressionFloatArray {
         return this.type.evalFloatArray(this.arguments);
     }
 
+    public FunctionType getType() {
+        return this.type;
+    }
+
+    public IExpression[] getArguments() {
+        return this.arguments;
+    }
+
     public ExpressionType getExpressionType() {
         return ExpressionType.FLOAT_ARRAY;
     }
@@ -18,17 +18,28 @@ public class TestExpressions {
                 }
 
                 IExpression iexpression = expressionparser.parse(s);
+                IExpression iexpression1 = ExpressionCompiler.compile(iexpression);
 
                 if (iexpression instanceof IExpressionFloat) {
                     IExpressionFloat iexpressionfloat = (IExpressionFloat) iexpression;
                     float f = iexpressionfloat.eval();
+                    float f1 = ((IExpressionFloat) iexpression1).eval();
                     System.out.println(f);
+
+                    if (Float.floatToIntBits(f1) != Float.floatToIntBits(f)) {
+                        System.out.println("Compiled: " + f1);
+                    }
                 }
 
                 if (iexpression instanceof IExpressionBool) {
                     IExpressionBool iexpressionbool = (IExpressionBool) iexpression;
                     boolean flag = iexpressionbool.eval();
+                    boolean flag1 = ((IExpressionBool) iexpression1).eval();
                     System.out.println(flag);
+
+                    if (flag1 != flag) {
+                        System.out.println("Compiled: " + flag1);
+                    }
                 }
             } catch (Exception exception) {
                 exception.printStackTrace();
@@ -623,7 +623,7 @@ public class ShaderPackParser {
                     SMCLog.warning("Expression type does not match " + kind + " type, expression: " + expressiontype + ", " + kind + ": " + uniformtype + " " + name);
                     return null;
                 } else {
-                    iexpression = makeExpressionCached(iexpression);
+                    iexpression = makeExpressionCached(ExpressionCompiler.compile(iexpression));
                     return new CustomUniform(name, uniformtype, iexpression);
                 }
             }